@@ -0,0 +1,30 @@
+package de.plastickarma.flakeyunit.benchmarks;
+
+/**
+ * Helper for creating the exceptions of flakey events in benchmarks.
+ */
+final class FlakeyEvents {
+
+    private FlakeyEvents() { }
+
+    /**
+     * Creates an exception with the given message, that is thrown the given number of frames deep, with a cause.
+     */
+    static Throwable deepException(final int depth, final String message) {
+        try {
+            recurse(depth, message);
+            throw new IllegalStateException("not reached");
+        } catch (AssertionError e) {
+            return e;
+        }
+    }
+
+    private static void recurse(final int depth, final String message) {
+        if (depth <= 0) {
+            final AssertionError error = new AssertionError(message);
+            error.initCause(new IllegalStateException("cause of " + message));
+            throw error;
+        }
+        recurse(depth - 1, message);
+    }
+}
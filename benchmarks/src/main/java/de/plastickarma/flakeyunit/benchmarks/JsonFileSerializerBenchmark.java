@@ -0,0 +1,106 @@
+package de.plastickarma.flakeyunit.benchmarks;
+
+import de.plastickarma.flakeyunit.FlakeyTestcaseListener;
+import de.plastickarma.flakeyunit.RerunFailures;
+import de.plastickarma.flakeyunit.binary.FlakeyTestcaseBinarySerializer;
+import de.plastickarma.flakeyunit.json.FlakeyTestcaseJsonFileSerializer;
+import de.plastickarma.flakeyunit.json.FlakeyTestcaseJsonLinesSerializer;
+import org.junit.runner.Description;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writing flakey events to files: one JSON file per event compared to the JSON Lines sink and the
+ * binary sink.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonFileSerializerBenchmark {
+
+    @Param({"file-per-event", "json-lines", "binary", "binary-deflate"})
+    private String sink;
+
+    private final Description description =
+            Description.createTestDescription(JsonFileSerializerBenchmark.class, "flakey");
+    private Path directory;
+    private FlakeyTestcaseListener listener;
+    private Throwable originalException;
+    private List<Throwable> rerunExceptions;
+
+    /**
+     * Creates the sink in a fresh temporary directory for every iteration.
+     */
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("flakey-benchmark");
+        if ("json-lines".equals(this.sink)) {
+            this.listener = new FlakeyTestcaseJsonLinesSerializer(this.directory);
+        } else if (this.sink.startsWith("binary")) {
+            this.listener = new FlakeyTestcaseBinarySerializer(
+                    this.directory.resolve("events.flkb"), "binary-deflate".equals(this.sink));
+        } else {
+            this.listener = new FlakeyTestcaseJsonFileSerializer(this.directory);
+        }
+        this.originalException = FlakeyEvents.deepException(50, "original");
+        this.rerunExceptions = new RerunFailures();
+        for (int i = 0; i < 10; i++) {
+            this.rerunExceptions.add(FlakeyEvents.deepException(50, "rerun"));
+        }
+    }
+
+    /**
+     * Deletes the written files.
+     */
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        if (this.listener instanceof Closeable) {
+            ((Closeable) this.listener).close();
+        }
+        Files.walkFileTree(this.directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(final Path dir, final IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Writes one event.
+     */
+    @Benchmark
+    public void writeEvent() {
+        this.listener.handlePotentialFlakeyness(this.description, this.originalException, 10, this.rerunExceptions);
+    }
+}
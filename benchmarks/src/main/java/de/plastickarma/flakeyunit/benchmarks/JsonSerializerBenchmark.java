@@ -0,0 +1,69 @@
+package de.plastickarma.flakeyunit.benchmarks;
+
+import de.plastickarma.flakeyunit.RerunFailures;
+import de.plastickarma.flakeyunit.json.FlakeyTestcaseJsonSerializer;
+import org.junit.runner.Description;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the JSON serialization of a single flakey event with deep stack traces.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonSerializerBenchmark {
+
+    @Param({"10", "100", "500"})
+    private int stackDepth;
+
+    @Param({"true", "false"})
+    private boolean identicalReruns;
+
+    private final StringBuilder output = new StringBuilder();
+    private final Description description =
+            Description.createTestDescription(JsonSerializerBenchmark.class, "flakey");
+    private FlakeyTestcaseJsonSerializer serializer;
+    private Throwable originalException;
+    private List<Throwable> rerunExceptions;
+
+    /**
+     * Creates the exceptions: 10 reruns, that failed identically or all differently.
+     */
+    @Setup
+    public void setUp() {
+        this.serializer = new FlakeyTestcaseJsonSerializer(this.output);
+        this.originalException = FlakeyEvents.deepException(this.stackDepth, "original");
+        this.rerunExceptions = this.identicalReruns ? new RerunFailures() : new ArrayList<Throwable>();
+        for (int i = 0; i < 10; i++) {
+            this.rerunExceptions.add(FlakeyEvents.deepException(
+                    this.stackDepth, this.identicalReruns ? "rerun" : "rerun " + i));
+        }
+    }
+
+    /**
+     * Serializes the event.
+     */
+    @Benchmark
+    public int serialize() {
+        this.output.setLength(0);
+        this.serializer.handlePotentialFlakeyness(this.description, this.originalException, 10, this.rerunExceptions);
+        return this.output.length();
+    }
+}
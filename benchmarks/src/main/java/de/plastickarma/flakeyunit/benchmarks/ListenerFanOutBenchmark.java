@@ -0,0 +1,87 @@
+package de.plastickarma.flakeyunit.benchmarks;
+
+import de.plastickarma.flakeyunit.FlakeyTestIndicatorBuilder;
+import de.plastickarma.flakeyunit.FlakeyTestcaseListener;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the dispatch of flakey events to a growing number of listeners. Every evaluation of the flakey test
+ * case fails initially, passes on the first rerun and fires an event.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ListenerFanOutBenchmark {
+
+    @Param({"1", "10", "100"})
+    private int listeners;
+
+    private Statement flakey;
+
+    /**
+     * Creates the flakey statement with the listeners.
+     */
+    @Setup
+    public void setUp() {
+        final FlakeyTestIndicatorBuilder builder = FlakeyTestIndicatorBuilder.indicator()
+                .threshold(0)
+                .rethrowOriginal(false);
+        for (int i = 0; i < this.listeners; i++) {
+            builder.listener(new CountingListener());
+        }
+        final AssertionError failure = new AssertionError("flakey");
+        this.flakey = builder.build().apply(new Statement() {
+            private boolean fail = true;
+
+            @Override
+            public void evaluate() {
+                this.fail = !this.fail;
+                if (!this.fail) {
+                    throw failure;
+                }
+            }
+        }, Description.createTestDescription(ListenerFanOutBenchmark.class, "flakey"));
+    }
+
+    /**
+     * Evaluates the flakey test case, which notifies all listeners.
+     */
+    @Benchmark
+    public void flakeyTestcase() throws Throwable {
+        this.flakey.evaluate();
+    }
+
+    /**
+     * Listener, that only counts the events.
+     */
+    private static final class CountingListener implements FlakeyTestcaseListener {
+        private long events;
+
+        @Override
+        public void handlePotentialFlakeyness(
+                final Description description,
+                final Throwable originalException,
+                final int rerunCount,
+                final List<Throwable> rerunExceptions) {
+            this.events += rerunCount;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package de.plastickarma.flakeyunit.benchmarks;
+
+import de.plastickarma.flakeyunit.FlakeyTestIndicatorBuilder;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the rerun loop without waiting time for a test case, that always fails, so that all retries are used.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RerunThroughputBenchmark {
+
+    @Param({"1", "10", "100"})
+    private int retries;
+
+    private Statement failing;
+
+    /**
+     * Creates the failing statement.
+     */
+    @Setup
+    public void setUp() {
+        final AssertionError failure = new AssertionError("failing");
+        this.failing = FlakeyTestIndicatorBuilder.indicator()
+                .retries(this.retries)
+                .threshold(0) // a single pass would be enough, so the failing test case uses all retries
+                .build()
+                .apply(new Statement() {
+                    @Override
+                    public void evaluate() {
+                        throw failure;
+                    }
+                }, Description.createTestDescription(RerunThroughputBenchmark.class, "failing"));
+    }
+
+    /**
+     * Evaluates the failing test case including all its reruns.
+     */
+    @Benchmark
+    public Throwable failingTestcase() {
+        try {
+            this.failing.evaluate();
+            throw new IllegalStateException("failure expected");
+        } catch (Throwable t) {
+            return t;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package de.plastickarma.flakeyunit.benchmarks;
+
+import de.plastickarma.flakeyunit.FlakeyTestIndicatorBuilder;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead of the flakey test indicator on a passing test case compared to the bare Statement.
+ * Run with <code>-prof gc</code> to check, that evaluating the wrapped Statement allocates nothing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RuleOverheadBenchmark {
+
+    private Statement bare;
+    private Statement wrapped;
+
+    /**
+     * Creates the statements.
+     */
+    @Setup
+    public void setUp() {
+        final Description description = Description.createTestDescription(RuleOverheadBenchmark.class, "passing");
+        this.bare = new Statement() {
+            @Override
+            public void evaluate() {
+            }
+        };
+        this.wrapped = FlakeyTestIndicatorBuilder.indicator().build().apply(this.bare, description);
+    }
+
+    /**
+     * Baseline: evaluates the bare Statement.
+     */
+    @Benchmark
+    public void bareStatement() throws Throwable {
+        this.bare.evaluate();
+    }
+
+    /**
+     * Evaluates the Statement wrapped by the indicator once.
+     */
+    @Benchmark
+    public void wrappedStatement() throws Throwable {
+        this.wrapped.evaluate();
+    }
+
+    /**
+     * Applies the indicator to the Statement and evaluates it, as JUnit does for every test case.
+     */
+    @Benchmark
+    public void applyAndEvaluate(final Blackhole blackhole) throws Throwable {
+        final Statement statement = FlakeyTestIndicatorBuilder.indicator().build().apply(
+                this.bare, Description.EMPTY);
+        statement.evaluate();
+        blackhole.consume(statement);
+    }
+}
@@ -18,6 +18,8 @@ public class IntegrationTest {
 
     private static CountingFlakeyTestcaseListener counter = null;
     private static final int RERUNS = 5;
+    // initial failure, then pass, fail, pass: reruns stop as soon as the threshold of 1 is exceeded
+    private static final int EXPECTED_RUNS = 4;
 
     private static boolean waitingForBefore = true;
     private static boolean waitingForAfter = false;
@@ -46,9 +48,9 @@ public class IntegrationTest {
     public static void checkTestRuns() {
         assertThat(waitingForAfter, is(false));
         assertThat(waitingForBefore, is(true));
-        assertThat(beforeCount, is(RERUNS + 1));
-        assertThat(afterCount, is(RERUNS + 1));
-        assertThat(testrunCount, is(RERUNS + 1));
+        assertThat(beforeCount, is(EXPECTED_RUNS));
+        assertThat(afterCount, is(EXPECTED_RUNS));
+        assertThat(testrunCount, is(EXPECTED_RUNS));
 
         assertThat(counter.getFlakeyTests().size(), is(1));
         assertThat(counter.getFlakeyTests().get(0), is("flakeyTest"));
@@ -0,0 +1,277 @@
+package de.plastickarma.flakeyunit.binary;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reads files written by the {@link de.plastickarma.flakeyunit.binary.FlakeyTestcaseBinarySerializer} and
+ * converts the events to JSON Lines, one event per line in the format of the
+ * {@link de.plastickarma.flakeyunit.json.FlakeyTestcaseJsonSerializer}, that writes the stack traces frame by
+ * frame in the field <code>stackFrames</code>, as the binary format does not keep the stack trace text.
+ * <p>
+ * Usage from the command line:
+ * <code>java de.plastickarma.flakeyunit.binary.FlakeyTestcaseBinaryReader <file> [<test case regex>]</code>
+ * writes the events to standard out. The regular expression is matched against
+ * <code><class name>#<method name></code>, the exceptions of other test cases are skipped without being
+ * decoded.
+ * </p>
+ */
+public final class FlakeyTestcaseBinaryReader implements Closeable {
+
+    private final DataInputStream in;
+    private final List<String> strings = new ArrayList<>();
+    private final List<StackTraceElement> frames = new ArrayList<>();
+    private byte[] body = new byte[1024];
+    private int position;
+
+    /**
+     * Creates a FlakeyTestcaseBinaryReader and reads the header of the input.
+     * @param input stream of the binary events, it is closed with the reader.
+     */
+    public FlakeyTestcaseBinaryReader(final InputStream input) throws IOException {
+        final DataInputStream header = new DataInputStream(input);
+        if (header.readInt() != FlakeyTestcaseBinarySerializer.MAGIC) {
+            throw new IOException("input is not in the binary flakey event format");
+        }
+        final int version = header.readUnsignedByte();
+        if (version != FlakeyTestcaseBinarySerializer.VERSION) {
+            throw new IOException(String.format("binary flakey event format version %d is not supported", version));
+        }
+        final boolean compressed = (header.readUnsignedByte() & FlakeyTestcaseBinarySerializer.FLAG_DEFLATE) != 0;
+        this.in = new DataInputStream(compressed ? new InflaterInputStream(input) : input);
+        // number 0 stands for null
+        this.strings.add(null);
+        this.frames.add(null);
+    }
+
+    /**
+     * Opens the given file.
+     */
+    public static FlakeyTestcaseBinaryReader open(final Path file) throws IOException {
+        final InputStream input = new BufferedInputStream(Files.newInputStream(file));
+        try {
+            return new FlakeyTestcaseBinaryReader(input);
+        } catch (IOException e) {
+            input.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the events to the output as JSON Lines. A file, whose writer was killed, is read up to the last
+     * complete event.
+     * @param output object to which the JSON is written.
+     * @param testcaseFilter regular expression for <code><class name>#<method name></code> of the test cases,
+     *                       that shall be written, <code>null</code> for all test cases.
+     * @return number of written events.
+     */
+    public int writeJson(final Writer output, final Pattern testcaseFilter) throws IOException {
+        final JsonWriter json = new JsonWriter(output);
+        json.setLenient(true);
+        int events = 0;
+        try {
+            while (true) {
+                final int type = this.in.read();
+                if (type < 0) {
+                    return events;
+                }
+                readBody();
+                if (type == FlakeyTestcaseBinarySerializer.STRING_RECORD) {
+                    this.strings.add(new String(this.body, 0, this.position, StandardCharsets.UTF_8));
+                } else if (type == FlakeyTestcaseBinarySerializer.FRAME_RECORD) {
+                    final int length = this.position;
+                    this.position = 0;
+                    final String className = string(readVarint(length));
+                    final String methodName = string(readVarint(length));
+                    final String fileName = string(readVarint(length));
+                    final int encodedLine = readVarint(length);
+                    final int lineNumber = (encodedLine >>> 1) ^ -(encodedLine & 1);
+                    this.frames.add(new StackTraceElement(className, methodName, fileName, lineNumber));
+                } else if (type == FlakeyTestcaseBinarySerializer.EVENT_RECORD) {
+                    if (writeEvent(json, this.position, testcaseFilter)) {
+                        json.flush();
+                        output.write('\n');
+                        events++;
+                    }
+                } else {
+                    throw new IOException(String.format("unknown record type %d", type));
+                }
+            }
+        } catch (EOFException e) {
+            // the writer was killed in the middle of a record, the complete records are still valid
+            output.flush();
+            return events;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.in.close();
+    }
+
+    /**
+     * Converts a binary event file to JSON Lines on standard out.
+     * @param args the file and optionally a regular expression for the test cases.
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: FlakeyTestcaseBinaryReader <file> [<test case regex>]");
+            System.exit(1);
+        }
+        final Pattern filter = args.length == 2 ? Pattern.compile(args[1]) : null;
+        final Writer output = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        try (FlakeyTestcaseBinaryReader reader = open(Paths.get(args[0]))) {
+            reader.writeJson(output, filter);
+        }
+        output.flush();
+    }
+
+    /**
+     * Reads the body of the current record into the body buffer. Its length is left in position.
+     */
+    private void readBody() throws IOException {
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            final int b = this.in.readUnsignedByte();
+            length |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+        if (length > this.body.length) {
+            this.body = new byte[Math.max(length, this.body.length * 2)];
+        }
+        this.in.readFully(this.body, 0, length);
+        this.position = length;
+    }
+
+    private boolean writeEvent(final JsonWriter json, final int length, final Pattern testcaseFilter)
+            throws IOException {
+        this.position = 0;
+        final String className = string(readVarint(length));
+        final String methodName = string(readVarint(length));
+        if (testcaseFilter != null && !testcaseFilter.matcher(className + '#' + methodName).matches()) {
+            return false;
+        }
+        json.beginObject();
+        json.name("methodName").value(methodName);
+        json.name("className").value(className);
+        final int rerunCount = readVarint(length);
+        json.name("originalException");
+        // the rerun count precedes the exception in the record, but follows it in JSON
+        writeThrowable(json, length);
+        json.name("rerunCount").value(rerunCount);
+
+        final List<String[]> distinctFailures = new ArrayList<>();
+        final int failures = readVarint(length);
+        json.name("rerunExceptions").beginArray();
+        for (int i = 0; i < failures; i++) {
+            final int reference = readVarint(length);
+            if (reference == 0) {
+                distinctFailures.add(writeThrowable(json, length));
+            } else {
+                final String[] failure = distinctFailures.get(reference - 1);
+                json.beginObject();
+                json.name("exceptionClass").value(failure[0]);
+                json.name("fingerprint").value(failure[1]);
+                json.endObject();
+            }
+        }
+        json.endArray();
+        json.endObject();
+        return true;
+    }
+
+    /**
+     * Writes a throwable as JSON object.
+     * @return exception class and fingerprint of the throwable.
+     */
+    private String[] writeThrowable(final JsonWriter json, final int length) throws IOException {
+        final String exceptionClass = string(readVarint(length));
+        final String fingerprint = string(readVarint(length));
+        final String message = string(readVarint(length));
+        json.beginObject();
+        json.name("exceptionClass").value(exceptionClass);
+        if (fingerprint != null) {
+            json.name("fingerprint").value(fingerprint);
+        }
+        if (message != null) {
+            json.name("message").value(message);
+        }
+        final int ownFrames = readVarint(length);
+        json.name("stackFrames").beginArray();
+        for (int i = 0; i < ownFrames; i++) {
+            final StackTraceElement frame = frame(readVarint(length));
+            json.beginObject();
+            json.name("class").value(frame.getClassName());
+            json.name("method").value(frame.getMethodName());
+            if (frame.getFileName() != null) {
+                json.name("file").value(frame.getFileName());
+            }
+            if (frame.getLineNumber() >= 0) {
+                json.name("line").value(frame.getLineNumber());
+            }
+            json.endObject();
+        }
+        json.endArray();
+        final int commonFrames = readVarint(length);
+        if (commonFrames > 0) {
+            json.name("commonFrames").value(commonFrames);
+        }
+        if (readByte(length) != 0) {
+            json.name("cause");
+            writeThrowable(json, length);
+        }
+        json.endObject();
+        return new String[] {exceptionClass, fingerprint};
+    }
+
+    private String string(final int number) throws IOException {
+        if (number >= this.strings.size()) {
+            throw new IOException(String.format("undefined string %d", number));
+        }
+        return this.strings.get(number);
+    }
+
+    private StackTraceElement frame(final int number) throws IOException {
+        if (number == 0 || number >= this.frames.size()) {
+            throw new IOException(String.format("undefined frame %d", number));
+        }
+        return this.frames.get(number);
+    }
+
+    private int readByte(final int length) throws IOException {
+        if (this.position >= length) {
+            throw new IOException("record is shorter than its content");
+        }
+        return this.body[this.position++] & 0xff;
+    }
+
+    private int readVarint(final int length) throws IOException {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            final int b = readByte(length);
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+}
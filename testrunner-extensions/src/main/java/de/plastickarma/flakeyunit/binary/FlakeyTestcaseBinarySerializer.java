@@ -0,0 +1,261 @@
+package de.plastickarma.flakeyunit.binary;
+
+import de.plastickarma.flakeyunit.DistinctFailure;
+import de.plastickarma.flakeyunit.FailureFingerprint;
+import de.plastickarma.flakeyunit.FlakeyEvent;
+import de.plastickarma.flakeyunit.FlakeyTestcaseBatchListener;
+import de.plastickarma.flakeyunit.RerunFailures;
+import org.junit.runner.Description;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * {@link de.plastickarma.flakeyunit.FlakeyTestcaseListener}, that writes flakeyness information in a compact
+ * binary format to a single file. Use the {@link de.plastickarma.flakeyunit.binary.FlakeyTestcaseBinaryReader}
+ * to convert it to JSON.
+ * <p>
+ * The file starts with a header: the magic number <code>FLKB</code>, the format version and flags. The rest of
+ * the file, Deflate compressed if enabled, is a sequence of records: a type byte, the length of the body as
+ * varint and the body. Strings and stack frames are written once as dictionary records and referenced by their
+ * number afterwards, so that repeated stack traces cost a few bytes each. Every event is flushed to the file,
+ * so that the file can be read up to the last event, if the JVM is killed.
+ * </p>
+ * <p>
+ * The file is overwritten, when the first event is written. Forked test JVMs need a file each.
+ * </p>
+ */
+public final class FlakeyTestcaseBinarySerializer implements FlakeyTestcaseBatchListener, Closeable {
+
+    static final int MAGIC = 0x464c4b42; // FLKB
+    static final int VERSION = 1;
+    static final int FLAG_DEFLATE = 1;
+    static final byte STRING_RECORD = 'S';
+    static final byte FRAME_RECORD = 'F';
+    static final byte EVENT_RECORD = 'E';
+    static final int MAX_CAUSE_DEPTH = 32;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path file;
+    private final boolean compress;
+    private final Map<String, Integer> strings = new HashMap<>();
+    private final Map<StackTraceElement, Integer> frames = new HashMap<>();
+    private final RecordBuffer pending = new RecordBuffer();
+    private final RecordBuffer event = new RecordBuffer();
+    private final RecordBuffer frame = new RecordBuffer();
+    private Deflater deflater;
+    private OutputStream out;
+
+    /**
+     * Creates a FlakeyTestcaseBinarySerializer.
+     * @param file path of the file, to which the events are written.
+     * @param compress boolean flag to indicate, if the records shall be Deflate compressed.
+     */
+    public FlakeyTestcaseBinarySerializer(final Path file, final boolean compress) {
+        this.file = file;
+        this.compress = compress;
+    }
+
+    /**
+     * Writes the flakeyness information as a single record.
+     * @param description The description of the testcase as provided by junit.
+     * @param originalException The exception that was the initial test case failure.
+     * @param rerunCount The number of times, which the failed test case was repeated.
+     * @param rerunExceptions The exceptions, that occurred, during the rerun of the test case.
+     */
+    @Override
+    public synchronized void handlePotentialFlakeyness(
+            final Description description,
+            final Throwable originalException,
+            final int rerunCount,
+            final List<Throwable> rerunExceptions) {
+        encode(description, originalException, rerunCount, rerunExceptions);
+        writePending();
+    }
+
+    /**
+     * Writes the flakeyness information of all events with a single flush.
+     * @param events The potentially flakey test cases.
+     */
+    @Override
+    public synchronized void handleBatch(final List<FlakeyEvent> events) {
+        for (FlakeyEvent flakeyEvent : events) {
+            encode(
+                    flakeyEvent.getDescription(),
+                    flakeyEvent.getOriginalException(),
+                    flakeyEvent.getRerunCount(),
+                    flakeyEvent.getRerunFailures());
+        }
+        writePending();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (this.out != null) {
+                this.out.close();
+            }
+        } finally {
+            if (this.deflater != null) {
+                this.deflater.end();
+            }
+            this.out = null;
+            this.deflater = null;
+        }
+    }
+
+    private void encode(
+            final Description description,
+            final Throwable originalException,
+            final int rerunCount,
+            final List<Throwable> rerunExceptions) {
+        this.event.reset();
+        this.event.writeVarint(string(description.getClassName()));
+        this.event.writeVarint(string(description.getMethodName()));
+        this.event.writeVarint(rerunCount);
+        writeThrowable(originalException, FailureFingerprint.of(originalException).getId(), null, 0);
+
+        final RerunFailures failures = RerunFailures.of(rerunExceptions);
+        final List<DistinctFailure> distinctFailures = failures.getDistinctFailures();
+        int written = 0;
+        this.event.writeVarint(failures.size());
+        for (int i = 0; i < failures.size(); i++) {
+            final DistinctFailure failure = failures.getDistinctFailure(i);
+            if (written < distinctFailures.size() && distinctFailures.get(written) == failure) {
+                written++;
+                this.event.writeVarint(0);
+                writeThrowable(failure.getThrowable(), failure.getFingerprint().getId(), null, 0);
+            } else {
+                // reference to an earlier distinct failure of this event, counting from 1
+                this.event.writeVarint(distinctFailures.indexOf(failure) + 1);
+            }
+        }
+        this.pending.writeRecord(EVENT_RECORD, this.event);
+    }
+
+    /**
+     * Writes class, fingerprint, message, stack trace and cause of the throwable. Frames, that a cause has in
+     * common with the exception it caused, are only counted.
+     */
+    private void writeThrowable(
+            final Throwable throwable,
+            final String fingerprint,
+            final StackTraceElement[] enclosingTrace,
+            final int depth) {
+        this.event.writeVarint(string(throwable.getClass().getName()));
+        this.event.writeVarint(string(fingerprint));
+        this.event.writeVarint(string(throwable.getMessage()));
+
+        final StackTraceElement[] trace = throwable.getStackTrace();
+        final int commonFrames = enclosingTrace == null ? 0 : commonFrames(trace, enclosingTrace);
+        this.event.writeVarint(trace.length - commonFrames);
+        for (int i = 0; i < trace.length - commonFrames; i++) {
+            this.event.writeVarint(frame(trace[i]));
+        }
+        this.event.writeVarint(commonFrames);
+
+        final Throwable cause = throwable.getCause();
+        if (cause != null && cause != throwable && depth < MAX_CAUSE_DEPTH) {
+            this.event.writeByte(1);
+            writeThrowable(cause, null, trace, depth + 1);
+        } else {
+            this.event.writeByte(0);
+        }
+    }
+
+    /**
+     * Returns the number of the string, 0 for <code>null</code>. New strings are added to the dictionary.
+     */
+    private int string(final String value) {
+        if (value == null) {
+            return 0;
+        }
+        Integer number = this.strings.get(value);
+        if (number == null) {
+            number = this.strings.size() + 1;
+            this.strings.put(value, number);
+            this.pending.writeRecord(STRING_RECORD, value.getBytes(StandardCharsets.UTF_8));
+        }
+        return number;
+    }
+
+    /**
+     * Returns the number of the stack frame. New frames are added to the dictionary.
+     */
+    private int frame(final StackTraceElement element) {
+        Integer number = this.frames.get(element);
+        if (number == null) {
+            // the strings of the frame are defined before the frame itself
+            final int className = string(element.getClassName());
+            final int methodName = string(element.getMethodName());
+            final int fileName = string(element.getFileName());
+            this.frame.reset();
+            this.frame.writeVarint(className);
+            this.frame.writeVarint(methodName);
+            this.frame.writeVarint(fileName);
+            this.frame.writeSignedVarint(element.getLineNumber());
+            number = this.frames.size() + 1;
+            this.frames.put(element, number);
+            this.pending.writeRecord(FRAME_RECORD, this.frame);
+        }
+        return number;
+    }
+
+    private void writePending() {
+        try {
+            if (this.out == null) {
+                open();
+            }
+            this.pending.writeTo(this.out);
+            this.out.flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            this.pending.reset();
+        }
+    }
+
+    private void open() throws IOException {
+        final Path parent = this.file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        final OutputStream fileOut = new BufferedOutputStream(Files.newOutputStream(this.file), BUFFER_SIZE);
+        final DataOutputStream header = new DataOutputStream(fileOut);
+        header.writeInt(MAGIC);
+        header.writeByte(VERSION);
+        header.writeByte(this.compress ? FLAG_DEFLATE : 0);
+        if (this.compress) {
+            this.deflater = new Deflater(Deflater.BEST_SPEED);
+            // sync flush: every event can be decompressed without the end of the stream
+            this.out = new DeflaterOutputStream(fileOut, this.deflater, BUFFER_SIZE, true);
+        } else {
+            this.out = fileOut;
+        }
+    }
+
+    /**
+     * Returns the number of frames at the bottom of the trace, that it has in common with the enclosing trace.
+     */
+    private static int commonFrames(final StackTraceElement[] trace, final StackTraceElement[] enclosingTrace) {
+        int m = trace.length - 1;
+        int n = enclosingTrace.length - 1;
+        while (m >= 0 && n >= 0 && trace[m].equals(enclosingTrace[n])) {
+            m--;
+            n--;
+        }
+        return trace.length - 1 - m;
+    }
+}
@@ -0,0 +1,83 @@
+package de.plastickarma.flakeyunit.binary;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer for encoding records of the binary event format. Instances are reused across events.
+ */
+final class RecordBuffer {
+
+    private byte[] bytes = new byte[1024];
+    private int size = 0;
+
+    int size() {
+        return this.size;
+    }
+
+    void reset() {
+        this.size = 0;
+    }
+
+    void writeByte(final int value) {
+        ensureCapacity(1);
+        this.bytes[this.size++] = (byte) value;
+    }
+
+    /**
+     * Writes a non-negative int in 1 to 5 bytes, 7 bits per byte.
+     */
+    void writeVarint(final int value) {
+        ensureCapacity(5);
+        int remaining = value;
+        while ((remaining & ~0x7f) != 0) {
+            this.bytes[this.size++] = (byte) ((remaining & 0x7f) | 0x80);
+            remaining >>>= 7;
+        }
+        this.bytes[this.size++] = (byte) remaining;
+    }
+
+    /**
+     * Writes an int, that may be negative, e.g. the line number of a native method, as varint.
+     */
+    void writeSignedVarint(final int value) {
+        writeVarint((value << 1) ^ (value >> 31));
+    }
+
+    void writeBytes(final byte[] value) {
+        ensureCapacity(value.length);
+        System.arraycopy(value, 0, this.bytes, this.size, value.length);
+        this.size += value.length;
+    }
+
+    /**
+     * Appends a record made of the type, the length of the body and the body.
+     */
+    void writeRecord(final byte type, final RecordBuffer body) {
+        writeByte(type);
+        writeVarint(body.size);
+        ensureCapacity(body.size);
+        System.arraycopy(body.bytes, 0, this.bytes, this.size, body.size);
+        this.size += body.size;
+    }
+
+    /**
+     * Appends a record made of the type, the length of the body and the body.
+     */
+    void writeRecord(final byte type, final byte[] body) {
+        writeByte(type);
+        writeVarint(body.length);
+        writeBytes(body);
+    }
+
+    void writeTo(final OutputStream out) throws IOException {
+        out.write(this.bytes, 0, this.size);
+    }
+
+    private void ensureCapacity(final int additional) {
+        if (this.size + additional > this.bytes.length) {
+            this.bytes = Arrays.copyOf(this.bytes, Math.max(this.bytes.length * 2, this.size + additional));
+        }
+    }
+}
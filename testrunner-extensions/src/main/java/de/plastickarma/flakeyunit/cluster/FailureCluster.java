@@ -0,0 +1,42 @@
+package de.plastickarma.flakeyunit.cluster;
+
+import java.util.List;
+
+/**
+ * Failures of potentially flakey test cases, that have the same {@link FailureSignature signature}, as reported
+ * by the {@link de.plastickarma.flakeyunit.cluster.FailureClusterIndex}. Instances are immutable snapshots.
+ */
+public final class FailureCluster {
+
+    private final FailureSignature signature;
+    private final int occurrences;
+    private final List<String> testcases;
+
+    FailureCluster(final FailureSignature signature, final int occurrences, final List<String> testcases) {
+        this.signature = signature;
+        this.occurrences = occurrences;
+        this.testcases = testcases;
+    }
+
+    /**
+     * Returns the signature, that all failures of this cluster share.
+     */
+    public FailureSignature getSignature() {
+        return this.signature;
+    }
+
+    /**
+     * Returns the number of failures in this cluster, initial failures and rerun failures.
+     */
+    public int getOccurrences() {
+        return this.occurrences;
+    }
+
+    /**
+     * Returns the test cases, that failed with this signature, as <code>class name#method name</code>, in the
+     * order of their first failure.
+     */
+    public List<String> getTestcases() {
+        return this.testcases;
+    }
+}
@@ -0,0 +1,168 @@
+package de.plastickarma.flakeyunit.cluster;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import de.plastickarma.flakeyunit.DistinctFailure;
+import de.plastickarma.flakeyunit.FailureFingerprint;
+import de.plastickarma.flakeyunit.FlakeyEvent;
+import de.plastickarma.flakeyunit.FlakeyTestcaseBatchListener;
+import de.plastickarma.flakeyunit.RerunFailures;
+import org.junit.runner.Description;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link de.plastickarma.flakeyunit.FlakeyTestcaseListener}, that groups the failures of all potentially flakey
+ * test cases of a run by their {@link FailureSignature signature}, so that flakes with the same root cause are
+ * reported together, e.g. all <code>ConcurrentModificationException</code>s in <code>CacheX</code>.
+ * <p>
+ * Each failure is added to its cluster with a single hash lookup, so that the index keeps up with thousands of
+ * events. Identical rerun failures of a test case are normalized only once.
+ * </p>
+ */
+public final class FailureClusterIndex implements FlakeyTestcaseBatchListener {
+
+    private final Map<FailureSignature, Entry> clusters = new HashMap<>();
+    private final Map<FailureFingerprint, FailureSignature> signatures = new HashMap<>();
+
+    /**
+     * Adds the failures of the test case to their clusters.
+     * @param description The description of the testcase as provided by junit.
+     * @param originalException The exception that was the initial test case failure.
+     * @param rerunCount The number of times, which the failed test case was repeated.
+     * @param rerunExceptions The exceptions, that occurred, during the rerun of the test case.
+     */
+    @Override
+    public synchronized void handlePotentialFlakeyness(
+            final Description description,
+            final Throwable originalException,
+            final int rerunCount,
+            final List<Throwable> rerunExceptions) {
+        final String testcase = description.getClassName() + '#' + description.getMethodName();
+        add(signature(FailureFingerprint.of(originalException), originalException), testcase, 1);
+        for (DistinctFailure failure : RerunFailures.of(rerunExceptions).getDistinctFailures()) {
+            add(signature(failure.getFingerprint(), failure.getThrowable()), testcase, failure.getOccurrences());
+        }
+    }
+
+    /**
+     * Adds the failures of all events to their clusters.
+     * @param events The potentially flakey test cases.
+     */
+    @Override
+    public synchronized void handleBatch(final List<FlakeyEvent> events) {
+        for (FlakeyEvent event : events) {
+            event.dispatchTo(this);
+        }
+    }
+
+    /**
+     * Returns the clusters ranked by the number of affected test cases, then by the number of failures.
+     */
+    public synchronized List<FailureCluster> rankedClusters() {
+        final List<FailureCluster> ranked = new ArrayList<>(this.clusters.size());
+        for (Map.Entry<FailureSignature, Entry> cluster : this.clusters.entrySet()) {
+            ranked.add(new FailureCluster(
+                    cluster.getKey(),
+                    cluster.getValue().occurrences,
+                    Collections.unmodifiableList(new ArrayList<>(cluster.getValue().testcases))));
+        }
+        Collections.sort(ranked, new Comparator<FailureCluster>() {
+            @Override
+            public int compare(final FailureCluster first, final FailureCluster second) {
+                final int byTestcases = Integer.compare(second.getTestcases().size(), first.getTestcases().size());
+                return byTestcases != 0
+                        ? byTestcases
+                        : Integer.compare(second.getOccurrences(), first.getOccurrences());
+            }
+        });
+        return ranked;
+    }
+
+    /**
+     * Writes the {@link #rankedClusters() ranked clusters} as JSON array to the given output.
+     * @param output object to which the JSON is written.
+     * @param prettyPrint boolean flag to indicate, if the JSON shall be pretty printed.
+     */
+    public void writeReport(final Appendable output, final boolean prettyPrint) {
+        final GsonBuilder gsonBuilder = new GsonBuilder();
+        if (prettyPrint) {
+            gsonBuilder.setPrettyPrinting();
+        }
+        final Gson gson = gsonBuilder.create();
+        final List<ClusterInfo> report = new ArrayList<>();
+        for (FailureCluster cluster : rankedClusters()) {
+            report.add(new ClusterInfo(cluster));
+        }
+        gson.toJson(report, output);
+    }
+
+    /**
+     * Returns the signature of the failure, normalizing it only once per fingerprint.
+     */
+    private FailureSignature signature(final FailureFingerprint fingerprint, final Throwable failure) {
+        FailureSignature signature = this.signatures.get(fingerprint);
+        if (signature == null) {
+            signature = FailureSignature.of(failure);
+            this.signatures.put(fingerprint, signature);
+        }
+        return signature;
+    }
+
+    private void add(final FailureSignature signature, final String testcase, final int occurrences) {
+        Entry entry = this.clusters.get(signature);
+        if (entry == null) {
+            entry = new Entry();
+            this.clusters.put(signature, entry);
+        }
+        entry.occurrences += occurrences;
+        entry.testcases.add(testcase);
+    }
+
+    /**
+     * Mutable state of a cluster.
+     */
+    private static final class Entry {
+        private int occurrences = 0;
+        private final Set<String> testcases = new LinkedHashSet<>();
+    }
+
+    /**
+     * DTO helper class for a cluster, that will be serialized to JSON.
+     */
+    private static class ClusterInfo {
+        @SuppressWarnings("unused")
+        private final String signature;
+
+        @SuppressWarnings("unused")
+        private final String exceptionClass;
+
+        @SuppressWarnings("unused")
+        private final String origin;
+
+        @SuppressWarnings("unused")
+        private final String message;
+
+        @SuppressWarnings("unused")
+        private final int occurrences;
+
+        @SuppressWarnings("unused")
+        private final List<String> testcases;
+
+        private ClusterInfo(final FailureCluster cluster) {
+            this.signature = cluster.getSignature().getId();
+            this.exceptionClass = cluster.getSignature().getExceptionClass();
+            this.origin = cluster.getSignature().getOrigin();
+            this.message = cluster.getSignature().getMessage();
+            this.occurrences = cluster.getOccurrences();
+            this.testcases = cluster.getTestcases();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package de.plastickarma.flakeyunit.cluster;
+
+import java.util.regex.Pattern;
+
+/**
+ * Normalized root cause of a test case failure, which is the same for failures of different test cases, if they
+ * fail for the same reason, e.g. all timeouts while connecting in <code>SocketConnector</code>.
+ * <p>
+ * The signature is made of the class of the innermost cause, the origin, i.e. the top stack frame outside of
+ * the JDK and the test frameworks, without line number, and the message with timestamps, memory addresses,
+ * ports and other numbers replaced by placeholders.
+ * </p>
+ */
+public final class FailureSignature {
+
+    private static final int MAX_CAUSE_DEPTH = 64;
+    private static final String[] FRAMEWORK_PACKAGES = {
+        "java.", "javax.", "jdk.", "sun.", "com.sun.", "org.junit.", "junit.", "org.hamcrest.",
+    };
+
+    private static final Pattern UUID = Pattern.compile(
+            "\\b[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}\\b");
+    private static final Pattern TIMESTAMP = Pattern.compile(
+            "\\d{4}-\\d{2}-\\d{2}([T ]\\d{2}:\\d{2}(:\\d{2}([.,]\\d+)?)?(Z|[+-]\\d{2}:?\\d{2})?)?"
+                    + "|\\b\\d{1,2}:\\d{2}:\\d{2}([.,]\\d+)?\\b");
+    private static final Pattern ADDRESS = Pattern.compile("\\b0x[0-9a-fA-F]+\\b|(?<=@)[0-9a-fA-F]{4,}\\b");
+    private static final Pattern PORT = Pattern.compile("(?<=[\\w\\]]:)\\d{1,5}\\b|(?i)(?<=\\bport[ =:])\\d{1,5}\\b");
+    private static final Pattern NUMBER = Pattern.compile("\\d+");
+    private static final Pattern LAMBDA = Pattern.compile("\\$\\$Lambda.*");
+
+    private final String exceptionClass;
+    private final String origin;
+    private final String message;
+    private final String id;
+
+    private FailureSignature(final String exceptionClass, final String origin, final String message) {
+        this.exceptionClass = exceptionClass;
+        this.origin = origin;
+        this.message = message;
+        this.id = String.format("%016x", hash(exceptionClass + '\n' + origin + '\n' + message));
+    }
+
+    /**
+     * Creates the signature of the given failure.
+     */
+    public static FailureSignature of(final Throwable failure) {
+        final Throwable rootCause = rootCause(failure);
+        final String message = rootCause.getMessage();
+        return new FailureSignature(
+                rootCause.getClass().getName(),
+                origin(rootCause.getStackTrace()),
+                message == null ? "" : normalizeMessage(message));
+    }
+
+    /**
+     * Returns the class name of the innermost cause of the failure.
+     */
+    public String getExceptionClass() {
+        return this.exceptionClass;
+    }
+
+    /**
+     * Returns the class and method name of the top stack frame outside of the JDK and the test frameworks, e.g.
+     * <code>com.example.SocketConnector.connect</code>.
+     */
+    public String getOrigin() {
+        return this.origin;
+    }
+
+    /**
+     * Returns the normalized message of the innermost cause of the failure.
+     */
+    public String getMessage() {
+        return this.message;
+    }
+
+    /**
+     * Returns a short identifier of this signature, e.g. <code>9f4c2a0e71d3b586</code>.
+     */
+    public String getId() {
+        return this.id;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof FailureSignature)) {
+            return false;
+        }
+        final FailureSignature other = (FailureSignature) o;
+        return this.exceptionClass.equals(other.exceptionClass)
+                && this.origin.equals(other.origin)
+                && this.message.equals(other.message);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.id.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return this.exceptionClass + " in " + this.origin + ": " + this.message;
+    }
+
+    /**
+     * Replaces the parts of a message, that differ between occurrences of the same failure, by placeholders.
+     */
+    static String normalizeMessage(final String message) {
+        String normalized = UUID.matcher(message).replaceAll("<uuid>");
+        normalized = TIMESTAMP.matcher(normalized).replaceAll("<time>");
+        normalized = ADDRESS.matcher(normalized).replaceAll("<addr>");
+        normalized = PORT.matcher(normalized).replaceAll("<port>");
+        return NUMBER.matcher(normalized).replaceAll("<n>");
+    }
+
+    private static Throwable rootCause(final Throwable failure) {
+        Throwable rootCause = failure;
+        for (int i = 0; i < MAX_CAUSE_DEPTH && rootCause.getCause() != null && rootCause.getCause() != rootCause; i++) {
+            rootCause = rootCause.getCause();
+        }
+        return rootCause;
+    }
+
+    private static String origin(final StackTraceElement[] frames) {
+        if (frames.length == 0) {
+            return "";
+        }
+        for (StackTraceElement frame : frames) {
+            if (!isFrameworkClass(frame.getClassName())) {
+                return normalizeFrame(frame);
+            }
+        }
+        return normalizeFrame(frames[0]);
+    }
+
+    private static boolean isFrameworkClass(final String className) {
+        for (String frameworkPackage : FRAMEWORK_PACKAGES) {
+            if (className.startsWith(frameworkPackage)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String normalizeFrame(final StackTraceElement frame) {
+        final String className = LAMBDA.matcher(frame.getClassName()).replaceAll("\\$\\$Lambda");
+        return className + '.' + frame.getMethodName();
+    }
+
+    /**
+     * 64 bit FNV-1a hash, so that ids of different signatures hardly ever collide in large test suites.
+     */
+    private static long hash(final String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,241 @@
+package de.plastickarma.flakeyunit.fork;
+
+import com.google.gson.GsonBuilder;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects the flakey events of forked test JVMs, while they are running, and merges them into one report with
+ * an entry per test case. Start it in the build process, before the test JVMs are forked, and pass
+ * {@link #getAddress()} to them as system property {@link #ADDRESS_PROPERTY}, where a
+ * {@link de.plastickarma.flakeyunit.fork.ForkedFlakeyEventPublisher} sends their events over a loopback
+ * socket. Events, that forks wrote to fallback files, because the collector was not reachable, are merged with
+ * {@link #mergeDirectory(Path)}.
+ */
+public final class FlakeyEventCollector implements Closeable {
+
+    /**
+     * System property, that passes the address of the collector to the forked test JVMs.
+     */
+    public static final String ADDRESS_PROPERTY = "flakeyunit.collector";
+
+    private final ServerSocket serverSocket;
+    private final List<Socket> connections = new CopyOnWriteArrayList<>();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final Map<String, Entry> testcases = new LinkedHashMap<>();
+    private int eventCount = 0;
+
+    private FlakeyEventCollector(final ServerSocket serverSocket) {
+        this.serverSocket = serverSocket;
+    }
+
+    /**
+     * Starts a collector on a free port of the loopback interface.
+     */
+    public static FlakeyEventCollector start() throws IOException {
+        return start(0);
+    }
+
+    /**
+     * Starts a collector on the given port of the loopback interface.
+     */
+    public static FlakeyEventCollector start(final int port) throws IOException {
+        final FlakeyEventCollector collector =
+                new FlakeyEventCollector(new ServerSocket(port, 50, InetAddress.getLoopbackAddress()));
+        final Thread acceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                collector.accept();
+            }
+        }, "flakey-collector");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        return collector;
+    }
+
+    /**
+     * Returns the address of the collector as <code>host:port</code>.
+     */
+    public String getAddress() {
+        return this.serverSocket.getInetAddress().getHostAddress() + ':' + this.serverSocket.getLocalPort();
+    }
+
+    /**
+     * Returns the number of events, that were merged so far.
+     */
+    public synchronized int getEventCount() {
+        return this.eventCount;
+    }
+
+    /**
+     * Merges the events of a fallback file.
+     * @return number of merged events.
+     */
+    public int mergeFile(final Path file) throws IOException {
+        final int before = getEventCount();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            read(in);
+        }
+        return getEventCount() - before;
+    }
+
+    /**
+     * Merges the events of all fallback files in the given directory.
+     * @return number of merged events.
+     */
+    public int mergeDirectory(final Path directory) throws IOException {
+        int events = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + ForkEventCodec.FILE_SUFFIX)) {
+            for (Path file : files) {
+                events += mergeFile(file);
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Returns the merged test cases, the most frequently flakey ones first.
+     */
+    public synchronized List<MergedFlakeyTestcase> report() {
+        final List<MergedFlakeyTestcase> report = new ArrayList<>(this.testcases.size());
+        for (Entry entry : this.testcases.values()) {
+            report.add(new MergedFlakeyTestcase(
+                    entry.className,
+                    entry.methodName,
+                    entry.occurrences,
+                    entry.totalReruns,
+                    entry.totalRerunFailures,
+                    Collections.unmodifiableList(new ArrayList<>(entry.forks)),
+                    Collections.unmodifiableList(new ArrayList<>(entry.fingerprints))));
+        }
+        Collections.sort(report, new Comparator<MergedFlakeyTestcase>() {
+            @Override
+            public int compare(final MergedFlakeyTestcase first, final MergedFlakeyTestcase second) {
+                return Integer.compare(second.getOccurrences(), first.getOccurrences());
+            }
+        });
+        return report;
+    }
+
+    /**
+     * Writes the {@link #report() merged test cases} as JSON array to the given output.
+     * @param output object to which the JSON is written.
+     * @param prettyPrint boolean flag to indicate, if the JSON shall be pretty printed.
+     */
+    public void writeReport(final Appendable output, final boolean prettyPrint) {
+        final GsonBuilder gsonBuilder = new GsonBuilder();
+        if (prettyPrint) {
+            gsonBuilder.setPrettyPrinting();
+        }
+        gsonBuilder.create().toJson(report(), output);
+    }
+
+    /**
+     * Stops accepting events. The events merged so far stay available.
+     */
+    @Override
+    public void close() throws IOException {
+        this.serverSocket.close();
+        for (Socket connection : this.connections) {
+            connection.close();
+        }
+    }
+
+    synchronized void merge(
+            final String forkId,
+            final String className,
+            final String methodName,
+            final int rerunCount,
+            final int rerunFailures,
+            final List<String> fingerprints) {
+        final String key = className + '#' + methodName;
+        Entry entry = this.testcases.get(key);
+        if (entry == null) {
+            entry = new Entry(className, methodName);
+            this.testcases.put(key, entry);
+        }
+        entry.occurrences++;
+        entry.totalReruns += rerunCount;
+        entry.totalRerunFailures += rerunFailures;
+        entry.forks.add(forkId);
+        entry.fingerprints.addAll(fingerprints);
+        this.eventCount++;
+    }
+
+    private void accept() {
+        while (!this.serverSocket.isClosed()) {
+            final Socket connection;
+            try {
+                connection = this.serverSocket.accept();
+            } catch (IOException e) {
+                // closed
+                return;
+            }
+            this.connections.add(connection);
+            final Thread readThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try (DataInputStream in =
+                                 new DataInputStream(new BufferedInputStream(connection.getInputStream()))) {
+                        read(in);
+                    } catch (IOException e) {
+                        // the fork is gone, the events it sent completely are merged
+                    } finally {
+                        FlakeyEventCollector.this.connections.remove(connection);
+                    }
+                }
+            }, "flakey-collector-" + this.connectionCount.incrementAndGet());
+            readThread.setDaemon(true);
+            readThread.start();
+        }
+    }
+
+    private void read(final DataInputStream in) throws IOException {
+        try {
+            final String forkId = ForkEventCodec.readHeader(in);
+            while (ForkEventCodec.readEvent(in, forkId, this)) {
+                // merged
+            }
+        } catch (EOFException e) {
+            // the fork was killed in the middle of an event, the complete events are merged
+        }
+    }
+
+    /**
+     * Mutable state of a merged test case.
+     */
+    private static final class Entry {
+        private final String className;
+        private final String methodName;
+        private int occurrences = 0;
+        private long totalReruns = 0;
+        private long totalRerunFailures = 0;
+        private final Set<String> forks = new LinkedHashSet<>();
+        private final Set<String> fingerprints = new LinkedHashSet<>();
+
+        private Entry(final String className, final String methodName) {
+            this.className = className;
+            this.methodName = methodName;
+        }
+    }
+}
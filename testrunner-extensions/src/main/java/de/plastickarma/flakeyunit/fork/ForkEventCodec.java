@@ -0,0 +1,85 @@
+package de.plastickarma.flakeyunit.fork;
+
+import de.plastickarma.flakeyunit.DistinctFailure;
+import de.plastickarma.flakeyunit.FailureFingerprint;
+import de.plastickarma.flakeyunit.FlakeyEvent;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encoding of the events, that forked test JVMs send to the
+ * {@link de.plastickarma.flakeyunit.fork.FlakeyEventCollector}, over a socket or in a fallback file: a header
+ * with the magic number <code>FLKF</code> and the id of the fork, followed by one record per event.
+ * Only what is needed for the merged report is sent, not the stack traces.
+ */
+final class ForkEventCodec {
+
+    static final String FILE_SUFFIX = ".flkf";
+
+    private static final int MAGIC = 0x464c4b46; // FLKF
+    private static final byte EVENT_RECORD = 'E';
+
+    private ForkEventCodec() { }
+
+    static void writeHeader(final DataOutputStream out, final String forkId) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeUTF(forkId);
+    }
+
+    /**
+     * Reads the header.
+     * @return the id of the fork.
+     */
+    static String readHeader(final DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("input is not a stream of forked flakey events");
+        }
+        return in.readUTF();
+    }
+
+    static void writeEvent(final DataOutputStream out, final FlakeyEvent event) throws IOException {
+        final List<DistinctFailure> failures = event.getRerunFailures().getDistinctFailures();
+        out.writeByte(EVENT_RECORD);
+        out.writeUTF(event.getDescription().getClassName());
+        out.writeUTF(String.valueOf(event.getDescription().getMethodName()));
+        out.writeInt(event.getRerunCount());
+        out.writeInt(event.getRerunFailures().size());
+        out.writeShort(failures.size() + 1);
+        out.writeUTF(FailureFingerprint.of(event.getOriginalException()).getId());
+        for (DistinctFailure failure : failures) {
+            out.writeUTF(failure.getFingerprint().getId());
+        }
+    }
+
+    /**
+     * Reads the next event and merges it into the collector.
+     * @return false, if the end of the stream is reached.
+     */
+    static boolean readEvent(
+            final DataInputStream in,
+            final String forkId,
+            final FlakeyEventCollector collector) throws IOException {
+        final int type = in.read();
+        if (type < 0) {
+            return false;
+        }
+        if (type != EVENT_RECORD) {
+            throw new IOException(String.format("unknown record type %d", type));
+        }
+        final String className = in.readUTF();
+        final String methodName = in.readUTF();
+        final int rerunCount = in.readInt();
+        final int rerunFailures = in.readInt();
+        final int fingerprintCount = in.readUnsignedShort();
+        final List<String> fingerprints = new ArrayList<>(fingerprintCount);
+        for (int i = 0; i < fingerprintCount; i++) {
+            fingerprints.add(in.readUTF());
+        }
+        collector.merge(forkId, className, methodName, rerunCount, rerunFailures, fingerprints);
+        return true;
+    }
+}
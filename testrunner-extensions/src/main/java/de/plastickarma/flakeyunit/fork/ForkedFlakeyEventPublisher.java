@@ -0,0 +1,206 @@
+package de.plastickarma.flakeyunit.fork;
+
+import de.plastickarma.flakeyunit.AsyncFlakeyTestcaseListener;
+import de.plastickarma.flakeyunit.FlakeyEvent;
+import de.plastickarma.flakeyunit.FlakeyTestcaseBatchListener;
+import de.plastickarma.flakeyunit.FlakeyTestcaseListener;
+import org.junit.runner.Description;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link de.plastickarma.flakeyunit.FlakeyTestcaseListener} for forked test JVMs, that sends the potentially
+ * flakey test cases to a {@link de.plastickarma.flakeyunit.fork.FlakeyEventCollector}. The events are sent on a
+ * background thread, so that the test run is not delayed by the I/O. If the collector is not reachable, or
+ * no address is given, the events are written to the fallback file
+ * <code><fallback directory>/flakey-fork-<fork id>.flkf</code> instead.
+ */
+public final class ForkedFlakeyEventPublisher implements FlakeyTestcaseBatchListener, Closeable {
+
+    private static final int CAPACITY = 1024;
+    private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+
+    private final Sink sink;
+    private final AsyncFlakeyTestcaseListener async;
+
+    /**
+     * Creates a ForkedFlakeyEventPublisher, that sends to the collector given by the system property
+     * {@link FlakeyEventCollector#ADDRESS_PROPERTY}.
+     * @param fallbackDirectory directory for the fallback file.
+     */
+    public static ForkedFlakeyEventPublisher fromSystemProperty(final Path fallbackDirectory) {
+        return new ForkedFlakeyEventPublisher(
+                System.getProperty(FlakeyEventCollector.ADDRESS_PROPERTY), fallbackDirectory);
+    }
+
+    /**
+     * Creates a ForkedFlakeyEventPublisher, that identifies the fork by the name of the JVM, e.g.
+     * <code>4711@buildhost</code>.
+     * @param collectorAddress address of the collector as <code>host:port</code>, <code>null</code> to write
+     *                         to the fallback file right away.
+     * @param fallbackDirectory directory for the fallback file.
+     */
+    public ForkedFlakeyEventPublisher(final String collectorAddress, final Path fallbackDirectory) {
+        this(ManagementFactory.getRuntimeMXBean().getName(), collectorAddress, fallbackDirectory);
+    }
+
+    ForkedFlakeyEventPublisher(final String forkId, final String collectorAddress, final Path fallbackDirectory) {
+        this.sink = new Sink(forkId, collectorAddress, fallbackDirectory);
+        this.async = new AsyncFlakeyTestcaseListener(
+                CAPACITY,
+                AsyncFlakeyTestcaseListener.OverflowPolicy.BLOCK,
+                Collections.<FlakeyTestcaseListener>singletonList(this.sink));
+    }
+
+    /**
+     * Queues the potentially flakey test case for sending.
+     * @param description The description of the testcase as provided by junit.
+     * @param originalException The exception that was the initial test case failure.
+     * @param rerunCount The number of times, which the failed test case was repeated.
+     * @param rerunExceptions The exceptions, that occurred, during the rerun of the test case.
+     */
+    @Override
+    public void handlePotentialFlakeyness(
+            final Description description,
+            final Throwable originalException,
+            final int rerunCount,
+            final List<Throwable> rerunExceptions) {
+        this.async.handlePotentialFlakeyness(description, originalException, rerunCount, rerunExceptions);
+    }
+
+    /**
+     * Queues the potentially flakey test cases for sending.
+     * @param events The potentially flakey test cases.
+     */
+    @Override
+    public void handleBatch(final List<FlakeyEvent> events) {
+        for (FlakeyEvent event : events) {
+            event.dispatchTo(this.async);
+        }
+    }
+
+    /**
+     * Blocks until all queued events are sent.
+     */
+    public void flush() {
+        this.async.flush();
+    }
+
+    /**
+     * Sends the queued events and closes the connection or the fallback file.
+     */
+    @Override
+    public void close() throws IOException {
+        this.async.flush();
+        this.sink.close();
+    }
+
+    /**
+     * Writes the events to the collector or the fallback file. Only called by the background thread of the
+     * AsyncFlakeyTestcaseListener.
+     */
+    private static final class Sink implements FlakeyTestcaseBatchListener, Closeable {
+        private final String forkId;
+        private final String collectorAddress;
+        private final Path fallbackDirectory;
+        private Socket socket;
+        private DataOutputStream out;
+        private boolean fallback;
+
+        private Sink(final String forkId, final String collectorAddress, final Path fallbackDirectory) {
+            this.forkId = forkId;
+            this.collectorAddress = collectorAddress;
+            this.fallbackDirectory = fallbackDirectory;
+            this.fallback = collectorAddress == null;
+        }
+
+        @Override
+        public void handlePotentialFlakeyness(
+                final Description description,
+                final Throwable originalException,
+                final int rerunCount,
+                final List<Throwable> rerunExceptions) {
+            handleBatch(Collections.singletonList(
+                    new FlakeyEvent(description, originalException, rerunCount, rerunExceptions)));
+        }
+
+        @Override
+        public synchronized void handleBatch(final List<FlakeyEvent> events) {
+            try {
+                write(events);
+            } catch (IOException e) {
+                if (this.fallback) {
+                    throw new RuntimeException(e);
+                }
+                // the collector is not reachable (anymore), events of this batch may reach it twice
+                closeQuietly();
+                this.fallback = true;
+                try {
+                    write(events);
+                } catch (IOException fallbackFailure) {
+                    throw new RuntimeException(fallbackFailure);
+                }
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (this.out != null) {
+                this.out.close();
+            }
+            this.out = null;
+            this.socket = null;
+        }
+
+        private void write(final List<FlakeyEvent> events) throws IOException {
+            if (this.out == null) {
+                open();
+            }
+            for (FlakeyEvent event : events) {
+                ForkEventCodec.writeEvent(this.out, event);
+            }
+            this.out.flush();
+        }
+
+        private void open() throws IOException {
+            if (this.fallback) {
+                Files.createDirectories(this.fallbackDirectory);
+                final Path file = this.fallbackDirectory.resolve(
+                        "flakey-fork-" + this.forkId.replaceAll("[^\\w.-]", "_") + ForkEventCodec.FILE_SUFFIX);
+                this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+            } else {
+                final int separator = this.collectorAddress.lastIndexOf(':');
+                this.socket = new Socket();
+                this.socket.connect(
+                        new InetSocketAddress(
+                                this.collectorAddress.substring(0, separator),
+                                Integer.parseInt(this.collectorAddress.substring(separator + 1))),
+                        CONNECT_TIMEOUT_MILLIS);
+                this.out = new DataOutputStream(new BufferedOutputStream(this.socket.getOutputStream()));
+            }
+            ForkEventCodec.writeHeader(this.out, this.forkId);
+        }
+
+        private void closeQuietly() {
+            try {
+                if (this.socket != null) {
+                    this.socket.close();
+                }
+            } catch (IOException e) {
+                // the connection is given up anyway
+            }
+            this.out = null;
+            this.socket = null;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package de.plastickarma.flakeyunit.fork;
+
+import java.util.List;
+
+/**
+ * A potentially flakey test case with the events of all forked test JVMs merged, as reported by the
+ * {@link de.plastickarma.flakeyunit.fork.FlakeyEventCollector}. Instances are immutable snapshots.
+ */
+public final class MergedFlakeyTestcase {
+
+    private final String className;
+    private final String methodName;
+    private final int occurrences;
+    private final long totalReruns;
+    private final long totalRerunFailures;
+    private final List<String> forks;
+    private final List<String> fingerprints;
+
+    MergedFlakeyTestcase(
+            final String className,
+            final String methodName,
+            final int occurrences,
+            final long totalReruns,
+            final long totalRerunFailures,
+            final List<String> forks,
+            final List<String> fingerprints) {
+        this.className = className;
+        this.methodName = methodName;
+        this.occurrences = occurrences;
+        this.totalReruns = totalReruns;
+        this.totalRerunFailures = totalRerunFailures;
+        this.forks = forks;
+        this.fingerprints = fingerprints;
+    }
+
+    /**
+     * Returns the class name of the test case.
+     */
+    public String getClassName() {
+        return this.className;
+    }
+
+    /**
+     * Returns the method name of the test case.
+     */
+    public String getMethodName() {
+        return this.methodName;
+    }
+
+    /**
+     * Returns how often the test case was considered flakey over all forks.
+     */
+    public int getOccurrences() {
+        return this.occurrences;
+    }
+
+    /**
+     * Returns the number of reruns over all forks.
+     */
+    public long getTotalReruns() {
+        return this.totalReruns;
+    }
+
+    /**
+     * Returns the number of failed reruns over all forks.
+     */
+    public long getTotalRerunFailures() {
+        return this.totalRerunFailures;
+    }
+
+    /**
+     * Returns the ids of the forks, in which the test case was considered flakey, in the order of their first
+     * event.
+     */
+    public List<String> getForks() {
+        return this.forks;
+    }
+
+    /**
+     * Returns the distinct failure fingerprint ids over all forks, in the order of their first occurrence.
+     */
+    public List<String> getFingerprints() {
+        return this.fingerprints;
+    }
+}
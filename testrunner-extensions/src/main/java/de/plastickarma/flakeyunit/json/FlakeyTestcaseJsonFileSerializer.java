@@ -40,8 +40,8 @@ public final class FlakeyTestcaseJsonFileSerializer implements FlakeyTestcaseLis
             final List<Throwable> rerunExceptions) {
 
         final File directory = this.directoryPath.toFile();
-        final boolean dirCreated = directory.mkdirs();
-        if (!dirCreated || !directory.exists()) {
+        directory.mkdirs();
+        if (!directory.isDirectory()) {
             throw new RuntimeException(String.format("directory %s cannot be accessed", directory.getAbsolutePath()));
         }
 
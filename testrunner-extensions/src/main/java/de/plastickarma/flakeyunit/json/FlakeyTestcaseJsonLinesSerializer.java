@@ -0,0 +1,270 @@
+package de.plastickarma.flakeyunit.json;
+
+import de.plastickarma.flakeyunit.FlakeyEvent;
+import de.plastickarma.flakeyunit.FlakeyTestcaseBatchListener;
+import org.junit.runner.Description;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link de.plastickarma.flakeyunit.FlakeyTestcaseListener}, that appends flakeyness information as JSON Lines
+ * (one JSON object per line) to a single file. The file is rolled over to a new segment, if it exceeds a size
+ * or an age. The segments are named <code><base name>-<segment number>.ndjson</code>.
+ * Several JVMs, e.g. forked test JVMs, can write to the same directory at the same time: Writes are serialized
+ * with a lock on the file <code><base name>.lock</code>, which also stores the current segment.
+ * Each event, or each batch of a {@link de.plastickarma.flakeyunit.AsyncFlakeyTestcaseListener}, is written right
+ * away. To take the lock less often, events can be buffered up to a given number; buffered events are written
+ * by {@link #flush()} and {@link #close()}.
+ */
+public final class FlakeyTestcaseJsonLinesSerializer implements FlakeyTestcaseBatchListener, Closeable {
+
+    private static final long DEFAULT_MAX_SEGMENT_BYTES = 64L * 1024 * 1024;
+
+    /** Locks within this JVM, as file locks are held on behalf of the whole JVM. */
+    private static final ConcurrentMap<Path, Object> JVM_LOCKS = new ConcurrentHashMap<>();
+
+    private final Path directoryPath;
+    private final String baseName;
+    private final long maxSegmentBytes;
+    private final long maxSegmentAgeMillis;
+    private final int maxBufferedEvents;
+    private final Path lockPath;
+    private final Object jvmLock;
+
+    private final StringBuilder lines = new StringBuilder();
+    private final FlakeyTestcaseJsonSerializer serializer = new FlakeyTestcaseJsonSerializer(this.lines);
+    private FileChannel lockChannel;
+    private FileChannel segmentChannel;
+    private long segmentNumber = -1;
+    private int bufferedEvents = 0;
+
+    /**
+     * Creates a FlakeyTestcaseJsonLinesSerializer, that writes to <code>flakey-events-*.ndjson</code> and rolls
+     * over segments larger than 64 MB.
+     * @param directoryPath path on file system, where the segments shall be stored.
+     */
+    public FlakeyTestcaseJsonLinesSerializer(final Path directoryPath) {
+        this(directoryPath, "flakey-events", DEFAULT_MAX_SEGMENT_BYTES, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a FlakeyTestcaseJsonLinesSerializer.
+     * @param directoryPath path on file system, where the segments shall be stored.
+     * @param baseName base name of the segment files.
+     * @param maxSegmentBytes size of a segment, after which a new segment is started.
+     * @param maxSegmentAge age of a segment, after which a new segment is started. 0 for no limit.
+     * @param maxSegmentAgeUnit time unit of the segment age.
+     */
+    public FlakeyTestcaseJsonLinesSerializer(
+            final Path directoryPath,
+            final String baseName,
+            final long maxSegmentBytes,
+            final long maxSegmentAge,
+            final TimeUnit maxSegmentAgeUnit) {
+        this(directoryPath, baseName, maxSegmentBytes, maxSegmentAge, maxSegmentAgeUnit, 1);
+    }
+
+    /**
+     * Creates a FlakeyTestcaseJsonLinesSerializer, that buffers events.
+     * @param directoryPath path on file system, where the segments shall be stored.
+     * @param baseName base name of the segment files.
+     * @param maxSegmentBytes size of a segment, after which a new segment is started.
+     * @param maxSegmentAge age of a segment, after which a new segment is started. 0 for no limit.
+     * @param maxSegmentAgeUnit time unit of the segment age.
+     * @param maxBufferedEvents number of events, that are written together. Buffered events are lost, if the
+     *                          serializer is neither flushed nor closed.
+     */
+    public FlakeyTestcaseJsonLinesSerializer(
+            final Path directoryPath,
+            final String baseName,
+            final long maxSegmentBytes,
+            final long maxSegmentAge,
+            final TimeUnit maxSegmentAgeUnit,
+            final int maxBufferedEvents) {
+        if (maxBufferedEvents < 1) {
+            throw new IllegalArgumentException("maxBufferedEvents must be at least 1, but was " + maxBufferedEvents);
+        }
+        this.maxBufferedEvents = maxBufferedEvents;
+        this.directoryPath = directoryPath;
+        this.baseName = baseName;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.maxSegmentAgeMillis = maxSegmentAgeUnit.toMillis(maxSegmentAge);
+        this.lockPath = directoryPath.resolve(baseName + ".lock").toAbsolutePath().normalize();
+        JVM_LOCKS.putIfAbsent(this.lockPath, new Object());
+        this.jvmLock = JVM_LOCKS.get(this.lockPath);
+    }
+
+    /**
+     * Appends the flakeyness information as a single line, once enough events are buffered.
+     * @param description The description of the testcase as provided by junit.
+     * @param originalException The exception that was the initial test case failure.
+     * @param rerunCount The number of times, which the failed test case was repeated.
+     * @param rerunExceptions The exceptions, that occurred, during the rerun of the test case.
+     */
+    @Override
+    public synchronized void handlePotentialFlakeyness(
+            final Description description,
+            final Throwable originalException,
+            final int rerunCount,
+            final List<Throwable> rerunExceptions) {
+        this.serializer.handlePotentialFlakeyness(description, originalException, rerunCount, rerunExceptions);
+        this.lines.append('\n');
+        if (++this.bufferedEvents >= this.maxBufferedEvents) {
+            writeLines();
+        }
+    }
+
+    /**
+     * Appends the flakeyness information of all events and the buffered events with a single write.
+     * @param events The potentially flakey test cases.
+     */
+    @Override
+    public synchronized void handleBatch(final List<FlakeyEvent> events) {
+        for (FlakeyEvent event : events) {
+            event.dispatchTo(this.serializer);
+            this.lines.append('\n');
+        }
+        writeLines();
+    }
+
+    /**
+     * Writes the buffered events.
+     */
+    public synchronized void flush() {
+        if (this.lines.length() > 0) {
+            writeLines();
+        }
+    }
+
+    /**
+     * Returns the path of the segment, that was last written by this JVM, or <code>null</code>, if nothing has
+     * been written yet.
+     */
+    public synchronized Path currentSegment() {
+        return this.segmentNumber < 0 ? null : segmentPath(this.segmentNumber);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+        try {
+            if (this.segmentChannel != null) {
+                this.segmentChannel.close();
+            }
+        } finally {
+            if (this.lockChannel != null) {
+                this.lockChannel.close();
+            }
+            this.segmentChannel = null;
+            this.lockChannel = null;
+            this.segmentNumber = -1;
+        }
+    }
+
+    private void writeLines() {
+        final ByteBuffer data = StandardCharsets.UTF_8.encode(CharBuffer.wrap(this.lines));
+        this.lines.setLength(0);
+        this.bufferedEvents = 0;
+        synchronized (this.jvmLock) {
+            try {
+                if (this.lockChannel == null) {
+                    Files.createDirectories(this.directoryPath);
+                    this.lockChannel = FileChannel.open(
+                            this.lockPath,
+                            StandardOpenOption.CREATE,
+                            StandardOpenOption.READ,
+                            StandardOpenOption.WRITE);
+                }
+                final FileLock lock = this.lockChannel.lock();
+                try {
+                    selectSegment(data.remaining());
+                    while (data.hasRemaining()) {
+                        this.segmentChannel.write(data);
+                    }
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Opens the segment, that is current according to the lock file, and rolls over to a new one, if the
+     * data does not fit. Must be called while holding the file lock.
+     */
+    private void selectSegment(final int dataLength) throws IOException {
+        final long now = System.currentTimeMillis();
+        final ByteBuffer state = ByteBuffer.allocate(2 * Long.SIZE / Byte.SIZE);
+        this.lockChannel.read(state, 0);
+        long number = 0;
+        long created = now;
+        if (state.position() == state.capacity()) {
+            state.flip();
+            number = state.getLong();
+            created = state.getLong();
+        } else {
+            writeState(number, created);
+        }
+
+        final long size;
+        if (number == this.segmentNumber) {
+            // appended to by all writers, so the size of the open channel is current
+            size = this.segmentChannel.size();
+        } else {
+            final Path segment = segmentPath(number);
+            size = Files.exists(segment) ? Files.size(segment) : 0;
+        }
+        final boolean tooLarge = size > 0 && size + dataLength > this.maxSegmentBytes;
+        final boolean tooOld = this.maxSegmentAgeMillis > 0 && now - created >= this.maxSegmentAgeMillis;
+        if (tooLarge || (tooOld && size > 0)) {
+            number++;
+            writeState(number, now);
+        }
+
+        if (number != this.segmentNumber) {
+            if (this.segmentChannel != null) {
+                this.segmentChannel.close();
+            }
+            this.segmentChannel = FileChannel.open(
+                    segmentPath(number),
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            this.segmentNumber = number;
+        }
+    }
+
+    private void writeState(final long number, final long created) throws IOException {
+        final ByteBuffer state = ByteBuffer.allocate(2 * Long.SIZE / Byte.SIZE);
+        state.putLong(number).putLong(created).flip();
+        while (state.hasRemaining()) {
+            this.lockChannel.write(state, state.position());
+        }
+    }
+
+    private Path segmentPath(final long number) {
+        return this.directoryPath.resolve(String.format("%s-%d.ndjson", this.baseName, number));
+    }
+}
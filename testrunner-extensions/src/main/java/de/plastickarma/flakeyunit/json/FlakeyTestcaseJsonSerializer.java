@@ -1,42 +1,94 @@
 package de.plastickarma.flakeyunit.json;
 
-import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
+import de.plastickarma.flakeyunit.DistinctFailure;
+import de.plastickarma.flakeyunit.FailureFingerprint;
 import de.plastickarma.flakeyunit.FlakeyTestcaseListener;
+import de.plastickarma.flakeyunit.RerunAttempt;
+import de.plastickarma.flakeyunit.RerunFailures;
 import org.junit.runner.Description;
 
+import java.io.Flushable;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
-import java.util.ArrayList;
+import java.io.Writer;
 import java.util.List;
 
 /**
  * {@link de.plastickarma.flakeyunit.FlakeyTestcaseListener}, that serializes information
  * about potential flakeyness to JSON using Gson.
+ * <p>
+ * The JSON is streamed straight to the output. Every exception is written with its class, its fingerprint and
+ * its stack trace as printed by <code>Throwable#printStackTrace</code> in the field <code>stackTrace</code>.
+ * Rerun failures, that are identical to an earlier one, share the rendered stack trace of the first one.
+ * </p>
+ * <p>
+ * Optionally, stack traces are written frame by frame instead, in the field <code>stackFrames</code>, as
+ * objects with the fields <code>class</code>, <code>method</code>, <code>file</code> and <code>line</code>,
+ * and with a limit of frames per exception. The message is written as <code>message</code>, causes are nested
+ * as <code>cause</code>. As with <code>Throwable#printStackTrace</code>, the frames a cause has in common with
+ * the exception it caused are left out and counted in <code>commonFrames</code>. Rerun failures, that are
+ * identical to an earlier one, are written with their class and fingerprint only.
+ * </p>
+ * <p>
+ * Perturbed reruns are listed in rerun order in the field <code>attempts</code>, with their perturbation,
+ * whether they passed and the fingerprint of their failure.
+ * </p>
  */
 public final class FlakeyTestcaseJsonSerializer implements FlakeyTestcaseListener {
 
-    private final Appendable output;
+    private static final int MAX_CAUSE_DEPTH = 32;
+
+    private final Writer output;
     private final boolean prettyPrint;
+    private final boolean stackFrames;
+    private final int maxFrames;
+    private JsonWriter json;
+
+    /**
+     * Creates a FlakeyTestcaseJsonSerializer, that writes the stack traces frame by frame in the field
+     * <code>stackFrames</code>.
+     * @param output object to which the JSON is written.
+     * @param prettyPrint boolean flag to indicate, if the JSON shall be pretty printed.
+     * @param maxFrames maximum number of stack frames, that are written per exception, 0 for no limit. The
+     *                  number of left out frames is written as <code>omittedFrames</code>.
+     */
+    public FlakeyTestcaseJsonSerializer(final Appendable output, final boolean prettyPrint, final int maxFrames) {
+        this(output, prettyPrint, true, maxFrames);
+    }
 
     /**
-     * Creates a FlakeyTestcaseJsonSerializer.
+     * Creates a FlakeyTestcaseJsonSerializer, that writes the stack traces as text in the field
+     * <code>stackTrace</code>.
      * @param output object to which the JSON is written.
      * @param prettyPrint boolean flag to indicate, if the JSON shall be pretty printed.
      */
     public FlakeyTestcaseJsonSerializer(final Appendable output, boolean prettyPrint) {
-        this.output = output;
-        this.prettyPrint = prettyPrint;
+        this(output, prettyPrint, false, 0);
     }
 
     /**
-     * Creates a FlakeyTestcaseJsonSerializer without JSON pretty print.
+     * Creates a FlakeyTestcaseJsonSerializer without JSON pretty print, that writes the stack traces as text in
+     * the field <code>stackTrace</code>.
      * @param output object to which the JSON is written.
      */
     public FlakeyTestcaseJsonSerializer(final Appendable output) {
         this(output, false);
     }
 
+    private FlakeyTestcaseJsonSerializer(
+            final Appendable output,
+            final boolean prettyPrint,
+            final boolean stackFrames,
+            final int maxFrames) {
+        this.output = output instanceof Writer ? (Writer) output : new AppendableWriter(output);
+        this.prettyPrint = prettyPrint;
+        this.stackFrames = stackFrames;
+        this.maxFrames = maxFrames;
+        this.json = createJsonWriter();
+    }
+
     /**
      * Writes the flakeyness information to the output object of this object.
      * @param description The description of the testcase as provided by junit.
@@ -45,86 +97,203 @@ public final class FlakeyTestcaseJsonSerializer implements FlakeyTestcaseListene
      * @param rerunExceptions The exceptions, that occurred, during the rerun of the test case.
      */
     @Override
-    public void handlePotentialFlakeyness(
+    public synchronized void handlePotentialFlakeyness(
             final Description description,
             final Throwable originalException,
             final int rerunCount,
             final List<Throwable> rerunExceptions) {
+        try {
+            this.json.beginObject();
+            this.json.name("methodName").value(description.getMethodName());
+            this.json.name("className").value(description.getTestClass().getName());
+            this.json.name("originalException");
+            writeException(originalException, FailureFingerprint.of(originalException), null);
+            this.json.name("rerunCount").value(rerunCount);
+
+            this.json.name("rerunExceptions").beginArray();
+            final RerunFailures failures = RerunFailures.of(rerunExceptions);
+            final List<DistinctFailure> distinctFailures = failures.getDistinctFailures();
+            int written = 0;
+            for (int i = 0; i < failures.size(); i++) {
+                final DistinctFailure failure = failures.getDistinctFailure(i);
+                // distinct failures are listed in the order of their first occurrence
+                if (written < distinctFailures.size() && distinctFailures.get(written) == failure) {
+                    written++;
+                    writeException(failure.getThrowable(), failure.getFingerprint(), failure);
+                } else if (!this.stackFrames) {
+                    writeException(failure.getThrowable(), failure.getFingerprint(), failure);
+                } else {
+                    // identical to an earlier rerun failure, its stack trace is written only once
+                    this.json.beginObject();
+                    this.json.name("exceptionClass").value(failure.getFingerprint().getExceptionClass());
+                    this.json.name("fingerprint").value(failure.getFingerprint().getId());
+                    this.json.endObject();
+                }
+            }
+            this.json.endArray();
+            if (!failures.getAttempts().isEmpty()) {
+                this.json.name("attempts").beginArray();
+                for (RerunAttempt attempt : failures.getAttempts()) {
+                    this.json.beginObject();
+                    this.json.name("perturbation").value(attempt.getPerturbation());
+                    this.json.name("passed").value(attempt.isPassed());
+                    if (!attempt.isPassed()) {
+                        this.json.name("fingerprint").value(attempt.getFailure().getFingerprint().getId());
+                    }
+                    this.json.endObject();
+                }
+                this.json.endArray();
+            }
+            this.json.endObject();
+            this.json.flush();
+        } catch (IOException e) {
+            // the writer state is broken in the middle of an event, start over with the next one
+            this.json = createJsonWriter();
+            throw new RuntimeException(e);
+        }
+    }
 
-        final GsonBuilder gsonBuilder = new GsonBuilder();
+    private JsonWriter createJsonWriter() {
+        final JsonWriter writer = new JsonWriter(this.output);
+        // the events are written one after another as top level values
+        writer.setLenient(true);
         if (this.prettyPrint) {
-            gsonBuilder.setPrettyPrinting();
+            writer.setIndent("  ");
         }
+        return writer;
+    }
 
-        try {
-            gsonBuilder.create().toJson(
-                new GsonBinding(
-                    description,
-                    originalException,
-                    rerunCount,
-                    rerunExceptions), this.output);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+    /**
+     * Writes an exception as object.
+     * @param failure the distinct failure, that the exception belongs to, whose stack trace text is reused,
+     *                <code>null</code> to render the stack trace of the exception.
+     */
+    private void writeException(
+            final Throwable exception,
+            final FailureFingerprint fingerprint,
+            final DistinctFailure failure) throws IOException {
+        this.json.beginObject();
+        this.json.name("exceptionClass").value(exception.getClass().getName());
+        this.json.name("fingerprint").value(fingerprint.getId());
+        if (this.stackFrames) {
+            writeThrowable(exception, null, 0);
+        } else {
+            this.json.name("stackTrace").value(failure == null ? stackTrace(exception) : failure.getStackTrace());
+        }
+        this.json.endObject();
+    }
+
+    private static String stackTrace(final Throwable exception) {
+        final StringWriter writer = new StringWriter();
+        try (PrintWriter pw = new PrintWriter(writer)) {
+            exception.printStackTrace(pw);
         }
+        return writer.toString();
     }
 
     /**
-     * DTO helper class for flakeyness information, that will be serialized to JSON.
+     * Writes message, stack trace and cause of the throwable to the current object.
      */
-    private static class GsonBinding {
-        @SuppressWarnings("unused")
-        private final String methodName;
-
-        @SuppressWarnings("unused")
-        private final String className;
-
-        @SuppressWarnings("unused")
-        private final ExceptionInfo originalException;
-
-        @SuppressWarnings("unused")
-        private final int rerunCount;
-
-        private final List<ExceptionInfo> rerunExceptions;
-
-        private GsonBinding(
-                final Description description,
-                final Throwable originalException,
-                final int rerunCount,
-                final List<Throwable> rerunExceptions) throws IOException {
-            this.methodName = description.getMethodName();
-            this.className = description.getTestClass().getName();
-            this.originalException = new ExceptionInfo(originalException);
-
-            this.rerunCount = rerunCount;
-            this.rerunExceptions = new ArrayList<>(rerunExceptions.size());
-            for (Throwable t : rerunExceptions) {
-                this.rerunExceptions.add(new ExceptionInfo(t));
+    private void writeThrowable(
+            final Throwable throwable,
+            final StackTraceElement[] enclosingTrace,
+            final int depth) throws IOException {
+        final String message = throwable.getMessage();
+        if (message != null) {
+            this.json.name("message").value(message);
+        }
+
+        final StackTraceElement[] frames = throwable.getStackTrace();
+        final int commonFrames = enclosingTrace == null ? 0 : commonFrames(frames, enclosingTrace);
+        final int ownFrames = frames.length - commonFrames;
+        final int writtenFrames = this.maxFrames > 0 ? Math.min(this.maxFrames, ownFrames) : ownFrames;
+        this.json.name("stackFrames").beginArray();
+        for (int i = 0; i < writtenFrames; i++) {
+            final StackTraceElement frame = frames[i];
+            this.json.beginObject();
+            this.json.name("class").value(frame.getClassName());
+            this.json.name("method").value(frame.getMethodName());
+            if (frame.getFileName() != null) {
+                this.json.name("file").value(frame.getFileName());
+            }
+            if (frame.getLineNumber() >= 0) {
+                this.json.name("line").value(frame.getLineNumber());
             }
+            this.json.endObject();
+        }
+        this.json.endArray();
+        if (writtenFrames < ownFrames) {
+            this.json.name("omittedFrames").value(ownFrames - writtenFrames);
+        }
+        if (commonFrames > 0) {
+            this.json.name("commonFrames").value(commonFrames);
+        }
+
+        final Throwable cause = throwable.getCause();
+        if (cause != null && cause != throwable && depth < MAX_CAUSE_DEPTH) {
+            this.json.name("cause").beginObject();
+            this.json.name("exceptionClass").value(cause.getClass().getName());
+            writeThrowable(cause, frames, depth + 1);
+            this.json.endObject();
+        }
+    }
+
+    /**
+     * Returns the number of frames at the bottom of the trace, that it has in common with the enclosing trace.
+     */
+    private static int commonFrames(final StackTraceElement[] trace, final StackTraceElement[] enclosingTrace) {
+        int m = trace.length - 1;
+        int n = enclosingTrace.length - 1;
+        while (m >= 0 && n >= 0 && trace[m].equals(enclosingTrace[n])) {
+            m--;
+            n--;
         }
+        return trace.length - 1 - m;
     }
 
     /**
-     * DTO helper class for exception information, that will be serialized JSON.
+     * Writer, that passes the JSON to an Appendable without copying.
      */
-    private static class ExceptionInfo {
+    private static final class AppendableWriter extends Writer {
+        private final Appendable appendable;
 
-        @SuppressWarnings("unused")
-        private final String exceptionClass;
+        private AppendableWriter(final Appendable appendable) {
+            this.appendable = appendable;
+        }
 
-        @SuppressWarnings("unused")
-        private final String stackTrace;
+        @Override
+        public void write(final int c) throws IOException {
+            this.appendable.append((char) c);
+        }
 
-        public ExceptionInfo(final Throwable t) throws IOException {
+        @Override
+        public void write(final String str, final int off, final int len) throws IOException {
+            this.appendable.append(str, off, off + len);
+        }
 
-            this.exceptionClass = t.getClass().getName();
+        @Override
+        public void write(final char[] cbuf, final int off, final int len) throws IOException {
+            for (int i = off; i < off + len; i++) {
+                this.appendable.append(cbuf[i]);
+            }
+        }
 
-            try (StringWriter writer = new StringWriter()) {
-                try (PrintWriter pw = new PrintWriter(writer)) {
-                    t.printStackTrace(pw);
-                }
-                writer.flush();
-                this.stackTrace = writer.toString();
+        @Override
+        public Writer append(final CharSequence csq) throws IOException {
+            this.appendable.append(csq);
+            return this;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (this.appendable instanceof Flushable) {
+                ((Flushable) this.appendable).flush();
             }
         }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
     }
 }
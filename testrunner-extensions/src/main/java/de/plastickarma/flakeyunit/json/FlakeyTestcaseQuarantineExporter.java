@@ -0,0 +1,122 @@
+package de.plastickarma.flakeyunit.json;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonStreamParser;
+import de.plastickarma.flakeyunit.Quarantine;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Precomputes the quarantine file of a {@link de.plastickarma.flakeyunit.Quarantine} from the JSON output of
+ * {@link de.plastickarma.flakeyunit.json.FlakeyTestcaseJsonFileSerializer} or
+ * {@link de.plastickarma.flakeyunit.json.FlakeyTestcaseJsonLinesSerializer}, so that the test run loads a
+ * plain list of keys instead of parsing JSON.
+ */
+public final class FlakeyTestcaseQuarantineExporter {
+
+    private final Map<String, Integer> flakes = new TreeMap<>();
+
+    /**
+     * Reads the flakey test cases of a JSON or JSON Lines file, or of all <code>.json</code> and
+     * <code>.ndjson</code> files of a directory.
+     * @return The number of flakey test cases read.
+     */
+    public int read(final Path jsonOutput) throws IOException {
+        if (!Files.isDirectory(jsonOutput)) {
+            return readFile(jsonOutput);
+        }
+        int events = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(jsonOutput, "*.{json,ndjson}")) {
+            for (Path file : files) {
+                events += readFile(file);
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Returns the keys of the test cases, that were flakey at least the given number of times, sorted by key.
+     */
+    public List<String> keys(final int minFlakes) {
+        final List<String> keys = new ArrayList<>();
+        for (Map.Entry<String, Integer> testcase : this.flakes.entrySet()) {
+            if (testcase.getValue() >= minFlakes) {
+                keys.add(testcase.getKey());
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Writes the quarantine file. The file is replaced atomically, so that a running test never reads a
+     * partially written file.
+     * @param quarantineFile The quarantine file.
+     * @param minFlakes Minimum number of flakes of a test case to be quarantined.
+     */
+    public void write(final Path quarantineFile, final int minFlakes) throws IOException {
+        final Path temporary = quarantineFile.resolveSibling(quarantineFile.getFileName() + ".tmp");
+        try (Writer out = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            out.write("# test cases, that were flakey at least " + minFlakes + " times\n");
+            for (String key : keys(minFlakes)) {
+                out.write(key);
+                out.write('\n');
+            }
+        }
+        Files.move(temporary, quarantineFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes a quarantine file from JSON output.
+     * @param args the quarantine file, the minimum number of flakes and the JSON files or directories.
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println(
+                    "Usage: FlakeyTestcaseQuarantineExporter <quarantine file> <min flakes> <json file or dir>...");
+            System.exit(1);
+        }
+        final FlakeyTestcaseQuarantineExporter exporter = new FlakeyTestcaseQuarantineExporter();
+        for (int i = 2; i < args.length; i++) {
+            exporter.read(Paths.get(args[i]));
+        }
+        exporter.write(Paths.get(args[0]), Integer.parseInt(args[1]));
+    }
+
+    private int readFile(final Path file) throws IOException {
+        int events = 0;
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            final JsonStreamParser parser = new JsonStreamParser(in);
+            while (parser.hasNext()) {
+                final JsonElement element = parser.next();
+                if (!element.isJsonObject()) {
+                    continue;
+                }
+                final JsonObject event = element.getAsJsonObject();
+                if (event.has("className") && event.has("methodName")) {
+                    final String key = Quarantine.key(
+                            event.get("className").getAsString(), event.get("methodName").getAsString());
+                    final Integer count = this.flakes.get(key);
+                    this.flakes.put(key, count == null ? 1 : count + 1);
+                    events++;
+                }
+            }
+        } catch (JsonParseException e) {
+            throw new IOException("invalid JSON in " + file, e);
+        }
+        return events;
+    }
+}
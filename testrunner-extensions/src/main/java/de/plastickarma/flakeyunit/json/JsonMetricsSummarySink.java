@@ -0,0 +1,162 @@
+package de.plastickarma.flakeyunit.json;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import de.plastickarma.flakeyunit.ClassRerunMetrics;
+import de.plastickarma.flakeyunit.HistogramSnapshot;
+import de.plastickarma.flakeyunit.MetricsSink;
+import de.plastickarma.flakeyunit.RerunMetricsSnapshot;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link de.plastickarma.flakeyunit.MetricsSink}, that writes a JSON summary of the rerun costs, e.g. at the end
+ * of the test run with the {@link de.plastickarma.flakeyunit.MetricsExportListener}. Durations are written in
+ * milliseconds.
+ */
+public final class JsonMetricsSummarySink implements MetricsSink {
+
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    private final Path file;
+
+    /**
+     * Creates a JsonMetricsSummarySink.
+     * @param file File to write, it is replaced on every export.
+     */
+    public JsonMetricsSummarySink(final Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public void export(final RerunMetricsSnapshot snapshot) throws IOException {
+        final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        try (Writer out = Files.newBufferedWriter(this.file, StandardCharsets.UTF_8)) {
+            gson.toJson(new Summary(snapshot), out);
+        }
+    }
+
+    private static double millis(final long nanos) {
+        return nanos / NANOS_PER_MILLI;
+    }
+
+    /**
+     * DTO helper class for the summary, that will be serialized to JSON.
+     */
+    private static class Summary {
+        @SuppressWarnings("unused")
+        private final long rerunTests;
+
+        @SuppressWarnings("unused")
+        private final long flakes;
+
+        @SuppressWarnings("unused")
+        private final double rerunCpuMillis;
+
+        @SuppressWarnings("unused")
+        private final Histogram initialRuns;
+
+        @SuppressWarnings("unused")
+        private final Histogram reruns;
+
+        @SuppressWarnings("unused")
+        private final Histogram sleeps;
+
+        @SuppressWarnings("unused")
+        private final Histogram listenerDispatches;
+
+        @SuppressWarnings("unused")
+        private final List<ClassSummary> classes = new ArrayList<>();
+
+        private Summary(final RerunMetricsSnapshot snapshot) {
+            this.rerunTests = snapshot.getRerunTests();
+            this.flakes = snapshot.getFlakes();
+            this.rerunCpuMillis = millis(snapshot.getRerunCpuNanos());
+            this.initialRuns = new Histogram(snapshot.getInitialRuns());
+            this.reruns = new Histogram(snapshot.getReruns());
+            this.sleeps = new Histogram(snapshot.getSleeps());
+            this.listenerDispatches = new Histogram(snapshot.getListenerDispatches());
+            for (ClassRerunMetrics testClass : snapshot.getClasses()) {
+                this.classes.add(new ClassSummary(testClass));
+            }
+        }
+    }
+
+    /**
+     * DTO helper class for a histogram, that will be serialized to JSON.
+     */
+    private static class Histogram {
+        @SuppressWarnings("unused")
+        private final long count;
+
+        @SuppressWarnings("unused")
+        private final double totalMillis;
+
+        @SuppressWarnings("unused")
+        private final double meanMillis;
+
+        @SuppressWarnings("unused")
+        private final double p50Millis;
+
+        @SuppressWarnings("unused")
+        private final double p90Millis;
+
+        @SuppressWarnings("unused")
+        private final double p99Millis;
+
+        @SuppressWarnings("unused")
+        private final double maxMillis;
+
+        private Histogram(final HistogramSnapshot histogram) {
+            this.count = histogram.getCount();
+            this.totalMillis = millis(histogram.getTotalNanos());
+            this.meanMillis = millis(histogram.getMeanNanos());
+            this.p50Millis = millis(histogram.getPercentileNanos(50));
+            this.p90Millis = millis(histogram.getPercentileNanos(90));
+            this.p99Millis = millis(histogram.getPercentileNanos(99));
+            this.maxMillis = millis(histogram.getMaxNanos());
+        }
+    }
+
+    /**
+     * DTO helper class for the totals of a test class, that will be serialized to JSON.
+     */
+    private static class ClassSummary {
+        @SuppressWarnings("unused")
+        private final String className;
+
+        @SuppressWarnings("unused")
+        private final long tests;
+
+        @SuppressWarnings("unused")
+        private final double initialRunMillis;
+
+        @SuppressWarnings("unused")
+        private final long rerunTests;
+
+        @SuppressWarnings("unused")
+        private final long reruns;
+
+        @SuppressWarnings("unused")
+        private final double rerunMillis;
+
+        @SuppressWarnings("unused")
+        private final long flakes;
+
+        private ClassSummary(final ClassRerunMetrics testClass) {
+            this.className = testClass.getClassName();
+            this.tests = testClass.getTests();
+            this.initialRunMillis = millis(testClass.getInitialRunNanos());
+            this.rerunTests = testClass.getRerunTests();
+            this.reruns = testClass.getReruns();
+            this.rerunMillis = millis(testClass.getRerunNanos());
+            this.flakes = testClass.getFlakes();
+        }
+    }
+}
@@ -0,0 +1,385 @@
+package de.plastickarma.flakeyunit.report;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonStreamParser;
+import de.plastickarma.flakeyunit.binary.FlakeyTestcaseBinaryReader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Generates a static report of the flakey test cases from the event files of the
+ * {@link de.plastickarma.flakeyunit.json.FlakeyTestcaseJsonFileSerializer} (<code>*.json</code>), the
+ * {@link de.plastickarma.flakeyunit.json.FlakeyTestcaseJsonLinesSerializer} (<code>*.ndjson</code>) and the
+ * {@link de.plastickarma.flakeyunit.binary.FlakeyTestcaseBinarySerializer} (<code>*.flkb</code>). The report
+ * directory gets an <code>index.html</code> and a <code>report.json</code> with the top offenders, the rerun
+ * cost and the trend of the flakes per day.
+ * <p>
+ * The events are streamed: only one event is in memory at a time, the memory grows with the number of flakey
+ * test cases, not with the number of events. The test cases are indexed by class, method, exception class and
+ * fingerprint, see {@link #find(IndexField, String)}. The summaries, the index and how far the event files were
+ * read are saved in the checkpoint <code>flakey-index.json</code> of the report directory, so that the next run
+ * only reads new events: event files, that are newer than the newest file read, and the growth of JSON Lines
+ * and binary files.
+ * </p>
+ * <p>
+ * Usage from the command line:
+ * <code>java de.plastickarma.flakeyunit.report.FlakeyReportGenerator <report dir> <event file or dir>...</code>
+ * </p>
+ */
+public final class FlakeyReportGenerator {
+
+    /**
+     * Name of the checkpoint file in the report directory.
+     */
+    public static final String CHECKPOINT_FILE = "flakey-index.json";
+
+    private static final int DEFAULT_TREND_DAYS = 30;
+    private static final int DEFAULT_TOP = 20;
+    private static final Pattern TIMESTAMP = Pattern.compile("_(\\d+)\\.json$");
+
+    private final Path reportDirectory;
+    private final FlakeyReportIndex index;
+    private final Gson gson = new GsonBuilder().create();
+
+    private FlakeyReportGenerator(final Path reportDirectory, final FlakeyReportIndex index) {
+        this.reportDirectory = reportDirectory;
+        this.index = index;
+    }
+
+    /**
+     * Opens the generator for the given report directory with a trend period of 30 days. The checkpoint of the
+     * last run is loaded, if there is one.
+     */
+    public static FlakeyReportGenerator open(final Path reportDirectory) throws IOException {
+        return open(reportDirectory, DEFAULT_TREND_DAYS);
+    }
+
+    /**
+     * Opens the generator for the given report directory. The checkpoint of the last run is loaded, if there is
+     * one, it keeps the trend period it was created with.
+     * @param reportDirectory directory of the report and the checkpoint.
+     * @param trendDays number of days, for which the flakes per day are kept.
+     */
+    public static FlakeyReportGenerator open(final Path reportDirectory, final int trendDays) throws IOException {
+        if (trendDays < 1) {
+            throw new IllegalArgumentException("trendDays must be at least 1, but was " + trendDays);
+        }
+        final Path checkpoint = reportDirectory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(checkpoint)) {
+            return new FlakeyReportGenerator(reportDirectory, new FlakeyReportIndex(trendDays));
+        }
+        try (Reader in = Files.newBufferedReader(checkpoint, StandardCharsets.UTF_8)) {
+            final FlakeyReportIndex index = new Gson().fromJson(in, FlakeyReportIndex.class);
+            if (index == null || index.getVersion() != FlakeyReportIndex.VERSION) {
+                throw new IOException(String.format("%s is not a supported checkpoint", checkpoint));
+            }
+            return new FlakeyReportGenerator(reportDirectory, index);
+        } catch (JsonParseException e) {
+            throw new IOException("invalid JSON in " + checkpoint, e);
+        }
+    }
+
+    /**
+     * Reads the new events of an event file, or of all event files of a directory.
+     * @return The number of new events read.
+     */
+    public int update(final Path events) throws IOException {
+        this.index.beginScan();
+        if (!Files.isDirectory(events)) {
+            return readFile(events);
+        }
+        int read = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(events, "*.{json,ndjson,flkb}")) {
+            for (Path file : files) {
+                read += readFile(file);
+            }
+        }
+        return read;
+    }
+
+    /**
+     * Returns the summaries of all flakey test cases in the order of their first flake.
+     */
+    public List<TestcaseSummary> getTestcases() {
+        return this.index.getTestcases();
+    }
+
+    /**
+     * Returns the summaries of the test cases, whose events contain the given term in the given field, e.g. all
+     * test cases, that failed with a <code>java.util.ConcurrentModificationException</code>.
+     */
+    public List<TestcaseSummary> find(final IndexField field, final String term) {
+        return this.index.find(field, term);
+    }
+
+    /**
+     * Writes the report with the 20 top offenders and saves the checkpoint.
+     */
+    public void write() throws IOException {
+        write(DEFAULT_TOP);
+    }
+
+    /**
+     * Writes the report and saves the checkpoint. The files are replaced atomically, so that they are never
+     * read partially written.
+     * @param top number of test cases in the lists of top offenders.
+     */
+    public void write(final int top) throws IOException {
+        Files.createDirectories(this.reportDirectory);
+        final FlakeyReportRenderer renderer = new FlakeyReportRenderer(this.index, top);
+        try (Writer out = openAtomically("index.html")) {
+            renderer.writeHtml(out);
+        }
+        commit("index.html");
+        try (Writer out = openAtomically("report.json")) {
+            renderer.writeJson(out);
+        }
+        commit("report.json");
+        // the checkpoint goes last, so that a failed report is rendered again with the next run
+        try (Writer out = openAtomically(CHECKPOINT_FILE)) {
+            this.gson.toJson(this.index, out);
+        }
+        commit(CHECKPOINT_FILE);
+    }
+
+    /**
+     * Updates the report with the new events.
+     * @param args the report directory and the event files or directories.
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: FlakeyReportGenerator <report dir> <event file or dir>...");
+            System.exit(1);
+        }
+        final FlakeyReportGenerator generator = open(Paths.get(args[0]));
+        int events = 0;
+        for (int i = 1; i < args.length; i++) {
+            events += generator.update(Paths.get(args[i]));
+        }
+        generator.write();
+        System.out.println(String.format(
+                "%d new flakey events, %d flakey test cases, report written to %s",
+                events, generator.getTestcases().size(), generator.reportDirectory.resolve("index.html")));
+    }
+
+    private int readFile(final Path file) throws IOException {
+        final String name = file.getFileName().toString();
+        if (name.endsWith(".ndjson")) {
+            return readJsonLines(file);
+        }
+        if (name.endsWith(".flkb")) {
+            return readBinary(file);
+        }
+        return readJson(file);
+    }
+
+    /**
+     * Reads a file with one or more JSON events, unless it was read before.
+     */
+    private int readJson(final Path file) throws IOException {
+        final String key = file.toAbsolutePath().toString();
+        final long lastModified = Files.getLastModifiedTime(file).toMillis();
+        if (this.index.isRead(key, lastModified)) {
+            return 0;
+        }
+        final Matcher timestamp = TIMESTAMP.matcher(file.getFileName().toString());
+        final long time = timestamp.find() ? Long.parseLong(timestamp.group(1)) : lastModified;
+        int events = 0;
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            final JsonStreamParser parser = new JsonStreamParser(in);
+            while (parser.hasNext()) {
+                if (add(parser.next(), time)) {
+                    events++;
+                }
+            }
+        } catch (JsonParseException e) {
+            throw new IOException("invalid JSON in " + file, e);
+        }
+        this.index.markRead(key, lastModified);
+        return events;
+    }
+
+    /**
+     * Reads the complete lines of a JSON Lines file, that were appended since it was read the last time.
+     */
+    private int readJsonLines(final Path file) throws IOException {
+        final String key = file.toAbsolutePath().toString();
+        final long size = Files.size(file);
+        final FlakeyReportIndex.LogCheckpoint checkpoint = this.index.getLog(key);
+        // a file, that shrank, was replaced and is read from the start
+        long position = checkpoint == null || checkpoint.getSize() > size ? 0 : checkpoint.getPosition();
+        if (position == size) {
+            return 0;
+        }
+        final long time = Files.getLastModifiedTime(file).toMillis();
+        final JsonParser parser = new JsonParser();
+        final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int events = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             InputStream in = Channels.newInputStream(channel.position(position))) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                int start = 0;
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] != '\n') {
+                        continue;
+                    }
+                    line.write(buffer, start, i - start);
+                    position += line.size() + 1;
+                    final String json = new String(line.toByteArray(), StandardCharsets.UTF_8).trim();
+                    line.reset();
+                    start = i + 1;
+                    if (!json.isEmpty() && add(parser.parse(json), time)) {
+                        events++;
+                    }
+                }
+                // the rest of the buffer starts a line, that is continued with the next read
+                line.write(buffer, start, read - start);
+            }
+        } catch (JsonParseException e) {
+            throw new IOException("invalid JSON in " + file + " at byte " + position, e);
+        }
+        // an incomplete last line is being written, it is read with the next run
+        this.index.setLog(key, new FlakeyReportIndex.LogCheckpoint(size, position));
+        return events;
+    }
+
+    /**
+     * Reads the events of a binary file, that were appended since it was read the last time. The events are
+     * decoded from the start, as the file refers back to earlier records, but the known ones are skipped.
+     */
+    private int readBinary(final Path file) throws IOException {
+        final String key = file.toAbsolutePath().toString();
+        final long size = Files.size(file);
+        final FlakeyReportIndex.LogCheckpoint checkpoint = this.index.getLog(key);
+        if (checkpoint != null && checkpoint.getSize() == size) {
+            return 0;
+        }
+        final long known = checkpoint == null || checkpoint.getSize() > size ? 0 : checkpoint.getPosition();
+        final EventLineWriter events = new EventLineWriter(known, Files.getLastModifiedTime(file).toMillis());
+        try (FlakeyTestcaseBinaryReader reader = FlakeyTestcaseBinaryReader.open(file)) {
+            reader.writeJson(events, null);
+        } catch (JsonParseException e) {
+            throw new IOException("invalid event in " + file, e);
+        }
+        this.index.setLog(key, new FlakeyReportIndex.LogCheckpoint(size, events.lines));
+        return (int) (events.lines - known);
+    }
+
+    /**
+     * Adds an event in the format of the {@link de.plastickarma.flakeyunit.json.FlakeyTestcaseJsonSerializer}.
+     * @return false, if the element is no event.
+     */
+    private boolean add(final JsonElement element, final long time) {
+        if (!element.isJsonObject()) {
+            return false;
+        }
+        final JsonObject event = element.getAsJsonObject();
+        if (!event.has("className") || !event.has("methodName")) {
+            return false;
+        }
+        final List<String[]> exceptions = new ArrayList<>();
+        addException(exceptions, event.get("originalException"));
+        final JsonElement rerunExceptions = event.get("rerunExceptions");
+        if (rerunExceptions != null && rerunExceptions.isJsonArray()) {
+            final JsonArray failures = rerunExceptions.getAsJsonArray();
+            for (int i = 0; i < failures.size(); i++) {
+                addException(exceptions, failures.get(i));
+            }
+        }
+        this.index.add(
+                event.get("className").getAsString(),
+                event.get("methodName").getAsString(),
+                time,
+                event.has("rerunCount") ? event.get("rerunCount").getAsInt() : 0,
+                exceptions);
+        return true;
+    }
+
+    private static void addException(final List<String[]> exceptions, final JsonElement element) {
+        if (element == null || !element.isJsonObject()) {
+            return;
+        }
+        final JsonObject exception = element.getAsJsonObject();
+        if (exception.has("exceptionClass")) {
+            exceptions.add(new String[] {
+                exception.get("exceptionClass").getAsString(),
+                exception.has("fingerprint") ? exception.get("fingerprint").getAsString() : null});
+        }
+    }
+
+    private Writer openAtomically(final String fileName) throws IOException {
+        return Files.newBufferedWriter(this.reportDirectory.resolve(fileName + ".tmp"), StandardCharsets.UTF_8);
+    }
+
+    private void commit(final String fileName) throws IOException {
+        Files.move(
+                this.reportDirectory.resolve(fileName + ".tmp"),
+                this.reportDirectory.resolve(fileName),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writer for the JSON Lines of the binary reader, that adds every event after the known ones to the index
+     * as soon as its line is complete.
+     */
+    private final class EventLineWriter extends Writer {
+        private final long known;
+        private final long time;
+        private final JsonParser parser = new JsonParser();
+        private final StringBuilder line = new StringBuilder();
+        private long lines;
+
+        private EventLineWriter(final long known, final long time) {
+            this.known = known;
+            this.time = time;
+        }
+
+        @Override
+        public void write(final char[] chars, final int offset, final int length) {
+            for (int i = offset; i < offset + length; i++) {
+                if (chars[i] != '\n') {
+                    this.line.append(chars[i]);
+                    continue;
+                }
+                if (this.lines++ >= this.known) {
+                    add(this.parser.parse(this.line.toString()), this.time);
+                }
+                this.line.setLength(0);
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
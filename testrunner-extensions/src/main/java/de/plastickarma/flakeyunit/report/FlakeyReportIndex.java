@@ -0,0 +1,257 @@
+package de.plastickarma.flakeyunit.report;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * State of the {@link FlakeyReportGenerator}, that is saved as JSON checkpoint between runs: the summaries of the
+ * test cases, the inverted index of the test cases by {@link IndexField field}, and how far the event files
+ * were read. Test cases are referenced by their position in the list of summaries.
+ */
+final class FlakeyReportIndex {
+
+    static final int VERSION = 1;
+
+    private int version = VERSION;
+    private int trendDays;
+    private long events;
+    private String lastDay = "";
+    private long watermark;
+    private TreeSet<String> watermarkFiles = new TreeSet<>();
+    private TreeMap<String, LogCheckpoint> logs = new TreeMap<>();
+    private List<TestcaseSummary> testcases = new ArrayList<>();
+    private TreeMap<String, TreeSet<Integer>> byClass = new TreeMap<>();
+    private TreeMap<String, TreeSet<Integer>> byMethod = new TreeMap<>();
+    private TreeMap<String, TreeSet<Integer>> byException = new TreeMap<>();
+    private TreeMap<String, TreeSet<Integer>> byFingerprint = new TreeMap<>();
+    private transient Map<String, Integer> ids;
+    private transient SimpleDateFormat dayFormat;
+    private transient String trendStart;
+    private transient String trendStartOfDay;
+    private transient long scanWatermark;
+    private transient TreeSet<String> scanWatermarkFiles = new TreeSet<>();
+
+    FlakeyReportIndex(final int trendDays) {
+        this.trendDays = trendDays;
+    }
+
+    /**
+     * Adds a flake of a test case.
+     * @param exceptions exception class and fingerprint of the original failure and of every failed rerun.
+     */
+    void add(
+            final String className,
+            final String methodName,
+            final long time,
+            final int rerunCount,
+            final List<String[]> exceptions) {
+        final String key = className + '#' + methodName;
+        Integer id = ids().get(key);
+        if (id == null) {
+            id = this.testcases.size();
+            this.testcases.add(new TestcaseSummary(className, methodName));
+            this.ids.put(key, id);
+            post(this.byClass, className, id);
+            post(this.byMethod, methodName, id);
+        }
+        final String day = day(time);
+        if (day.compareTo(this.lastDay) > 0) {
+            this.lastDay = day;
+        }
+        final TestcaseSummary testcase = this.testcases.get(id);
+        testcase.addFlake(time, day, firstTrendDay(), rerunCount, Math.max(0, exceptions.size() - 1));
+        for (String[] exception : exceptions) {
+            testcase.addException(exception[0]);
+            post(this.byException, exception[0], id);
+            if (exception[1] != null && testcase.addFingerprint(exception[1])) {
+                post(this.byFingerprint, exception[1], id);
+            }
+        }
+        this.events++;
+    }
+
+    /**
+     * Returns the test cases with the given term in the given field.
+     */
+    List<TestcaseSummary> find(final IndexField field, final String term) {
+        final TreeSet<Integer> postings = postings(field).get(term);
+        if (postings == null) {
+            return Collections.emptyList();
+        }
+        final List<TestcaseSummary> found = new ArrayList<>(postings.size());
+        for (Integer id : postings) {
+            found.add(this.testcases.get(id));
+        }
+        return found;
+    }
+
+    /**
+     * Returns the terms of the given field with the number of test cases, that contain them.
+     */
+    Map<String, Integer> terms(final IndexField field) {
+        final Map<String, Integer> terms = new TreeMap<>();
+        for (Map.Entry<String, TreeSet<Integer>> entry : postings(field).entrySet()) {
+            terms.put(entry.getKey(), entry.getValue().size());
+        }
+        return terms;
+    }
+
+    List<TestcaseSummary> getTestcases() {
+        return Collections.unmodifiableList(this.testcases);
+    }
+
+    long getEvents() {
+        return this.events;
+    }
+
+    int getTrendDays() {
+        return this.trendDays;
+    }
+
+    int getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Returns the first day of the trend period, that ends with the day of the latest flake.
+     */
+    String firstTrendDay() {
+        if (this.lastDay.isEmpty()) {
+            return "";
+        }
+        if (!this.lastDay.equals(this.trendStartOfDay)) {
+            try {
+                final long last = dayFormat().parse(this.lastDay).getTime();
+                this.trendStart = day(last - TimeUnit.DAYS.toMillis(this.trendDays - 1));
+                this.trendStartOfDay = this.lastDay;
+            } catch (ParseException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return this.trendStart;
+    }
+
+    /**
+     * Starts reading event files: files are new, if they were not read before the scan started.
+     */
+    void beginScan() {
+        this.scanWatermark = this.watermark;
+        this.scanWatermarkFiles = new TreeSet<>(this.watermarkFiles);
+    }
+
+    /**
+     * Returns whether an event file with the given modification time was read before the current scan.
+     */
+    boolean isRead(final String file, final long lastModified) {
+        return lastModified < this.scanWatermark
+                || lastModified == this.scanWatermark && this.scanWatermarkFiles.contains(file);
+    }
+
+    /**
+     * Remembers an event file as read. Only the files with the latest modification time are kept, older files
+     * are covered by the watermark.
+     */
+    void markRead(final String file, final long lastModified) {
+        if (lastModified > this.watermark) {
+            this.watermark = lastModified;
+            this.watermarkFiles.clear();
+        }
+        if (lastModified == this.watermark) {
+            this.watermarkFiles.add(file);
+        }
+    }
+
+    /**
+     * Returns how far the given log file was read, <code>null</code> if it has not been read.
+     */
+    LogCheckpoint getLog(final String file) {
+        return this.logs.get(file);
+    }
+
+    void setLog(final String file, final LogCheckpoint checkpoint) {
+        this.logs.put(file, checkpoint);
+    }
+
+    String day(final long time) {
+        return dayFormat().format(new Date(time));
+    }
+
+    private SimpleDateFormat dayFormat() {
+        if (this.dayFormat == null) {
+            this.dayFormat = new SimpleDateFormat("yyyy-MM-dd");
+            this.dayFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        }
+        return this.dayFormat;
+    }
+
+    private Map<String, Integer> ids() {
+        if (this.ids == null) {
+            // not part of the checkpoint, rebuilt from the summaries
+            this.ids = new HashMap<>();
+            for (int i = 0; i < this.testcases.size(); i++) {
+                final TestcaseSummary testcase = this.testcases.get(i);
+                this.ids.put(testcase.getClassName() + '#' + testcase.getMethodName(), i);
+            }
+        }
+        return this.ids;
+    }
+
+    private TreeMap<String, TreeSet<Integer>> postings(final IndexField field) {
+        switch (field) {
+            case CLASS:
+                return this.byClass;
+            case METHOD:
+                return this.byMethod;
+            case EXCEPTION:
+                return this.byException;
+            default:
+                return this.byFingerprint;
+        }
+    }
+
+    private static void post(final Map<String, TreeSet<Integer>> postings, final String term, final int id) {
+        TreeSet<Integer> ids = postings.get(term);
+        if (ids == null) {
+            ids = new TreeSet<>();
+            postings.put(term, ids);
+        }
+        ids.add(id);
+    }
+
+    /**
+     * Position in a log file, up to which its events were read.
+     */
+    static final class LogCheckpoint {
+        private long size;
+        private long position;
+
+        LogCheckpoint(final long size, final long position) {
+            this.size = size;
+            this.position = position;
+        }
+
+        /**
+         * Returns the size of the file, when it was read.
+         */
+        long getSize() {
+            return this.size;
+        }
+
+        /**
+         * Returns the read bytes of a JSON Lines file, or the read events of a binary file.
+         */
+        long getPosition() {
+            return this.position;
+        }
+    }
+}
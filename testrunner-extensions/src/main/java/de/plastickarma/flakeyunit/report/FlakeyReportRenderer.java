@@ -0,0 +1,185 @@
+package de.plastickarma.flakeyunit.report;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Renders the report of a {@link FlakeyReportIndex} as static HTML page without scripts, and as JSON.
+ */
+final class FlakeyReportRenderer {
+
+    private final FlakeyReportIndex index;
+    private final List<TestcaseSummary> topOffenders;
+    private final List<TestcaseSummary> topRerunCost;
+    private final Map<String, Integer> trend;
+    private final Map<String, Integer> exceptions;
+    private final long totalReruns;
+
+    FlakeyReportRenderer(final FlakeyReportIndex index, final int top) {
+        this.index = index;
+        this.topOffenders = top(index.getTestcases(), top, new Comparator<TestcaseSummary>() {
+            @Override
+            public int compare(final TestcaseSummary first, final TestcaseSummary second) {
+                return Integer.compare(second.getFlakes(), first.getFlakes());
+            }
+        });
+        this.topRerunCost = top(index.getTestcases(), top, new Comparator<TestcaseSummary>() {
+            @Override
+            public int compare(final TestcaseSummary first, final TestcaseSummary second) {
+                return Long.compare(second.getReruns(), first.getReruns());
+            }
+        });
+        final String firstTrendDay = index.firstTrendDay();
+        this.trend = new TreeMap<>();
+        long reruns = 0;
+        for (TestcaseSummary testcase : index.getTestcases()) {
+            reruns += testcase.getReruns();
+            for (Map.Entry<String, Integer> day : testcase.getFlakesPerDay().entrySet()) {
+                if (day.getKey().compareTo(firstTrendDay) >= 0) {
+                    final Integer count = this.trend.get(day.getKey());
+                    this.trend.put(day.getKey(), count == null ? day.getValue() : count + day.getValue());
+                }
+            }
+        }
+        this.totalReruns = reruns;
+        this.exceptions = index.terms(IndexField.EXCEPTION);
+    }
+
+    void writeJson(final Writer out) {
+        final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        gson.toJson(new Report(this), out);
+    }
+
+    void writeHtml(final Writer out) throws IOException {
+        out.write("<!DOCTYPE html>\n<html>\n<head>\n<meta charset=\"utf-8\">\n<title>Flakey test cases</title>\n");
+        out.write("<style>\n"
+                + "body { font-family: sans-serif; margin: 2em; }\n"
+                + "table { border-collapse: collapse; margin-bottom: 2em; }\n"
+                + "th, td { border-bottom: 1px solid #ddd; padding: 0.3em 0.8em; text-align: left; }\n"
+                + "td.number { text-align: right; }\n"
+                + ".bar { background: #d9534f; height: 0.8em; }\n"
+                + "</style>\n</head>\n<body>\n");
+        out.write("<h1>Flakey test cases</h1>\n");
+        out.write(String.format("<p>%d flakey events of %d test cases, %d reruns.</p>\n",
+                this.index.getEvents(), this.index.getTestcases().size(), this.totalReruns));
+
+        out.write("<h2>Top offenders</h2>\n");
+        writeTestcases(out, this.topOffenders);
+        out.write("<h2>Rerun cost</h2>\n");
+        writeTestcases(out, this.topRerunCost);
+
+        out.write(String.format("<h2>Trend of the last %d days</h2>\n", this.index.getTrendDays()));
+        int maxPerDay = 1;
+        for (Integer count : this.trend.values()) {
+            maxPerDay = Math.max(maxPerDay, count);
+        }
+        out.write("<table>\n<tr><th>Day</th><th>Flakes</th><th></th></tr>\n");
+        for (Map.Entry<String, Integer> day : this.trend.entrySet()) {
+            out.write(String.format(
+                    "<tr><td>%s</td><td class=\"number\">%d</td>"
+                            + "<td style=\"width: 20em\"><div class=\"bar\" style=\"width: %d%%\"></div></td></tr>\n",
+                    day.getKey(), day.getValue(), 100 * day.getValue() / maxPerDay));
+        }
+        out.write("</table>\n");
+
+        out.write("<h2>Exceptions</h2>\n<table>\n<tr><th>Exception</th><th>Test cases</th></tr>\n");
+        for (Map.Entry<String, Integer> exception : this.exceptions.entrySet()) {
+            out.write(String.format("<tr><td>%s</td><td class=\"number\">%d</td></tr>\n",
+                    escape(exception.getKey()), exception.getValue()));
+        }
+        out.write("</table>\n</body>\n</html>\n");
+    }
+
+    private static void writeTestcases(final Writer out, final List<TestcaseSummary> testcases) throws IOException {
+        out.write("<table>\n<tr><th>Class</th><th>Method</th><th>Flakes</th><th>Reruns</th>"
+                + "<th>Failed reruns</th><th>Exceptions</th></tr>\n");
+        for (TestcaseSummary testcase : testcases) {
+            out.write(String.format(
+                    "<tr><td>%s</td><td>%s</td><td class=\"number\">%d</td><td class=\"number\">%d</td>"
+                            + "<td class=\"number\">%d</td><td>%s</td></tr>\n",
+                    escape(testcase.getClassName()),
+                    escape(testcase.getMethodName()),
+                    testcase.getFlakes(),
+                    testcase.getReruns(),
+                    testcase.getRerunFailures(),
+                    escape(join(testcase.getExceptions().keySet()))));
+        }
+        out.write("</table>\n");
+    }
+
+    private static List<TestcaseSummary> top(
+            final List<TestcaseSummary> testcases,
+            final int top,
+            final Comparator<TestcaseSummary> order) {
+        final List<TestcaseSummary> sorted = new ArrayList<>(testcases);
+        Collections.sort(sorted, order);
+        return sorted.subList(0, Math.min(top, sorted.size()));
+    }
+
+    private static String join(final Iterable<String> names) {
+        final StringBuilder joined = new StringBuilder();
+        for (String name : names) {
+            if (joined.length() > 0) {
+                joined.append(", ");
+            }
+            joined.append(name);
+        }
+        return joined.toString();
+    }
+
+    private static String escape(final String text) {
+        final StringBuilder escaped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            switch (c) {
+                case '<':
+                    escaped.append("&lt;");
+                    break;
+                case '>':
+                    escaped.append("&gt;");
+                    break;
+                case '&':
+                    escaped.append("&amp;");
+                    break;
+                case '"':
+                    escaped.append("&quot;");
+                    break;
+                default:
+                    escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * JSON form of the report.
+     */
+    private static final class Report {
+        private final long events;
+        private final int testcases;
+        private final long reruns;
+        private final List<TestcaseSummary> topOffenders;
+        private final List<TestcaseSummary> topRerunCost;
+        private final Map<String, Integer> trend;
+        private final Map<String, Integer> exceptions;
+
+        private Report(final FlakeyReportRenderer renderer) {
+            this.events = renderer.index.getEvents();
+            this.testcases = renderer.index.getTestcases().size();
+            this.reruns = renderer.totalReruns;
+            this.topOffenders = renderer.topOffenders;
+            this.topRerunCost = renderer.topRerunCost;
+            this.trend = renderer.trend;
+            this.exceptions = renderer.exceptions;
+        }
+    }
+}
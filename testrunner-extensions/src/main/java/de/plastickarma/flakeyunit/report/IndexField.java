@@ -0,0 +1,27 @@
+package de.plastickarma.flakeyunit.report;
+
+/**
+ * Fields of the flakey events, by which the {@link FlakeyReportGenerator} indexes the test cases.
+ */
+public enum IndexField {
+
+    /**
+     * Fully qualified name of the test class.
+     */
+    CLASS,
+
+    /**
+     * Name of the test method.
+     */
+    METHOD,
+
+    /**
+     * Fully qualified class name of a failure of the initial run or a rerun.
+     */
+    EXCEPTION,
+
+    /**
+     * {@link de.plastickarma.flakeyunit.FailureFingerprint Fingerprint} of a failure.
+     */
+    FINGERPRINT
+}
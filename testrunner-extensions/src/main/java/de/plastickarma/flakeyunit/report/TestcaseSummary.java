@@ -0,0 +1,142 @@
+package de.plastickarma.flakeyunit.report;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Accumulated flakes of a single test case, as reported by the {@link FlakeyReportGenerator}. The memory of a
+ * summary does not grow with the number of flakes: only the days of the trend period and a few fingerprints are
+ * kept.
+ */
+public final class TestcaseSummary {
+
+    /**
+     * Maximum number of failure fingerprints, that are kept per test case.
+     */
+    static final int MAX_FINGERPRINTS = 10;
+
+    private String className;
+    private String methodName;
+    private int flakes;
+    private long reruns;
+    private long rerunFailures;
+    private long firstSeen;
+    private long lastSeen;
+    private TreeMap<String, Integer> flakesPerDay = new TreeMap<>();
+    private TreeMap<String, Integer> exceptions = new TreeMap<>();
+    private List<String> fingerprints = new ArrayList<>();
+
+    TestcaseSummary(final String className, final String methodName) {
+        this.className = className;
+        this.methodName = methodName;
+    }
+
+    /**
+     * Returns the class name of the test case.
+     */
+    public String getClassName() {
+        return this.className;
+    }
+
+    /**
+     * Returns the method name of the test case.
+     */
+    public String getMethodName() {
+        return this.methodName;
+    }
+
+    /**
+     * Returns how often the test case was flakey.
+     */
+    public int getFlakes() {
+        return this.flakes;
+    }
+
+    /**
+     * Returns the number of reruns over all flakes, i.e. the rerun cost of the test case.
+     */
+    public long getReruns() {
+        return this.reruns;
+    }
+
+    /**
+     * Returns the number of failed reruns over all flakes.
+     */
+    public long getRerunFailures() {
+        return this.rerunFailures;
+    }
+
+    /**
+     * Returns the time of the first flake in milliseconds since the epoch.
+     */
+    public long getFirstSeen() {
+        return this.firstSeen;
+    }
+
+    /**
+     * Returns the time of the last flake in milliseconds since the epoch.
+     */
+    public long getLastSeen() {
+        return this.lastSeen;
+    }
+
+    /**
+     * Returns the flakes per day (<code>yyyy-MM-dd</code>, UTC) of the trend period, ordered by day.
+     */
+    public SortedMap<String, Integer> getFlakesPerDay() {
+        return Collections.unmodifiableSortedMap(this.flakesPerDay);
+    }
+
+    /**
+     * Returns the number of failures per exception class, of the initial runs and the reruns.
+     */
+    public SortedMap<String, Integer> getExceptions() {
+        return Collections.unmodifiableSortedMap(this.exceptions);
+    }
+
+    /**
+     * Returns the first distinct failure fingerprints of the test case.
+     */
+    public List<String> getFingerprints() {
+        return Collections.unmodifiableList(this.fingerprints);
+    }
+
+    /**
+     * Adds a failure fingerprint, unless it is known or enough fingerprints are kept.
+     * @return true, if the fingerprint was added.
+     */
+    boolean addFingerprint(final String fingerprint) {
+        if (this.fingerprints.contains(fingerprint) || this.fingerprints.size() >= MAX_FINGERPRINTS) {
+            return false;
+        }
+        this.fingerprints.add(fingerprint);
+        return true;
+    }
+
+    void addFlake(final long time, final String day, final String firstTrendDay, final int rerunCount,
+                  final int failedReruns) {
+        this.flakes++;
+        this.reruns += rerunCount;
+        this.rerunFailures += failedReruns;
+        if (this.flakes == 1 || time < this.firstSeen) {
+            this.firstSeen = time;
+        }
+        this.lastSeen = Math.max(this.lastSeen, time);
+        if (day.compareTo(firstTrendDay) >= 0) {
+            final Integer count = this.flakesPerDay.get(day);
+            this.flakesPerDay.put(day, count == null ? 1 : count + 1);
+        }
+        // days, that left the trend period, are dropped, so that the summary does not grow
+        while (!this.flakesPerDay.isEmpty() && this.flakesPerDay.firstKey().compareTo(firstTrendDay) < 0) {
+            this.flakesPerDay.remove(this.flakesPerDay.firstKey());
+        }
+    }
+
+    void addException(final String exceptionClass) {
+        final Integer count = this.exceptions.get(exceptionClass);
+        this.exceptions.put(exceptionClass, count == null ? 1 : count + 1);
+    }
+}
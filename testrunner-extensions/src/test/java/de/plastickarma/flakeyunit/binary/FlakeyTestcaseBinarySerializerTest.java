@@ -0,0 +1,95 @@
+package de.plastickarma.flakeyunit.binary;
+
+import de.plastickarma.flakeyunit.json.FlakeyTestcaseJsonSerializer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.Description;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for the binary event format.
+ */
+public class FlakeyTestcaseBinarySerializerTest {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test public void eventsAreConvertedToTheJsonFormat() throws IOException {
+        for (boolean compress : new boolean[] {false, true}) {
+            final Path file = this.folder.getRoot().toPath().resolve("events-" + compress + ".flkb");
+            final StringBuilder expected = new StringBuilder();
+            final FlakeyTestcaseJsonSerializer jsonSerializer = new FlakeyTestcaseJsonSerializer(expected, false, 0);
+            try (FlakeyTestcaseBinarySerializer serializer = new FlakeyTestcaseBinarySerializer(file, compress)) {
+                for (String methodName : new String[] {"flakey1", "flakey2"}) {
+                    final Description description =
+                            Description.createTestDescription(FlakeyTestcaseBinarySerializerTest.class, methodName);
+                    final Throwable original = new IllegalStateException(methodName, new IOException("reset"));
+                    final List<Throwable> reruns = new ArrayList<>();
+                    reruns.add(original);
+                    reruns.add(new AssertionError());
+                    reruns.add(original);
+                    serializer.handlePotentialFlakeyness(description, original, 4, reruns);
+                    jsonSerializer.handlePotentialFlakeyness(description, original, 4, reruns);
+                    expected.append('\n');
+                }
+            }
+
+            final StringWriter converted = new StringWriter();
+            try (FlakeyTestcaseBinaryReader reader = FlakeyTestcaseBinaryReader.open(file)) {
+                assertThat(reader.writeJson(converted, null), is(2));
+            }
+            assertThat(converted.toString(), is(expected.toString()));
+        }
+    }
+
+    @Test public void eventsAreFilteredByTestcase() throws IOException {
+        final Path file = this.folder.getRoot().toPath().resolve("events.flkb");
+        try (FlakeyTestcaseBinarySerializer serializer = new FlakeyTestcaseBinarySerializer(file, true)) {
+            for (String methodName : new String[] {"flakey1", "flakey2", "flakey3"}) {
+                serializer.handlePotentialFlakeyness(
+                        Description.createTestDescription(FlakeyTestcaseBinarySerializerTest.class, methodName),
+                        new AssertionError(methodName),
+                        1,
+                        new ArrayList<Throwable>());
+            }
+        }
+
+        final StringWriter converted = new StringWriter();
+        try (FlakeyTestcaseBinaryReader reader = FlakeyTestcaseBinaryReader.open(file)) {
+            assertThat(reader.writeJson(converted, Pattern.compile(".*#flakey2")), is(1));
+        }
+        assertTrue(converted.toString().startsWith("{\"methodName\":\"flakey2\""));
+    }
+
+    @Test public void repeatedStackTracesAreMuchSmallerThanJson() throws IOException {
+        final Path file = this.folder.getRoot().toPath().resolve("events.flkb");
+        final StringBuilder json = new StringBuilder();
+        final FlakeyTestcaseJsonSerializer jsonSerializer = new FlakeyTestcaseJsonSerializer(json);
+        try (FlakeyTestcaseBinarySerializer serializer = new FlakeyTestcaseBinarySerializer(file, true)) {
+            for (int i = 0; i < 100; i++) {
+                final Description description =
+                        Description.createTestDescription(FlakeyTestcaseBinarySerializerTest.class, "flakey" + i);
+                final List<Throwable> reruns = new ArrayList<>();
+                for (int j = 0; j < 10; j++) {
+                    reruns.add(new IllegalStateException("rerun " + j));
+                }
+                serializer.handlePotentialFlakeyness(description, new AssertionError(), 10, reruns);
+                jsonSerializer.handlePotentialFlakeyness(description, new AssertionError(), 10, reruns);
+            }
+        }
+
+        final long binarySize = Files.size(file);
+        assertTrue(binarySize + " bytes binary, " + json.length() + " bytes JSON", binarySize * 10 < json.length());
+    }
+}
@@ -0,0 +1,78 @@
+package de.plastickarma.flakeyunit.cluster;
+
+import org.junit.Test;
+import org.junit.runner.Description;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test cases for the clustering of failures by root cause.
+ */
+public class FailureClusterIndexTest {
+
+    @Test public void variablePartsOfMessagesAreNormalized() {
+        assertThat(
+                FailureSignature.normalizeMessage("connect to localhost:4711 at 2026-10-18T10:00:01.123Z failed"),
+                is("connect to localhost:<port> at <time> failed"));
+        assertThat(
+                FailureSignature.normalizeMessage("Cache@1b6d3586 expected 3 but was 4"),
+                is("Cache@<addr> expected <n> but was <n>"));
+    }
+
+    @Test public void failuresWithSameRootCauseAreClusteredAcrossTests() {
+        final FailureClusterIndex index = new FailureClusterIndex();
+
+        index.handlePotentialFlakeyness(
+                description("first"),
+                new RuntimeException(SocketConnector.connect(4711)),
+                2,
+                Arrays.<Throwable>asList(SocketConnector.connect(4712)));
+        index.handlePotentialFlakeyness(
+                description("second"),
+                SocketConnector.connect(4713),
+                2,
+                Collections.<Throwable>emptyList());
+        index.handlePotentialFlakeyness(
+                description("third"),
+                new ConcurrentModificationException(),
+                2,
+                Collections.<Throwable>emptyList());
+
+        final List<FailureCluster> clusters = index.rankedClusters();
+        assertThat(clusters.size(), is(2));
+        assertThat(clusters.get(0).getSignature().getOrigin(), is(SocketConnector.class.getName() + ".connect"));
+        assertThat(clusters.get(0).getOccurrences(), is(3));
+        assertThat(clusters.get(0).getTestcases(), is(Arrays.asList(
+                FailureClusterIndexTest.class.getName() + "#first",
+                FailureClusterIndexTest.class.getName() + "#second")));
+        assertThat(clusters.get(1).getSignature().getExceptionClass(),
+                is(ConcurrentModificationException.class.getName()));
+
+        final StringBuilder report = new StringBuilder();
+        index.writeReport(report, false);
+        final String firstSignature = clusters.get(0).getSignature().getId();
+        assertThat(report.toString().startsWith("[{\"signature\":\"" + firstSignature), is(true));
+    }
+
+    private static Description description(final String methodName) {
+        return Description.createTestDescription(FailureClusterIndexTest.class, methodName);
+    }
+
+    /**
+     * Fails the same way from different lines with different ports.
+     */
+    private static final class SocketConnector {
+        private static IllegalStateException connect(final int port) {
+            if (port % 2 == 0) {
+                return new IllegalStateException("timeout connecting to localhost:" + port);
+            }
+            return new IllegalStateException("timeout connecting to localhost:" + port);
+        }
+    }
+}
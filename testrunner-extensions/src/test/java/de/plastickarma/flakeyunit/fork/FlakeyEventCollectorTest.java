@@ -0,0 +1,62 @@
+package de.plastickarma.flakeyunit.fork;
+
+import de.plastickarma.flakeyunit.FlakeyTestIndicatorBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.TestRule;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static de.plastickarma.flakeyunit.UnittestHelper.createFlakeyTest;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test cases for the aggregation of flakey events from forked test JVMs.
+ */
+public class FlakeyEventCollectorTest {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test public void eventsOfForksAreMergedByTestcase() throws Throwable {
+        final Path fallbackDirectory = this.folder.getRoot().toPath();
+        try (FlakeyEventCollector collector = FlakeyEventCollector.start()) {
+            try (ForkedFlakeyEventPublisher connected =
+                         new ForkedFlakeyEventPublisher("fork1", collector.getAddress(), fallbackDirectory);
+                 ForkedFlakeyEventPublisher disconnected =
+                         new ForkedFlakeyEventPublisher("fork2", null, fallbackDirectory)) {
+                final TestRule fork1 = indicator(connected);
+                final TestRule fork2 = indicator(disconnected);
+                createFlakeyTest(fork1, FlakeyEventCollectorTest.class, "flakey1").evaluate();
+                createFlakeyTest(fork1, FlakeyEventCollectorTest.class, "flakey2").evaluate();
+                createFlakeyTest(fork2, FlakeyEventCollectorTest.class, "flakey1").evaluate();
+            }
+
+            final long deadline = System.currentTimeMillis() + 5000;
+            while (collector.getEventCount() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(collector.mergeDirectory(fallbackDirectory), is(1));
+
+            final List<MergedFlakeyTestcase> report = collector.report();
+            assertThat(report.size(), is(2));
+            assertThat(report.get(0).getMethodName(), is("flakey1"));
+            assertThat(report.get(0).getOccurrences(), is(2));
+            assertThat(report.get(0).getForks(), is(Arrays.asList("fork1", "fork2")));
+            assertThat(report.get(0).getTotalReruns(), is(6L));
+            assertThat(report.get(0).getFingerprints().isEmpty(), is(false));
+            assertThat(report.get(1).getMethodName(), is("flakey2"));
+            assertThat(report.get(1).getForks(), is(Arrays.asList("fork1")));
+        }
+    }
+
+    private static TestRule indicator(final ForkedFlakeyEventPublisher publisher) {
+        return FlakeyTestIndicatorBuilder.indicator()
+                .rethrowOriginal(false)
+                .listener(publisher)
+                .build();
+    }
+}
@@ -47,5 +47,10 @@ public class FlakeyTestcaseJsonFileSerializerTest {
                 .get("exceptionClass")
                 .getAsString(),
             is(AssertionFailedError.class.getName()));
+        assertThat(jsonObject
+                .get("originalException")
+                .getAsJsonObject()
+                .get("fingerprint"),
+            is(notNullValue()));
     }
 }
@@ -0,0 +1,98 @@
+package de.plastickarma.flakeyunit.json;
+
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import de.plastickarma.flakeyunit.FlakeyTestIndicatorBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.TestRule;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static de.plastickarma.flakeyunit.UnittestHelper.createFlakeyTest;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test cases for JSON Lines serialization.
+ */
+public class FlakeyTestcaseJsonLinesSerializerTest {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test public void flakeyTestsAreAppendedAsLines() throws Throwable {
+        final Path directory = this.folder.getRoot().toPath().resolve("flakey");
+        final List<String> lines;
+        try (FlakeyTestcaseJsonLinesSerializer serializer = new FlakeyTestcaseJsonLinesSerializer(directory)) {
+            final TestRule indicator = FlakeyTestIndicatorBuilder.indicator()
+                    .rethrowOriginal(false)
+                    .listener(serializer)
+                    .build();
+
+            createFlakeyTest(indicator, FlakeyTestcaseJsonLinesSerializerTest.class, "flakey1").evaluate();
+            createFlakeyTest(indicator, FlakeyTestcaseJsonLinesSerializerTest.class, "flakey2").evaluate();
+
+            lines = Files.readAllLines(serializer.currentSegment(), StandardCharsets.UTF_8);
+        }
+
+        assertThat(lines.size(), is(2));
+        assertThat(methodName(lines.get(0)), is("flakey1"));
+        assertThat(methodName(lines.get(1)), is("flakey2"));
+    }
+
+    @Test public void segmentIsRolledOverWhenTooLarge() throws Throwable {
+        final Path directory = this.folder.getRoot().toPath();
+        try (FlakeyTestcaseJsonLinesSerializer serializer =
+                     new FlakeyTestcaseJsonLinesSerializer(directory, "events", 1, 0, TimeUnit.MILLISECONDS)) {
+            final TestRule indicator = FlakeyTestIndicatorBuilder.indicator()
+                    .rethrowOriginal(false)
+                    .listener(serializer)
+                    .build();
+
+            createFlakeyTest(indicator, FlakeyTestcaseJsonLinesSerializerTest.class, "flakey1").evaluate();
+            createFlakeyTest(indicator, FlakeyTestcaseJsonLinesSerializerTest.class, "flakey2").evaluate();
+        }
+
+        final List<String> first = Files.readAllLines(directory.resolve("events-0.ndjson"), StandardCharsets.UTF_8);
+        final List<String> second = Files.readAllLines(directory.resolve("events-1.ndjson"), StandardCharsets.UTF_8);
+        assertThat(first.size(), is(1));
+        assertThat(methodName(first.get(0)), is("flakey1"));
+        assertThat(second.size(), is(1));
+        assertThat(methodName(second.get(0)), is("flakey2"));
+    }
+
+    @Test public void bufferedEventsAreWrittenTogether() throws Throwable {
+        final Path directory = this.folder.getRoot().toPath();
+        final Path segment = directory.resolve("events-0.ndjson");
+        try (FlakeyTestcaseJsonLinesSerializer serializer = new FlakeyTestcaseJsonLinesSerializer(
+                directory, "events", Long.MAX_VALUE, 0, TimeUnit.MILLISECONDS, 2)) {
+            final TestRule indicator = FlakeyTestIndicatorBuilder.indicator()
+                    .rethrowOriginal(false)
+                    .listener(serializer)
+                    .build();
+
+            createFlakeyTest(indicator, FlakeyTestcaseJsonLinesSerializerTest.class, "flakey1").evaluate();
+            assertThat(Files.exists(segment), is(false));
+            createFlakeyTest(indicator, FlakeyTestcaseJsonLinesSerializerTest.class, "flakey2").evaluate();
+            assertThat(Files.readAllLines(segment, StandardCharsets.UTF_8).size(), is(2));
+            createFlakeyTest(indicator, FlakeyTestcaseJsonLinesSerializerTest.class, "flakey3").evaluate();
+            serializer.flush();
+            assertThat(Files.readAllLines(segment, StandardCharsets.UTF_8).size(), is(3));
+            createFlakeyTest(indicator, FlakeyTestcaseJsonLinesSerializerTest.class, "flakey4").evaluate();
+        }
+
+        final List<String> lines = Files.readAllLines(segment, StandardCharsets.UTF_8);
+        assertThat(lines.size(), is(4));
+        assertThat(methodName(lines.get(3)), is("flakey4"));
+    }
+
+    private static String methodName(final String line) {
+        return new GsonBuilder().create().fromJson(line, JsonObject.class).get("methodName").getAsString();
+    }
+}
@@ -0,0 +1,79 @@
+package de.plastickarma.flakeyunit.json;
+
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.junit.Test;
+import org.junit.runner.Description;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.hamcrest.core.Is.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for the json format of flakey test cases.
+ */
+public class FlakeyTestcaseJsonSerializerTest {
+
+    @Test public void stackTraceIsWrittenAsText() {
+        final StringBuilder output = new StringBuilder();
+        final FlakeyTestcaseJsonSerializer jsonSerializer = new FlakeyTestcaseJsonSerializer(output);
+        final Exception failure = new IllegalStateException("rerun failed", new IOException("connection reset"));
+
+        jsonSerializer.handlePotentialFlakeyness(
+                Description.createTestDescription(FlakeyTestcaseJsonSerializerTest.class, "flakey1"),
+                failure,
+                2,
+                Arrays.<Throwable>asList(failure, failure));
+
+        final JsonObject jsonObject = new GsonBuilder().create().fromJson(output.toString(), JsonObject.class);
+        final String stackTrace = jsonObject.get("originalException").getAsJsonObject().get("stackTrace").getAsString();
+        assertTrue(stackTrace.startsWith(IllegalStateException.class.getName() + ": rerun failed"));
+        assertTrue(stackTrace.contains("Caused by: " + IOException.class.getName() + ": connection reset"));
+
+        final JsonArray rerunExceptions = jsonObject.get("rerunExceptions").getAsJsonArray();
+        assertThat(rerunExceptions.size(), is(2));
+        for (int i = 0; i < rerunExceptions.size(); i++) {
+            assertThat(rerunExceptions.get(i).getAsJsonObject().get("stackTrace").getAsString(), is(stackTrace));
+        }
+    }
+
+    @Test public void stackFramesAreWrittenWithCausesAndFrameLimit() {
+        final StringBuilder output = new StringBuilder();
+        final FlakeyTestcaseJsonSerializer jsonSerializer = new FlakeyTestcaseJsonSerializer(output, false, 1);
+        final Exception failure = new IllegalStateException("rerun failed", new IOException("connection reset"));
+
+        jsonSerializer.handlePotentialFlakeyness(
+                Description.createTestDescription(FlakeyTestcaseJsonSerializerTest.class, "flakey1"),
+                failure,
+                2,
+                Arrays.<Throwable>asList(failure, failure));
+
+        final JsonObject jsonObject = new GsonBuilder().create().fromJson(output.toString(), JsonObject.class);
+        final JsonObject originalException = jsonObject.get("originalException").getAsJsonObject();
+        assertThat(originalException.get("message").getAsString(), is("rerun failed"));
+        assertThat(originalException.has("stackTrace"), is(false));
+        assertThat(originalException.get("stackFrames").getAsJsonArray().size(), is(1));
+        assertThat(originalException
+                .get("stackFrames").getAsJsonArray()
+                .get(0).getAsJsonObject()
+                .get("method").getAsString(),
+            is("stackFramesAreWrittenWithCausesAndFrameLimit"));
+        assertThat(originalException.get("omittedFrames").getAsInt() > 0, is(true));
+
+        final JsonObject cause = originalException.get("cause").getAsJsonObject();
+        assertThat(cause.get("exceptionClass").getAsString(), is(IOException.class.getName()));
+        assertThat(cause.get("commonFrames").getAsInt() > 0, is(true));
+
+        final JsonArray rerunExceptions = jsonObject.get("rerunExceptions").getAsJsonArray();
+        assertThat(rerunExceptions.size(), is(2));
+        assertThat(rerunExceptions.get(0).getAsJsonObject().has("stackFrames"), is(true));
+        assertThat(rerunExceptions.get(1).getAsJsonObject().has("stackFrames"), is(false));
+        assertThat(rerunExceptions.get(1).getAsJsonObject().get("fingerprint"),
+            is(rerunExceptions.get(0).getAsJsonObject().get("fingerprint")));
+    }
+}
@@ -0,0 +1,51 @@
+package de.plastickarma.flakeyunit.json;
+
+import de.plastickarma.flakeyunit.FlakeyTestIndicatorBuilder;
+import de.plastickarma.flakeyunit.Quarantine;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.TestRule;
+import org.junit.runner.Description;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static de.plastickarma.flakeyunit.UnittestHelper.createFlakeyTest;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test cases for the quarantine file export of JSON output.
+ */
+public class FlakeyTestcaseQuarantineExporterTest {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test public void testcasesFlakeyOftenEnoughAreQuarantined() throws Throwable {
+        final Path directory = this.folder.getRoot().toPath().resolve("flakey");
+        try (FlakeyTestcaseJsonLinesSerializer serializer = new FlakeyTestcaseJsonLinesSerializer(directory)) {
+            final TestRule indicator = FlakeyTestIndicatorBuilder.indicator()
+                    .rethrowOriginal(false)
+                    .listener(serializer)
+                    .build();
+            createFlakeyTest(indicator, FlakeyTestcaseQuarantineExporterTest.class, "flakey1").evaluate();
+            createFlakeyTest(indicator, FlakeyTestcaseQuarantineExporterTest.class, "flakey1").evaluate();
+            createFlakeyTest(indicator, FlakeyTestcaseQuarantineExporterTest.class, "flakey2").evaluate();
+        }
+
+        final FlakeyTestcaseQuarantineExporter exporter = new FlakeyTestcaseQuarantineExporter();
+        assertThat(exporter.read(directory), is(3));
+        final String className = FlakeyTestcaseQuarantineExporterTest.class.getName();
+        assertThat(exporter.keys(1), is(Arrays.asList(className + "#flakey1", className + "#flakey2")));
+
+        final Path quarantineFile = this.folder.getRoot().toPath().resolve("quarantine.txt");
+        exporter.write(quarantineFile, 2);
+        final Quarantine quarantine = Quarantine.fromFile(quarantineFile);
+        assertThat(quarantine.size(), is(1));
+        assertThat(quarantine.isQuarantined(
+                Description.createTestDescription(FlakeyTestcaseQuarantineExporterTest.class, "flakey1")), is(true));
+        assertThat(quarantine.isQuarantined(
+                Description.createTestDescription(FlakeyTestcaseQuarantineExporterTest.class, "flakey2")), is(false));
+    }
+}
@@ -0,0 +1,48 @@
+package de.plastickarma.flakeyunit.json;
+
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import de.plastickarma.flakeyunit.FlakeyTestIndicatorBuilder;
+import de.plastickarma.flakeyunit.MetricsExportListener;
+import de.plastickarma.flakeyunit.RerunMetrics;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static de.plastickarma.flakeyunit.UnittestHelper.createFlakeyTest;
+import static org.hamcrest.core.Is.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test cases for the json summary of the rerun metrics.
+ */
+public class JsonMetricsSummarySinkTest {
+
+    @Test public void metricsSummaryIsWrittenAsJson() throws Throwable {
+        final Path file = Files.createTempFile("flakey-metrics", ".json");
+        try {
+            final RerunMetrics metrics = new RerunMetrics().sink(new JsonMetricsSummarySink(file));
+            final TestRule indicator = FlakeyTestIndicatorBuilder.indicator()
+                    .rethrowOriginal(false)
+                    .metrics(metrics)
+                    .build();
+            createFlakeyTest(indicator, JsonMetricsSummarySinkTest.class, "flakey1").evaluate();
+
+            new MetricsExportListener(metrics).testRunFinished(null);
+
+            final JsonObject summary = new GsonBuilder().create().fromJson(
+                    new String(Files.readAllBytes(file), StandardCharsets.UTF_8), JsonObject.class);
+            assertThat(summary.get("flakes").getAsLong(), is(1L));
+            assertThat(summary.getAsJsonObject("reruns").get("count").getAsLong(), is(3L));
+            final JsonObject testClass = summary.getAsJsonArray("classes").get(0).getAsJsonObject();
+            assertThat(testClass.get("className").getAsString(), is(getClass().getName()));
+            assertThat(testClass.get("reruns").getAsLong(), is(3L));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
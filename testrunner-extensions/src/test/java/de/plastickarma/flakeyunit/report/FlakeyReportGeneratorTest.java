@@ -0,0 +1,72 @@
+package de.plastickarma.flakeyunit.report;
+
+import de.plastickarma.flakeyunit.FlakeyTestIndicatorBuilder;
+import de.plastickarma.flakeyunit.FlakeyTestcaseListener;
+import de.plastickarma.flakeyunit.binary.FlakeyTestcaseBinarySerializer;
+import de.plastickarma.flakeyunit.json.FlakeyTestcaseJsonFileSerializer;
+import de.plastickarma.flakeyunit.json.FlakeyTestcaseJsonLinesSerializer;
+import junit.framework.AssertionFailedError;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static de.plastickarma.flakeyunit.UnittestHelper.createFlakeyTest;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for the report of the accumulated flakey event files.
+ */
+public class FlakeyReportGeneratorTest {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test public void reportIsUpdatedWithNewEventsOnly() throws Throwable {
+        final Path events = this.folder.getRoot().toPath().resolve("flakey");
+        final Path report = this.folder.getRoot().toPath().resolve("report");
+        flake(new FlakeyTestcaseJsonFileSerializer(events), "flakey1");
+        try (FlakeyTestcaseJsonLinesSerializer serializer = new FlakeyTestcaseJsonLinesSerializer(events)) {
+            flake(serializer, "flakey1");
+            flake(serializer, "flakey2");
+        }
+        try (FlakeyTestcaseBinarySerializer serializer =
+                     new FlakeyTestcaseBinarySerializer(events.resolve("events.flkb"), true)) {
+            flake(serializer, "flakey2");
+        }
+
+        final FlakeyReportGenerator generator = FlakeyReportGenerator.open(report);
+        assertThat(generator.update(events), is(4));
+        assertThat(generator.getTestcases().size(), is(2));
+        final TestcaseSummary flakey1 = generator.find(IndexField.METHOD, "flakey1").get(0);
+        assertThat(flakey1.getFlakes(), is(2));
+        assertThat(flakey1.getReruns(), is(6L));
+        assertThat(flakey1.getRerunFailures(), is(2L));
+        assertThat(generator.find(IndexField.EXCEPTION, AssertionFailedError.class.getName()).size(), is(2));
+        assertThat(generator.find(IndexField.CLASS, FlakeyReportGeneratorTest.class.getName()).size(), is(2));
+        generator.write();
+        assertTrue(new String(Files.readAllBytes(report.resolve("index.html")), StandardCharsets.UTF_8)
+                .contains("flakey1"));
+        assertTrue(Files.exists(report.resolve("report.json")));
+
+        try (FlakeyTestcaseJsonLinesSerializer serializer = new FlakeyTestcaseJsonLinesSerializer(events)) {
+            flake(serializer, "flakey2");
+        }
+        final FlakeyReportGenerator incremental = FlakeyReportGenerator.open(report);
+        assertThat(incremental.update(events), is(1));
+        assertThat(incremental.update(events), is(0));
+        assertThat(incremental.find(IndexField.METHOD, "flakey2").get(0).getFlakes(), is(3));
+        assertThat(incremental.find(IndexField.METHOD, "flakey1").get(0).getFlakes(), is(2));
+    }
+
+    private static void flake(final FlakeyTestcaseListener listener, final String methodName) throws Throwable {
+        createFlakeyTest(
+                FlakeyTestIndicatorBuilder.indicator().rethrowOriginal(false).listener(listener).build(),
+                FlakeyReportGeneratorTest.class,
+                methodName).evaluate();
+    }
+}
@@ -0,0 +1,116 @@
+package de.plastickarma.flakeyunit.history;
+
+import de.plastickarma.flakeyunit.FlakeyVerdict;
+import de.plastickarma.flakeyunit.FlakeyVerdictPolicy;
+import de.plastickarma.flakeyunit.RetryBudgetPolicy;
+import org.junit.runner.Description;
+
+/**
+ * {@link de.plastickarma.flakeyunit.RetryBudgetPolicy}, that sizes the reruns of a failed test case by its
+ * {@link de.plastickarma.flakeyunit.history.TestHistory history}. A flakey test case is only detected, if it
+ * passes as many reruns as the verdict policy of the indicator requires, e.g. more than the
+ * {@link de.plastickarma.flakeyunit.FlakeyTestIndicatorBuilder#threshold(int) threshold}. A test case gets just
+ * enough reruns, so that a test case, that does not pass that often, is not flakey with the given confidence:
+ * Test cases, that failed deterministically before, get few reruns, test cases, that were flakey before, get
+ * more. Test cases without history get the reruns of a test case with equal chances.
+ * <p>
+ * The prior probability of a failed test case to be flakey is estimated from its flakey and failed runs
+ * (with a uniform prior), and a flakey test case is assumed to pass a rerun with probability 0.5.
+ * </p>
+ */
+public final class AdaptiveRetryBudgetPolicy implements RetryBudgetPolicy {
+
+    /** Assumed probability of a flakey test case to pass on rerun. */
+    static final double FLAKEY_PASS_PROBABILITY = 0.5;
+
+    private static final int MAX_REQUIRED_PASSES = 1000;
+
+    private final FlakeyHistoryStore store;
+    private final double confidence;
+    private final int requiredPasses;
+
+    /**
+     * Creates an AdaptiveRetryBudgetPolicy for indicators with the default threshold of 1.
+     * @param store store, that provides the history of the test cases.
+     * @param confidence probability, that a test case, which is not detected as flakey with the granted reruns,
+     *                   is indeed not flakey, between 0 and 1 (exclusive), e.g. 0.95.
+     */
+    public AdaptiveRetryBudgetPolicy(final FlakeyHistoryStore store, final double confidence) {
+        this(store, confidence, 1);
+    }
+
+    /**
+     * Creates an AdaptiveRetryBudgetPolicy for indicators with the given threshold.
+     * @param store store, that provides the history of the test cases.
+     * @param confidence probability, that a test case, which is not detected as flakey with the granted reruns,
+     *                   is indeed not flakey, between 0 and 1 (exclusive), e.g. 0.95.
+     * @param threshold {@link de.plastickarma.flakeyunit.FlakeyTestIndicatorBuilder#threshold(int) threshold}
+     *                  of the indicator, i.e. a flakey test case must pass more reruns.
+     */
+    public AdaptiveRetryBudgetPolicy(final FlakeyHistoryStore store, final double confidence, final int threshold) {
+        if (confidence <= 0 || confidence >= 1) {
+            throw new IllegalArgumentException("confidence must be between 0 and 1, but was " + confidence);
+        }
+        this.store = store;
+        this.confidence = confidence;
+        this.requiredPasses = Math.max(0, threshold) + 1;
+    }
+
+    /**
+     * Creates an AdaptiveRetryBudgetPolicy for indicators with the given verdict policy.
+     * @param store store, that provides the history of the test cases.
+     * @param confidence probability, that a test case, which is not detected as flakey with the granted reruns,
+     *                   is indeed not flakey, between 0 and 1 (exclusive), e.g. 0.95.
+     * @param verdictPolicy verdict policy of the indicator. It is asked, how many passed reruns make a test case
+     *                      flakey.
+     */
+    public AdaptiveRetryBudgetPolicy(
+            final FlakeyHistoryStore store,
+            final double confidence,
+            final FlakeyVerdictPolicy verdictPolicy) {
+        this(store, confidence, requiredPasses(verdictPolicy) - 1);
+    }
+
+    @Override
+    public int retries(final Description description, final int maxRetries) {
+        final TestHistory history = this.store.lookup(description);
+        final double flakeyPrior = (history.getFlakes() + 1.0) / (history.getFlakes() + history.getFailures() + 2.0);
+
+        // smallest n with P(flakey | fewer than the required passes in n reruns) <= 1 - confidence
+        final double requiredOdds = (1 - this.confidence) * (1 - flakeyPrior) / (this.confidence * flakeyPrior);
+        if (requiredOdds >= 1) {
+            return 0;
+        }
+        for (int reruns = this.requiredPasses; reruns < maxRetries; reruns++) {
+            if (probabilityOfTooFewPasses(reruns) <= requiredOdds) {
+                return reruns;
+            }
+        }
+        return Math.max(0, maxRetries);
+    }
+
+    /**
+     * Returns the probability of a flakey test case to pass fewer than the required reruns out of the given
+     * reruns.
+     */
+    private double probabilityOfTooFewPasses(final int reruns) {
+        // binomial distribution, the terms are computed from each other to avoid large coefficients
+        double term = Math.pow(1 - FLAKEY_PASS_PROBABILITY, reruns);
+        double probability = term;
+        for (int passes = 1; passes < this.requiredPasses; passes++) {
+            term *= (double) (reruns - passes + 1) / passes
+                    * FLAKEY_PASS_PROBABILITY / (1 - FLAKEY_PASS_PROBABILITY);
+            probability += term;
+        }
+        return probability;
+    }
+
+    private static int requiredPasses(final FlakeyVerdictPolicy verdictPolicy) {
+        for (int passes = 1; passes <= MAX_REQUIRED_PASSES; passes++) {
+            if (verdictPolicy.decide(passes, 0, 0) == FlakeyVerdict.FLAKEY) {
+                return passes;
+            }
+        }
+        throw new IllegalArgumentException("verdictPolicy never decides for flakey");
+    }
+}
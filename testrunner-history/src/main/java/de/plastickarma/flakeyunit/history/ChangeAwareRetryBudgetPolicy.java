@@ -0,0 +1,50 @@
+package de.plastickarma.flakeyunit.history;
+
+import de.plastickarma.flakeyunit.RetryBudgetPolicy;
+import org.junit.runner.Description;
+
+/**
+ * {@link de.plastickarma.flakeyunit.RetryBudgetPolicy}, that sizes the reruns of a failed test case by the
+ * changes of the classes it depends on, as recorded by a
+ * {@link de.plastickarma.flakeyunit.history.DependencyFingerprintIndex}: A test case, whose classes changed since
+ * it passed the last time, likely fails because of a regression and gets no reruns. A test case, whose classes
+ * did not change, likely is flakey and gets all retries. Test cases, that have not passed before, are left to
+ * another policy.
+ */
+public final class ChangeAwareRetryBudgetPolicy implements RetryBudgetPolicy {
+
+    private final DependencyFingerprintIndex index;
+    private final RetryBudgetPolicy unknownPolicy;
+
+    /**
+     * Creates a ChangeAwareRetryBudgetPolicy, that gives test cases, that have not passed before, all retries.
+     * @param index index, that provides the changes of the test cases.
+     */
+    public ChangeAwareRetryBudgetPolicy(final DependencyFingerprintIndex index) {
+        this(index, null);
+    }
+
+    /**
+     * Creates a ChangeAwareRetryBudgetPolicy.
+     * @param index index, that provides the changes of the test cases.
+     * @param unknownPolicy policy for test cases, that have not passed before, e.g. an
+     *                      {@link de.plastickarma.flakeyunit.history.AdaptiveRetryBudgetPolicy}, <code>null</code>
+     *                      to give them all retries.
+     */
+    public ChangeAwareRetryBudgetPolicy(final DependencyFingerprintIndex index, final RetryBudgetPolicy unknownPolicy) {
+        this.index = index;
+        this.unknownPolicy = unknownPolicy;
+    }
+
+    @Override
+    public int retries(final Description description, final int maxRetries) {
+        switch (this.index.lookup(description)) {
+            case CHANGED:
+                return 0;
+            case UNCHANGED:
+                return maxRetries;
+            default:
+                return this.unknownPolicy == null ? maxRetries : this.unknownPolicy.retries(description, maxRetries);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package de.plastickarma.flakeyunit.history;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Reads the classes, that a class file refers to, from its constant pool: the classes it uses and the classes
+ * in the descriptors of the fields and methods it uses. Class names are returned in internal form, e.g.
+ * <code>java/lang/String</code>.
+ */
+final class ClassFileDependencies {
+
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int FLOAT = 4;
+    private static final int LONG = 5;
+    private static final int DOUBLE = 6;
+    private static final int CLASS = 7;
+    private static final int STRING = 8;
+    private static final int FIELD_REF = 9;
+    private static final int METHOD_REF = 10;
+    private static final int INTERFACE_METHOD_REF = 11;
+    private static final int NAME_AND_TYPE = 12;
+    private static final int METHOD_HANDLE = 15;
+    private static final int METHOD_TYPE = 16;
+    private static final int DYNAMIC = 17;
+    private static final int INVOKE_DYNAMIC = 18;
+    private static final int MODULE = 19;
+    private static final int PACKAGE = 20;
+
+    private ClassFileDependencies() { }
+
+    /**
+     * Returns the classes, that the given class file refers to, without the class itself.
+     * @throws IOException if the class file is malformed.
+     */
+    static Set<String> of(final byte[] classFile) throws IOException {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(classFile));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not a class file");
+        }
+        in.readUnsignedShort(); // minor version
+        in.readUnsignedShort(); // major version
+        final int count = in.readUnsignedShort();
+        final String[] utf8 = new String[count];
+        final int[] classNames = new int[count];
+        final int[] descriptors = new int[count];
+        int types = 0;
+        for (int i = 1; i < count; i++) {
+            final int tag = in.readUnsignedByte();
+            switch (tag) {
+                case UTF8:
+                    utf8[i] = in.readUTF();
+                    break;
+                case CLASS:
+                    classNames[i] = in.readUnsignedShort();
+                    break;
+                case METHOD_TYPE:
+                    descriptors[types++] = in.readUnsignedShort();
+                    break;
+                case NAME_AND_TYPE:
+                    in.readUnsignedShort();
+                    descriptors[types++] = in.readUnsignedShort();
+                    break;
+                case STRING:
+                case MODULE:
+                case PACKAGE:
+                    in.readUnsignedShort();
+                    break;
+                case METHOD_HANDLE:
+                    in.readUnsignedByte();
+                    in.readUnsignedShort();
+                    break;
+                case INTEGER:
+                case FLOAT:
+                case FIELD_REF:
+                case METHOD_REF:
+                case INTERFACE_METHOD_REF:
+                case DYNAMIC:
+                case INVOKE_DYNAMIC:
+                    in.readInt();
+                    break;
+                case LONG:
+                case DOUBLE:
+                    in.readLong();
+                    i++; // takes two entries
+                    break;
+                default:
+                    throw new IOException("unknown constant pool tag " + tag);
+            }
+        }
+        in.readUnsignedShort(); // access flags
+        final int thisClass = in.readUnsignedShort();
+
+        final Set<String> dependencies = new TreeSet<>();
+        for (int i = 1; i < count; i++) {
+            if (classNames[i] != 0 && i != thisClass) {
+                addClassName(dependencies, utf8[classNames[i]]);
+            }
+        }
+        for (int i = 0; i < types; i++) {
+            addDescriptor(dependencies, utf8[descriptors[i]]);
+        }
+        dependencies.remove(utf8[classNames[thisClass]]);
+        return dependencies;
+    }
+
+    /**
+     * Adds a class name of a class constant, which is a descriptor for array classes.
+     */
+    private static void addClassName(final Set<String> dependencies, final String name) {
+        if (name.charAt(0) == '[') {
+            addDescriptor(dependencies, name);
+        } else {
+            dependencies.add(name);
+        }
+    }
+
+    /**
+     * Adds the classes of a field or method descriptor, e.g. <code>(ILjava/lang/String;)[Ljava/util/List;</code>.
+     */
+    private static void addDescriptor(final Set<String> dependencies, final String descriptor) {
+        int start = descriptor.indexOf('L');
+        while (start >= 0) {
+            final int end = descriptor.indexOf(';', start);
+            if (end < 0) {
+                return;
+            }
+            dependencies.add(descriptor.substring(start + 1, end));
+            start = descriptor.indexOf('L', end);
+        }
+    }
+}
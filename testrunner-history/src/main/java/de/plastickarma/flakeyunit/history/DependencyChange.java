@@ -0,0 +1,25 @@
+package de.plastickarma.flakeyunit.history;
+
+/**
+ * Change of the classes, that a test case depends on, since it passed the last time, as determined by the
+ * {@link de.plastickarma.flakeyunit.history.DependencyFingerprintIndex}.
+ */
+public enum DependencyChange {
+
+    /**
+     * The test case has not passed before, or its classes are not on the file system.
+     */
+    UNKNOWN,
+
+    /**
+     * No class, that the test case depends on, has changed since it passed the last time, so a failure is
+     * likely a flake.
+     */
+    UNCHANGED,
+
+    /**
+     * A class, that the test case depends on, has changed since it passed the last time, so a failure is likely
+     * a regression.
+     */
+    CHANGED
+}
@@ -0,0 +1,357 @@
+package de.plastickarma.flakeyunit.history;
+
+import de.plastickarma.flakeyunit.TestcaseOutcome;
+import de.plastickarma.flakeyunit.TestcaseOutcomeListener;
+import org.junit.runner.Description;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * File-backed index of the classes, that test cases depend on, to tell whether a failed test case was changed
+ * since it passed the last time. Register it with
+ * {@link de.plastickarma.flakeyunit.FlakeyTestIndicatorBuilder#outcomeListener(TestcaseOutcomeListener)} to
+ * record the fingerprints of passing test cases, and use it with a
+ * {@link de.plastickarma.flakeyunit.history.ChangeAwareRetryBudgetPolicy}.
+ * <p>
+ * The fingerprint of a test case covers the class files of its test class and of all classes, it refers to
+ * directly or indirectly, that its class loader loads from a directory, i.e. the classes of the project. Classes
+ * from jar files and of the JDK are not followed. Class files are only read, if their size or modification time
+ * differs from the index, so that the hashing cost stays small. The fingerprints of a test class are computed
+ * once per JVM.
+ * </p>
+ * <p>
+ * Several JVMs can share the index file: writes hold a lock on <code><index file>.lock</code> and merge the
+ * fingerprints recorded by this JVM into the current file.
+ * </p>
+ */
+public final class DependencyFingerprintIndex implements TestcaseOutcomeListener, Flushable, Closeable {
+
+    private static final int MAGIC = 0x464c4b44; // FLKD
+
+    private final Path indexPath;
+    private final Path lockPath;
+    private final Map<String, ClassEntry> indexedClasses;
+    private final Map<String, Long> indexedTests;
+    private final Map<String, ClassEntry> classes = new ConcurrentHashMap<>();
+    private final Map<String, Long> tests = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Long> fingerprints = new ConcurrentHashMap<>();
+
+    private DependencyFingerprintIndex(
+            final Path indexPath,
+            final Map<String, ClassEntry> indexedClasses,
+            final Map<String, Long> indexedTests) {
+        this.indexPath = indexPath;
+        this.lockPath = indexPath.resolveSibling(indexPath.getFileName() + ".lock");
+        this.indexedClasses = indexedClasses;
+        this.indexedTests = indexedTests;
+    }
+
+    /**
+     * Opens the index with the given file. The file is created with the first write, if it does not exist.
+     * Recorded fingerprints are written at JVM shutdown, if the index is not closed before.
+     */
+    public static DependencyFingerprintIndex open(final Path indexPath) throws IOException {
+        final Map<String, ClassEntry> indexedClasses = new HashMap<>();
+        final Map<String, Long> indexedTests = new HashMap<>();
+        read(indexPath, indexedClasses, indexedTests);
+        final DependencyFingerprintIndex index =
+                new DependencyFingerprintIndex(indexPath, indexedClasses, indexedTests);
+        ShutdownFlush.register(index);
+        return index;
+    }
+
+    /**
+     * Returns whether the classes, that the given test case depends on, changed since it passed the last time.
+     */
+    public DependencyChange lookup(final Description description) {
+        final String key = key(description);
+        Long passed = this.tests.get(key);
+        if (passed == null) {
+            passed = this.indexedTests.get(key);
+        }
+        final Class<?> testClass = description.getTestClass();
+        if (passed == null || testClass == null) {
+            return DependencyChange.UNKNOWN;
+        }
+        final Long fingerprint = fingerprint(testClass);
+        if (fingerprint == null) {
+            return DependencyChange.UNKNOWN;
+        }
+        return fingerprint.equals(passed) ? DependencyChange.UNCHANGED : DependencyChange.CHANGED;
+    }
+
+    /**
+     * Records the fingerprint of a test case, that passed, right away or on rerun.
+     * @param description The description of the testcase as provided by junit.
+     * @param outcome The outcome of the test case.
+     * @param originalException The exception that was the initial test case failure, <code>null</code>
+     *                          if the test case passed.
+     * @param rerunCount The number of times, which the failed test case was repeated.
+     * @param rerunExceptions The exceptions, that occurred, during the rerun of the test case.
+     */
+    @Override
+    public void handleOutcome(
+            final Description description,
+            final TestcaseOutcome outcome,
+            final Throwable originalException,
+            final int rerunCount,
+            final List<Throwable> rerunExceptions) {
+        if (outcome == TestcaseOutcome.FAILED || description.getTestClass() == null) {
+            return;
+        }
+        final Long fingerprint = fingerprint(description.getTestClass());
+        if (fingerprint != null) {
+            this.tests.put(key(description), fingerprint);
+        }
+    }
+
+    /**
+     * Merges the fingerprints recorded by this JVM into the index file.
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        if (this.tests.isEmpty()) {
+            return;
+        }
+        try (FileChannel lockChannel = openLock()) {
+            final FileLock lock = lockChannel.lock();
+            try {
+                merge();
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    /**
+     * Writes the fingerprints of the index file and of this JVM to the index file. Must be called while holding
+     * the file lock.
+     */
+    private void merge() throws IOException {
+        final Map<String, ClassEntry> currentClasses = new HashMap<>();
+        final Map<String, Long> currentTests = new HashMap<>();
+        read(this.indexPath, currentClasses, currentTests);
+        currentClasses.putAll(this.classes);
+        currentTests.putAll(this.tests);
+
+        final Path written = this.indexPath.resolveSibling(this.indexPath.getFileName() + ".tmp");
+        try (OutputStream file = Files.newOutputStream(written);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(MAGIC);
+            out.writeInt(currentClasses.size());
+            for (Map.Entry<String, ClassEntry> entry : currentClasses.entrySet()) {
+                out.writeUTF(entry.getKey());
+                entry.getValue().writeTo(out);
+            }
+            out.writeInt(currentTests.size());
+            for (Map.Entry<String, Long> entry : currentTests.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue());
+            }
+        }
+        Files.move(written, this.indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes the recorded fingerprints.
+     */
+    @Override
+    public void close() throws IOException {
+        ShutdownFlush.unregister(this);
+        flush();
+    }
+
+    /**
+     * Returns the fingerprint of the given test class and the classes it depends on, <code>null</code> if the
+     * test class is not loaded from a directory.
+     */
+    private Long fingerprint(final Class<?> testClass) {
+        final Long cached = this.fingerprints.get(testClass);
+        if (cached != null) {
+            return cached;
+        }
+        final ClassLoader loader = testClass.getClassLoader();
+        if (loader == null) {
+            return null;
+        }
+        final Set<String> visited = new HashSet<>();
+        final Deque<String> pending = new ArrayDeque<>();
+        pending.add(testClass.getName().replace('.', '/'));
+        long fingerprint = 0;
+        boolean found = false;
+        while (!pending.isEmpty()) {
+            final String name = pending.poll();
+            if (!visited.add(name)) {
+                continue;
+            }
+            final ClassEntry entry = classEntry(loader, name);
+            if (entry == null) {
+                continue;
+            }
+            found = true;
+            // order independent, so that the traversal order does not matter
+            fingerprint += mix(name.hashCode() * 31L + entry.hash);
+            for (String dependency : entry.dependencies) {
+                if (!visited.contains(dependency)) {
+                    pending.add(dependency);
+                }
+            }
+        }
+        if (!found) {
+            return null;
+        }
+        this.fingerprints.put(testClass, fingerprint);
+        return fingerprint;
+    }
+
+    /**
+     * Returns the hash and the dependencies of a class file, <code>null</code> if it is not loaded from a
+     * directory. The class file is read only, if it differs in size or modification time from the index.
+     */
+    private ClassEntry classEntry(final ClassLoader loader, final String name) {
+        final ClassEntry current = this.classes.get(name);
+        if (current != null) {
+            return current;
+        }
+        final URL resource = loader.getResource(name + ".class");
+        if (resource == null || !"file".equals(resource.getProtocol())) {
+            return null;
+        }
+        try {
+            final Path classFile = Paths.get(resource.toURI());
+            final long size = Files.size(classFile);
+            final long lastModified = Files.getLastModifiedTime(classFile).toMillis();
+            ClassEntry entry = this.indexedClasses.get(name);
+            if (entry == null || entry.size != size || entry.lastModified != lastModified) {
+                final byte[] bytes = Files.readAllBytes(classFile);
+                final CRC32 crc = new CRC32();
+                crc.update(bytes);
+                entry = new ClassEntry(
+                        size,
+                        lastModified,
+                        crc.getValue(),
+                        ClassFileDependencies.of(bytes).toArray(new String[0]));
+            }
+            this.classes.put(name, entry);
+            return entry;
+        } catch (IOException | URISyntaxException e) {
+            // an unreadable class cannot be tracked
+            return null;
+        }
+    }
+
+    private FileChannel openLock() throws IOException {
+        final Path parent = this.lockPath.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        return FileChannel.open(this.lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Reads the index file into the given maps.
+     */
+    private static void read(
+            final Path indexPath,
+            final Map<String, ClassEntry> classes,
+            final Map<String, Long> tests) throws IOException {
+        if (!Files.exists(indexPath)) {
+            return;
+        }
+        try (InputStream file = Files.newInputStream(indexPath);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(String.format("%s is not a dependency index file", indexPath));
+            }
+            final int classCount = in.readInt();
+            for (int i = 0; i < classCount; i++) {
+                classes.put(in.readUTF(), ClassEntry.readFrom(in));
+            }
+            final int testCount = in.readInt();
+            for (int i = 0; i < testCount; i++) {
+                tests.put(in.readUTF(), in.readLong());
+            }
+        } catch (EOFException e) {
+            throw new IOException(String.format("%s is truncated", indexPath), e);
+        }
+    }
+
+    /**
+     * Finalizer of SplitMix64, spreads the bits of the class hashes before they are summed up.
+     */
+    private static long mix(final long value) {
+        long z = value;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static String key(final Description description) {
+        return description.getClassName() + '#' + description.getMethodName();
+    }
+
+    /**
+     * Hash and dependencies of a class file, together with the size and modification time they belong to.
+     */
+    private static final class ClassEntry {
+        private final long size;
+        private final long lastModified;
+        private final long hash;
+        private final String[] dependencies;
+
+        private ClassEntry(final long size, final long lastModified, final long hash, final String[] dependencies) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+            this.dependencies = dependencies;
+        }
+
+        private void writeTo(final DataOutputStream out) throws IOException {
+            out.writeLong(this.size);
+            out.writeLong(this.lastModified);
+            out.writeLong(this.hash);
+            out.writeInt(this.dependencies.length);
+            for (String dependency : this.dependencies) {
+                out.writeUTF(dependency);
+            }
+        }
+
+        private static ClassEntry readFrom(final DataInputStream in) throws IOException {
+            final long size = in.readLong();
+            final long lastModified = in.readLong();
+            final long hash = in.readLong();
+            final String[] dependencies = new String[in.readInt()];
+            for (int i = 0; i < dependencies.length; i++) {
+                dependencies[i] = in.readUTF();
+            }
+            return new ClassEntry(size, lastModified, hash, dependencies);
+        }
+    }
+}
@@ -0,0 +1,439 @@
+package de.plastickarma.flakeyunit.history;
+
+import de.plastickarma.flakeyunit.DistinctFailure;
+import de.plastickarma.flakeyunit.FailureFingerprint;
+import de.plastickarma.flakeyunit.RerunFailures;
+import de.plastickarma.flakeyunit.TestcaseOutcome;
+import de.plastickarma.flakeyunit.TestcaseOutcomeListener;
+import org.junit.runner.Description;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * File-backed store of the {@link de.plastickarma.flakeyunit.history.TestHistory history} of test cases across
+ * builds. Register it with
+ * {@link de.plastickarma.flakeyunit.FlakeyTestIndicatorBuilder#outcomeListener(TestcaseOutcomeListener)} to
+ * record the outcome of every test case.
+ * <p>
+ * The history is kept in memory, so that lookups take constant time. Outcomes are appended to a log file,
+ * which is compacted into one snapshot record per test case when the store is closed and the log has grown
+ * too large. Several JVMs can share the log file, writes hold a lock on <code><log file>.lock</code>. Within a
+ * JVM, open only one store per log file. A record, that a writer left incomplete, e.g. a killed test JVM, is cut
+ * off before the next write.
+ * </p>
+ */
+public final class FlakeyHistoryStore implements TestcaseOutcomeListener, Flushable, Closeable {
+
+    private static final int MAGIC = 0x464c4b48; // FLKH
+    private static final byte OUTCOME_RECORD = 'O';
+    private static final byte SNAPSHOT_RECORD = 'S';
+    private static final int FLUSH_THRESHOLD_BYTES = 64 * 1024;
+    private static final double DEFAULT_SMOOTHING = 0.2;
+
+    private final Path logPath;
+    private final Path lockPath;
+    private final double smoothing;
+    private final Map<String, TestHistory> histories = new ConcurrentHashMap<>();
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private final DataOutputStream pendingOut = new DataOutputStream(this.pending);
+    private int pendingRecords = 0;
+    private int logRecords = 0;
+    // end of the last complete record of the log file, as far as this store knows
+    private long logEnd = 0;
+    private Object logKey;
+
+    private FlakeyHistoryStore(final Path logPath, final double smoothing) {
+        this.logPath = logPath;
+        this.lockPath = logPath.resolveSibling(logPath.getFileName() + ".lock");
+        this.smoothing = smoothing;
+    }
+
+    /**
+     * Opens the store with the given log file. The file is created with the first write, if it does not exist.
+     * Pending outcomes are written at JVM shutdown, if the store is not closed before.
+     */
+    public static FlakeyHistoryStore open(final Path logPath) throws IOException {
+        return open(logPath, DEFAULT_SMOOTHING);
+    }
+
+    /**
+     * Opens the store with the given log file.
+     * @param logPath log file of the store.
+     * @param smoothing weight of the latest run in the moving average of the flake rate, between 0 and 1.
+     *                  Defaults to 0.2.
+     */
+    public static FlakeyHistoryStore open(final Path logPath, final double smoothing) throws IOException {
+        if (smoothing <= 0 || smoothing > 1) {
+            throw new IllegalArgumentException("smoothing must be between 0 and 1, but was " + smoothing);
+        }
+        final FlakeyHistoryStore store = new FlakeyHistoryStore(logPath, smoothing);
+        store.recover();
+        ShutdownFlush.register(store);
+        return store;
+    }
+
+    /**
+     * Returns the history of the given test case, {@link TestHistory#NONE} if it has never been recorded.
+     */
+    public TestHistory lookup(final Description description) {
+        return lookup(description.getClassName(), description.getMethodName());
+    }
+
+    /**
+     * Returns the history of the given test case, {@link TestHistory#NONE} if it has never been recorded.
+     */
+    public TestHistory lookup(final String className, final String methodName) {
+        final TestHistory history = this.histories.get(key(className, methodName));
+        return history == null ? TestHistory.NONE : history;
+    }
+
+    /**
+     * Records the outcome of a test case.
+     * @param description The description of the testcase as provided by junit.
+     * @param outcome The outcome of the test case.
+     * @param originalException The exception that was the initial test case failure, <code>null</code>
+     *                          if the test case passed.
+     * @param rerunCount The number of times, which the failed test case was repeated.
+     * @param rerunExceptions The exceptions, that occurred, during the rerun of the test case.
+     */
+    @Override
+    public synchronized void handleOutcome(
+            final Description description,
+            final TestcaseOutcome outcome,
+            final Throwable originalException,
+            final int rerunCount,
+            final List<Throwable> rerunExceptions) {
+        final String key = key(description.getClassName(), description.getMethodName());
+        final List<String> fingerprints = fingerprints(originalException, rerunExceptions);
+        final long time = System.currentTimeMillis();
+        apply(this.histories, key, outcome, rerunCount, fingerprints, time, this.smoothing);
+        try {
+            this.pendingRecords++;
+            this.pendingOut.writeByte(OUTCOME_RECORD);
+            this.pendingOut.writeUTF(key);
+            this.pendingOut.writeByte(outcome.ordinal());
+            this.pendingOut.writeLong(time);
+            this.pendingOut.writeInt(rerunCount);
+            this.pendingOut.writeByte(fingerprints.size());
+            for (String fingerprint : fingerprints) {
+                this.pendingOut.writeUTF(fingerprint);
+            }
+            if (this.pending.size() >= FLUSH_THRESHOLD_BYTES) {
+                flush();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Appends the pending outcomes to the log file.
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        if (this.pending.size() == 0) {
+            return;
+        }
+        try (FileChannel lockChannel = openLock()) {
+            final FileLock lock = lockChannel.lock();
+            try {
+                appendPending();
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    /**
+     * Rewrites the log file with one snapshot record per test case. Outcomes appended by other JVMs since this
+     * store was opened are taken into account.
+     */
+    public synchronized void compact() throws IOException {
+        try (FileChannel lockChannel = openLock()) {
+            final FileLock lock = lockChannel.lock();
+            try {
+                compactLocked();
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    /**
+     * Writes the pending outcomes and compacts the log file, if it contains much more records than test cases.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        ShutdownFlush.unregister(this);
+        flush();
+        if (this.logRecords > 2 * this.histories.size() + 100) {
+            compact();
+        }
+    }
+
+    /**
+     * Reads the log file and cuts off an incomplete record at its end. Must be called before the store is used.
+     */
+    private void recover() throws IOException {
+        if (!Files.exists(this.logPath)) {
+            return;
+        }
+        try (FileChannel lockChannel = openLock()) {
+            final FileLock lock = lockChannel.lock();
+            try {
+                final LogScan scan = scan(this.logPath, 0, this.histories, this.smoothing);
+                this.logRecords = scan.records;
+                cutOff(scan.end);
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    private void compactLocked() throws IOException {
+        appendPending();
+        final Map<String, TestHistory> current = new ConcurrentHashMap<>();
+        scan(this.logPath, 0, current, this.smoothing);
+
+        final Path compacted = this.logPath.resolveSibling(this.logPath.getFileName() + ".compact");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(compacted))) {
+            out.writeInt(MAGIC);
+            for (Map.Entry<String, TestHistory> entry : current.entrySet()) {
+                out.writeByte(SNAPSHOT_RECORD);
+                out.writeUTF(entry.getKey());
+                entry.getValue().writeTo(out);
+            }
+        }
+        Files.move(compacted, this.logPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        this.histories.putAll(current);
+        this.logRecords = current.size();
+        this.logEnd = Files.size(this.logPath);
+        this.logKey = fileKey(this.logPath);
+    }
+
+    /**
+     * Appends the pending outcomes. Must be called while holding the file lock.
+     */
+    private void appendPending() throws IOException {
+        if (this.pending.size() == 0) {
+            return;
+        }
+        if (Files.exists(this.logPath)) {
+            final long size = Files.size(this.logPath);
+            final Object key = fileKey(this.logPath);
+            if (size != this.logEnd || !Objects.equals(key, this.logKey)) {
+                // other writers appended or compacted since, the records they completed are kept
+                final boolean appended = size > this.logEnd && key != null && key.equals(this.logKey);
+                cutOff(scan(this.logPath, appended ? this.logEnd : 0, null, this.smoothing).end);
+            }
+        }
+        try (FileChannel log = FileChannel.open(
+                this.logPath,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            if (log.size() == 0) {
+                final ByteBuffer header = ByteBuffer.allocate(Integer.SIZE / Byte.SIZE);
+                header.putInt(MAGIC).flip();
+                log.write(header);
+            }
+            final ByteBuffer data = ByteBuffer.wrap(this.pending.toByteArray());
+            while (data.hasRemaining()) {
+                log.write(data);
+            }
+            this.logEnd = log.size();
+        }
+        this.logKey = fileKey(this.logPath);
+        this.logRecords += this.pendingRecords;
+        this.pendingRecords = 0;
+        this.pending.reset();
+    }
+
+    private FileChannel openLock() throws IOException {
+        final Path parent = this.lockPath.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        return FileChannel.open(this.lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Truncates the log file to the given length, if a writer left an incomplete record after it. Must be called
+     * while holding the file lock.
+     */
+    private void cutOff(final long end) throws IOException {
+        try (FileChannel log = FileChannel.open(this.logPath, StandardOpenOption.WRITE)) {
+            if (log.size() > end) {
+                log.truncate(end);
+            }
+        }
+        this.logEnd = end;
+        this.logKey = fileKey(this.logPath);
+    }
+
+    private static Object fileKey(final Path path) throws IOException {
+        return Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+    }
+
+    /**
+     * Reads the records of the log file from the given position into the given map.
+     * @param from start of a record, or 0 to read the whole file.
+     * @param histories map, that the records are applied to, <code>null</code> to only find the complete records.
+     */
+    private static LogScan scan(
+            final Path logPath,
+            final long from,
+            final Map<String, TestHistory> histories,
+            final double smoothing) throws IOException {
+        final LogScan scan = new LogScan();
+        scan.end = from;
+        try (FileChannel channel = FileChannel.open(logPath, StandardOpenOption.READ)) {
+            channel.position(from);
+            final CountingInputStream counter = new CountingInputStream(
+                    new BufferedInputStream(Channels.newInputStream(channel)), from);
+            final DataInputStream in = new DataInputStream(counter);
+            if (from == 0) {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException(String.format("%s is not a flakey history file", logPath));
+                }
+                scan.end = counter.position;
+            }
+            while (true) {
+                final int type = in.read();
+                if (type < 0) {
+                    return scan;
+                }
+                final String key = in.readUTF();
+                if (type == SNAPSHOT_RECORD) {
+                    final TestHistory history = TestHistory.readFrom(in);
+                    if (histories != null) {
+                        histories.put(key, history);
+                    }
+                } else if (type == OUTCOME_RECORD) {
+                    final TestcaseOutcome outcome = TestcaseOutcome.values()[in.readUnsignedByte()];
+                    final long time = in.readLong();
+                    final int rerunCount = in.readInt();
+                    final int fingerprintCount = in.readUnsignedByte();
+                    final List<String> fingerprints = new ArrayList<>(fingerprintCount);
+                    for (int i = 0; i < fingerprintCount; i++) {
+                        fingerprints.add(in.readUTF());
+                    }
+                    if (histories != null) {
+                        apply(histories, key, outcome, rerunCount, fingerprints, time, smoothing);
+                    }
+                } else {
+                    throw new IOException(String.format("%s contains unknown record type %d", logPath, type));
+                }
+                scan.records++;
+                scan.end = counter.position;
+            }
+        } catch (EOFException e) {
+            // a writer was interrupted in the middle of a record, the complete records are still valid
+            return scan;
+        }
+    }
+
+    private static void apply(
+            final Map<String, TestHistory> histories,
+            final String key,
+            final TestcaseOutcome outcome,
+            final int rerunCount,
+            final List<String> fingerprints,
+            final long time,
+            final double smoothing) {
+        final TestHistory history = histories.get(key);
+        histories.put(
+                key,
+                (history == null ? TestHistory.NONE : history).record(
+                        outcome, rerunCount, fingerprints, time, smoothing));
+    }
+
+    private static List<String> fingerprints(final Throwable originalException, final List<Throwable> exceptions) {
+        if (originalException == null) {
+            return Collections.emptyList();
+        }
+        final List<String> fingerprints = new ArrayList<>();
+        fingerprints.add(FailureFingerprint.of(originalException).getId());
+        for (DistinctFailure failure : RerunFailures.of(exceptions).getDistinctFailures()) {
+            final String fingerprint = failure.getFingerprint().getId();
+            if (!fingerprints.contains(fingerprint) && fingerprints.size() < TestHistory.MAX_FINGERPRINTS) {
+                fingerprints.add(fingerprint);
+            }
+        }
+        return fingerprints;
+    }
+
+    private static String key(final String className, final String methodName) {
+        return className + '#' + methodName;
+    }
+
+    /**
+     * Complete records found by {@link #scan(Path, long, Map, double)}.
+     */
+    private static final class LogScan {
+        private int records;
+        private long end;
+    }
+
+    /**
+     * Input stream, that counts the bytes read from it, so that the end of the last complete record is known.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private long position;
+
+        private CountingInputStream(final InputStream in, final long position) {
+            super(in);
+            this.position = position;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b >= 0) {
+                this.position++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            final int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                this.position += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            final long skipped = super.skip(n);
+            this.position += skipped;
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package de.plastickarma.flakeyunit.history;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Flushes the open stores of this package at JVM shutdown, with a single shutdown hook for all of them.
+ */
+final class ShutdownFlush {
+
+    private static final Set<Flushable> OPEN =
+            Collections.newSetFromMap(new WeakHashMap<Flushable, Boolean>());
+    private static final AtomicBoolean HOOK_REGISTERED = new AtomicBoolean();
+
+    private ShutdownFlush() {
+    }
+
+    /**
+     * Flushes the given store at JVM shutdown, unless it is {@link #unregister(Flushable) unregistered} before.
+     */
+    static void register(final Flushable store) {
+        synchronized (OPEN) {
+            OPEN.add(store);
+        }
+        if (HOOK_REGISTERED.compareAndSet(false, true)) {
+            Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    flushAll();
+                }
+            }, "flakey-history-flush"));
+        }
+    }
+
+    static void unregister(final Flushable store) {
+        synchronized (OPEN) {
+            OPEN.remove(store);
+        }
+    }
+
+    /**
+     * Flushes all registered stores.
+     * @throws RuntimeException if a store could not be flushed. All stores are flushed nevertheless.
+     */
+    static void flushAll() {
+        final List<Flushable> stores;
+        synchronized (OPEN) {
+            stores = new ArrayList<>(OPEN);
+        }
+        RuntimeException failure = null;
+        for (Flushable store : stores) {
+            try {
+                store.flush();
+            } catch (IOException | RuntimeException e) {
+                if (failure == null) {
+                    failure = e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package de.plastickarma.flakeyunit.history;
+
+import de.plastickarma.flakeyunit.TestcaseOutcome;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Statistics of a single test case across builds, as kept by the
+ * {@link de.plastickarma.flakeyunit.history.FlakeyHistoryStore}. Instances are immutable.
+ */
+public final class TestHistory {
+
+    /**
+     * Maximum number of failure fingerprints, that are kept per test case.
+     */
+    static final int MAX_FINGERPRINTS = 5;
+
+    /**
+     * History of a test case, that has never been recorded.
+     */
+    public static final TestHistory NONE =
+            new TestHistory(0, 0, 0, 0, 0, 0.0, 0L, Collections.<String>emptyList());
+
+    private final int runs;
+    private final int passes;
+    private final int failures;
+    private final int flakes;
+    private final long totalReruns;
+    private final double flakeRate;
+    private final long lastSeen;
+    private final List<String> fingerprints;
+
+    private TestHistory(
+            final int runs,
+            final int passes,
+            final int failures,
+            final int flakes,
+            final long totalReruns,
+            final double flakeRate,
+            final long lastSeen,
+            final List<String> fingerprints) {
+        this.runs = runs;
+        this.passes = passes;
+        this.failures = failures;
+        this.flakes = flakes;
+        this.totalReruns = totalReruns;
+        this.flakeRate = flakeRate;
+        this.lastSeen = lastSeen;
+        this.fingerprints = fingerprints;
+    }
+
+    /**
+     * Returns the number of recorded runs.
+     */
+    public int getRuns() {
+        return this.runs;
+    }
+
+    /**
+     * Returns the number of runs, that passed on the first run.
+     */
+    public int getPasses() {
+        return this.passes;
+    }
+
+    /**
+     * Returns the number of runs, that failed and were not considered flakey.
+     */
+    public int getFailures() {
+        return this.failures;
+    }
+
+    /**
+     * Returns the number of runs, that were considered flakey.
+     */
+    public int getFlakes() {
+        return this.flakes;
+    }
+
+    /**
+     * Returns the total number of reruns over all runs.
+     */
+    public long getTotalReruns() {
+        return this.totalReruns;
+    }
+
+    /**
+     * Returns the exponentially weighted moving average of the flakey runs, between 0 and 1. Recent runs
+     * weigh more than old ones.
+     */
+    public double getFlakeRate() {
+        return this.flakeRate;
+    }
+
+    /**
+     * Returns the time of the last recorded run in milliseconds since the epoch, 0 if there is none.
+     */
+    public long getLastSeen() {
+        return this.lastSeen;
+    }
+
+    /**
+     * Returns the ids of the most recent distinct failure fingerprints, most recent last.
+     */
+    public List<String> getFingerprints() {
+        return this.fingerprints;
+    }
+
+    /**
+     * Returns the history with the given run added.
+     * @param outcome The outcome of the run.
+     * @param rerunCount The number of reruns of the run.
+     * @param runFingerprints The failure fingerprint ids of the run.
+     * @param time The time of the run in milliseconds since the epoch.
+     * @param smoothing weight of the run in the moving average of the flake rate, between 0 and 1.
+     */
+    TestHistory record(
+            final TestcaseOutcome outcome,
+            final int rerunCount,
+            final List<String> runFingerprints,
+            final long time,
+            final double smoothing) {
+        final double flakeSample = outcome == TestcaseOutcome.FLAKEY ? 1.0 : 0.0;
+        List<String> newFingerprints = this.fingerprints;
+        if (!runFingerprints.isEmpty()) {
+            newFingerprints = new ArrayList<>(this.fingerprints);
+            for (String fingerprint : runFingerprints) {
+                newFingerprints.remove(fingerprint);
+                newFingerprints.add(fingerprint);
+            }
+            while (newFingerprints.size() > MAX_FINGERPRINTS) {
+                newFingerprints.remove(0);
+            }
+            newFingerprints = Collections.unmodifiableList(newFingerprints);
+        }
+        return new TestHistory(
+                this.runs + 1,
+                this.passes + (outcome == TestcaseOutcome.PASSED ? 1 : 0),
+                this.failures + (outcome == TestcaseOutcome.FAILED ? 1 : 0),
+                this.flakes + (outcome == TestcaseOutcome.FLAKEY ? 1 : 0),
+                this.totalReruns + rerunCount,
+                this.runs == 0 ? flakeSample : smoothing * flakeSample + (1 - smoothing) * this.flakeRate,
+                Math.max(this.lastSeen, time),
+                newFingerprints);
+    }
+
+    void writeTo(final DataOutput out) throws IOException {
+        out.writeInt(this.runs);
+        out.writeInt(this.passes);
+        out.writeInt(this.failures);
+        out.writeInt(this.flakes);
+        out.writeLong(this.totalReruns);
+        out.writeDouble(this.flakeRate);
+        out.writeLong(this.lastSeen);
+        out.writeByte(this.fingerprints.size());
+        for (String fingerprint : this.fingerprints) {
+            out.writeUTF(fingerprint);
+        }
+    }
+
+    static TestHistory readFrom(final DataInput in) throws IOException {
+        final int runs = in.readInt();
+        final int passes = in.readInt();
+        final int failures = in.readInt();
+        final int flakes = in.readInt();
+        final long totalReruns = in.readLong();
+        final double flakeRate = in.readDouble();
+        final long lastSeen = in.readLong();
+        final int fingerprintCount = in.readUnsignedByte();
+        final List<String> fingerprints = new ArrayList<>(fingerprintCount);
+        for (int i = 0; i < fingerprintCount; i++) {
+            fingerprints.add(in.readUTF());
+        }
+        return new TestHistory(
+                runs, passes, failures, flakes, totalReruns, flakeRate, lastSeen,
+                Collections.unmodifiableList(fingerprints));
+    }
+}
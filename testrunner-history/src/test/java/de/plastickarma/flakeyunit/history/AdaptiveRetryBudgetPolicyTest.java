@@ -0,0 +1,77 @@
+package de.plastickarma.flakeyunit.history;
+
+import de.plastickarma.flakeyunit.FlakeyVerdict;
+import de.plastickarma.flakeyunit.FlakeyVerdictPolicy;
+import de.plastickarma.flakeyunit.TestcaseOutcome;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.Description;
+
+import java.util.Collections;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test cases for the history-driven retry budget.
+ */
+public class AdaptiveRetryBudgetPolicyTest {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test public void retriesDependOnHistoryWithoutThreshold() throws Exception {
+        try (FlakeyHistoryStore store = FlakeyHistoryStore.open(this.folder.getRoot().toPath().resolve("h.log"))) {
+            final Description unknown = description("unknown");
+            final Description broken = description("broken");
+            final Description flakey = description("flakey");
+            for (int i = 0; i < 10; i++) {
+                record(store, broken, TestcaseOutcome.FAILED);
+                record(store, flakey, TestcaseOutcome.FLAKEY);
+            }
+
+            final AdaptiveRetryBudgetPolicy policy = new AdaptiveRetryBudgetPolicy(store, 0.95, 0);
+            assertThat(policy.retries(unknown, 10), is(5));
+            assertThat(policy.retries(broken, 10), is(1));
+            assertThat(policy.retries(flakey, 10), is(8));
+            assertThat(policy.retries(flakey, 6), is(6));
+        }
+    }
+
+    @Test public void retriesAllowTheThresholdToBeExceeded() throws Exception {
+        try (FlakeyHistoryStore store = FlakeyHistoryStore.open(this.folder.getRoot().toPath().resolve("h.log"))) {
+            final Description unknown = description("unknown");
+            final Description broken = description("broken");
+            final Description flakey = description("flakey");
+            for (int i = 0; i < 10; i++) {
+                record(store, broken, TestcaseOutcome.FAILED);
+                record(store, flakey, TestcaseOutcome.FLAKEY);
+            }
+
+            // the default threshold 1 requires 2 passes, a budget of 1 could never detect a flakey test case
+            final AdaptiveRetryBudgetPolicy policy = new AdaptiveRetryBudgetPolicy(store, 0.95);
+            assertThat(policy.retries(unknown, 20), is(8));
+            assertThat(policy.retries(broken, 20), is(3));
+            assertThat(policy.retries(flakey, 20), is(12));
+            assertThat(policy.retries(flakey, 10), is(10));
+
+            final AdaptiveRetryBudgetPolicy verdictPolicy = new AdaptiveRetryBudgetPolicy(
+                    store, 0.95, new FlakeyVerdictPolicy() {
+                        @Override
+                        public FlakeyVerdict decide(final int passes, final int failures, final int remainingReruns) {
+                            return passes > 1 ? FlakeyVerdict.FLAKEY : FlakeyVerdict.NOT_FLAKEY;
+                        }
+                    });
+            assertThat(verdictPolicy.retries(broken, 20), is(3));
+        }
+    }
+
+    private static Description description(final String methodName) {
+        return Description.createTestDescription(AdaptiveRetryBudgetPolicyTest.class, methodName);
+    }
+
+    private static void record(final FlakeyHistoryStore store, final Description description,
+                               final TestcaseOutcome outcome) {
+        store.handleOutcome(description, outcome, new AssertionError(), 1, Collections.<Throwable>emptyList());
+    }
+}
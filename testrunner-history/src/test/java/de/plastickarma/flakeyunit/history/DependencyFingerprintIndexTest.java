@@ -0,0 +1,92 @@
+package de.plastickarma.flakeyunit.history;
+
+import de.plastickarma.flakeyunit.TestcaseOutcome;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.Description;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test cases for the change detection of the classes, that test cases depend on.
+ */
+public class DependencyFingerprintIndexTest {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test public void changedDependencyPreventsReruns() throws Exception {
+        final Path classes = this.folder.newFolder("classes").toPath();
+        copyClass(classes, Subject.class);
+        final Path dependency = copyClass(classes, Dependency.class);
+        final Path indexPath = this.folder.getRoot().toPath().resolve("dependencies.idx");
+        try (URLClassLoader loader = new URLClassLoader(new URL[] {classes.toUri().toURL()}, null)) {
+            final Description description =
+                    Description.createTestDescription(loader.loadClass(Subject.class.getName()), "test");
+            assertChangeIsDetected(indexPath, description, dependency);
+        }
+    }
+
+    private static void assertChangeIsDetected(
+            final Path indexPath,
+            final Description description,
+            final Path dependency) throws Exception {
+        try (DependencyFingerprintIndex index = DependencyFingerprintIndex.open(indexPath)) {
+            final ChangeAwareRetryBudgetPolicy policy = new ChangeAwareRetryBudgetPolicy(index);
+            assertThat(index.lookup(description), is(DependencyChange.UNKNOWN));
+            assertThat(policy.retries(description, 10), is(10));
+
+            index.handleOutcome(
+                    description, TestcaseOutcome.PASSED, null, 0, Collections.<Throwable>emptyList());
+            assertThat(index.lookup(description), is(DependencyChange.UNCHANGED));
+        }
+
+        try (DependencyFingerprintIndex index = DependencyFingerprintIndex.open(indexPath)) {
+            assertThat(index.lookup(description), is(DependencyChange.UNCHANGED));
+            assertThat(new ChangeAwareRetryBudgetPolicy(index).retries(description, 10), is(10));
+        }
+
+        Files.write(dependency, new byte[] {0}, StandardOpenOption.APPEND);
+        Files.setLastModifiedTime(
+                dependency, FileTime.fromMillis(Files.getLastModifiedTime(dependency).toMillis() + 1000));
+        try (DependencyFingerprintIndex index = DependencyFingerprintIndex.open(indexPath)) {
+            assertThat(index.lookup(description), is(DependencyChange.CHANGED));
+            assertThat(new ChangeAwareRetryBudgetPolicy(index).retries(description, 10), is(0));
+        }
+    }
+
+    private static Path copyClass(final Path classes, final Class<?> type) throws Exception {
+        final String name = type.getName().replace('.', '/') + ".class";
+        final Path target = classes.resolve(name);
+        Files.createDirectories(target.getParent());
+        try (InputStream in = DependencyFingerprintIndexTest.class.getClassLoader().getResourceAsStream(name)) {
+            Files.copy(in, target);
+        }
+        return target;
+    }
+
+    /**
+     * Test class, whose dependencies are tracked.
+     */
+    public static class Subject {
+        public Object dependency() {
+            return new Dependency();
+        }
+    }
+
+    /**
+     * Class, that the test class depends on.
+     */
+    public static class Dependency {
+    }
+}
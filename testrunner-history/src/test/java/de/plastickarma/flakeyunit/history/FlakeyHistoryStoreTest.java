@@ -0,0 +1,105 @@
+package de.plastickarma.flakeyunit.history;
+
+import de.plastickarma.flakeyunit.FlakeyTestIndicatorBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.TestRule;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static de.plastickarma.flakeyunit.UnittestHelper.createFlakeyTest;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test cases for the flakeyness history store.
+ */
+public class FlakeyHistoryStoreTest {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test public void historyIsRecordedAndReloaded() throws Throwable {
+        final Path log = this.folder.getRoot().toPath().resolve("history.log");
+        try (FlakeyHistoryStore store = FlakeyHistoryStore.open(log)) {
+            final TestRule indicator = FlakeyTestIndicatorBuilder.indicator()
+                    .rethrowOriginal(false)
+                    .outcomeListener(store)
+                    .build();
+            createFlakeyTest(indicator, FlakeyHistoryStoreTest.class, "flakey1").evaluate();
+            createFlakeyTest(indicator, FlakeyHistoryStoreTest.class, "flakey1").evaluate();
+
+            assertThat(store.lookup(FlakeyHistoryStoreTest.class.getName(), "flakey1").getFlakes(), is(2));
+        }
+
+        try (FlakeyHistoryStore store = FlakeyHistoryStore.open(log)) {
+            final TestHistory history = store.lookup(FlakeyHistoryStoreTest.class.getName(), "flakey1");
+            assertThat(history.getRuns(), is(2));
+            assertThat(history.getFlakes(), is(2));
+            assertThat(history.getTotalReruns(), is(6L));
+            assertThat(history.getFlakeRate(), is(1.0));
+            assertThat(history.getFingerprints().isEmpty(), is(false));
+            assertThat(store.lookup(FlakeyHistoryStoreTest.class.getName(), "unknown"), is(TestHistory.NONE));
+        }
+    }
+
+    @Test public void compactionKeepsHistory() throws Throwable {
+        final Path log = this.folder.getRoot().toPath().resolve("history.log");
+        try (FlakeyHistoryStore store = FlakeyHistoryStore.open(log, 0.5)) {
+            final TestRule indicator = FlakeyTestIndicatorBuilder.indicator()
+                    .rethrowOriginal(false)
+                    .outcomeListener(store)
+                    .build();
+            createFlakeyTest(indicator, FlakeyHistoryStoreTest.class, "flakey1").evaluate();
+            indicator.apply(new Statement() {
+                @Override
+                public void evaluate() {
+                }
+            }, Description.createTestDescription(FlakeyHistoryStoreTest.class, "flakey1")).evaluate();
+            store.compact();
+        }
+
+        try (FlakeyHistoryStore store = FlakeyHistoryStore.open(log, 0.5)) {
+            final TestHistory history = store.lookup(FlakeyHistoryStoreTest.class.getName(), "flakey1");
+            assertThat(history.getRuns(), is(2));
+            assertThat(history.getPasses(), is(1));
+            assertThat(history.getFlakes(), is(1));
+            assertThat(history.getFlakeRate(), is(0.5));
+        }
+    }
+
+    @Test public void incompleteRecordOfKilledWriterIsCutOff() throws Throwable {
+        final Path log = this.folder.getRoot().toPath().resolve("history.log");
+        try (FlakeyHistoryStore store = FlakeyHistoryStore.open(log)) {
+            createFlakeyTest(indicator(store), FlakeyHistoryStoreTest.class, "flakey1").evaluate();
+        }
+        appendIncompleteRecord(log);
+
+        try (FlakeyHistoryStore store = FlakeyHistoryStore.open(log)) {
+            assertThat(store.lookup(FlakeyHistoryStoreTest.class.getName(), "flakey1").getFlakes(), is(1));
+            // another writer is killed while this store is open
+            appendIncompleteRecord(log);
+            createFlakeyTest(indicator(store), FlakeyHistoryStoreTest.class, "flakey1").evaluate();
+        }
+
+        try (FlakeyHistoryStore store = FlakeyHistoryStore.open(log)) {
+            assertThat(store.lookup(FlakeyHistoryStoreTest.class.getName(), "flakey1").getFlakes(), is(2));
+        }
+    }
+
+    private static TestRule indicator(final FlakeyHistoryStore store) {
+        return FlakeyTestIndicatorBuilder.indicator()
+                .rethrowOriginal(false)
+                .outcomeListener(store)
+                .build();
+    }
+
+    private static void appendIncompleteRecord(final Path log) throws Exception {
+        // outcome record, whose key is cut off after its length
+        Files.write(log, new byte[] {'O', 0, 42, 'x'}, StandardOpenOption.APPEND);
+    }
+}
@@ -0,0 +1,23 @@
+package de.plastickarma.flakeyunit.jupiter;
+
+import org.junit.jupiter.api.TestTemplate;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a test method, whose reruns go through the whole Jupiter lifecycle: every run is an invocation of its
+ * own, with a new test instance, the <code>@BeforeEach</code> and <code>@AfterEach</code> methods and the
+ * callbacks of the extensions. Use it instead of <code>@Test</code> in a test class, that registers a
+ * {@link FlakeyTestExtension}. The failures of runs, that are rerun, are reported as aborted, the last
+ * invocation reports the verdict of the flakey test indicator.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@TestTemplate
+public @interface FlakeyTest {
+}
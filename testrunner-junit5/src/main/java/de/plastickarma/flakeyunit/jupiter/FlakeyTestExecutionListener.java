@@ -0,0 +1,50 @@
+package de.plastickarma.flakeyunit.jupiter;
+
+import de.plastickarma.flakeyunit.AsyncFlakeyTestcaseListener;
+import de.plastickarma.flakeyunit.DeferredReruns;
+import de.plastickarma.flakeyunit.RerunMetrics;
+import org.junit.platform.launcher.TestExecutionListener;
+import org.junit.platform.launcher.TestPlan;
+
+/**
+ * JUnit Platform listener, that runs the {@link DeferredReruns#shared() shared deferred reruns}, flushes the
+ * {@link AsyncFlakeyTestcaseListener asynchronous listeners} and exports the
+ * {@link RerunMetrics#shared() shared rerun metrics}, when the test plan is finished. It is the JUnit Platform
+ * counterpart of {@link de.plastickarma.flakeyunit.DeferredRerunListener} and
+ * {@link de.plastickarma.flakeyunit.MetricsExportListener}, and is registered automatically by the launcher.
+ */
+public final class FlakeyTestExecutionListener implements TestExecutionListener {
+
+    private final DeferredReruns reruns;
+    private final RerunMetrics metrics;
+
+    /**
+     * Creates a FlakeyTestExecutionListener for the shared deferred reruns and metrics.
+     */
+    public FlakeyTestExecutionListener() {
+        this(DeferredReruns.shared(), RerunMetrics.shared());
+    }
+
+    /**
+     * Creates a FlakeyTestExecutionListener.
+     * @param reruns the deferred reruns to run.
+     * @param metrics the metrics to export.
+     */
+    public FlakeyTestExecutionListener(final DeferredReruns reruns, final RerunMetrics metrics) {
+        this.reruns = reruns;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void testPlanExecutionFinished(final TestPlan testPlan) {
+        try {
+            this.reruns.runAll();
+        } finally {
+            try {
+                AsyncFlakeyTestcaseListener.flushAll();
+            } finally {
+                this.metrics.export();
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package de.plastickarma.flakeyunit.jupiter;
+
+import de.plastickarma.flakeyunit.FlakeyTestIndicatorBuilder;
+import de.plastickarma.flakeyunit.RerunScope;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.InvocationInterceptor;
+import org.junit.jupiter.api.extension.ReflectiveInvocationContext;
+import org.junit.jupiter.api.extension.TestTemplateInvocationContext;
+import org.junit.jupiter.api.extension.TestTemplateInvocationContextProvider;
+import org.junit.rules.TestRule;
+import org.junit.runner.Description;
+
+import java.lang.reflect.Method;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Jupiter extension, that detects potentially flakey test cases, so that the same verdict policies and
+ * {@link de.plastickarma.flakeyunit.FlakeyTestcaseListener}s as with JUnit 4 are used. Register it with
+ * <code>@RegisterExtension</code> and annotate the test methods with {@link FlakeyTest}:
+ * <pre>
+ * &#064;RegisterExtension
+ * static FlakeyTestExtension flakey = new FlakeyTestExtension(
+ *         FlakeyTestIndicatorBuilder.indicator().listener(listener));
+ *
+ * &#064;FlakeyTest
+ * void connects() { ... }
+ * </pre>
+ * <p>
+ * Every run of a <code>@FlakeyTest</code> method is an invocation of its own, with a new test instance, the
+ * <code>@BeforeEach</code> and <code>@AfterEach</code> methods and the callbacks of the other extensions.
+ * Deferred reruns are not supported for them.
+ * </p>
+ * <p>
+ * <code>@Test</code> methods and the invocations of other test templates, e.g. <code>@ParameterizedTest</code>
+ * methods, can only be rerun within their invocation: a rerun invokes the test method again on the same test
+ * instance, the <code>@BeforeEach</code> and <code>@AfterEach</code> methods are not run again. They are rerun
+ * only, if the indicator opts in with {@link FlakeyTestIndicatorBuilder#rerunScope(RerunScope)
+ * RerunScope.METHOD} or {@link RerunScope#CLASS}. With Jupiter's parallel execution, these reruns and the waits
+ * between them take part in the ForkJoinPool of the platform, instead of blocking one of its workers, unless
+ * the indicator is given an {@link FlakeyTestIndicatorBuilder#executor(java.util.concurrent.ExecutorService)
+ * executor}.
+ * </p>
+ */
+public final class FlakeyTestExtension implements InvocationInterceptor, TestTemplateInvocationContextProvider {
+
+    private final TestRule indicator;
+    private final boolean methodReruns;
+
+    /**
+     * Creates a FlakeyTestExtension with the default settings of the flakey test indicator.
+     */
+    public FlakeyTestExtension() {
+        this(FlakeyTestIndicatorBuilder.indicator());
+    }
+
+    /**
+     * Creates a FlakeyTestExtension.
+     * @param builder the settings of the flakey test indicator.
+     */
+    public FlakeyTestExtension(final FlakeyTestIndicatorBuilder builder) {
+        this.indicator = builder.build();
+        this.methodReruns = builder.getRerunScope() != RerunScope.STATEMENT;
+    }
+
+    @Override
+    public boolean supportsTestTemplate(final ExtensionContext context) {
+        return context.getRequiredTestMethod().isAnnotationPresent(FlakeyTest.class);
+    }
+
+    @Override
+    public Stream<TestTemplateInvocationContext> provideTestTemplateInvocationContexts(
+            final ExtensionContext context) {
+        final Method method = context.getRequiredTestMethod();
+        final TemplateRuns runs = TemplateRuns.start(
+                this.indicator,
+                Description.createTestDescription(
+                        context.getRequiredTestClass(), method.getName(), method.getAnnotations()));
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(runs, Spliterator.ORDERED), false);
+    }
+
+    @Override
+    public void interceptTestMethod(
+            final Invocation<Void> invocation,
+            final ReflectiveInvocationContext<Method> invocationContext,
+            final ExtensionContext extensionContext) throws Throwable {
+        if (!this.methodReruns) {
+            invocation.proceed();
+            return;
+        }
+        evaluate(invocation, invocationContext, invocationContext.getExecutable().getName());
+    }
+
+    @Override
+    public void interceptTestTemplateMethod(
+            final Invocation<Void> invocation,
+            final ReflectiveInvocationContext<Method> invocationContext,
+            final ExtensionContext extensionContext) throws Throwable {
+        // the runs of a @FlakeyTest method are invocations of the template already
+        if (!this.methodReruns || invocationContext.getExecutable().isAnnotationPresent(FlakeyTest.class)) {
+            invocation.proceed();
+            return;
+        }
+        // the invocations of a template are different test cases, e.g. one per set of parameters
+        evaluate(
+                invocation,
+                invocationContext,
+                invocationContext.getExecutable().getName() + '[' + extensionContext.getDisplayName() + ']');
+    }
+
+    private void evaluate(
+            final Invocation<Void> invocation,
+            final ReflectiveInvocationContext<Method> invocationContext,
+            final String name) throws Throwable {
+        final Method method = invocationContext.getExecutable();
+        final Description description = Description.createTestDescription(
+                invocationContext.getTargetClass(), name, method.getAnnotations());
+        final JupiterInvocationStatement statement = new JupiterInvocationStatement(invocation, invocationContext);
+        try {
+            this.indicator.apply(statement, description).evaluate();
+        } finally {
+            statement.complete();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package de.plastickarma.flakeyunit.jupiter;
+
+import org.junit.jupiter.api.extension.InvocationInterceptor;
+import org.junit.jupiter.api.extension.ReflectiveInvocationContext;
+import org.junit.runners.model.Statement;
+import org.opentest4j.TestAbortedException;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Statement for a Jupiter test method, so that the flakey test indicator can evaluate it. The first evaluation
+ * proceeds the intercepted invocation, reruns invoke the test method again on the same test instance with the
+ * same arguments, without the <code>@BeforeEach</code> and <code>@AfterEach</code> methods.
+ */
+final class JupiterInvocationStatement extends Statement {
+
+    private final InvocationInterceptor.Invocation<Void> invocation;
+    private final ReflectiveInvocationContext<Method> invocationContext;
+    private final AtomicBoolean proceeded = new AtomicBoolean();
+    private volatile TestAbortedException aborted;
+
+    JupiterInvocationStatement(
+            final InvocationInterceptor.Invocation<Void> invocation,
+            final ReflectiveInvocationContext<Method> invocationContext) {
+        this.invocation = invocation;
+        this.invocationContext = invocationContext;
+    }
+
+    @Override
+    public void evaluate() throws Throwable {
+        if (this.proceeded.compareAndSet(false, true)) {
+            try {
+                this.invocation.proceed();
+            } catch (TestAbortedException e) {
+                // a failed assumption is no failure, so it must not be rerun
+                this.aborted = e;
+            }
+            return;
+        }
+        final Method method = this.invocationContext.getExecutable();
+        method.setAccessible(true);
+        try {
+            method.invoke(
+                    this.invocationContext.getTarget().orElse(null),
+                    this.invocationContext.getArguments().toArray());
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Completes the intercepted invocation: skips it, if it was not proceeded, e.g. because the test case is in
+     * quarantine, and rethrows a failed assumption of the first evaluation.
+     */
+    void complete() {
+        if (this.proceeded.compareAndSet(false, true)) {
+            this.invocation.skip();
+        }
+        if (this.aborted != null) {
+            throw this.aborted;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package de.plastickarma.flakeyunit.jupiter;
+
+import org.junit.internal.AssumptionViolatedException;
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.Extension;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.InvocationInterceptor;
+import org.junit.jupiter.api.extension.LifecycleMethodExecutionExceptionHandler;
+import org.junit.jupiter.api.extension.ReflectiveInvocationContext;
+import org.junit.jupiter.api.extension.TestExecutionExceptionHandler;
+import org.junit.jupiter.api.extension.TestTemplateInvocationContext;
+import org.junit.rules.TestRule;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+import org.opentest4j.TestAbortedException;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The runs of a {@link FlakeyTest} method. The flakey test indicator runs on a thread of its own and evaluates
+ * this Statement for the initial run and for every rerun. Every evaluation is handed to Jupiter as the next
+ * invocation of the test template and waits for its outcome, so that every run goes through the whole
+ * lifecycle. The invocation, that completes when the indicator is finished, reports its verdict.
+ */
+final class TemplateRuns extends Statement implements Iterator<TestTemplateInvocationContext> {
+
+    private final Description description;
+    private final Deque<Attempt> requested = new ArrayDeque<>();
+    private int invocations;
+    private boolean finished;
+    private boolean verdictReported;
+    private Throwable verdict;
+
+    private TemplateRuns(final Description description) {
+        this.description = description;
+    }
+
+    /**
+     * Starts the flakey test indicator for a test template on a thread of its own.
+     * @param indicator the flakey test indicator.
+     * @param description the description of the test template.
+     * @return the runs, that are handed to Jupiter as the invocations of the template.
+     */
+    static TemplateRuns start(final TestRule indicator, final Description description) {
+        final TemplateRuns runs = new TemplateRuns(description);
+        final Statement statement = indicator.apply(runs, description);
+        final Thread driver = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runs.drive(statement);
+            }
+        }, "flakey-runs-" + description.getMethodName());
+        driver.setDaemon(true);
+        driver.start();
+        return runs;
+    }
+
+    private void drive(final Statement statement) {
+        Throwable failure = null;
+        try {
+            statement.evaluate();
+        } catch (Throwable t) {
+            failure = t;
+        }
+        synchronized (this) {
+            this.verdict = failure;
+            this.finished = true;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Requests the next invocation of the template from Jupiter and waits for its outcome.
+     */
+    @Override
+    public void evaluate() throws Throwable {
+        final Attempt attempt = new Attempt();
+        synchronized (this) {
+            if (this.verdictReported) {
+                throw new IllegalStateException(
+                        "the invocations of " + this.description.getDisplayName() + " are finished already");
+            }
+            this.requested.addLast(attempt);
+            notifyAll();
+            try {
+                while (!attempt.completed) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                // e.g. a cancelled parallel rerun: it is not invoked anymore, if it has not started yet
+                this.requested.remove(attempt);
+                throw e;
+            }
+        }
+        if (attempt.failure != null) {
+            throw attempt.failure;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        awaitNextMove();
+        synchronized (this) {
+            return !this.requested.isEmpty() || !this.verdictReported;
+        }
+    }
+
+    @Override
+    public synchronized TestTemplateInvocationContext next() {
+        final Attempt attempt = this.requested.pollFirst();
+        if (attempt != null) {
+            return new Run(this, attempt, ++this.invocations);
+        }
+        if (!this.finished || this.verdictReported) {
+            throw new NoSuchElementException();
+        }
+        // no run is left to report the verdict, e.g. as the test case is quarantined
+        this.verdictReported = true;
+        return new Run(this, null, ++this.invocations);
+    }
+
+    /**
+     * Passes the outcome of a run to the indicator and waits, until it either requests another run or is
+     * finished.
+     * @return the failure, that the invocation of the run ends with, <code>null</code> if it passes.
+     */
+    private Throwable complete(final Attempt attempt, final Throwable failure) {
+        synchronized (this) {
+            attempt.failure = failure;
+            attempt.completed = true;
+            notifyAll();
+        }
+        awaitNextMove();
+        synchronized (this) {
+            if (!this.requested.isEmpty() || this.verdictReported) {
+                return failure == null ? null : new TestAbortedException("failed, but is rerun", failure);
+            }
+            this.verdictReported = true;
+            return jupiterVerdict(this.verdict);
+        }
+    }
+
+    private synchronized Throwable reportVerdict() {
+        return jupiterVerdict(this.verdict);
+    }
+
+    private static Throwable jupiterVerdict(final Throwable verdict) {
+        if (verdict instanceof AssumptionViolatedException) {
+            // e.g. a skipped quarantined test case
+            return new TestAbortedException(verdict.getMessage(), verdict);
+        }
+        return verdict;
+    }
+
+    /**
+     * Waits, until the indicator either requests another run or is finished. The wait is a managed block, so
+     * that it does not starve the ForkJoinPool of Jupiter's parallel execution.
+     */
+    private void awaitNextMove() {
+        try {
+            ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                @Override
+                public boolean block() throws InterruptedException {
+                    synchronized (TemplateRuns.this) {
+                        while (!isNextMoveKnown()) {
+                            TemplateRuns.this.wait();
+                        }
+                    }
+                    return true;
+                }
+
+                @Override
+                public boolean isReleasable() {
+                    synchronized (TemplateRuns.this) {
+                        return isNextMoveKnown();
+                    }
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(
+                    "interrupted while waiting for the next run of " + this.description.getDisplayName(), e);
+        }
+    }
+
+    private boolean isNextMoveKnown() {
+        return !this.requested.isEmpty() || this.finished;
+    }
+
+    /**
+     * A run, that the indicator waits for.
+     */
+    private static final class Attempt {
+        private boolean completed;
+        private Throwable failure;
+    }
+
+    /**
+     * Invocation of the template for a run. It collects the failures of the run, so that a run, that is
+     * rerun, is reported as aborted instead of failed. Failed assumptions are no failures and are reported as
+     * they are.
+     */
+    private static final class Run implements TestTemplateInvocationContext, TestExecutionExceptionHandler,
+            LifecycleMethodExecutionExceptionHandler, InvocationInterceptor, AfterEachCallback {
+
+        private final TemplateRuns runs;
+        private final Attempt attempt;
+        private final int number;
+        private Throwable failure;
+        private TestAbortedException skippedTest;
+
+        private Run(final TemplateRuns runs, final Attempt attempt, final int number) {
+            this.runs = runs;
+            this.attempt = attempt;
+            this.number = number;
+        }
+
+        @Override
+        public String getDisplayName(final int invocationIndex) {
+            return this.attempt == null ? "verdict" : "run " + this.number;
+        }
+
+        @Override
+        public List<Extension> getAdditionalExtensions() {
+            return Collections.<Extension>singletonList(this);
+        }
+
+        @Override
+        public void interceptTestTemplateMethod(
+                final Invocation<Void> invocation,
+                final ReflectiveInvocationContext<Method> invocationContext,
+                final ExtensionContext extensionContext) throws Throwable {
+            if (this.attempt == null) {
+                invocation.skip();
+            } else {
+                invocation.proceed();
+            }
+        }
+
+        @Override
+        public void handleTestExecutionException(final ExtensionContext context, final Throwable throwable)
+                throws Throwable {
+            collect(throwable);
+        }
+
+        @Override
+        public void handleBeforeEachMethodExecutionException(
+                final ExtensionContext context, final Throwable throwable) throws Throwable {
+            collect(throwable);
+            // the test method must not run after a failed @BeforeEach method
+            this.skippedTest = new TestAbortedException("@BeforeEach method failed", throwable);
+            throw this.skippedTest;
+        }
+
+        @Override
+        public void handleAfterEachMethodExecutionException(
+                final ExtensionContext context, final Throwable throwable) throws Throwable {
+            collect(throwable);
+        }
+
+        private void collect(final Throwable throwable) throws Throwable {
+            if (this.attempt == null || throwable instanceof TestAbortedException) {
+                throw throwable;
+            }
+            record(throwable);
+        }
+
+        private void record(final Throwable throwable) {
+            if (this.failure == null) {
+                this.failure = throwable;
+            } else if (this.failure != throwable) {
+                this.failure.addSuppressed(throwable);
+            }
+        }
+
+        @Override
+        public void afterEach(final ExtensionContext context) throws Exception {
+            final Throwable end;
+            if (this.attempt == null) {
+                end = this.runs.reportVerdict();
+            } else {
+                final Throwable unhandled = context.getExecutionException().orElse(null);
+                if (unhandled != null && unhandled != this.skippedTest
+                        && !(unhandled instanceof TestAbortedException)) {
+                    // e.g. of a callback of another extension, it cannot be turned into an abort anymore
+                    record(unhandled);
+                }
+                end = this.runs.complete(this.attempt, this.failure);
+            }
+            if (end instanceof Exception) {
+                throw (Exception) end;
+            }
+            if (end instanceof Error) {
+                throw (Error) end;
+            }
+            if (end != null) {
+                throw new IllegalStateException(end);
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package de.plastickarma.flakeyunit.jupiter;
+
+import de.plastickarma.flakeyunit.CountingFlakeyTestcaseListener;
+import de.plastickarma.flakeyunit.FlakeyTestIndicatorBuilder;
+import de.plastickarma.flakeyunit.RerunScope;
+import org.junit.Test;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.platform.launcher.Launcher;
+import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
+import org.junit.platform.launcher.core.LauncherFactory;
+import org.junit.platform.launcher.listeners.SummaryGeneratingListener;
+import org.junit.platform.launcher.listeners.TestExecutionSummary;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectClass;
+
+/**
+ * Test cases for the detection of flakey Jupiter test cases.
+ */
+public class FlakeyTestExtensionTest {
+
+    @Test public void flakeyJupiterTestIsDetected() {
+        final TestExecutionSummary result = execute(FlakeyJupiterTests.class);
+
+        assertThat(result.getTestsStartedCount(), is(2L));
+        assertThat(result.getTestsSucceededCount(), is(2L));
+        assertThat(FlakeyJupiterTests.LISTENER.getFlakeyTests(), is(Arrays.asList("flakey")));
+        // the reruns invoke the test method only, without the @BeforeEach methods
+        assertThat(FlakeyJupiterTests.BEFORE_EACH.get(), is(2));
+    }
+
+    @Test public void flakeyTestIsRerunThroughTheLifecycle() {
+        final TestExecutionSummary result = execute(LifecycleJupiterTests.class);
+
+        // flakey: aborted, passed, passed. failing: aborted, aborted, failed. plain: failed, as it is not rerun
+        assertThat(result.getTestsStartedCount(), is(7L));
+        assertThat(result.getTestsSucceededCount(), is(2L));
+        assertThat(result.getTestsAbortedCount(), is(3L));
+        assertThat(result.getTestsFailedCount(), is(2L));
+        assertThat(LifecycleJupiterTests.LISTENER.getFlakeyTests(), is(Arrays.asList("flakey")));
+        // every run has a test instance, @BeforeEach and @AfterEach methods and extension callbacks of its own
+        assertThat(LifecycleJupiterTests.INSTANCES.get(), is(7));
+        assertThat(LifecycleJupiterTests.BEFORE_EACH.get(), is(7));
+        assertThat(LifecycleJupiterTests.AFTER_EACH.get(), is(7));
+        assertThat(CountingCallback.CALLBACKS.get(), is(7));
+    }
+
+    private static TestExecutionSummary execute(final Class<?> testClass) {
+        final Launcher launcher = LauncherFactory.create();
+        final SummaryGeneratingListener summary = new SummaryGeneratingListener();
+        launcher.execute(
+                LauncherDiscoveryRequestBuilder.request().selectors(selectClass(testClass)).build(),
+                summary);
+        return summary.getSummary();
+    }
+
+    /**
+     * Jupiter test cases, whose reruns invoke the test method only, that are run by the launcher.
+     */
+    static class FlakeyJupiterTests {
+
+        static final CountingFlakeyTestcaseListener LISTENER = new CountingFlakeyTestcaseListener();
+        static final AtomicInteger BEFORE_EACH = new AtomicInteger();
+        private static final AtomicInteger INVOCATIONS = new AtomicInteger();
+
+        @RegisterExtension
+        static FlakeyTestExtension flakey = new FlakeyTestExtension(FlakeyTestIndicatorBuilder.indicator()
+                .rerunScope(RerunScope.METHOD)
+                .rethrowOriginal(false)
+                .listener(LISTENER));
+
+        @org.junit.jupiter.api.BeforeEach
+        void beforeEach() {
+            BEFORE_EACH.incrementAndGet();
+        }
+
+        @org.junit.jupiter.api.Test
+        void flakey() {
+            if (INVOCATIONS.getAndIncrement() % 2 == 0) {
+                throw new AssertionError("flakey");
+            }
+        }
+
+        @org.junit.jupiter.api.Test
+        void passing() {
+        }
+    }
+
+    /**
+     * Jupiter test cases, whose reruns go through the whole lifecycle, that are run by the launcher.
+     */
+    @ExtendWith(CountingCallback.class)
+    static class LifecycleJupiterTests {
+
+        static final CountingFlakeyTestcaseListener LISTENER = new CountingFlakeyTestcaseListener();
+        static final AtomicInteger INSTANCES = new AtomicInteger();
+        static final AtomicInteger BEFORE_EACH = new AtomicInteger();
+        static final AtomicInteger AFTER_EACH = new AtomicInteger();
+        private static final AtomicInteger INVOCATIONS = new AtomicInteger();
+
+        @RegisterExtension
+        static FlakeyTestExtension flakey = new FlakeyTestExtension(FlakeyTestIndicatorBuilder.indicator()
+                .retries(3)
+                .rethrowOriginal(false)
+                .listener(LISTENER));
+
+        private boolean setUp;
+
+        LifecycleJupiterTests() {
+            INSTANCES.incrementAndGet();
+        }
+
+        @org.junit.jupiter.api.BeforeEach
+        void beforeEach() {
+            BEFORE_EACH.incrementAndGet();
+            this.setUp = true;
+        }
+
+        @org.junit.jupiter.api.AfterEach
+        void afterEach() {
+            AFTER_EACH.incrementAndGet();
+        }
+
+        @FlakeyTest
+        void flakey() {
+            if (!this.setUp || INVOCATIONS.getAndIncrement() == 0) {
+                throw new AssertionError("flakey");
+            }
+        }
+
+        @FlakeyTest
+        void failing() {
+            throw new AssertionError("failing");
+        }
+
+        @org.junit.jupiter.api.Test
+        void plainFlakey() {
+            throw new AssertionError("not rerun without RerunScope.METHOD");
+        }
+    }
+
+    /**
+     * Extension, that counts its callbacks.
+     */
+    static class CountingCallback implements BeforeEachCallback {
+
+        static final AtomicInteger CALLBACKS = new AtomicInteger();
+
+        @Override
+        public void beforeEach(final ExtensionContext context) {
+            CALLBACKS.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package de.plastickarma.flakeyunit;
+
+import org.junit.runner.Description;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link de.plastickarma.flakeyunit.FlakeyTestcaseListener}, that passes potentially flakey test cases to other
+ * listeners on a background thread, so that slow listeners do not delay the test run. Events are queued in a
+ * bounded queue and delivered in batches. Listeners implementing
+ * {@link de.plastickarma.flakeyunit.FlakeyTestcaseBatchListener} receive a whole batch at once.
+ * Pending events are flushed with {@link #flush()}, by the {@link de.plastickarma.flakeyunit.DeferredRerunListener}
+ * at the end of the test run via {@link #flushAll()}, and as last resort at JVM shutdown.
+ */
+public final class AsyncFlakeyTestcaseListener implements FlakeyTestcaseListener {
+
+    /**
+     * Behaviour of the listener, if its queue is full.
+     */
+    public enum OverflowPolicy {
+
+        /**
+         * Blocks the test thread until there is space in the queue.
+         */
+        BLOCK,
+
+        /**
+         * Drops the event.
+         */
+        DROP,
+
+        /**
+         * Keeps only the latest event per test case until there is space in the queue. If as many test cases
+         * are waiting as the queue holds, the test thread is blocked like with {@link #BLOCK}.
+         */
+        COALESCE
+    }
+
+    private static final int MAX_BATCH_SIZE = 64;
+    private static final long IDLE_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SHUTDOWN_FLUSH_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private static final Set<AsyncFlakeyTestcaseListener> PENDING_AT_SHUTDOWN =
+            Collections.newSetFromMap(new WeakHashMap<AsyncFlakeyTestcaseListener, Boolean>());
+    private static final AtomicBoolean SHUTDOWN_HOOK_REGISTERED = new AtomicBoolean();
+
+    private final List<FlakeyTestcaseListener> listeners;
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+
+    private final ConcurrentLinkedQueue<FlakeyEvent> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queueSize = new AtomicInteger();
+    // guarded by itself, holds at most capacity events
+    private final Map<String, FlakeyEvent> coalesced = new LinkedHashMap<>();
+    private final AtomicInteger coalescedSize = new AtomicInteger();
+    private final AtomicReference<Throwable> listenerFailure = new AtomicReference<>();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile Thread drainThread;
+
+    /**
+     * Creates an AsyncFlakeyTestcaseListener.
+     * @param capacity maximum number of queued events.
+     * @param overflowPolicy behaviour, if the queue is full.
+     * @param listeners listeners, that the events are passed to.
+     */
+    public AsyncFlakeyTestcaseListener(
+            final int capacity,
+            final OverflowPolicy overflowPolicy,
+            final List<FlakeyTestcaseListener> listeners) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1, but was " + capacity);
+        }
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.listeners = new ArrayList<>(listeners);
+    }
+
+    /**
+     * Queues the potentially flakey test case for the background thread.
+     * @param description The description of the testcase as provided by junit.
+     * @param originalException The exception that was the initial test case failure.
+     * @param rerunCount The number of times, which the failed test case was repeated.
+     * @param rerunExceptions The exceptions, that occurred, during the rerun of the test case.
+     */
+    @Override
+    public void handlePotentialFlakeyness(
+            final Description description,
+            final Throwable originalException,
+            final int rerunCount,
+            final List<Throwable> rerunExceptions) {
+        registerForShutdownFlush();
+        enqueue(new FlakeyEvent(description, originalException, rerunCount, rerunExceptions));
+        startDraining();
+    }
+
+    /**
+     * Blocks until all events, that were queued before, are passed to the listeners.
+     * @throws RuntimeException if a listener failed since the last flush. The other listeners got the events
+     *                          nevertheless. An {@link Error} of a listener is rethrown as it is.
+     */
+    public void flush() {
+        flush(Long.MAX_VALUE);
+    }
+
+    /**
+     * Flushes all AsyncFlakeyTestcaseListeners, that received events. Called at the end of the test run by the
+     * {@link de.plastickarma.flakeyunit.DeferredRerunListener}, so that the events are delivered before the
+     * build collects the reports.
+     * @throws RuntimeException if a listener failed. All AsyncFlakeyTestcaseListeners are flushed nevertheless.
+     */
+    public static void flushAll() {
+        flushAll(Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns the number of events, that were dropped because the queue was full.
+     */
+    public long getDroppedCount() {
+        return this.dropped.get();
+    }
+
+    private void enqueue(final FlakeyEvent event) {
+        while (this.queueSize.incrementAndGet() > this.capacity) {
+            this.queueSize.decrementAndGet();
+            switch (this.overflowPolicy) {
+                case DROP:
+                    this.dropped.incrementAndGet();
+                    return;
+                case COALESCE:
+                    if (coalesce(event)) {
+                        return;
+                    }
+                    startDraining();
+                    LockSupport.parkNanos(PARK_NANOS);
+                    break;
+                default:
+                    startDraining();
+                    LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+        this.accepted.incrementAndGet();
+        this.queue.offer(event);
+    }
+
+    /**
+     * Replaces the waiting event of the same test case, or adds the event, if fewer than capacity test cases are
+     * waiting.
+     * @return false, if the event was not accepted.
+     */
+    private boolean coalesce(final FlakeyEvent event) {
+        synchronized (this.coalesced) {
+            final String key = keyOf(event);
+            if (this.coalesced.size() >= this.capacity && !this.coalesced.containsKey(key)) {
+                return false;
+            }
+            this.accepted.incrementAndGet();
+            if (this.coalesced.put(key, event) == null) {
+                this.coalescedSize.incrementAndGet();
+            } else {
+                this.completed.incrementAndGet();
+            }
+            return true;
+        }
+    }
+
+    private void flush(final long timeoutMillis) {
+        final long target = this.accepted.get();
+        final long deadline = timeoutMillis == Long.MAX_VALUE
+                ? Long.MAX_VALUE
+                : System.currentTimeMillis() + timeoutMillis;
+        while (this.completed.get() < target && System.currentTimeMillis() < deadline) {
+            startDraining();
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        final Throwable failure = this.listenerFailure.getAndSet(null);
+        if (failure != null) {
+            throw rethrow(failure);
+        }
+    }
+
+    private static void flushAll(final long timeoutMillis) {
+        final List<AsyncFlakeyTestcaseListener> pending;
+        synchronized (PENDING_AT_SHUTDOWN) {
+            pending = new ArrayList<>(PENDING_AT_SHUTDOWN);
+        }
+        Throwable failure = null;
+        for (AsyncFlakeyTestcaseListener listener : pending) {
+            try {
+                listener.flush(timeoutMillis);
+            } catch (RuntimeException | Error e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw rethrow(failure);
+        }
+    }
+
+    private static RuntimeException rethrow(final Throwable failure) {
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            return (RuntimeException) failure;
+        }
+        return new RuntimeException(failure);
+    }
+
+    private void startDraining() {
+        if (this.draining.compareAndSet(false, true)) {
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    drain();
+                }
+            }, "flakey-listener-dispatch");
+            thread.setDaemon(true);
+            this.drainThread = thread;
+            thread.start();
+        } else {
+            final Thread thread = this.drainThread;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+
+    /**
+     * Delivers batches until the listener has been idle for a while. A new thread is started with the
+     * next event, so that idle listeners do not keep threads around.
+     */
+    private void drain() {
+        final List<FlakeyEvent> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        long idleSince = System.nanoTime();
+        boolean idle = false;
+        try {
+            while (!idle) {
+                pollBatch(batch);
+                if (!batch.isEmpty()) {
+                    deliver(batch);
+                    this.completed.addAndGet(batch.size());
+                    batch.clear();
+                    idleSince = System.nanoTime();
+                } else if (System.nanoTime() - idleSince < IDLE_NANOS) {
+                    LockSupport.parkNanos(PARK_NANOS);
+                } else {
+                    this.draining.set(false);
+                    // an event may have been queued after the last poll but before draining was reset
+                    idle = (this.queue.isEmpty() && this.coalescedSize.get() == 0)
+                            || !this.draining.compareAndSet(false, true);
+                }
+            }
+        } finally {
+            if (!idle) {
+                // the thread died, so the next event or flush must start a new one
+                this.draining.set(false);
+            }
+        }
+    }
+
+    private void pollBatch(final List<FlakeyEvent> batch) {
+        FlakeyEvent event;
+        while (batch.size() < MAX_BATCH_SIZE && (event = this.queue.poll()) != null) {
+            this.queueSize.decrementAndGet();
+            batch.add(event);
+        }
+        if (batch.size() < MAX_BATCH_SIZE && this.coalescedSize.get() > 0) {
+            synchronized (this.coalesced) {
+                final Iterator<FlakeyEvent> overflow = this.coalesced.values().iterator();
+                while (batch.size() < MAX_BATCH_SIZE && overflow.hasNext()) {
+                    batch.add(overflow.next());
+                    overflow.remove();
+                    this.coalescedSize.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    private void deliver(final List<FlakeyEvent> batch) {
+        final List<FlakeyEvent> events = Collections.unmodifiableList(batch);
+        for (FlakeyTestcaseListener listener : this.listeners) {
+            try {
+                if (listener instanceof FlakeyTestcaseBatchListener) {
+                    ((FlakeyTestcaseBatchListener) listener).handleBatch(events);
+                } else {
+                    for (FlakeyEvent event : events) {
+                        event.dispatchTo(listener);
+                    }
+                }
+            } catch (Throwable t) {
+                // there is no test to fail anymore, so the failure is rethrown by the next flush and must not
+                // stop the other listeners or the dispatch thread
+                this.listenerFailure.compareAndSet(null, t);
+            }
+        }
+    }
+
+    private void registerForShutdownFlush() {
+        synchronized (PENDING_AT_SHUTDOWN) {
+            PENDING_AT_SHUTDOWN.add(this);
+        }
+        if (SHUTDOWN_HOOK_REGISTERED.compareAndSet(false, true)) {
+            Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    flushAll(SHUTDOWN_FLUSH_MILLIS);
+                }
+            }, "flakey-listener-shutdown-flush"));
+        }
+    }
+
+    private static String keyOf(final FlakeyEvent event) {
+        return event.getDescription().getClassName() + '#' + event.getDescription().getMethodName();
+    }
+}
@@ -0,0 +1,82 @@
+package de.plastickarma.flakeyunit;
+
+/**
+ * Rerun costs of the test cases of a single test class, as reported by
+ * {@link RerunMetricsSnapshot#getClasses()}. Instances are immutable.
+ */
+public final class ClassRerunMetrics {
+
+    private final String className;
+    private final long tests;
+    private final long initialRunNanos;
+    private final long rerunTests;
+    private final long reruns;
+    private final long rerunNanos;
+    private final long flakes;
+
+    ClassRerunMetrics(
+            final String className,
+            final long tests,
+            final long initialRunNanos,
+            final long rerunTests,
+            final long reruns,
+            final long rerunNanos,
+            final long flakes) {
+        this.className = className;
+        this.tests = tests;
+        this.initialRunNanos = initialRunNanos;
+        this.rerunTests = rerunTests;
+        this.reruns = reruns;
+        this.rerunNanos = rerunNanos;
+        this.flakes = flakes;
+    }
+
+    /**
+     * Returns the name of the test class.
+     */
+    public String getClassName() {
+        return this.className;
+    }
+
+    /**
+     * Returns the number of initial test case runs.
+     */
+    public long getTests() {
+        return this.tests;
+    }
+
+    /**
+     * Returns the wall-clock time of all initial test case runs in nanoseconds.
+     */
+    public long getInitialRunNanos() {
+        return this.initialRunNanos;
+    }
+
+    /**
+     * Returns the number of failed test cases, that were rerun.
+     */
+    public long getRerunTests() {
+        return this.rerunTests;
+    }
+
+    /**
+     * Returns the number of reruns.
+     */
+    public long getReruns() {
+        return this.reruns;
+    }
+
+    /**
+     * Returns the wall-clock time spent on reruns in nanoseconds, including the waiting times between them.
+     */
+    public long getRerunNanos() {
+        return this.rerunNanos;
+    }
+
+    /**
+     * Returns how often a test case of the class was considered flakey.
+     */
+    public long getFlakes() {
+        return this.flakes;
+    }
+}
@@ -3,15 +3,23 @@ package de.plastickarma.flakeyunit;
 import org.junit.runner.Description;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
- * Helper class to count flakey testcases.
+ * Helper class to count flakey testcases. It keeps counters per test case, that are updated without locks, so
+ * that it can be shared by test cases running in parallel, e.g. with <code>ParallelComputer</code>.
  */
 public final class CountingFlakeyTestcaseListener implements FlakeyTestcaseListener {
 
-    private final List<String> flakeyTests = new ArrayList<>();
+    private final ConcurrentMap<String, Counters> counters = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
 
     @Override
     public void handlePotentialFlakeyness(
@@ -19,13 +27,74 @@ public final class CountingFlakeyTestcaseListener implements FlakeyTestcaseListe
             final Throwable originalException,
             final int rerunCount,
             final List<Throwable> rerunExceptions) {
-        flakeyTests.add(description.getMethodName());
+        final String key = description.getClassName() + '#' + description.getMethodName();
+        Counters testcase = this.counters.get(key);
+        if (testcase == null) {
+            final Counters created = new Counters(
+                    description.getClassName(), description.getMethodName(), this.sequence.getAndIncrement());
+            testcase = this.counters.putIfAbsent(key, created);
+            if (testcase == null) {
+                testcase = created;
+            }
+        }
+        testcase.totalReruns.addAndGet(rerunCount);
+        testcase.totalRerunFailures.addAndGet(rerunExceptions.size());
+        testcase.flakes.incrementAndGet();
     }
 
     /**
-     * Returns a list of test methods, that were flakey.
+     * Returns a list of test methods, that were flakey, once per flake. Test cases are listed in the order of
+     * their first flake, all flakes of a test case one after another.
      */
     public List<String> getFlakeyTests() {
+        final List<String> flakeyTests = new ArrayList<>();
+        for (FlakeyTestcaseCount testcase : snapshot()) {
+            for (int i = 0; i < testcase.getFlakes(); i++) {
+                flakeyTests.add(testcase.getMethodName());
+            }
+        }
         return flakeyTests;
     }
+
+    /**
+     * Returns the counters of all flakey test cases in the order of their first flake. The counters of a test
+     * case, that is flakey while the snapshot is taken, may not include that flake completely.
+     */
+    public List<FlakeyTestcaseCount> snapshot() {
+        final List<Counters> testcases = new ArrayList<>(this.counters.values());
+        Collections.sort(testcases, new Comparator<Counters>() {
+            @Override
+            public int compare(final Counters first, final Counters second) {
+                return Long.compare(first.sequence, second.sequence);
+            }
+        });
+        final List<FlakeyTestcaseCount> snapshot = new ArrayList<>(testcases.size());
+        for (Counters testcase : testcases) {
+            snapshot.add(new FlakeyTestcaseCount(
+                    testcase.className,
+                    testcase.methodName,
+                    testcase.flakes.get(),
+                    testcase.totalReruns.get(),
+                    testcase.totalRerunFailures.get()));
+        }
+        return snapshot;
+    }
+
+    /**
+     * Counters of a single test case.
+     */
+    private static final class Counters {
+        private final String className;
+        private final String methodName;
+        private final long sequence;
+        private final AtomicInteger flakes = new AtomicInteger();
+        private final AtomicLong totalReruns = new AtomicLong();
+        private final AtomicLong totalRerunFailures = new AtomicLong();
+
+        private Counters(final String className, final String methodName, final long sequence) {
+            this.className = className;
+            this.methodName = methodName;
+            this.sequence = sequence;
+        }
+    }
 }
@@ -0,0 +1,48 @@
+package de.plastickarma.flakeyunit;
+
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+
+/**
+ * Failed test case, whose reruns are deferred to the end of the test run by
+ * {@link de.plastickarma.flakeyunit.DeferredReruns}.
+ */
+final class DeferredRerun implements Runnable {
+    private final FlakeyTestIndicatorRule rule;
+    private final Statement base;
+    private final Description description;
+    private final Throwable originalException;
+    private final long initialRunNanos;
+
+    DeferredRerun(
+            final FlakeyTestIndicatorRule rule,
+            final Statement base,
+            final Description description,
+            final Throwable originalException,
+            final long initialRunNanos) {
+        this.rule = rule;
+        this.base = base;
+        this.description = description;
+        this.originalException = originalException;
+        this.initialRunNanos = initialRunNanos;
+    }
+
+    /**
+     * Returns the test class of the failed test case, <code>null</code> if it is not known.
+     */
+    Class<?> getTestClass() {
+        return this.description.getTestClass();
+    }
+
+    /**
+     * Returns the duration of the failed run, which is the expected cost of a rerun.
+     */
+    long getInitialRunNanos() {
+        return this.initialRunNanos;
+    }
+
+    @Override
+    public void run() {
+        this.rule.rerunAndReport(this.base, this.description, this.originalException);
+    }
+}
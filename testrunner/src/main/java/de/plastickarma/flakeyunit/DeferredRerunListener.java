@@ -0,0 +1,40 @@
+package de.plastickarma.flakeyunit;
+
+import org.junit.runner.Result;
+import org.junit.runner.notification.RunListener;
+
+/**
+ * JUnit RunListener, that reruns the failed test cases of
+ * {@link FlakeyTestIndicatorBuilder#deferReruns(DeferredReruns) deferring indicators} when the test run has
+ * finished, except for those of test classes run by the {@link de.plastickarma.flakeyunit.DeferredRerunRunner},
+ * and then {@link AsyncFlakeyTestcaseListener#flushAll() flushes} the asynchronous
+ * listeners. Register it with the test runner, e.g. with <code>JUnitCore#addListener</code> or as
+ * <code>listener</code> property of the Maven Surefire plugin.
+ */
+public class DeferredRerunListener extends RunListener {
+
+    private final DeferredReruns deferredReruns;
+
+    /**
+     * Creates a DeferredRerunListener for {@link DeferredReruns#shared()}.
+     */
+    public DeferredRerunListener() {
+        this(DeferredReruns.shared());
+    }
+
+    /**
+     * Creates a DeferredRerunListener for the given reruns.
+     */
+    public DeferredRerunListener(final DeferredReruns deferredReruns) {
+        this.deferredReruns = deferredReruns;
+    }
+
+    @Override
+    public void testRunFinished(final Result result) {
+        try {
+            this.deferredReruns.runAll();
+        } finally {
+            AsyncFlakeyTestcaseListener.flushAll();
+        }
+    }
+}
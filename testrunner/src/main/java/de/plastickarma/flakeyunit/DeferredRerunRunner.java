@@ -0,0 +1,52 @@
+package de.plastickarma.flakeyunit;
+
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runners.BlockJUnit4ClassRunner;
+import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.Statement;
+
+/**
+ * JUnit Runner, that reruns the failed test cases of
+ * {@link FlakeyTestIndicatorBuilder#deferReruns(DeferredReruns) deferring indicators} when all test cases of
+ * the class have run, but before its <code>@AfterClass</code> methods and <code>@ClassRule</code>s tear down
+ * the class fixtures, e.g. an embedded database or a server, that the reruns need. The reruns of the class are
+ * run one after another, as they share the class fixtures. Use it for test classes with class fixtures:
+ * <pre>
+ * &#064;RunWith(DeferredRerunRunner.class)
+ * public class ServerTest {
+ *     &#064;ClassRule public static EmbeddedServer server = new EmbeddedServer();
+ *     &#064;Rule public TestRule flakey = FlakeyTestIndicatorBuilder.indicator()
+ *             .deferReruns(DeferredReruns.shared())
+ *             .build();
+ * }
+ * </pre>
+ */
+public class DeferredRerunRunner extends BlockJUnit4ClassRunner {
+
+    /**
+     * Creates a DeferredRerunRunner.
+     * @param testClass the test class to run.
+     * @throws InitializationError if the test class is malformed.
+     */
+    public DeferredRerunRunner(final Class<?> testClass) throws InitializationError {
+        super(testClass);
+    }
+
+    @Override
+    protected Statement childrenInvoker(final RunNotifier notifier) {
+        final Statement children = super.childrenInvoker(notifier);
+        final Class<?> testClass = getTestClass().getJavaClass();
+        return new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                DeferredReruns.openClassBatch(testClass);
+                try {
+                    children.evaluate();
+                } finally {
+                    // inside of the @BeforeClass and @AfterClass methods and the @ClassRules
+                    DeferredReruns.runClassBatch(testClass);
+                }
+            }
+        };
+    }
+}
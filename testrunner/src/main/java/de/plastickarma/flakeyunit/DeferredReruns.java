@@ -0,0 +1,224 @@
+package de.plastickarma.flakeyunit;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+
+import java.lang.reflect.AnnotatedElement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Collects failed test cases of {@link FlakeyTestIndicatorBuilder#deferReruns(DeferredReruns) deferring
+ * indicators}, so that they are rerun as a batch at the end of the test run instead of right after their
+ * failure. Share a single instance between all indicators of the run, e.g. {@link #shared()}, and run the
+ * batch with the {@link de.plastickarma.flakeyunit.DeferredRerunListener} or by calling {@link #runAll()}.
+ * <p>
+ * The batch starts with the test cases, whose failing run was the shortest, so that a
+ * {@link de.plastickarma.flakeyunit.SuiteRerunBudget suite rerun budget} settles as many verdicts as possible.
+ * </p>
+ * <p>
+ * At the end of the test run, the <code>@BeforeClass</code> methods and <code>@ClassRule</code>s of a test
+ * class have long been torn down. The reruns of test classes with such class fixtures are therefore deferred
+ * only to the end of the class, when the class is run by the {@link de.plastickarma.flakeyunit.DeferredRerunRunner},
+ * which reruns them before the class fixtures are torn down. Otherwise they are rerun right away.
+ * </p>
+ */
+public final class DeferredReruns {
+
+    private static final DeferredReruns SHARED = new DeferredReruns();
+    // reruns of the test classes, that are run by the DeferredRerunRunner at the moment
+    private static final ConcurrentMap<Class<?>, Queue<DeferredRerun>> CLASS_BATCHES = new ConcurrentHashMap<>();
+
+    private final int parallelism;
+    private final Queue<DeferredRerun> pending = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Creates DeferredReruns, that reruns the test cases one after another.
+     */
+    public DeferredReruns() {
+        this(1);
+    }
+
+    /**
+     * Creates DeferredReruns.
+     * @param parallelism number of test cases, that are rerun at the same time. Only use more than 1, if the
+     *                    test cases do not share mutable state.
+     */
+    public DeferredReruns(final int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1, but was " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Returns the instance, that is run by a {@link de.plastickarma.flakeyunit.DeferredRerunListener} created
+     * with its default constructor, e.g. by a build tool.
+     */
+    public static DeferredReruns shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the number of test cases, that wait for their reruns.
+     */
+    public int pending() {
+        return this.pending.size();
+    }
+
+    /**
+     * Reruns all pending test cases and passes the verdicts to the listeners of their indicators. Test cases, that
+     * are deferred while the batch is running, are rerun as well.
+     * @throws RuntimeException if a listener failed. All test cases are rerun nevertheless.
+     */
+    public void runAll() {
+        List<DeferredRerun> batch = drain(this.pending);
+        while (!batch.isEmpty()) {
+            sortByCost(batch);
+            if (this.parallelism == 1 || batch.size() == 1) {
+                runSequentially(batch);
+            } else {
+                runInParallel(batch);
+            }
+            batch = drain(this.pending);
+        }
+    }
+
+    /**
+     * Defers the reruns of a failed test case to the end of its test class, if the class is run by the
+     * {@link de.plastickarma.flakeyunit.DeferredRerunRunner}, or else to the end of the test run.
+     * @return false, if the reruns cannot be deferred, because the test class has class fixtures, that are torn
+     * down before the end of the test run.
+     */
+    boolean defer(final DeferredRerun rerun) {
+        final Class<?> testClass = rerun.getTestClass();
+        if (testClass != null) {
+            final Queue<DeferredRerun> classBatch = CLASS_BATCHES.get(testClass);
+            if (classBatch != null) {
+                classBatch.add(rerun);
+                return true;
+            }
+            if (hasClassFixtures(testClass)) {
+                return false;
+            }
+        }
+        this.pending.add(rerun);
+        return true;
+    }
+
+    /**
+     * Starts collecting the deferred reruns of the given test class, until {@link #runClassBatch(Class)}.
+     */
+    static void openClassBatch(final Class<?> testClass) {
+        CLASS_BATCHES.put(testClass, new ConcurrentLinkedQueue<DeferredRerun>());
+    }
+
+    /**
+     * Reruns the deferred test cases of the given test class one after another, as they share the class
+     * fixtures.
+     * @throws RuntimeException if a listener failed. All test cases are rerun nevertheless.
+     */
+    static void runClassBatch(final Class<?> testClass) {
+        final Queue<DeferredRerun> classBatch = CLASS_BATCHES.remove(testClass);
+        if (classBatch != null) {
+            final List<DeferredRerun> batch = drain(classBatch);
+            sortByCost(batch);
+            runSequentially(batch);
+        }
+    }
+
+    private static boolean hasClassFixtures(final Class<?> testClass) {
+        for (Class<?> type = testClass; type != null && type != Object.class; type = type.getSuperclass()) {
+            if (hasClassFixture(type.getDeclaredMethods()) || hasClassFixture(type.getDeclaredFields())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasClassFixture(final AnnotatedElement[] members) {
+        for (AnnotatedElement member : members) {
+            if (member.isAnnotationPresent(BeforeClass.class)
+                    || member.isAnnotationPresent(AfterClass.class)
+                    || member.isAnnotationPresent(ClassRule.class)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<DeferredRerun> drain(final Queue<DeferredRerun> reruns) {
+        final List<DeferredRerun> batch = new ArrayList<>();
+        DeferredRerun rerun;
+        while ((rerun = reruns.poll()) != null) {
+            batch.add(rerun);
+        }
+        return batch;
+    }
+
+    private static void sortByCost(final List<DeferredRerun> batch) {
+        Collections.sort(batch, new Comparator<DeferredRerun>() {
+            @Override
+            public int compare(final DeferredRerun first, final DeferredRerun second) {
+                return Long.compare(first.getInitialRunNanos(), second.getInitialRunNanos());
+            }
+        });
+    }
+
+    private static void runSequentially(final List<DeferredRerun> batch) {
+        RuntimeException failure = null;
+        for (DeferredRerun rerun : batch) {
+            try {
+                rerun.run();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void runInParallel(final List<DeferredRerun> batch) {
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(this.parallelism, batch.size()));
+        try {
+            final List<Future<?>> futures = new ArrayList<>(batch.size());
+            for (DeferredRerun rerun : batch) {
+                futures.add(executor.submit(rerun));
+            }
+            RuntimeException failure = null;
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause() instanceof RuntimeException
+                                ? (RuntimeException) e.getCause()
+                                : new RuntimeException(e.getCause());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
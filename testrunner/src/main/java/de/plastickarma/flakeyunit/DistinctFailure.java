@@ -0,0 +1,93 @@
+package de.plastickarma.flakeyunit;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * A failure, that occurred one or more times with the same
+ * {@link de.plastickarma.flakeyunit.FailureFingerprint fingerprint}. Only the first occurrence is kept.
+ */
+public final class DistinctFailure {
+
+    private final Throwable throwable;
+    private final FailureFingerprint fingerprint;
+    private int occurrences = 1;
+    private String stackTrace;
+
+    /**
+     * Creates a DistinctFailure for the first occurrence of a failure.
+     */
+    public DistinctFailure(final Throwable throwable) {
+        this(throwable, FailureFingerprint.of(throwable));
+    }
+
+    DistinctFailure(final Throwable throwable, final FailureFingerprint fingerprint) {
+        this.throwable = throwable;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Returns the first occurrence of the failure.
+     */
+    public Throwable getThrowable() {
+        return this.throwable;
+    }
+
+    /**
+     * Returns the fingerprint of the failure.
+     */
+    public FailureFingerprint getFingerprint() {
+        return this.fingerprint;
+    }
+
+    /**
+     * Returns how often the failure occurred.
+     */
+    public int getOccurrences() {
+        return this.occurrences;
+    }
+
+    /**
+     * Returns the stack trace of the first occurrence as text. It is rendered on first access only.
+     */
+    public String getStackTrace() {
+        if (this.stackTrace == null) {
+            final StringWriter writer = new StringWriter();
+            try (PrintWriter pw = new PrintWriter(writer)) {
+                this.throwable.printStackTrace(pw);
+            }
+            this.stackTrace = writer.toString();
+        }
+        return this.stackTrace;
+    }
+
+    void addOccurrence() {
+        this.occurrences++;
+    }
+
+    /**
+     * Returns whether the given failure is an occurrence of this failure. As the fingerprint is made of hashes,
+     * equal fingerprints are confirmed by comparing the exception class, the message and the top stack frames.
+     */
+    boolean matches(final Throwable t, final FailureFingerprint fingerprint) {
+        if (!this.fingerprint.equals(fingerprint) || this.throwable.getClass() != t.getClass()) {
+            return false;
+        }
+        final String message = this.throwable.getMessage();
+        if (message == null ? t.getMessage() != null : !message.equals(t.getMessage())) {
+            return false;
+        }
+        final StackTraceElement[] frames = this.throwable.getStackTrace();
+        final StackTraceElement[] otherFrames = t.getStackTrace();
+        final int topFrames = Math.min(FailureFingerprint.TOP_FRAMES, frames.length);
+        if (topFrames != Math.min(FailureFingerprint.TOP_FRAMES, otherFrames.length)) {
+            return false;
+        }
+        for (int i = 0; i < topFrames; i++) {
+            if (!frames[i].equals(otherFrames[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,74 @@
+package de.plastickarma.flakeyunit;
+
+/**
+ * Compact fingerprint of a test case failure, made of the exception class, a hash of the message and a hash of
+ * the top stack frames. Failures with the same fingerprint are considered the same failure.
+ */
+public final class FailureFingerprint {
+
+    /**
+     * Number of stack frames from the top, that are part of the fingerprint.
+     */
+    static final int TOP_FRAMES = 10;
+
+    private final String exceptionClass;
+    private final int messageHash;
+    private final int frameHash;
+
+    private FailureFingerprint(final String exceptionClass, final int messageHash, final int frameHash) {
+        this.exceptionClass = exceptionClass;
+        this.messageHash = messageHash;
+        this.frameHash = frameHash;
+    }
+
+    /**
+     * Creates the fingerprint of the given failure.
+     */
+    public static FailureFingerprint of(final Throwable t) {
+        final String message = t.getMessage();
+        final StackTraceElement[] frames = t.getStackTrace();
+        int frameHash = 1;
+        for (int i = 0; i < Math.min(TOP_FRAMES, frames.length); i++) {
+            frameHash = 31 * frameHash + frames[i].hashCode();
+        }
+        return new FailureFingerprint(t.getClass().getName(), message == null ? 0 : message.hashCode(), frameHash);
+    }
+
+    /**
+     * Returns the class name of the exception.
+     */
+    public String getExceptionClass() {
+        return this.exceptionClass;
+    }
+
+    /**
+     * Returns a short identifier of this fingerprint, e.g. <code>0c3f5a1e7d2b9f40</code>.
+     */
+    public String getId() {
+        return String.format("%08x%08x", this.messageHash + 31 * this.exceptionClass.hashCode(), this.frameHash);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof FailureFingerprint)) {
+            return false;
+        }
+        final FailureFingerprint other = (FailureFingerprint) o;
+        return this.messageHash == other.messageHash
+                && this.frameHash == other.frameHash
+                && this.exceptionClass.equals(other.exceptionClass);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * this.exceptionClass.hashCode() + this.messageHash) + this.frameHash;
+    }
+
+    @Override
+    public String toString() {
+        return this.exceptionClass + '@' + getId();
+    }
+}
@@ -0,0 +1,14 @@
+package de.plastickarma.flakeyunit;
+
+import org.junit.runner.Description;
+
+/**
+ * {@link de.plastickarma.flakeyunit.RetryBudgetPolicy}, that grants all retries to every test case.
+ */
+final class FixedRetryBudgetPolicy implements RetryBudgetPolicy {
+
+    @Override
+    public int retries(final Description description, final int maxRetries) {
+        return maxRetries;
+    }
+}
@@ -0,0 +1,111 @@
+package de.plastickarma.flakeyunit;
+
+import org.junit.runner.Description;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Information about a potentially flakey test case, as passed to a
+ * {@link de.plastickarma.flakeyunit.FlakeyTestcaseListener}.
+ */
+public final class FlakeyEvent {
+
+    private final Description description;
+    private final Throwable originalException;
+    private final int rerunCount;
+    private final List<Throwable> rerunExceptions;
+    // fingerprinted on first access, so that the thread creating the event does not pay for it
+    private volatile RerunFailures rerunFailures;
+
+    /**
+     * Creates a FlakeyEvent.
+     * @param description The description of the testcase as provided by junit.
+     * @param originalException The exception that was the initial test case failure.
+     * @param rerunCount The number of times, which the failed test case was repeated.
+     * @param rerunExceptions The exceptions, that occurred, during the rerun of the test case.
+     */
+    public FlakeyEvent(
+            final Description description,
+            final Throwable originalException,
+            final int rerunCount,
+            final List<Throwable> rerunExceptions) {
+        this.description = description;
+        this.originalException = originalException;
+        this.rerunCount = rerunCount;
+        this.rerunExceptions = Collections.unmodifiableList(rerunExceptions);
+        if (rerunExceptions instanceof RerunFailures) {
+            this.rerunFailures = (RerunFailures) rerunExceptions;
+        }
+    }
+
+    /**
+     * Returns the description of the testcase as provided by junit.
+     */
+    public Description getDescription() {
+        return this.description;
+    }
+
+    /**
+     * Returns the exception that was the initial test case failure.
+     */
+    public Throwable getOriginalException() {
+        return this.originalException;
+    }
+
+    /**
+     * Returns the number of times, which the failed test case was repeated.
+     */
+    public int getRerunCount() {
+        return this.rerunCount;
+    }
+
+    /**
+     * Returns the exceptions, that occurred, during the rerun of the test case.
+     */
+    public List<Throwable> getRerunExceptions() {
+        return this.rerunExceptions;
+    }
+
+    /**
+     * Returns the exceptions, that occurred, during the rerun of the test case, with identical
+     * failures stored only once. They are fingerprinted on first access, unless the listener got them as
+     * RerunFailures already.
+     */
+    public RerunFailures getRerunFailures() {
+        RerunFailures failures = this.rerunFailures;
+        if (failures == null) {
+            // racing threads compute equal failures, so either one may win
+            failures = RerunFailures.of(this.rerunExceptions);
+            this.rerunFailures = failures;
+        }
+        return failures;
+    }
+
+    /**
+     * Returns the outcomes of the perturbed reruns together with their perturbations, see
+     * {@link RerunFailures#getAttempts()}.
+     */
+    public List<RerunAttempt> getAttempts() {
+        return getRerunFailures().getAttempts();
+    }
+
+    /**
+     * Returns the names of the perturbations, that were in effect for the reruns, see
+     * {@link RerunFailures#getPerturbations()}.
+     */
+    public List<String> getPerturbations() {
+        return getRerunFailures().getPerturbations();
+    }
+
+    /**
+     * Passes this event to the given listener.
+     */
+    public void dispatchTo(final FlakeyTestcaseListener listener) {
+        listener.handlePotentialFlakeyness(
+                this.description,
+                this.originalException,
+                this.rerunCount,
+                this.rerunExceptions);
+    }
+}
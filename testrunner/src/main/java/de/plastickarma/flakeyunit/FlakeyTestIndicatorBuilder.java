@@ -1,10 +1,13 @@
 package de.plastickarma.flakeyunit;
 
 
+import org.junit.rules.RuleChain;
 import org.junit.rules.TestRule;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -15,6 +18,17 @@ import java.util.concurrent.TimeUnit;
  *          .indicator()
  *          .retries(15)  // defaults to 10
  *          .threshold(5) // defaults to 1
+ *          .sequentialProbability(0.95) // optional, decides with the given confidence
+ *          .parallelReruns(4) // optional, reruns stateless test cases at the same time
+ *          .scheduler(RerunSchedulers.exponential(10, 1000, TimeUnit.MILLISECONDS)) // defaults to no waiting
+ *          .rerunBudget(30, TimeUnit.SECONDS) // defaults to no limit
+ *          .deferReruns(DeferredReruns.shared()) // optional, reruns at the end of the test run
+ *          .metrics(RerunMetrics.shared()) // optional, records the costs of the reruns
+ *          .quarantine(Quarantine.fromFile(path), QuarantineMode.RUN_ONCE) // optional, known flakey tests
+ *          .stress(100, 8) // optional, runs every test case 100 times on 8 threads at once
+ *          .rerunScope(RerunScope.METHOD) // defaults to RerunScope.STATEMENT
+ *          .fixture(...expensive rule...) // optional, ordered around the indicator by the rerun scope
+ *          .perturbation(Perturbations.cpuContention(4)) // optional, reruns under varying conditions
  *          .listener(...listener1...)
  *          .listener(...listener2...)
  *          .build();
@@ -23,11 +37,34 @@ import java.util.concurrent.TimeUnit;
 public class FlakeyTestIndicatorBuilder {
 
     private final List<FlakeyTestcaseListener> listeners = new ArrayList<>();
+    private final List<TestcaseOutcomeListener> outcomeListeners = new ArrayList<>();
+    private final List<TestRule> fixtures = new ArrayList<>();
+    private final List<Perturbation> perturbations = new ArrayList<>();
     private int noOfRetries = 10;
+    private RetryBudgetPolicy retryBudgetPolicy = new FixedRetryBudgetPolicy();
+    private SuiteRerunBudget suiteRerunBudget = null;
     private int flakeyThreshold = 1;
-    private int waitTime = 0;
-    private TimeUnit waitTimeUnit = TimeUnit.MILLISECONDS;
+    private double confidence = 0;
+    private RerunScheduler scheduler = RerunSchedulers.noWait();
+    private long rerunBudget = 0;
+    private TimeUnit rerunBudgetUnit = TimeUnit.MILLISECONDS;
     private boolean rethrowOriginal = true;
+    private int parallelReruns = 0;
+    private ExecutorService executor = null;
+    private int asyncCapacity = 0;
+    private AsyncFlakeyTestcaseListener.OverflowPolicy overflowPolicy =
+            AsyncFlakeyTestcaseListener.OverflowPolicy.BLOCK;
+    private long rerunTimeout = 0;
+    private TimeUnit rerunTimeoutUnit = TimeUnit.MILLISECONDS;
+    private DeferredReruns deferredReruns = null;
+    private RerunMetrics metrics = null;
+    private Quarantine quarantine = null;
+    private QuarantineMode quarantineMode = QuarantineMode.RUN_ONCE;
+    private int stressInvocations = 0;
+    private int stressThreads = 1;
+    private long stressJitter = 0;
+    private TimeUnit stressJitterUnit = TimeUnit.MILLISECONDS;
+    private RerunScope rerunScope = RerunScope.STATEMENT;
 
     private FlakeyTestIndicatorBuilder() { }
 
@@ -48,7 +85,17 @@ public class FlakeyTestIndicatorBuilder {
     }
 
     /**
-     * Sets the number of retries the test case is executed again to check if it is flakey.
+     * Adds a TestcaseOutcomeListener to the FlakeyTestIndicator, that is notified about the outcome of every
+     * test case, passed, failed or flakey.
+     */
+    public FlakeyTestIndicatorBuilder outcomeListener(TestcaseOutcomeListener listener) {
+        this.outcomeListeners.add(listener);
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of retries the test case is executed again to check if it is flakey. Reruns
+     * stop as soon as the flakeyness of the test case is settled.
      * Defaults to 10.
      */
     public FlakeyTestIndicatorBuilder retries(final int retries) {
@@ -56,6 +103,25 @@ public class FlakeyTestIndicatorBuilder {
         return this;
     }
 
+    /**
+     * Sets a policy, that decides how many of the {@link #retries(int) retries} a failed test case may get,
+     * e.g. fewer for test cases, that are known to fail deterministically.
+     * Defaults to all retries for every test case.
+     */
+    public FlakeyTestIndicatorBuilder retryBudgetPolicy(final RetryBudgetPolicy policy) {
+        this.retryBudgetPolicy = policy;
+        return this;
+    }
+
+    /**
+     * Limits the total wall-clock time spent on reruns by all indicators sharing the given budget. Once it is
+     * spent, failed test cases are not rerun anymore. Defaults to no limit.
+     */
+    public FlakeyTestIndicatorBuilder suiteRerunBudget(final SuiteRerunBudget budget) {
+        this.suiteRerunBudget = budget;
+        return this;
+    }
+
     /**
      * Boolean flag to indicate, if the original exception should be rethrown. If set to <code>false</code>
      * a flakey test case, while being detected and passed to the listeners, will appear to Junit as passed.
@@ -76,13 +142,219 @@ public class FlakeyTestIndicatorBuilder {
     }
 
     /**
-     * Sets the waiting time between test reruns.
+     * Enables the sequential probability mode: Reruns stop as soon as the test case is considered flakey or not
+     * flakey with the given confidence, e.g. a consistently failing test case is detected after a few reruns.
+     * If the retries are exhausted before the confidence is reached, the {@link #threshold(int) threshold}
+     * decides.
+     * @param confidence confidence in the verdict, between 0 and 1 (exclusive), e.g. 0.95.
+     */
+    public FlakeyTestIndicatorBuilder sequentialProbability(final double confidence) {
+        this.confidence = confidence;
+        return this;
+    }
+
+    /**
+     * Sets a fixed waiting time between test reruns. Shortcut for
+     * <code>scheduler(RerunSchedulers.fixed(waitTime, waitTimeUnit))</code>.
      * @param waitTime Time, that will be waited before rerunning a test case again
      * @param waitTimeUnit Time unit for the waiting time.
      */
     public FlakeyTestIndicatorBuilder waitTime(final int waitTime, final TimeUnit waitTimeUnit) {
-        this.waitTime = waitTime;
-        this.waitTimeUnit = waitTimeUnit;
+        return this.scheduler(RerunSchedulers.fixed(waitTime, waitTimeUnit));
+    }
+
+    /**
+     * Sets the schedule of the waiting times between test reruns, e.g. exponential or jittered backoff.
+     * See {@link de.plastickarma.flakeyunit.RerunSchedulers} for the predefined schedules.
+     * Defaults to no waiting time.
+     */
+    public FlakeyTestIndicatorBuilder scheduler(final RerunScheduler scheduler) {
+        this.scheduler = scheduler;
+        return this;
+    }
+
+    /**
+     * Sets the total wall-clock time, that may be spent on the reruns of a single test case, including the
+     * waiting times. Once it is spent, no more reruns are started and the verdict is made from the reruns so
+     * far. A rerun, that is still running, when the budget is spent, is interrupted and not taken into account.
+     * Defaults to no limit.
+     * @param rerunBudget Maximum time for all reruns of a test case.
+     * @param rerunBudgetUnit Time unit for the budget.
+     */
+    public FlakeyTestIndicatorBuilder rerunBudget(final long rerunBudget, final TimeUnit rerunBudgetUnit) {
+        this.rerunBudget = rerunBudget;
+        this.rerunBudgetUnit = rerunBudgetUnit;
+        return this;
+    }
+
+    /**
+     * Executes up to the given number of reruns at the same time. If no {@link #executor(ExecutorService)
+     * executor} is set, reruns of test cases, that run in a ForkJoinPool, e.g. with the parallel execution of the
+     * JUnit Platform, are executed in that pool. Otherwise virtual threads are used, if the JVM supports them,
+     * or a pool of daemon threads.
+     * Reruns, that are not needed anymore once the verdict is settled, are cancelled. The
+     * {@link #scheduler(RerunScheduler) waiting times} do not apply to parallel reruns.
+     * Only use this for test cases, that do not share mutable state between invocations.
+     */
+    public FlakeyTestIndicatorBuilder parallelReruns(final int parallelism) {
+        this.parallelReruns = parallelism;
+        return this;
+    }
+
+    /**
+     * Executes reruns in parallel on the given executor. Unless {@link #parallelReruns(int)} is set as well,
+     * all reruns are submitted at once and the executor bounds the parallelism.
+     * The executor is not shut down by the TestRule.
+     */
+    public FlakeyTestIndicatorBuilder executor(final ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Sets the maximum time of a single rerun, so that a test case, that occasionally hangs, does not hang the
+     * build. A rerun, that exceeds it, is interrupted and counts as failure with a
+     * {@link de.plastickarma.flakeyunit.RerunTimeoutException}, that carries a thread dump. Sequential reruns are
+     * watched by a single watchdog thread shared by all test cases. Defaults to no timeout.
+     * @param rerunTimeout maximum time for a rerun, counted from its start, or its submission to the executor
+     *                     for parallel reruns.
+     * @param rerunTimeoutUnit Time unit for the rerun timeout.
+     */
+    public FlakeyTestIndicatorBuilder rerunTimeout(final long rerunTimeout, final TimeUnit rerunTimeoutUnit) {
+        this.rerunTimeout = rerunTimeout;
+        this.rerunTimeoutUnit = rerunTimeoutUnit;
+        return this;
+    }
+
+    /**
+     * Defers the reruns of failed test cases to the end of the test run, when the given reruns are run, e.g. by
+     * the {@link de.plastickarma.flakeyunit.DeferredRerunListener}. The test run is not blocked by reruns and
+     * the reruns do not share the state of the test cases, that run at the same time. As the verdict is not
+     * known, when the failure is reported to JUnit, failed test cases always appear as failed.
+     * Test classes with <code>@BeforeClass</code>, <code>@AfterClass</code> or <code>@ClassRule</code> fixtures
+     * need them for their reruns: run them with the {@link de.plastickarma.flakeyunit.DeferredRerunRunner}, that
+     * reruns their failed test cases at the end of the class, otherwise they are rerun right away.
+     * Defaults to rerunning failed test cases right away.
+     */
+    public FlakeyTestIndicatorBuilder deferReruns(final DeferredReruns reruns) {
+        this.deferredReruns = reruns;
+        return this;
+    }
+
+    /**
+     * Records the costs of the flakeyness detection in the given metrics: durations of initial runs and reruns,
+     * waiting times, listener dispatch and totals per test class. Export them at the end of the test run, e.g.
+     * with the {@link de.plastickarma.flakeyunit.MetricsExportListener}.
+     * Defaults to recording nothing.
+     */
+    public FlakeyTestIndicatorBuilder metrics(final RerunMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * Puts known flakey test cases into quarantine: they are not rerun, but run once with failures reported as
+     * failed assumptions, or skipped, so that they neither fail the build nor cost reruns. The quarantine file
+     * may change while the tests are running.
+     * Defaults to no quarantine.
+     * @param quarantine The quarantined test cases, e.g. {@link Quarantine#fromFile(java.nio.file.Path)}.
+     * @param mode Treatment of the quarantined test cases.
+     */
+    public FlakeyTestIndicatorBuilder quarantine(final Quarantine quarantine, final QuarantineMode mode) {
+        this.quarantine = quarantine;
+        this.quarantineMode = mode;
+        return this;
+    }
+
+    /**
+     * Enables the stress mode for all test cases: every test case is invoked the given number of times on the
+     * given number of threads at once, to shake out races, that hardly ever fail sequentially. The first failed
+     * invocation counts as the original failure, the other invocations as its reruns, so that a test case,
+     * that fails only in some of the invocations, is passed to the listeners as potentially flakey.
+     * {@link de.plastickarma.flakeyunit.StressRunListener Stress listeners} get the statistics of every stress
+     * run. Test methods annotated with {@link de.plastickarma.flakeyunit.Stress} are run in stress mode
+     * regardless of this setting. Only use this for test cases, that are meant to be thread-safe.
+     * Defaults to no stress mode.
+     * @param invocations Number of invocations of each test case.
+     * @param threads Number of threads, that invoke a test case at the same time.
+     */
+    public FlakeyTestIndicatorBuilder stress(final int invocations, final int threads) {
+        this.stressInvocations = invocations;
+        this.stressThreads = threads;
+        return this;
+    }
+
+    /**
+     * Delays every invocation in {@link #stress(int, int) stress mode} by a random time up to the given
+     * jitter, so that the invocations overlap in varying ways. Defaults to no delay.
+     * @param jitter Maximum delay before an invocation.
+     * @param jitterUnit Time unit of the jitter.
+     */
+    public FlakeyTestIndicatorBuilder stressJitter(final long jitter, final TimeUnit jitterUnit) {
+        this.stressJitter = jitter;
+        this.stressJitterUnit = jitterUnit;
+        return this;
+    }
+
+    /**
+     * Sets what a rerun replays. With {@link RerunScope#METHOD} and {@link RerunScope#CLASS} a rerun invokes
+     * only the test method, while the <code>@Before</code> and <code>@After</code> methods and the
+     * {@link #fixture(TestRule) fixtures} are set up once, which saves most of the rerun time of test cases
+     * with expensive fixtures. The test method must then not rely on a fresh fixture. Other rules of the test
+     * class must be applied outside of the indicator, e.g. by declaring them as fixtures.
+     * Defaults to {@link RerunScope#STATEMENT}.
+     */
+    public FlakeyTestIndicatorBuilder rerunScope(final RerunScope scope) {
+        this.rerunScope = scope;
+        return this;
+    }
+
+    /**
+     * Returns what a rerun replays, see {@link #rerunScope(RerunScope)}.
+     */
+    public RerunScope getRerunScope() {
+        return this.rerunScope;
+    }
+
+    /**
+     * Adds a rule with a fixture of the test cases, e.g. an embedded database. {@link #build()} chains the
+     * fixtures and the indicator with a {@link org.junit.rules.RuleChain} in the order given by the
+     * {@link #rerunScope(RerunScope) rerun scope}, with {@link RerunScope#CLASS} the fixtures are applied by
+     * {@link #buildClassRule()} instead. Fixtures are chained in the order they are added, the first one
+     * outermost.
+     */
+    public FlakeyTestIndicatorBuilder fixture(final TestRule fixture) {
+        this.fixtures.add(fixture);
+        return this;
+    }
+
+    /**
+     * Adds a perturbation of the environment of the reruns, e.g. {@link Perturbations#cpuContention(int)}, so
+     * that timing-dependent flakes show up in fewer reruns. The reruns are perturbed by the added perturbations
+     * in turn, add {@link Perturbations#none()} to alternate with plain reruns. The outcome of every rerun is
+     * recorded with its perturbation in {@link RerunFailures#getAttempts()}.
+     * Defaults to plain reruns.
+     */
+    public FlakeyTestIndicatorBuilder perturbation(final Perturbation perturbation) {
+        this.perturbations.add(perturbation);
+        return this;
+    }
+
+    /**
+     * Passes potentially flakey test cases to the listeners on a background thread, so that slow listeners
+     * do not delay the test run. Pending events are flushed at the end of the test run by the
+     * {@link de.plastickarma.flakeyunit.DeferredRerunListener}, or with
+     * {@link de.plastickarma.flakeyunit.AsyncFlakeyTestcaseListener#flushAll()}, and as last resort at JVM
+     * shutdown. To flush the events yourself, pass an {@link de.plastickarma.flakeyunit.AsyncFlakeyTestcaseListener}
+     * to {@link #listener(FlakeyTestcaseListener)} instead.
+     * @param capacity maximum number of events, that are queued for the listeners.
+     * @param overflowPolicy behaviour, if the queue is full.
+     */
+    public FlakeyTestIndicatorBuilder asyncListeners(
+            final int capacity,
+            final AsyncFlakeyTestcaseListener.OverflowPolicy overflowPolicy) {
+        this.asyncCapacity = capacity;
+        this.overflowPolicy = overflowPolicy;
         return this;
     }
 
@@ -94,15 +366,111 @@ public class FlakeyTestIndicatorBuilder {
     }
 
     /**
-     * Builds the actual TestRule, that indicates flakey test cases.
+     * Builds the actual TestRule, that indicates flakey test cases, chained with the
+     * {@link #fixture(TestRule) fixtures}: with {@link RerunScope#STATEMENT} the indicator wraps the fixtures,
+     * so that every rerun sets them up again, with {@link RerunScope#METHOD} the fixtures wrap the indicator.
      */
     public TestRule build() {
+        final TestRule indicator = buildIndicator();
+        if (this.fixtures.isEmpty() || this.rerunScope == RerunScope.CLASS) {
+            return indicator;
+        }
+        if (this.rerunScope == RerunScope.STATEMENT) {
+            return chain(RuleChain.outerRule(indicator), this.fixtures);
+        }
+        return chain(RuleChain.emptyRuleChain(), this.fixtures).around(indicator);
+    }
+
+    /**
+     * Builds the TestRule for the <code>@ClassRule</code> of the test class, that applies the
+     * {@link #fixture(TestRule) fixtures} once for all of its test cases with {@link RerunScope#CLASS}. It does
+     * nothing with the other rerun scopes.
+     */
+    public TestRule buildClassRule() {
+        if (this.rerunScope != RerunScope.CLASS) {
+            return RuleChain.emptyRuleChain();
+        }
+        return chain(RuleChain.emptyRuleChain(), this.fixtures);
+    }
+
+    private static RuleChain chain(final RuleChain outer, final List<TestRule> rules) {
+        RuleChain chain = outer;
+        for (TestRule rule : rules) {
+            chain = chain.around(rule);
+        }
+        return chain;
+    }
+
+    private TestRule buildIndicator() {
+        FlakeyVerdictPolicy verdictPolicy = new ThresholdVerdictPolicy(this.flakeyThreshold);
+        if (this.confidence != 0) {
+            verdictPolicy = new SequentialProbabilityVerdictPolicy(this.confidence, verdictPolicy);
+        }
         return new FlakeyTestIndicatorRule(
                 this.noOfRetries,
-                this.flakeyThreshold,
+                this.retryBudgetPolicy,
+                verdictPolicy,
                 this.rethrowOriginal,
-                this.waitTime,
-                this.waitTimeUnit,
-                this.listeners);
+                createRerunExecutor(),
+                this.deferredReruns,
+                this.metrics,
+                this.quarantine,
+                this.quarantineMode,
+                createStressRunner(),
+                this.rerunScope,
+                this.perturbations,
+                createListeners(),
+                stressListeners(),
+                this.outcomeListeners);
+    }
+
+    private StressRunner createStressRunner() {
+        if (this.stressInvocations <= 0) {
+            return null;
+        }
+        return new StressRunner(
+                this.stressInvocations, this.stressThreads, this.stressJitterUnit.toNanos(this.stressJitter));
+    }
+
+    private List<StressRunListener> stressListeners() {
+        final List<StressRunListener> stressListeners = new ArrayList<>();
+        for (FlakeyTestcaseListener listener : this.listeners) {
+            if (listener instanceof StressRunListener) {
+                stressListeners.add((StressRunListener) listener);
+            }
+        }
+        return stressListeners;
+    }
+
+    private List<FlakeyTestcaseListener> createListeners() {
+        if (this.asyncCapacity <= 0) {
+            return this.listeners;
+        }
+        return Collections.<FlakeyTestcaseListener>singletonList(
+                new AsyncFlakeyTestcaseListener(this.asyncCapacity, this.overflowPolicy, this.listeners));
+    }
+
+    private RerunExecutor createRerunExecutor() {
+        if (this.parallelReruns <= 0 && this.executor == null) {
+            return new SequentialRerunExecutor(
+                    this.scheduler,
+                    this.rerunTimeoutUnit.toNanos(this.rerunTimeout),
+                    this.rerunBudgetUnit.toNanos(this.rerunBudget),
+                    this.suiteRerunBudget,
+                    this.metrics);
+        }
+        final int parallelism = this.parallelReruns > 0 ? this.parallelReruns : Math.max(1, this.noOfRetries);
+        final ExecutorService executorService = this.executor != null
+                ? this.executor
+                : ParallelRerunExecutor.defaultExecutor(parallelism);
+        return new ParallelRerunExecutor(
+                executorService,
+                this.executor == null,
+                parallelism,
+                this.rerunTimeout,
+                this.rerunTimeoutUnit,
+                this.rerunBudgetUnit.toNanos(this.rerunBudget),
+                this.suiteRerunBudget,
+                this.metrics);
     }
 }
@@ -1,122 +1,373 @@
 package de.plastickarma.flakeyunit;
 
+import org.junit.internal.AssumptionViolatedException;
 import org.junit.rules.TestRule;
 import org.junit.runner.Description;
 import org.junit.runners.model.Statement;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 
 /**
  * TestRule, that reruns failed testcases in order to determine, if a testcase if flakey.
- * A testcase is considered potentially flakey, if number of successful testcase executions after
- * the initial failure exceeds a given threshold.
+ * Whether a testcase is considered potentially flakey is decided by a
+ * {@link de.plastickarma.flakeyunit.FlakeyVerdictPolicy}, e.g. if the number of successful testcase executions
+ * after the initial failure exceeds a given threshold. Reruns stop as soon as the verdict is settled.
  */
 final class FlakeyTestIndicatorRule implements TestRule {
 
-    private final List<FlakeyTestcaseListener> listeners;
-    private final int flakeyThreshold;
+    private final FlakeyTestcaseListener[] listeners;
+    private final TestcaseOutcomeListener[] outcomeListeners;
+    private final FlakeyVerdictPolicy verdictPolicy;
     private final int noOfRetries;
-    private final int waitTime;
-    private final TimeUnit waitTimeUnit;
+    private final RetryBudgetPolicy retryBudgetPolicy;
+    private final RerunExecutor rerunExecutor;
     private final boolean rethrowOriginal;
+    private final DeferredReruns deferredReruns;
+    private final RerunMetrics metrics;
+    private final Quarantine quarantine;
+    private final QuarantineMode quarantineMode;
+    private final StressRunner stressRunner;
+    private final StressRunListener[] stressListeners;
+    private final boolean methodScope;
+    private final Perturbation[] perturbations;
 
     /**
      * Constructs a FlakeyTestIndicatorRule. For improved explicitness this TestRule
      * is meant to be created by the {@link de.plastickarma.flakeyunit.FlakeyTestIndicatorBuilder}.
-     * @param noOfRetries number of retries to determine flakeyness
-     * @param flakeyThreshold number of successful testcase runs after initial failure, which are needed to
-     *                        be considered flakey.
+     * @param noOfRetries maximum number of retries to determine flakeyness
+     * @param retryBudgetPolicy policy, that decides how many of the retries a failed testcase may get.
+     * @param verdictPolicy policy, that decides after each rerun if the testcase is flakey. Reruns stop as
+     *                      soon as the verdict is settled.
      * @param rethrowOriginal Boolean flag to indicate if the original exception should be rethrown. If set
      *                        to <code>false</code> a flakey test case, while being detected and passed to
      *                        the listeners, will appear to Junit as passed.
-     * @param waitTime Waiting time between reruns.
-     * @param waitTimeUnit Time unit of waiting time.
+     * @param rerunExecutor Strategy, that executes the reruns.
+     * @param deferredReruns Collector of the failed test cases, if the reruns are deferred to the end of the
+     *                       test class or test run, <code>null</code> to rerun failed test cases right away.
+     * @param metrics Recorder of the rerun costs, <code>null</code> to record nothing.
+     * @param quarantine Known flakey test cases, that are not rerun, <code>null</code> for none.
+     * @param quarantineMode Treatment of the quarantined test cases.
+     * @param stressRunner Runner of all test cases in stress mode, <code>null</code> to run only test cases
+     *                     annotated with {@link de.plastickarma.flakeyunit.Stress} in stress mode.
+     * @param rerunScope What a rerun replays. Deferred reruns always replay the whole statement, because the
+     *                   fixtures of the test case are torn down by then.
+     * @param perturbations Perturbations, that are applied to the reruns in turn, empty for plain reruns.
      * @param listeners {@link de.plastickarma.flakeyunit.FlakeyTestcaseListener listener}, that will be
      *                  notified, if a testcase is considered flakey.
+     * @param stressListeners {@link de.plastickarma.flakeyunit.StressRunListener listener}, that will be
+     *                        notified about every test case in stress mode.
+     * @param outcomeListeners {@link de.plastickarma.flakeyunit.TestcaseOutcomeListener listener}, that will be
+     *                         notified about the outcome of every testcase.
      */
     FlakeyTestIndicatorRule(
             final int noOfRetries,
-            final int flakeyThreshold,
+            final RetryBudgetPolicy retryBudgetPolicy,
+            final FlakeyVerdictPolicy verdictPolicy,
             final boolean rethrowOriginal,
-            final int waitTime,
-            final TimeUnit waitTimeUnit,
-            final List<FlakeyTestcaseListener> listeners) {
+            final RerunExecutor rerunExecutor,
+            final DeferredReruns deferredReruns,
+            final RerunMetrics metrics,
+            final Quarantine quarantine,
+            final QuarantineMode quarantineMode,
+            final StressRunner stressRunner,
+            final RerunScope rerunScope,
+            final List<Perturbation> perturbations,
+            final List<FlakeyTestcaseListener> listeners,
+            final List<StressRunListener> stressListeners,
+            final List<TestcaseOutcomeListener> outcomeListeners) {
         this.noOfRetries = noOfRetries;
-        this.flakeyThreshold = flakeyThreshold;
+        this.retryBudgetPolicy = retryBudgetPolicy;
+        this.verdictPolicy = verdictPolicy;
         this.rethrowOriginal = rethrowOriginal;
-        this.waitTime = waitTime;
-        this.waitTimeUnit = waitTimeUnit;
-        this.listeners = listeners;
+        this.rerunExecutor = rerunExecutor;
+        this.deferredReruns = deferredReruns;
+        this.metrics = metrics;
+        this.quarantine = quarantine;
+        this.quarantineMode = quarantineMode;
+        this.stressRunner = stressRunner;
+        this.methodScope = rerunScope != RerunScope.STATEMENT && deferredReruns == null;
+        this.perturbations = perturbations.toArray(new Perturbation[perturbations.size()]);
+        this.stressListeners = stressListeners.toArray(new StressRunListener[stressListeners.size()]);
+        this.listeners = listeners.toArray(new FlakeyTestcaseListener[listeners.size()]);
+        this.outcomeListeners = outcomeListeners.toArray(new TestcaseOutcomeListener[outcomeListeners.size()]);
     }
 
 
     @Override
     public Statement apply(final Statement base, final Description description) {
-        return new Statement() {
-            @Override
-            public void evaluate() throws Throwable {
-
-                // initial run
-                Throwable originalException = null;
-                try {
-                    base.evaluate();
-                } catch (final Throwable t) {
-                    originalException = t;
-                }
-
-                if (originalException != null) {
-                    // retries
-                    final List<Throwable> exceptions = rerunFailedTestcase(base);
-
-                    if (isPotentiallyFlakey(exceptions)) {
-                        fireFlakeyEvent(description, originalException, noOfRetries, exceptions);
-                        if (rethrowOriginal) {
-                            throw originalException;
-                        }
-                    } else {
-                        throw originalException;
-                    }
-                }
+        if (this.methodScope) {
+            final Statement testMethod = TestMethodStatements.testMethod(base);
+            if (testMethod != base) {
+                // the @Before and @After methods run once around the initial run and all reruns
+                return TestMethodStatements.replaceTestMethod(base, applyToStatement(testMethod, description));
             }
-        };
+        }
+        return applyToStatement(base, description);
     }
 
-    private boolean isPotentiallyFlakey(final List<Throwable> exceptions) {
-        // TODO check if exceptions are of same time
-        return exceptions.size() < (this.noOfRetries - this.flakeyThreshold);
+    private Statement applyToStatement(final Statement base, final Description description) {
+        if (this.quarantine != null && this.quarantine.isQuarantined(description)) {
+            return new QuarantinedStatement(this, base, description);
+        }
+        final Stress stress = description.getAnnotation(Stress.class);
+        if (stress != null) {
+            return new StressStatement(this, base, description, StressRunner.of(stress));
+        }
+        if (this.stressRunner != null) {
+            return new StressStatement(this, base, description, this.stressRunner);
+        }
+        return new FlakeyTestIndicatorStatement(this, base, description);
     }
 
     /**
-     * Executes the given Statement for the specified number of retries.
-     * @return Exceptions, that occurred during the retries. You can derive the number of successes and
-     * failures of the retries by the return value.
+     * Handles the initial failure of a test case: reruns it and decides about its flakeyness, or defers the
+     * reruns to the end of the test class or test run.
+     * Kept apart from {@link FlakeyTestIndicatorStatement#evaluate()}, so that the passing path stays small.
      */
-    private List<Throwable> rerunFailedTestcase(final Statement base) {
-        List<Throwable> exceptions = new ArrayList<>();
-        for (int i = 0; i < this.noOfRetries; i++) {
-            try {
-                Thread.sleep(TimeUnit.MILLISECONDS.convert(this.waitTime, this.waitTimeUnit));
-                base.evaluate();
-            } catch(Throwable t) {
-                exceptions.add(t);
-            }
+    private void handleFailure(
+            final Statement base,
+            final Description description,
+            final Throwable originalException,
+            final long initialRunNanos) throws Throwable {
+        if (this.deferredReruns != null && this.deferredReruns.defer(
+                new DeferredRerun(this, base, description, originalException, initialRunNanos))) {
+            // the verdict is not known yet, so the failure is reported as it is
+            throw originalException;
+        }
+        if (!rerunAndReport(base, description, originalException) || this.rethrowOriginal) {
+            throw originalException;
+        }
+    }
+
+    /**
+     * Reruns a failed test case, decides about its flakeyness and notifies the listeners.
+     * @return true, if the test case is potentially flakey.
+     */
+    boolean rerunAndReport(
+            final Statement base,
+            final Description description,
+            final Throwable originalException) {
+        // retries
+        final RerunFailures exceptions = new RerunFailures();
+        final int maxReruns = Math.max(0, Math.min(
+                this.noOfRetries, this.retryBudgetPolicy.retries(description, this.noOfRetries)));
+        final long start = System.nanoTime();
+        final int rerunCount =
+                this.rerunExecutor.rerun(base, this.perturbations, maxReruns, this.verdictPolicy, exceptions);
+        final boolean flakey = isPotentiallyFlakey(rerunCount, exceptions);
+        if (this.metrics != null) {
+            this.metrics.recordReruns(description, rerunCount, System.nanoTime() - start, flakey);
+        }
+
+        if (flakey) {
+            fireOutcome(description, TestcaseOutcome.FLAKEY, originalException, rerunCount, exceptions);
+            fireFlakeyEvent(description, originalException, rerunCount, exceptions);
+            return true;
         }
-        return exceptions;
+        fireOutcome(description, TestcaseOutcome.FAILED, originalException, rerunCount, exceptions);
+        return false;
+    }
+
+    private boolean isPotentiallyFlakey(final int rerunCount, final List<Throwable> exceptions) {
+        // the verdict counts passes and failures only: a pass after a failure proves flakeyness, whatever the
+        // failures were. Grouping the failures by root cause is left to the listeners, see RerunFailures.
+        final int failures = exceptions.size();
+        // no more reruns: the policy must settle the verdict now, e.g. when the rerun budget is spent
+        return this.verdictPolicy.decide(rerunCount - failures, failures, 0) == FlakeyVerdict.FLAKEY;
     }
 
     private void fireFlakeyEvent(
             final Description description,
             final Throwable originalException,
-            final int retries,
+            final int rerunCount,
             final List<Throwable> exceptions) {
-        for (FlakeyTestcaseListener listener : this.listeners) {
-            listener.handlePotentialFlakeyness(
+        final long start = System.nanoTime();
+        for (int i = 0; i < this.listeners.length; i++) {
+            this.listeners[i].handlePotentialFlakeyness(
                     description,
                     originalException,
-                    retries,
+                    rerunCount,
                     exceptions);
         }
+        if (this.metrics != null && this.listeners.length > 0) {
+            this.metrics.recordListenerDispatch(System.nanoTime() - start);
+        }
+    }
+
+    private void fireOutcome(
+            final Description description,
+            final TestcaseOutcome outcome,
+            final Throwable originalException,
+            final int rerunCount,
+            final List<Throwable> exceptions) {
+        final long start = System.nanoTime();
+        for (int i = 0; i < this.outcomeListeners.length; i++) {
+            this.outcomeListeners[i].handleOutcome(
+                    description,
+                    outcome,
+                    originalException,
+                    rerunCount,
+                    exceptions);
+        }
+        if (this.metrics != null && this.outcomeListeners.length > 0) {
+            this.metrics.recordListenerDispatch(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Statement, that evaluates a test case and hands it to the rule if it fails. Passing test cases allocate
+     * nothing: no rerun state is created and the listeners are iterated without iterator.
+     */
+    private static final class FlakeyTestIndicatorStatement extends Statement {
+        private final FlakeyTestIndicatorRule rule;
+        private final Statement base;
+        private final Description description;
+
+        private FlakeyTestIndicatorStatement(
+                final FlakeyTestIndicatorRule rule,
+                final Statement base,
+                final Description description) {
+            this.rule = rule;
+            this.base = base;
+            this.description = description;
+        }
+
+        @Override
+        public void evaluate() throws Throwable {
+            // initial run
+            final long start = System.nanoTime();
+            try {
+                this.base.evaluate();
+            } catch (final Throwable t) {
+                final long initialRunNanos = System.nanoTime() - start;
+                if (this.rule.metrics != null) {
+                    this.rule.metrics.recordInitialRun(this.description, initialRunNanos);
+                }
+                this.rule.handleFailure(this.base, this.description, t, initialRunNanos);
+                return;
+            }
+            if (this.rule.metrics != null) {
+                this.rule.metrics.recordInitialRun(this.description, System.nanoTime() - start);
+            }
+            if (this.rule.outcomeListeners.length > 0) {
+                this.rule.fireOutcome(
+                        this.description, TestcaseOutcome.PASSED, null, 0, Collections.<Throwable>emptyList());
+            }
+        }
+    }
+
+    /**
+     * Statement for a quarantined test case, that runs it once or skips it, depending on the quarantine mode.
+     * Failures are reported as failed assumption, so that they do not fail the build.
+     */
+    private static final class QuarantinedStatement extends Statement {
+        private final FlakeyTestIndicatorRule rule;
+        private final Statement base;
+        private final Description description;
+
+        private QuarantinedStatement(
+                final FlakeyTestIndicatorRule rule,
+                final Statement base,
+                final Description description) {
+            this.rule = rule;
+            this.base = base;
+            this.description = description;
+        }
+
+        @Override
+        public void evaluate() throws Throwable {
+            if (this.rule.quarantineMode == QuarantineMode.SKIP) {
+                throw new AssumptionViolatedException(
+                        "quarantined as flakey, skipped: " + this.description.getDisplayName());
+            }
+            final long start = System.nanoTime();
+            try {
+                this.base.evaluate();
+            } catch (AssumptionViolatedException e) {
+                throw e;
+            } catch (final Throwable t) {
+                if (this.rule.metrics != null) {
+                    this.rule.metrics.recordInitialRun(this.description, System.nanoTime() - start);
+                }
+                this.rule.fireOutcome(
+                        this.description, TestcaseOutcome.FAILED, t, 0, Collections.<Throwable>emptyList());
+                throw new AssumptionViolatedException(
+                        "quarantined as flakey, failure ignored: " + this.description.getDisplayName(), t);
+            }
+            if (this.rule.metrics != null) {
+                this.rule.metrics.recordInitialRun(this.description, System.nanoTime() - start);
+            }
+            this.rule.fireOutcome(
+                    this.description, TestcaseOutcome.PASSED, null, 0, Collections.<Throwable>emptyList());
+        }
+    }
+
+    /**
+     * Statement for a test case in stress mode, that invokes it several times on several threads at once. The
+     * first failed invocation is the original failure, the other invocations are treated like reruns.
+     */
+    private static final class StressStatement extends Statement {
+        private final FlakeyTestIndicatorRule rule;
+        private final Statement base;
+        private final Description description;
+        private final StressRunner runner;
+
+        private StressStatement(
+                final FlakeyTestIndicatorRule rule,
+                final Statement base,
+                final Description description,
+                final StressRunner runner) {
+            this.rule = rule;
+            this.base = base;
+            this.description = description;
+            this.runner = runner;
+        }
+
+        @Override
+        public void evaluate() throws Throwable {
+            final StressRun run = this.runner.run(this.base, this.description, this.rule.metrics);
+            for (int i = 0; i < this.rule.stressListeners.length; i++) {
+                this.rule.stressListeners[i].handleStressRun(run);
+            }
+            final List<StressFailure> failures = run.getFailures();
+            if (failures.isEmpty()) {
+                recordReruns(run, false);
+                this.rule.fireOutcome(
+                        this.description, TestcaseOutcome.PASSED, null, 0, Collections.<Throwable>emptyList());
+                return;
+            }
+            final Throwable originalException = failures.get(0).getThrowable();
+            final List<Throwable> exceptions = new RerunFailures();
+            for (int i = 1; i < failures.size(); i++) {
+                exceptions.add(failures.get(i).getThrowable());
+            }
+            final int rerunCount = run.getInvocations() - 1;
+            final boolean flakey = this.rule.isPotentiallyFlakey(rerunCount, exceptions);
+            recordReruns(run, flakey);
+            if (flakey) {
+                this.rule.fireOutcome(
+                        this.description, TestcaseOutcome.FLAKEY, originalException, rerunCount, exceptions);
+                this.rule.fireFlakeyEvent(this.description, originalException, rerunCount, exceptions);
+                if (!this.rule.rethrowOriginal) {
+                    return;
+                }
+            } else {
+                this.rule.fireOutcome(
+                        this.description, TestcaseOutcome.FAILED, originalException, rerunCount, exceptions);
+            }
+            throw originalException;
+        }
+
+        /**
+         * Records the invocations after the first one as reruns of the test case, whether it failed or not, as
+         * they are the cost of the stress mode.
+         */
+        private void recordReruns(final StressRun run, final boolean flakey) {
+            if (this.rule.metrics != null && run.getInvocations() > 1) {
+                this.rule.metrics.recordReruns(
+                        this.description, run.getInvocations() - 1, run.getWallNanos(), flakey);
+            }
+        }
     }
 }
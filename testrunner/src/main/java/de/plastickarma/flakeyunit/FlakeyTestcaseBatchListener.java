@@ -0,0 +1,19 @@
+package de.plastickarma.flakeyunit;
+
+import java.util.List;
+
+/**
+ * {@link de.plastickarma.flakeyunit.FlakeyTestcaseListener}, that can handle several potentially flakey test
+ * cases at once, e.g. to write them with a single I/O operation. An
+ * {@link de.plastickarma.flakeyunit.AsyncFlakeyTestcaseListener} passes its batches to
+ * {@link #handleBatch(java.util.List)} instead of calling
+ * {@link #handlePotentialFlakeyness(org.junit.runner.Description, Throwable, int, java.util.List)} per event.
+ */
+public interface FlakeyTestcaseBatchListener extends FlakeyTestcaseListener {
+
+    /**
+     * Handles potentially flakey test cases in the order, in which they were detected.
+     * @param events The potentially flakey test cases.
+     */
+    void handleBatch(List<FlakeyEvent> events);
+}
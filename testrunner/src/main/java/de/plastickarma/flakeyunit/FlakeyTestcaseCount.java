@@ -0,0 +1,62 @@
+package de.plastickarma.flakeyunit;
+
+/**
+ * Counters of a single potentially flakey test case, as reported by
+ * {@link CountingFlakeyTestcaseListener#snapshot()}. Instances are immutable.
+ */
+public final class FlakeyTestcaseCount {
+
+    private final String className;
+    private final String methodName;
+    private final int flakes;
+    private final long totalReruns;
+    private final long totalRerunFailures;
+
+    FlakeyTestcaseCount(
+            final String className,
+            final String methodName,
+            final int flakes,
+            final long totalReruns,
+            final long totalRerunFailures) {
+        this.className = className;
+        this.methodName = methodName;
+        this.flakes = flakes;
+        this.totalReruns = totalReruns;
+        this.totalRerunFailures = totalRerunFailures;
+    }
+
+    /**
+     * Returns the class name of the test case.
+     */
+    public String getClassName() {
+        return this.className;
+    }
+
+    /**
+     * Returns the method name of the test case.
+     */
+    public String getMethodName() {
+        return this.methodName;
+    }
+
+    /**
+     * Returns how often the test case was considered flakey.
+     */
+    public int getFlakes() {
+        return this.flakes;
+    }
+
+    /**
+     * Returns the number of reruns over all flakes.
+     */
+    public long getTotalReruns() {
+        return this.totalReruns;
+    }
+
+    /**
+     * Returns the number of failed reruns over all flakes.
+     */
+    public long getTotalRerunFailures() {
+        return this.totalRerunFailures;
+    }
+}
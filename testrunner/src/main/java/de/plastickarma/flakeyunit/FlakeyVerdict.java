@@ -0,0 +1,23 @@
+package de.plastickarma.flakeyunit;
+
+/**
+ * Verdict about the flakeyness of a failed test case, as decided by a
+ * {@link de.plastickarma.flakeyunit.FlakeyVerdictPolicy}.
+ */
+public enum FlakeyVerdict {
+
+    /**
+     * The test case passed often enough after its initial failure to be considered flakey.
+     */
+    FLAKEY,
+
+    /**
+     * The test case failed consistently, it is not considered flakey.
+     */
+    NOT_FLAKEY,
+
+    /**
+     * More reruns are needed to decide.
+     */
+    UNDECIDED
+}
@@ -0,0 +1,17 @@
+package de.plastickarma.flakeyunit;
+
+/**
+ * Policy, that decides after each rerun of a failed test case, if the test case is flakey. Reruns stop
+ * as soon as the policy returns a verdict other than {@link FlakeyVerdict#UNDECIDED}.
+ */
+public interface FlakeyVerdictPolicy {
+
+    /**
+     * Decides about the flakeyness of a test case.
+     * @param passes The number of successful reruns so far.
+     * @param failures The number of failed reruns so far.
+     * @param remainingReruns The number of reruns, that are still available. If this is 0, the policy
+     *                        must not return {@link FlakeyVerdict#UNDECIDED}.
+     */
+    FlakeyVerdict decide(int passes, int failures, int remainingReruns);
+}
@@ -0,0 +1,98 @@
+package de.plastickarma.flakeyunit;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Waits, that do not starve a ForkJoinPool, e.g. of the parallel test execution of the JUnit Platform. If the
+ * waiting thread is a worker of a ForkJoinPool, the wait is a managed block, so that the pool can start a spare
+ * worker for the other tests in the meantime. ForkJoinTasks are joined, so that the waiting worker helps to
+ * execute them.
+ */
+final class ForkJoinAwareWaits {
+
+    private ForkJoinAwareWaits() { }
+
+    /**
+     * Sleeps for the given time.
+     */
+    static void sleep(final long nanos) throws InterruptedException {
+        if (!ForkJoinTask.inForkJoinPool()) {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+            return;
+        }
+        ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+            private boolean slept;
+
+            @Override
+            public boolean block() throws InterruptedException {
+                TimeUnit.NANOSECONDS.sleep(nanos);
+                this.slept = true;
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable() {
+                return this.slept;
+            }
+        });
+    }
+
+    /**
+     * Waits for the result of the given future, see {@link Future#get(long, TimeUnit)}.
+     */
+    static <T> T get(final Future<T> future, final long nanos)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        if (!ForkJoinTask.inForkJoinPool() || future instanceof ForkJoinTask) {
+            return future.get(nanos, TimeUnit.NANOSECONDS);
+        }
+        final FutureBlocker<T> blocker = new FutureBlocker<>(future, nanos);
+        ForkJoinPool.managedBlock(blocker);
+        if (blocker.executionFailure != null) {
+            throw blocker.executionFailure;
+        }
+        if (blocker.timeout != null) {
+            throw blocker.timeout;
+        }
+        return blocker.result;
+    }
+
+    /**
+     * ManagedBlocker, that waits for a future and keeps its outcome.
+     */
+    private static final class FutureBlocker<T> implements ForkJoinPool.ManagedBlocker {
+        private final Future<T> future;
+        private final long nanos;
+        private boolean done;
+        private T result;
+        private ExecutionException executionFailure;
+        private TimeoutException timeout;
+
+        private FutureBlocker(final Future<T> future, final long nanos) {
+            this.future = future;
+            this.nanos = nanos;
+        }
+
+        @Override
+        public boolean block() throws InterruptedException {
+            try {
+                this.result = this.future.get(this.nanos, TimeUnit.NANOSECONDS);
+            } catch (ExecutionException e) {
+                this.executionFailure = e;
+            } catch (TimeoutException e) {
+                this.timeout = e;
+            }
+            this.done = true;
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return this.done;
+        }
+    }
+}
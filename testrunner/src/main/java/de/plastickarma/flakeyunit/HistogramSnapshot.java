@@ -0,0 +1,72 @@
+package de.plastickarma.flakeyunit;
+
+/**
+ * Recorded durations of a {@link de.plastickarma.flakeyunit.RerunMetrics} histogram. Percentiles are
+ * accurate to 12.5%. Instances are immutable.
+ */
+public final class HistogramSnapshot {
+
+    private final long[] bucketCounts;
+    private final long count;
+    private final long totalNanos;
+    private final long maxNanos;
+
+    HistogramSnapshot(final long[] bucketCounts, final long count, final long totalNanos, final long maxNanos) {
+        this.bucketCounts = bucketCounts;
+        this.count = count;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+    }
+
+    /**
+     * Returns the number of recorded durations.
+     */
+    public long getCount() {
+        return this.count;
+    }
+
+    /**
+     * Returns the sum of the recorded durations in nanoseconds.
+     */
+    public long getTotalNanos() {
+        return this.totalNanos;
+    }
+
+    /**
+     * Returns the longest recorded duration in nanoseconds, 0 if nothing was recorded.
+     */
+    public long getMaxNanos() {
+        return this.maxNanos;
+    }
+
+    /**
+     * Returns the mean of the recorded durations in nanoseconds, 0 if nothing was recorded.
+     */
+    public long getMeanNanos() {
+        return this.count == 0 ? 0 : this.totalNanos / this.count;
+    }
+
+    /**
+     * Returns the duration, that the given percentage of the recorded durations do not exceed.
+     * @param percentile percentage between 0 and 100, e.g. 99 for the 99th percentile.
+     * @return the duration in nanoseconds, 0 if nothing was recorded.
+     */
+    public long getPercentileNanos(final double percentile) {
+        long total = 0;
+        for (long bucketCount : this.bucketCounts) {
+            total += bucketCount;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < this.bucketCounts.length; i++) {
+            seen += this.bucketCounts[i];
+            if (seen >= rank) {
+                return Math.min(LatencyHistogram.highestValueOf(i), this.maxNanos);
+            }
+        }
+        return this.maxNanos;
+    }
+}
@@ -0,0 +1,82 @@
+package de.plastickarma.flakeyunit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations in nanoseconds with log-linear buckets: every power of two is split into
+ * {@value #SUB_BUCKETS} buckets of equal width, so that a recorded value is off by at most 12.5%. Recording
+ * is a few atomic updates and allocates nothing.
+ */
+final class LatencyHistogram {
+
+    static final int SUB_BUCKET_BITS = 3;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Records a duration. Negative durations are recorded as 0.
+     */
+    void record(final long nanos) {
+        final long value = Math.max(0, nanos);
+        this.counts.incrementAndGet(bucketOf(value));
+        this.count.incrementAndGet();
+        this.totalNanos.addAndGet(value);
+        long max = this.maxNanos.get();
+        while (value > max && !this.maxNanos.compareAndSet(max, value)) {
+            max = this.maxNanos.get();
+        }
+    }
+
+    /**
+     * Returns a copy of the recorded values. Values, that are recorded while the snapshot is taken, may be
+     * missing in some of its counters.
+     */
+    HistogramSnapshot snapshot() {
+        final long[] bucketCounts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            bucketCounts[i] = this.counts.get(i);
+        }
+        return new HistogramSnapshot(bucketCounts, this.count.get(), this.totalNanos.get(), this.maxNanos.get());
+    }
+
+    /**
+     * Returns the number of recorded values without copying the buckets.
+     */
+    long recordedCount() {
+        return this.count.get();
+    }
+
+    /**
+     * Returns the sum of the recorded values without copying the buckets.
+     */
+    long recordedTotalNanos() {
+        return this.totalNanos.get();
+    }
+
+    static int bucketOf(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the highest value, that is recorded in the given bucket.
+     */
+    static long highestValueOf(final int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int shift = bucket / SUB_BUCKETS - 1;
+        final long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
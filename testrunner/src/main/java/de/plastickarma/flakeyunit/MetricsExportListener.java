@@ -0,0 +1,33 @@
+package de.plastickarma.flakeyunit;
+
+import org.junit.runner.Result;
+import org.junit.runner.notification.RunListener;
+
+/**
+ * JUnit RunListener, that {@link RerunMetrics#export() exports} the rerun costs, when the test run has
+ * finished. Register it with the test runner, e.g. with <code>JUnitCore#addListener</code> or as
+ * <code>listener</code> property of the Maven Surefire plugin.
+ */
+public class MetricsExportListener extends RunListener {
+
+    private final RerunMetrics metrics;
+
+    /**
+     * Creates a MetricsExportListener for {@link RerunMetrics#shared()}.
+     */
+    public MetricsExportListener() {
+        this(RerunMetrics.shared());
+    }
+
+    /**
+     * Creates a MetricsExportListener for the given metrics.
+     */
+    public MetricsExportListener(final RerunMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void testRunFinished(final Result result) {
+        this.metrics.export();
+    }
+}
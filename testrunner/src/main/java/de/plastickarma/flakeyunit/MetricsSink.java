@@ -0,0 +1,17 @@
+package de.plastickarma.flakeyunit;
+
+import java.io.IOException;
+
+/**
+ * Destination of the rerun costs recorded by {@link de.plastickarma.flakeyunit.RerunMetrics}, e.g. a file,
+ * that is picked up by a monitoring system.
+ */
+public interface MetricsSink {
+
+    /**
+     * Exports the recorded rerun costs. Called by {@link RerunMetrics#export()}, e.g. at the end of the test
+     * run; later calls contain everything of the earlier ones.
+     * @param snapshot The rerun costs recorded so far.
+     */
+    void export(RerunMetricsSnapshot snapshot) throws IOException;
+}
@@ -0,0 +1,225 @@
+package de.plastickarma.flakeyunit;
+
+import org.junit.runners.model.Statement;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link de.plastickarma.flakeyunit.RerunExecutor}, that executes up to a given number of reruns of the same
+ * Statement at the same time. The results are taken into account in rerun order, so that the verdict is the
+ * same as for sequential reruns. Reruns, that are still running or waiting, when the verdict is settled, are
+ * cancelled. Only use it for test cases, that do not share mutable state between invocations.
+ */
+final class ParallelRerunExecutor implements RerunExecutor {
+
+    private static final Throwable BUDGET_EXHAUSTED = new Throwable("rerun budget exhausted");
+
+    private final ExecutorService executor;
+    private final boolean joinCallerPool;
+    private final int parallelism;
+    private final long rerunTimeoutNanos;
+    private final long budgetNanos;
+    private final SuiteRerunBudget suiteBudget;
+    private final RerunMetrics metrics;
+
+    /**
+     * Creates a ParallelRerunExecutor.
+     * @param executor ExecutorService, that executes the reruns.
+     * @param joinCallerPool if true, reruns of a test case, that runs in a ForkJoinPool, e.g. with the parallel
+     *                       execution of the JUnit Platform, are executed in that pool instead of the executor.
+     *                       Reruns in a ForkJoinPool are not interrupted, when they are cancelled.
+     * @param parallelism maximum number of reruns, that are submitted to the executor at the same time.
+     * @param rerunTimeout maximum time for a single rerun, counted from its submission. A rerun, that
+     *                     exceeds it, is cancelled and counts as failure. 0 means no timeout.
+     * @param rerunTimeoutUnit Time unit of rerun timeout.
+     * @param budgetNanos Wall-clock budget for all reruns of a test case, 0 for an unlimited budget. Reruns,
+     *                    that are still running when it is spent, are cancelled and not taken into account.
+     * @param suiteBudget Wall-clock budget for all reruns of the suite, <code>null</code> for none.
+     * @param metrics Recorder of the rerun durations, <code>null</code> to record nothing.
+     */
+    ParallelRerunExecutor(
+            final ExecutorService executor,
+            final boolean joinCallerPool,
+            final int parallelism,
+            final long rerunTimeout,
+            final TimeUnit rerunTimeoutUnit,
+            final long budgetNanos,
+            final SuiteRerunBudget suiteBudget,
+            final RerunMetrics metrics) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1, but was " + parallelism);
+        }
+        this.executor = executor;
+        this.joinCallerPool = joinCallerPool;
+        this.parallelism = parallelism;
+        this.rerunTimeoutNanos = rerunTimeoutUnit.toNanos(rerunTimeout);
+        this.budgetNanos = budgetNanos;
+        this.suiteBudget = suiteBudget;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public int rerun(
+            final Statement base,
+            final Perturbation[] perturbations,
+            final int maxReruns,
+            final FlakeyVerdictPolicy verdictPolicy,
+            final RerunFailures failures) {
+        final RerunBudget budget = new RerunBudget(this.budgetNanos, this.suiteBudget);
+        final ExecutorService rerunExecutor = this.joinCallerPool && ForkJoinTask.inForkJoinPool()
+                ? ForkJoinTask.getPool()
+                : this.executor;
+        final Deque<SubmittedRerun> running = new ArrayDeque<>(this.parallelism);
+        int submitted = 0;
+        int rerunCount = 0;
+        try {
+            while (rerunCount < maxReruns
+                    && !budget.isExhausted()
+                    && verdictPolicy.decide(rerunCount - failures.size(), failures.size(), maxReruns - rerunCount)
+                        == FlakeyVerdict.UNDECIDED) {
+                while (submitted < maxReruns && running.size() < this.parallelism) {
+                    // by submission order, as the reruns are taken into account in that order
+                    final Perturbation perturbation = PerturbedStatement.perturbation(perturbations, submitted);
+                    final RerunTask task =
+                            new RerunTask(PerturbedStatement.perturb(base, perturbation), this.metrics);
+                    running.addLast(new SubmittedRerun(task, perturbation, rerunExecutor.submit(task)));
+                    submitted++;
+                }
+                final SubmittedRerun next = running.removeFirst();
+                final Throwable failure = next.await(this.rerunTimeoutNanos, budget);
+                if (failure == BUDGET_EXHAUSTED) {
+                    next.future.cancel(true);
+                    break;
+                }
+                rerunCount++;
+                failures.addRerun(next.perturbation, failure);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (SubmittedRerun rerun : running) {
+                rerun.future.cancel(true);
+            }
+            budget.finish();
+        }
+        return rerunCount;
+    }
+
+    /**
+     * Creates the default executor for parallel reruns. Uses virtual threads if the JVM supports them,
+     * otherwise a pool of daemon threads of the given size.
+     */
+    static ExecutorService defaultExecutor(final int parallelism) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            final ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                    parallelism, parallelism, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory());
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        }
+    }
+
+    /**
+     * Rerun, that was submitted to the executor.
+     */
+    private static final class SubmittedRerun {
+        private final RerunTask task;
+        private final Perturbation perturbation;
+        private final Future<Throwable> future;
+        private final long submissionTime = System.nanoTime();
+
+        private SubmittedRerun(final RerunTask task, final Perturbation perturbation, final Future<Throwable> future) {
+            this.task = task;
+            this.perturbation = perturbation;
+            this.future = future;
+        }
+
+        /**
+         * Waits for the rerun to complete, but not longer than the remaining budget.
+         * @return The failure of the rerun, <code>null</code>, if it passed, or BUDGET_EXHAUSTED if the
+         * budget was spent before the rerun completed.
+         */
+        private Throwable await(final long timeoutNanos, final RerunBudget budget) throws InterruptedException {
+            final long remainingTimeout = timeoutNanos <= 0
+                    ? Long.MAX_VALUE
+                    : timeoutNanos - (System.nanoTime() - this.submissionTime);
+            final long remainingBudget = budget.remainingNanos();
+            try {
+                return ForkJoinAwareWaits.get(this.future, Math.min(remainingTimeout, remainingBudget));
+            } catch (ExecutionException e) {
+                return e.getCause();
+            } catch (TimeoutException e) {
+                if (remainingBudget < remainingTimeout) {
+                    return BUDGET_EXHAUSTED;
+                }
+                final RerunTimeoutException timeout = new RerunTimeoutException(
+                        String.format("rerun timed out after %d ms", TimeUnit.NANOSECONDS.toMillis(timeoutNanos)),
+                        this.task.runner,
+                        RerunWatchdog.threadDump());
+                this.future.cancel(true);
+                return timeout;
+            }
+        }
+    }
+
+    /**
+     * Task, that evaluates the Statement once and records its duration on the executing thread.
+     */
+    private static final class RerunTask implements Callable<Throwable> {
+        private final Statement base;
+        private final RerunMetrics metrics;
+        private volatile Thread runner;
+
+        private RerunTask(final Statement base, final RerunMetrics metrics) {
+            this.base = base;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public Throwable call() {
+            this.runner = Thread.currentThread();
+            final long start = System.nanoTime();
+            final long cpuStart = this.metrics != null ? RerunMetrics.currentThreadCpuNanos() : 0;
+            try {
+                this.base.evaluate();
+                return null;
+            } catch (Throwable t) {
+                return t;
+            } finally {
+                if (this.metrics != null) {
+                    this.metrics.recordRerun(
+                            System.nanoTime() - start, RerunMetrics.currentThreadCpuNanos() - cpuStart);
+                }
+            }
+        }
+    }
+
+    /**
+     * ThreadFactory for daemon threads, so that idle rerun threads never keep the JVM alive.
+     */
+    private static final class DaemonThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "flakey-rerun-" + this.threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
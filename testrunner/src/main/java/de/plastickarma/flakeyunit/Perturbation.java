@@ -0,0 +1,33 @@
+package de.plastickarma.flakeyunit;
+
+/**
+ * Perturbation of the environment of a rerun, e.g. CPU contention, so that reruns do not just repeat the
+ * conditions of the initial run and timing-dependent flakes show up in fewer reruns. See
+ * {@link de.plastickarma.flakeyunit.Perturbations} for the predefined perturbations.
+ */
+public interface Perturbation {
+
+    /**
+     * Returns the name of the perturbation, that is recorded for the reruns it was in effect for, see
+     * {@link RerunFailures#getPerturbations()}.
+     */
+    String getName();
+
+    /**
+     * Starts perturbing the environment right before a rerun. Reruns may run at the same time, so every call
+     * must start a perturbation of its own.
+     * @return handle, that ends the perturbation right after the rerun.
+     */
+    Handle start();
+
+    /**
+     * Handle of a started perturbation.
+     */
+    interface Handle {
+
+        /**
+         * Ends the perturbation. Must not block for long, background threads should only be signalled to end.
+         */
+        void stop();
+    }
+}
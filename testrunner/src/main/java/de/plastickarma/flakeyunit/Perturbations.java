@@ -0,0 +1,197 @@
+package de.plastickarma.flakeyunit;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Factory for the predefined {@link de.plastickarma.flakeyunit.Perturbation perturbations}.
+ */
+public final class Perturbations {
+
+    private static final Perturbation.Handle NOT_STARTED = new Perturbation.Handle() {
+        @Override
+        public void stop() {
+        }
+    };
+
+    private Perturbations() { }
+
+    /**
+     * Creates a perturbation, that leaves the environment as it is, e.g. to alternate perturbed and plain
+     * reruns.
+     */
+    public static Perturbation none() {
+        return new Perturbation() {
+            @Override
+            public String getName() {
+                return "none";
+            }
+
+            @Override
+            public Handle start() {
+                return NOT_STARTED;
+            }
+        };
+    }
+
+    /**
+     * Creates a perturbation, that keeps the given number of background threads busy during the rerun, so that
+     * the threads of the test case get preempted at varying points.
+     * @param threads number of busy threads, e.g. the number of available processors.
+     */
+    public static Perturbation cpuContention(final int threads) {
+        return new BackgroundPerturbation("cpu-contention(" + threads + ")", threads) {
+            @Override
+            void perturb(final BackgroundThreads background) {
+                long spins = 0;
+                while (background.running) {
+                    spins++;
+                }
+                background.sink = spins;
+            }
+        };
+    }
+
+    /**
+     * Creates a perturbation, that allocates garbage on the given number of background threads during the
+     * rerun, so that garbage collections pause the test case at varying points.
+     * @param threads number of allocating threads.
+     */
+    public static Perturbation gcPressure(final int threads) {
+        return new BackgroundPerturbation("gc-pressure(" + threads + ")", threads) {
+            @Override
+            void perturb(final BackgroundThreads background) {
+                // the chunks survive a few allocations, so that some of them leave the young generation
+                final Object[] retained = new Object[64];
+                int next = 0;
+                while (background.running) {
+                    retained[next] = new byte[64 * 1024];
+                    next = (next + 1) % retained.length;
+                }
+                background.sink = retained.length;
+            }
+        };
+    }
+
+    /**
+     * Creates a perturbation, that delays the start of the rerun by a random time up to the given delay, so that
+     * the rerun meets asynchronous activity, e.g. of background threads of the test case, at varying points.
+     * @param maxDelay Upper bound of the delay.
+     * @param maxDelayUnit Time unit of the delay.
+     */
+    public static Perturbation startDelay(final long maxDelay, final TimeUnit maxDelayUnit) {
+        final long maxDelayNanos = maxDelayUnit.toNanos(maxDelay);
+        final String name = "start-delay(" + maxDelayUnit.toMillis(maxDelay) + "ms)";
+        return new Perturbation() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public Handle start() {
+                if (maxDelayNanos > 0) {
+                    try {
+                        ForkJoinAwareWaits.sleep(ThreadLocalRandom.current().nextLong(maxDelayNanos + 1));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return NOT_STARTED;
+            }
+        };
+    }
+
+    /**
+     * Creates a perturbation, that applies all the given perturbations at once.
+     * @param perturbations the combined perturbations.
+     */
+    public static Perturbation combined(final Perturbation... perturbations) {
+        final StringBuilder name = new StringBuilder();
+        for (Perturbation perturbation : perturbations) {
+            if (name.length() > 0) {
+                name.append('+');
+            }
+            name.append(perturbation.getName());
+        }
+        final String combinedName = name.toString();
+        return new Perturbation() {
+            @Override
+            public String getName() {
+                return combinedName;
+            }
+
+            @Override
+            public Handle start() {
+                final Handle[] handles = new Handle[perturbations.length];
+                for (int i = 0; i < perturbations.length; i++) {
+                    handles[i] = perturbations[i].start();
+                }
+                return new Handle() {
+                    @Override
+                    public void stop() {
+                        for (int i = handles.length - 1; i >= 0; i--) {
+                            handles[i].stop();
+                        }
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Perturbation, that runs on daemon threads of its own while a rerun is running.
+     */
+    private abstract static class BackgroundPerturbation implements Perturbation {
+        private final String name;
+        private final int threads;
+
+        private BackgroundPerturbation(final String name, final int threads) {
+            if (threads < 1) {
+                throw new IllegalArgumentException("threads must be at least 1, but was " + threads);
+            }
+            this.name = name;
+            this.threads = threads;
+        }
+
+        @Override
+        public String getName() {
+            return this.name;
+        }
+
+        @Override
+        public Handle start() {
+            final BackgroundThreads background = new BackgroundThreads();
+            for (int i = 0; i < this.threads; i++) {
+                final Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        perturb(background);
+                    }
+                }, "flakey-perturbation-" + i);
+                thread.setDaemon(true);
+                thread.start();
+            }
+            return background;
+        }
+
+        /**
+         * Perturbs the environment until the rerun is finished.
+         */
+        abstract void perturb(BackgroundThreads background);
+    }
+
+    /**
+     * Handle of the background threads of a perturbation, that tells them when to end.
+     */
+    private static final class BackgroundThreads implements Perturbation.Handle {
+        private volatile boolean running = true;
+        // keeps the work of the threads from being optimized away
+        private volatile long sink;
+
+        @Override
+        public void stop() {
+            this.running = false;
+        }
+    }
+}
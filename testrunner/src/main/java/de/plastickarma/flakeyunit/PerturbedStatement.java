@@ -0,0 +1,45 @@
+package de.plastickarma.flakeyunit;
+
+import org.junit.runners.model.Statement;
+
+/**
+ * Statement, that reruns a failed test case under a perturbation. The perturbations are applied to the reruns
+ * in turn by rerun number, so that the outcome of every rerun can be recorded with its perturbation, even if
+ * reruns run at the same time.
+ */
+final class PerturbedStatement extends Statement {
+
+    private final Statement base;
+    private final Perturbation perturbation;
+
+    private PerturbedStatement(final Statement base, final Perturbation perturbation) {
+        this.base = base;
+        this.perturbation = perturbation;
+    }
+
+    /**
+     * Returns the perturbation of the rerun with the given number, <code>null</code> if the reruns are not
+     * perturbed.
+     */
+    static Perturbation perturbation(final Perturbation[] perturbations, final int rerun) {
+        return perturbations.length == 0 ? null : perturbations[rerun % perturbations.length];
+    }
+
+    /**
+     * Returns the Statement, that runs the given Statement under the given perturbation, or the Statement
+     * itself, if the perturbation is <code>null</code>.
+     */
+    static Statement perturb(final Statement base, final Perturbation perturbation) {
+        return perturbation == null ? base : new PerturbedStatement(base, perturbation);
+    }
+
+    @Override
+    public void evaluate() throws Throwable {
+        final Perturbation.Handle handle = this.perturbation.start();
+        try {
+            this.base.evaluate();
+        } finally {
+            handle.stop();
+        }
+    }
+}
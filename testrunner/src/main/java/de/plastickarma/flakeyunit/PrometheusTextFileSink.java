@@ -0,0 +1,135 @@
+package de.plastickarma.flakeyunit;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * {@link de.plastickarma.flakeyunit.MetricsSink}, that writes the rerun costs in the Prometheus text format,
+ * e.g. for the textfile collector of the node exporter. The file is replaced atomically, so that the
+ * collector never reads a partially written file.
+ */
+public final class PrometheusTextFileSink implements MetricsSink {
+
+    private static final double NANOS_PER_SECOND = 1e9;
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    private final Path file;
+
+    /**
+     * Creates a PrometheusTextFileSink.
+     * @param file File to write, e.g. <code>/var/lib/node_exporter/flakeyunit.prom</code>.
+     */
+    public PrometheusTextFileSink(final Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public void export(final RerunMetricsSnapshot snapshot) throws IOException {
+        final Path temporary = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+        try (Writer out = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            write(out, snapshot);
+        }
+        Files.move(temporary, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static void write(final Appendable out, final RerunMetricsSnapshot snapshot) throws IOException {
+        summary(out, "flakeyunit_initial_run_seconds", "Duration of the initial test case runs.",
+                snapshot.getInitialRuns());
+        summary(out, "flakeyunit_rerun_seconds", "Duration of the single reruns.", snapshot.getReruns());
+        summary(out, "flakeyunit_rerun_sleep_seconds", "Waiting time before reruns.", snapshot.getSleeps());
+        summary(out, "flakeyunit_listener_dispatch_seconds", "Time spent in listeners per notification.",
+                snapshot.getListenerDispatches());
+        header(out, "flakeyunit_rerun_cpu_seconds_total", "CPU time of the reruns.", "counter");
+        sample(out, "flakeyunit_rerun_cpu_seconds_total", null, null, seconds(snapshot.getRerunCpuNanos()));
+        header(out, "flakeyunit_rerun_tests_total", "Failed test cases, that were rerun.", "counter");
+        sample(out, "flakeyunit_rerun_tests_total", null, null, snapshot.getRerunTests());
+        header(out, "flakeyunit_flakes_total", "Test cases, that were considered flakey.", "counter");
+        sample(out, "flakeyunit_flakes_total", null, null, snapshot.getFlakes());
+
+        header(out, "flakeyunit_class_tests_total", "Initial test case runs per test class.", "counter");
+        for (ClassRerunMetrics testClass : snapshot.getClasses()) {
+            sample(out, "flakeyunit_class_tests_total", "class", testClass.getClassName(), testClass.getTests());
+        }
+        header(out, "flakeyunit_class_initial_run_seconds_total",
+                "Duration of the initial test case runs per test class.", "counter");
+        for (ClassRerunMetrics testClass : snapshot.getClasses()) {
+            sample(out, "flakeyunit_class_initial_run_seconds_total", "class", testClass.getClassName(),
+                    seconds(testClass.getInitialRunNanos()));
+        }
+        header(out, "flakeyunit_class_reruns_total", "Reruns per test class.", "counter");
+        for (ClassRerunMetrics testClass : snapshot.getClasses()) {
+            sample(out, "flakeyunit_class_reruns_total", "class", testClass.getClassName(), testClass.getReruns());
+        }
+        header(out, "flakeyunit_class_rerun_seconds_total",
+                "Duration of the reruns per test class, including the waiting times.", "counter");
+        for (ClassRerunMetrics testClass : snapshot.getClasses()) {
+            sample(out, "flakeyunit_class_rerun_seconds_total", "class", testClass.getClassName(),
+                    seconds(testClass.getRerunNanos()));
+        }
+        header(out, "flakeyunit_class_flakes_total", "Flakey test cases per test class.", "counter");
+        for (ClassRerunMetrics testClass : snapshot.getClasses()) {
+            sample(out, "flakeyunit_class_flakes_total", "class", testClass.getClassName(), testClass.getFlakes());
+        }
+    }
+
+    private static void summary(
+            final Appendable out,
+            final String name,
+            final String help,
+            final HistogramSnapshot histogram) throws IOException {
+        header(out, name, help, "summary");
+        for (double quantile : QUANTILES) {
+            sample(out, name, "quantile", Double.toString(quantile),
+                    seconds(histogram.getPercentileNanos(quantile * 100)));
+        }
+        sample(out, name + "_sum", null, null, seconds(histogram.getTotalNanos()));
+        sample(out, name + "_count", null, null, histogram.getCount());
+    }
+
+    private static void header(
+            final Appendable out,
+            final String name,
+            final String help,
+            final String type) throws IOException {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(
+            final Appendable out,
+            final String name,
+            final String label,
+            final String labelValue,
+            final double value) throws IOException {
+        out.append(name);
+        if (label != null) {
+            out.append('{').append(label).append("=\"");
+            for (int i = 0; i < labelValue.length(); i++) {
+                final char c = labelValue.charAt(i);
+                if (c == '\\' || c == '"') {
+                    out.append('\\').append(c);
+                } else if (c == '\n') {
+                    out.append("\\n");
+                } else {
+                    out.append(c);
+                }
+            }
+            out.append("\"}");
+        }
+        out.append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < Long.MAX_VALUE) {
+            out.append(Long.toString((long) value));
+        } else {
+            out.append(Double.toString(value));
+        }
+        out.append('\n');
+    }
+
+    private static double seconds(final long nanos) {
+        return nanos / NANOS_PER_SECOND;
+    }
+}
@@ -0,0 +1,226 @@
+package de.plastickarma.flakeyunit;
+
+import org.junit.runner.Description;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Set of known flakey test cases, that are not rerun, but run once or skipped, see
+ * {@link FlakeyTestIndicatorBuilder#quarantine(Quarantine, QuarantineMode)}. Test cases are given as keys
+ * <code>&lt;class name&gt;#&lt;method name&gt;</code>, e.g. <code>com.example.SomeTest#testMethod</code>.
+ * <p>
+ * The quarantine file contains a key per line, blank lines and lines starting with <code>#</code> are ignored.
+ * It is checked for changes at most once per check interval. Lines, that were appended to the file since the
+ * last check, are added to the quarantine without reading the file again; any other change reloads it. A last
+ * line without line break may still be written, so it is held back until it is complete, or until the file
+ * has not changed for a check interval.
+ * A missing file is an empty quarantine. Looking up a test case is a constant time operation without
+ * allocations, so that quarantine does not slow down the test run.
+ * </p>
+ */
+public final class Quarantine {
+
+    private static final int TAIL_BYTES = 256;
+
+    private final Path file;
+    private final long checkIntervalNanos;
+    private volatile QuarantineIndex index;
+    private volatile long nextCheck;
+
+    // state of the file, guarded by this
+    private final Set<String> displayNames = new HashSet<>();
+    private long offset;
+    // bytes after the offset, that were held back, as they were not terminated by a line break
+    private int heldBack;
+    private byte[] tail = new byte[0];
+    private FileTime lastModified;
+
+    private Quarantine(final Path file, final long checkIntervalNanos, final Collection<String> keys) {
+        this.file = file;
+        this.checkIntervalNanos = checkIntervalNanos;
+        for (String key : keys) {
+            addKey(key);
+        }
+        this.index = new QuarantineIndex(this.displayNames);
+        this.nextCheck = System.nanoTime();
+    }
+
+    /**
+     * Creates a fixed quarantine of the given test cases.
+     * @param keys Test cases as <code>&lt;class name&gt;#&lt;method name&gt;</code>.
+     */
+    public static Quarantine of(final String... keys) {
+        return of(Arrays.asList(keys));
+    }
+
+    /**
+     * Creates a fixed quarantine of the given test cases.
+     * @param keys Test cases as <code>&lt;class name&gt;#&lt;method name&gt;</code>.
+     */
+    public static Quarantine of(final Collection<String> keys) {
+        return new Quarantine(null, 0, keys);
+    }
+
+    /**
+     * Creates a quarantine of the test cases in the given file, that is checked for changes once per second.
+     */
+    public static Quarantine fromFile(final Path file) {
+        return fromFile(file, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Creates a quarantine of the test cases in the given file.
+     * @param file File with a key per line.
+     * @param checkInterval Minimum time between two checks of the file for changes.
+     * @param checkIntervalUnit Time unit of the check interval.
+     */
+    public static Quarantine fromFile(final Path file, final long checkInterval, final TimeUnit checkIntervalUnit) {
+        final Quarantine quarantine = new Quarantine(
+                file, checkIntervalUnit.toNanos(checkInterval), Collections.<String>emptySet());
+        quarantine.reloadIfChanged();
+        return quarantine;
+    }
+
+    /**
+     * Returns the key of a test case.
+     */
+    public static String key(final String className, final String methodName) {
+        return className + '#' + methodName;
+    }
+
+    /**
+     * Returns true, if the given test case is quarantined.
+     */
+    public boolean isQuarantined(final Description description) {
+        if (this.file != null && System.nanoTime() - this.nextCheck >= 0) {
+            reloadIfChanged();
+        }
+        return this.index.contains(description.getDisplayName());
+    }
+
+    /**
+     * Returns the number of quarantined test cases.
+     */
+    public int size() {
+        return this.index.size();
+    }
+
+    /**
+     * Reads the changes of the quarantine file, regardless of the check interval. If the file can not be read,
+     * the quarantine stays as it is.
+     * @return true, if the file has changed since the last check, or its held back last line was added.
+     */
+    public synchronized boolean reloadIfChanged() {
+        if (this.file == null) {
+            return false;
+        }
+        this.nextCheck = System.nanoTime() + this.checkIntervalNanos;
+        try {
+            if (!Files.exists(this.file)) {
+                if (this.lastModified == null) {
+                    return false;
+                }
+                reset();
+                this.lastModified = null;
+                this.index = QuarantineIndex.EMPTY;
+                return true;
+            }
+            final long size = Files.size(this.file);
+            final FileTime modified = Files.getLastModifiedTime(this.file);
+            final boolean unchanged = size == this.offset + this.heldBack && modified.equals(this.lastModified);
+            if (unchanged && this.heldBack == 0) {
+                return false;
+            }
+            try (SeekableByteChannel channel = Files.newByteChannel(this.file)) {
+                if (size < this.offset || !tailMatches(channel)) {
+                    reset();
+                }
+                // a held back line, that has not changed since the last check, is complete
+                readFrom(channel, size, unchanged);
+            }
+            this.lastModified = modified;
+            this.index = new QuarantineIndex(this.displayNames);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns true, if the file still contains the bytes before the offset, i.e. was only appended to.
+     */
+    private boolean tailMatches(final SeekableByteChannel channel) throws IOException {
+        if (this.tail.length == 0) {
+            return true;
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(this.tail.length);
+        channel.position(this.offset - this.tail.length);
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            continue;
+        }
+        return !buffer.hasRemaining() && Arrays.equals(buffer.array(), this.tail);
+    }
+
+    /**
+     * Reads the lines after the offset. A last line without line break is held back and read again on the next
+     * check, as it may not be complete yet, unless it is final.
+     */
+    private void readFrom(
+            final SeekableByteChannel channel,
+            final long size,
+            final boolean lastLineFinal) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate((int) (size - this.offset));
+        channel.position(this.offset);
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            continue;
+        }
+        final byte[] bytes = Arrays.copyOf(buffer.array(), buffer.position());
+        int complete = bytes.length;
+        while (complete > 0 && bytes[complete - 1] != '\n') {
+            complete--;
+        }
+        if (lastLineFinal) {
+            complete = bytes.length;
+        }
+        for (String line : new String(bytes, 0, complete, StandardCharsets.UTF_8).split("\r?\n")) {
+            addKey(line);
+        }
+        this.offset += complete;
+        this.heldBack = bytes.length - complete;
+        final int tailLength = (int) Math.min(TAIL_BYTES, this.offset);
+        final byte[] newTail = new byte[tailLength];
+        final int fromChunk = Math.min(tailLength, complete);
+        System.arraycopy(this.tail, this.tail.length - (tailLength - fromChunk), newTail, 0, tailLength - fromChunk);
+        System.arraycopy(bytes, complete - fromChunk, newTail, tailLength - fromChunk, fromChunk);
+        this.tail = newTail;
+    }
+
+    private void reset() {
+        this.displayNames.clear();
+        this.offset = 0;
+        this.heldBack = 0;
+        this.tail = new byte[0];
+    }
+
+    private void addKey(final String key) {
+        final String trimmed = key.trim();
+        final int separator = trimmed.lastIndexOf('#');
+        if (trimmed.startsWith("#") || separator <= 0 || separator == trimmed.length() - 1) {
+            return;
+        }
+        // the display name of JUnit test descriptions
+        this.displayNames.add(trimmed.substring(separator + 1) + '(' + trimmed.substring(0, separator) + ')');
+    }
+}
@@ -0,0 +1,67 @@
+package de.plastickarma.flakeyunit;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Immutable hash set of the JUnit display names of quarantined test cases, e.g.
+ * <code>testMethod(com.example.SomeTest)</code>. Uses open addressing on a plain array, so that a lookup
+ * neither allocates nor follows more than a few references. The display name is used, because
+ * {@link org.junit.runner.Description#getDisplayName()} returns a stored string, whose hash code is cached,
+ * while the class and method names are parsed from it.
+ */
+final class QuarantineIndex {
+
+    static final QuarantineIndex EMPTY = new QuarantineIndex(Collections.<String>emptySet());
+
+    private final String[] table;
+    private final int mask;
+    private final int size;
+
+    QuarantineIndex(final Collection<String> displayNames) {
+        // load factor at most 0.5, so that probe sequences stay short
+        final int capacity = Integer.highestOneBit(Math.max(1, displayNames.size()) * 2) * 2;
+        this.table = new String[capacity];
+        this.mask = capacity - 1;
+        int entries = 0;
+        for (String displayName : displayNames) {
+            int i = slot(displayName);
+            while (this.table[i] != null && !this.table[i].equals(displayName)) {
+                i = (i + 1) & this.mask;
+            }
+            if (this.table[i] == null) {
+                this.table[i] = displayName;
+                entries++;
+            }
+        }
+        this.size = entries;
+    }
+
+    /**
+     * Returns true, if the test case with the given display name is quarantined.
+     */
+    boolean contains(final String displayName) {
+        int i = slot(displayName);
+        String entry = this.table[i];
+        while (entry != null) {
+            if (entry.equals(displayName)) {
+                return true;
+            }
+            i = (i + 1) & this.mask;
+            entry = this.table[i];
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of quarantined test cases.
+     */
+    int size() {
+        return this.size;
+    }
+
+    private int slot(final String displayName) {
+        final int hash = displayName.hashCode() * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & this.mask;
+    }
+}
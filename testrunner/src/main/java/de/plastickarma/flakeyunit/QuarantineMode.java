@@ -0,0 +1,18 @@
+package de.plastickarma.flakeyunit;
+
+/**
+ * Treatment of test cases in {@link de.plastickarma.flakeyunit.Quarantine quarantine}.
+ */
+public enum QuarantineMode {
+
+    /**
+     * Quarantined test cases are run once without reruns. A failure is reported to JUnit as failed assumption,
+     * i.e. as warning, that does not fail the build.
+     */
+    RUN_ONCE,
+
+    /**
+     * Quarantined test cases are not run at all, but reported to JUnit as failed assumption.
+     */
+    SKIP
+}
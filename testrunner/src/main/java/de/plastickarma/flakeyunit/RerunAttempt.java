@@ -0,0 +1,38 @@
+package de.plastickarma.flakeyunit;
+
+/**
+ * Outcome of a perturbed rerun together with the perturbation, that was in effect for it, see
+ * {@link RerunFailures#getAttempts()}. Instances are immutable.
+ */
+public final class RerunAttempt {
+
+    private final String perturbation;
+    private final DistinctFailure failure;
+
+    RerunAttempt(final String perturbation, final DistinctFailure failure) {
+        this.perturbation = perturbation;
+        this.failure = failure;
+    }
+
+    /**
+     * Returns the name of the {@link de.plastickarma.flakeyunit.Perturbation perturbation} of the rerun.
+     */
+    public String getPerturbation() {
+        return this.perturbation;
+    }
+
+    /**
+     * Returns whether the rerun passed.
+     */
+    public boolean isPassed() {
+        return this.failure == null;
+    }
+
+    /**
+     * Returns the failure of the rerun, <code>null</code> if it passed. Identical failures share the same
+     * DistinctFailure.
+     */
+    public DistinctFailure getFailure() {
+        return this.failure;
+    }
+}
@@ -0,0 +1,57 @@
+package de.plastickarma.flakeyunit;
+
+/**
+ * Wall-clock budget for the reruns of a single test case, starting at its creation. If a
+ * {@link de.plastickarma.flakeyunit.SuiteRerunBudget} is given, the budget is also limited by it and
+ * the time spent on the reruns is charged to it on {@link #finish()}.
+ */
+final class RerunBudget {
+
+    private final long start;
+    private final long deadline;
+    private final boolean unlimited;
+    private final SuiteRerunBudget suiteBudget;
+
+    /**
+     * Starts a RerunBudget.
+     * @param budgetNanos budget in nanoseconds, 0 or less for an unlimited budget.
+     * @param suiteBudget budget of the whole suite, <code>null</code> for none.
+     */
+    RerunBudget(final long budgetNanos, final SuiteRerunBudget suiteBudget) {
+        this.start = System.nanoTime();
+        this.unlimited = budgetNanos <= 0;
+        this.deadline = this.start + budgetNanos;
+        this.suiteBudget = suiteBudget;
+    }
+
+    /**
+     * Returns the remaining budget in nanoseconds, Long.MAX_VALUE if the budget is unlimited.
+     */
+    long remainingNanos() {
+        long remaining = Long.MAX_VALUE;
+        if (!this.unlimited) {
+            remaining = Math.max(0, this.deadline - System.nanoTime());
+        }
+        if (this.suiteBudget != null) {
+            final long elapsed = System.nanoTime() - this.start;
+            remaining = Math.min(remaining, Math.max(0, this.suiteBudget.remainingNanos() - elapsed));
+        }
+        return remaining;
+    }
+
+    /**
+     * Returns true, if the budget is spent.
+     */
+    boolean isExhausted() {
+        return remainingNanos() == 0;
+    }
+
+    /**
+     * Charges the time spent on the reruns to the suite budget.
+     */
+    void finish() {
+        if (this.suiteBudget != null) {
+            this.suiteBudget.consume(System.nanoTime() - this.start);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package de.plastickarma.flakeyunit;
+
+import org.junit.runners.model.Statement;
+
+/**
+ * Strategy for executing the reruns of a failed test case.
+ */
+interface RerunExecutor {
+
+    /**
+     * Reruns the given Statement until the verdict policy settles the flakeyness of the testcase, but at most
+     * for the given number of reruns.
+     * @param base Statement, that is rerun.
+     * @param perturbations Perturbations, that are applied to the reruns in turn by rerun number, empty for
+     *                      plain reruns.
+     * @param maxReruns maximum number of reruns.
+     * @param verdictPolicy policy, that decides after each rerun if more reruns are needed.
+     * @param failures The outcomes of the reruns, whose result was taken into account, are recorded here in
+     *                 rerun order, see {@link RerunFailures#addRerun(Perturbation, Throwable)}.
+     * @return The number of reruns, whose result was taken into account.
+     */
+    int rerun(
+            Statement base,
+            Perturbation[] perturbations,
+            int maxReruns,
+            FlakeyVerdictPolicy verdictPolicy,
+            RerunFailures failures);
+}
@@ -0,0 +1,154 @@
+package de.plastickarma.flakeyunit;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * List of the failures during the reruns of a test case, that stores identical failures only once. Failures
+ * are identical, if they have the same exception class, message and top stack frames, as summarized by their
+ * {@link de.plastickarma.flakeyunit.FailureFingerprint fingerprint}.
+ * Only the first occurrence of every {@link #getDistinctFailures() distinct failure} is kept, together with its
+ * number of occurrences, so repeated failures of a test case do not hold on to their exceptions. As a list, it
+ * is a view in rerun order, that returns the kept occurrence for every rerun. The rerun exceptions passed to a
+ * {@link de.plastickarma.flakeyunit.FlakeyTestcaseListener} are a RerunFailures, use
+ * {@link #of(java.util.List)} to access the deduplicated form.
+ */
+public final class RerunFailures extends AbstractList<Throwable> {
+
+    private final List<DistinctFailure> distinctFailures = new ArrayList<>(1);
+    // first distinct failure per fingerprint, failures with colliding fingerprints are searched in the list
+    private final Map<FailureFingerprint, Integer> fingerprintIndexes = new HashMap<>(4);
+    private int[] distinctIndexes = new int[8];
+    private int size = 0;
+    private List<RerunAttempt> attempts = Collections.emptyList();
+
+    /**
+     * Returns the given failures as RerunFailures. The list itself is returned, if it is a RerunFailures.
+     */
+    public static RerunFailures of(final List<Throwable> exceptions) {
+        if (exceptions instanceof RerunFailures) {
+            return (RerunFailures) exceptions;
+        }
+        final RerunFailures failures = new RerunFailures();
+        failures.addAll(exceptions);
+        return failures;
+    }
+
+    /**
+     * Adds the failure of the next rerun. An occurrence of a failure, that is stored already, is only counted.
+     */
+    @Override
+    public boolean add(final Throwable t) {
+        final FailureFingerprint fingerprint = FailureFingerprint.of(t);
+        int index = indexOf(t, fingerprint);
+        if (index >= 0) {
+            this.distinctFailures.get(index).addOccurrence();
+        } else {
+            index = this.distinctFailures.size();
+            this.distinctFailures.add(new DistinctFailure(t, fingerprint));
+            if (!this.fingerprintIndexes.containsKey(fingerprint)) {
+                this.fingerprintIndexes.put(fingerprint, index);
+            }
+        }
+        if (this.size == this.distinctIndexes.length) {
+            this.distinctIndexes = Arrays.copyOf(this.distinctIndexes, this.size * 2);
+        }
+        this.distinctIndexes[this.size++] = index;
+        this.modCount++;
+        return true;
+    }
+
+    /**
+     * Returns the exception of the rerun with the given index. For identical failures, that is the first
+     * occurrence.
+     */
+    @Override
+    public Throwable get(final int index) {
+        return getDistinctFailure(index).getThrowable();
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the distinct failures in the order of their first occurrence.
+     */
+    public List<DistinctFailure> getDistinctFailures() {
+        return Collections.unmodifiableList(this.distinctFailures);
+    }
+
+    /**
+     * Returns the outcomes of the reruns together with the {@link de.plastickarma.flakeyunit.Perturbation
+     * perturbations}, that were in effect for them, in rerun order, empty if the reruns were not perturbed.
+     */
+    public List<RerunAttempt> getAttempts() {
+        return Collections.unmodifiableList(this.attempts);
+    }
+
+    /**
+     * Returns the names of the perturbations of the reruns in rerun order, see {@link #getAttempts()}.
+     */
+    public List<String> getPerturbations() {
+        final List<String> perturbations = new ArrayList<>(this.attempts.size());
+        for (RerunAttempt attempt : this.attempts) {
+            perturbations.add(attempt.getPerturbation());
+        }
+        return perturbations;
+    }
+
+    /**
+     * Records the outcome of the next rerun.
+     * @param perturbation the perturbation of the rerun, <code>null</code> if it was not perturbed.
+     * @param failure the failure of the rerun, <code>null</code> if it passed.
+     */
+    void addRerun(final Perturbation perturbation, final Throwable failure) {
+        if (failure != null) {
+            add(failure);
+        }
+        if (perturbation != null) {
+            if (this.attempts.isEmpty()) {
+                this.attempts = new ArrayList<>();
+            }
+            this.attempts.add(new RerunAttempt(
+                    perturbation.getName(), failure == null ? null : getDistinctFailure(this.size - 1)));
+        }
+    }
+
+    /**
+     * Returns the distinct failure of the rerun with the given index.
+     */
+    public DistinctFailure getDistinctFailure(final int index) {
+        checkIndex(index);
+        return this.distinctFailures.get(this.distinctIndexes[index]);
+    }
+
+    private int indexOf(final Throwable t, final FailureFingerprint fingerprint) {
+        final Integer index = this.fingerprintIndexes.get(fingerprint);
+        if (index == null) {
+            return -1;
+        }
+        if (this.distinctFailures.get(index).matches(t, fingerprint)) {
+            return index;
+        }
+        // equal fingerprints of different failures are rare, so they are searched one by one
+        for (int i = index + 1; i < this.distinctFailures.size(); i++) {
+            if (this.distinctFailures.get(i).matches(t, fingerprint)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void checkIndex(final int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+        }
+    }
+}
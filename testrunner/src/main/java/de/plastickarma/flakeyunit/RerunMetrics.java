@@ -0,0 +1,269 @@
+package de.plastickarma.flakeyunit;
+
+import org.junit.runner.Description;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records, what the flakeyness detection costs: the durations of the initial test case runs and of every
+ * rerun, the CPU time of the reruns, the waiting times between reruns, the time spent in listeners and the
+ * totals per test class. Share a single instance between all indicators of the test run, e.g.
+ * {@link #shared()}, see {@link FlakeyTestIndicatorBuilder#metrics(RerunMetrics)}.
+ * <p>
+ * Recording takes a few atomic updates and allocates nothing, apart from the totals of a test class, when it
+ * is seen for the first time. The recorded costs are read with {@link #snapshot()}, exported to the
+ * {@link de.plastickarma.flakeyunit.MetricsSink sinks} with {@link #export()}, e.g. by the
+ * {@link de.plastickarma.flakeyunit.MetricsExportListener} at the end of the test run, or watched over JMX
+ * after {@link #registerMBean(String)}.
+ * </p>
+ */
+public final class RerunMetrics implements RerunMetricsMXBean {
+
+    private static final RerunMetrics SHARED = new RerunMetrics();
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final LatencyHistogram initialRuns = new LatencyHistogram();
+    private final LatencyHistogram reruns = new LatencyHistogram();
+    private final LatencyHistogram sleeps = new LatencyHistogram();
+    private final LatencyHistogram listenerDispatches = new LatencyHistogram();
+    private final AtomicLong rerunCpuNanos = new AtomicLong();
+    private final AtomicLong rerunTests = new AtomicLong();
+    private final AtomicLong flakes = new AtomicLong();
+    private final ConcurrentMap<String, ClassTotals> classes = new ConcurrentHashMap<>();
+    private final List<MetricsSink> sinks = new CopyOnWriteArrayList<>();
+
+    /**
+     * Returns the instance, that is exported by a {@link de.plastickarma.flakeyunit.MetricsExportListener}
+     * created with its default constructor, e.g. by a build tool.
+     */
+    public static RerunMetrics shared() {
+        return SHARED;
+    }
+
+    /**
+     * Adds a sink, that receives the recorded costs on {@link #export()}.
+     */
+    public RerunMetrics sink(final MetricsSink sink) {
+        this.sinks.add(sink);
+        return this;
+    }
+
+    /**
+     * Returns a copy of the costs recorded so far.
+     */
+    public RerunMetricsSnapshot snapshot() {
+        final List<ClassRerunMetrics> classTotals = new ArrayList<>(this.classes.size());
+        for (ClassTotals totals : this.classes.values()) {
+            classTotals.add(totals.snapshot());
+        }
+        Collections.sort(classTotals, new Comparator<ClassRerunMetrics>() {
+            @Override
+            public int compare(final ClassRerunMetrics first, final ClassRerunMetrics second) {
+                final int byRerunTime = Long.compare(second.getRerunNanos(), first.getRerunNanos());
+                return byRerunTime != 0 ? byRerunTime : first.getClassName().compareTo(second.getClassName());
+            }
+        });
+        return new RerunMetricsSnapshot(
+                this.initialRuns.snapshot(),
+                this.reruns.snapshot(),
+                this.sleeps.snapshot(),
+                this.listenerDispatches.snapshot(),
+                this.rerunCpuNanos.get(),
+                this.rerunTests.get(),
+                this.flakes.get(),
+                Collections.unmodifiableList(classTotals));
+    }
+
+    /**
+     * Passes a snapshot of the recorded costs to all sinks. Every sink gets the snapshot, even if an earlier
+     * one fails.
+     * @throws RuntimeException if a sink failed.
+     */
+    public void export() {
+        final RerunMetricsSnapshot snapshot = snapshot();
+        RuntimeException failure = null;
+        for (MetricsSink sink : this.sinks) {
+            try {
+                sink.export(snapshot);
+            } catch (IOException | RuntimeException e) {
+                if (failure == null) {
+                    failure = new RuntimeException("could not export rerun metrics to " + sink, e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Registers this instance with the platform MBeanServer as
+     * <code>de.plastickarma.flakeyunit:type=RerunMetrics,name=&lt;name&gt;</code>.
+     * @return The name of the registered MBean.
+     * @throws IllegalStateException if the MBean could not be registered, e.g. because the name is taken.
+     */
+    public ObjectName registerMBean(final String name) {
+        try {
+            final ObjectName objectName = new ObjectName(
+                    "de.plastickarma.flakeyunit:type=RerunMetrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("could not register rerun metrics as " + name, e);
+        }
+    }
+
+    @Override
+    public long getTests() {
+        return this.initialRuns.recordedCount();
+    }
+
+    @Override
+    public long getRerunTests() {
+        return this.rerunTests.get();
+    }
+
+    @Override
+    public long getFlakes() {
+        return this.flakes.get();
+    }
+
+    @Override
+    public long getReruns() {
+        return this.reruns.recordedCount();
+    }
+
+    @Override
+    public long getRerunMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(this.reruns.recordedTotalNanos());
+    }
+
+    @Override
+    public long getRerunCpuMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(this.rerunCpuNanos.get());
+    }
+
+    @Override
+    public long getSleepMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(this.sleeps.recordedTotalNanos());
+    }
+
+    @Override
+    public long getListenerDispatchMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(this.listenerDispatches.recordedTotalNanos());
+    }
+
+    /**
+     * Records the initial run of a test case, passed or failed.
+     */
+    void recordInitialRun(final Description description, final long nanos) {
+        this.initialRuns.record(nanos);
+        final ClassTotals totals = totalsOf(description);
+        totals.tests.incrementAndGet();
+        totals.initialRunNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Records a single rerun.
+     * @param nanos wall-clock time of the rerun.
+     * @param cpuNanos CPU time of the rerun, see {@link #currentThreadCpuNanos()}.
+     */
+    void recordRerun(final long nanos, final long cpuNanos) {
+        this.reruns.record(nanos);
+        this.rerunCpuNanos.addAndGet(Math.max(0, cpuNanos));
+    }
+
+    /**
+     * Records the waiting time before a rerun.
+     */
+    void recordSleep(final long nanos) {
+        this.sleeps.record(nanos);
+    }
+
+    /**
+     * Records the time spent in the listeners for a single notification.
+     */
+    void recordListenerDispatch(final long nanos) {
+        this.listenerDispatches.record(nanos);
+    }
+
+    /**
+     * Records all reruns of a failed test case.
+     * @param rerunCount number of reruns.
+     * @param nanos wall-clock time of all reruns, including the waiting times.
+     * @param flakey whether the test case was considered flakey.
+     */
+    void recordReruns(final Description description, final int rerunCount, final long nanos, final boolean flakey) {
+        this.rerunTests.incrementAndGet();
+        final ClassTotals totals = totalsOf(description);
+        totals.rerunTests.incrementAndGet();
+        totals.reruns.addAndGet(rerunCount);
+        totals.rerunNanos.addAndGet(nanos);
+        if (flakey) {
+            this.flakes.incrementAndGet();
+            totals.flakes.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the CPU time of the current thread in nanoseconds, 0 if the JVM does not measure it, e.g. for
+     * virtual threads.
+     */
+    static long currentThreadCpuNanos() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? Math.max(0, THREADS.getCurrentThreadCpuTime()) : 0;
+    }
+
+    private ClassTotals totalsOf(final Description description) {
+        final String className = String.valueOf(description.getClassName());
+        ClassTotals totals = this.classes.get(className);
+        if (totals == null) {
+            final ClassTotals created = new ClassTotals(className);
+            totals = this.classes.putIfAbsent(className, created);
+            if (totals == null) {
+                totals = created;
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Totals of a single test class.
+     */
+    private static final class ClassTotals {
+        private final String className;
+        private final AtomicLong tests = new AtomicLong();
+        private final AtomicLong initialRunNanos = new AtomicLong();
+        private final AtomicLong rerunTests = new AtomicLong();
+        private final AtomicLong reruns = new AtomicLong();
+        private final AtomicLong rerunNanos = new AtomicLong();
+        private final AtomicLong flakes = new AtomicLong();
+
+        private ClassTotals(final String className) {
+            this.className = className;
+        }
+
+        private ClassRerunMetrics snapshot() {
+            return new ClassRerunMetrics(
+                    this.className,
+                    this.tests.get(),
+                    this.initialRunNanos.get(),
+                    this.rerunTests.get(),
+                    this.reruns.get(),
+                    this.rerunNanos.get(),
+                    this.flakes.get());
+        }
+    }
+}
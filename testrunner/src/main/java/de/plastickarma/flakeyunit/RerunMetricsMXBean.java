@@ -0,0 +1,48 @@
+package de.plastickarma.flakeyunit;
+
+/**
+ * Management interface of {@link de.plastickarma.flakeyunit.RerunMetrics}, that shows the rerun costs of a
+ * running test JVM in JMX clients like JConsole. See {@link RerunMetrics#registerMBean(String)}.
+ */
+public interface RerunMetricsMXBean {
+
+    /**
+     * Returns the number of initial test case runs.
+     */
+    long getTests();
+
+    /**
+     * Returns the number of failed test cases, that were rerun.
+     */
+    long getRerunTests();
+
+    /**
+     * Returns how often a test case was considered flakey.
+     */
+    long getFlakes();
+
+    /**
+     * Returns the number of reruns.
+     */
+    long getReruns();
+
+    /**
+     * Returns the wall-clock time of all reruns in milliseconds.
+     */
+    long getRerunMillis();
+
+    /**
+     * Returns the CPU time of all reruns in milliseconds.
+     */
+    long getRerunCpuMillis();
+
+    /**
+     * Returns the waiting time between reruns in milliseconds.
+     */
+    long getSleepMillis();
+
+    /**
+     * Returns the time spent in listeners in milliseconds.
+     */
+    long getListenerDispatchMillis();
+}
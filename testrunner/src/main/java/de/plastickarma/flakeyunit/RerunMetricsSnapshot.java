@@ -0,0 +1,96 @@
+package de.plastickarma.flakeyunit;
+
+import java.util.List;
+
+/**
+ * Rerun costs recorded by {@link de.plastickarma.flakeyunit.RerunMetrics}, as passed to a
+ * {@link de.plastickarma.flakeyunit.MetricsSink}. Instances are immutable.
+ */
+public final class RerunMetricsSnapshot {
+
+    private final HistogramSnapshot initialRuns;
+    private final HistogramSnapshot reruns;
+    private final HistogramSnapshot sleeps;
+    private final HistogramSnapshot listenerDispatches;
+    private final long rerunCpuNanos;
+    private final long rerunTests;
+    private final long flakes;
+    private final List<ClassRerunMetrics> classes;
+
+    RerunMetricsSnapshot(
+            final HistogramSnapshot initialRuns,
+            final HistogramSnapshot reruns,
+            final HistogramSnapshot sleeps,
+            final HistogramSnapshot listenerDispatches,
+            final long rerunCpuNanos,
+            final long rerunTests,
+            final long flakes,
+            final List<ClassRerunMetrics> classes) {
+        this.initialRuns = initialRuns;
+        this.reruns = reruns;
+        this.sleeps = sleeps;
+        this.listenerDispatches = listenerDispatches;
+        this.rerunCpuNanos = rerunCpuNanos;
+        this.rerunTests = rerunTests;
+        this.flakes = flakes;
+        this.classes = classes;
+    }
+
+    /**
+     * Returns the durations of the initial test case runs, passed or failed.
+     */
+    public HistogramSnapshot getInitialRuns() {
+        return this.initialRuns;
+    }
+
+    /**
+     * Returns the durations of the single reruns.
+     */
+    public HistogramSnapshot getReruns() {
+        return this.reruns;
+    }
+
+    /**
+     * Returns the waiting times between reruns, see
+     * {@link FlakeyTestIndicatorBuilder#scheduler(RerunScheduler)}.
+     */
+    public HistogramSnapshot getSleeps() {
+        return this.sleeps;
+    }
+
+    /**
+     * Returns the time spent in listeners per notification, flakey events and outcomes.
+     */
+    public HistogramSnapshot getListenerDispatches() {
+        return this.listenerDispatches;
+    }
+
+    /**
+     * Returns the CPU time of the threads, that executed the reruns, in nanoseconds, 0 if the JVM does not
+     * measure thread CPU time.
+     */
+    public long getRerunCpuNanos() {
+        return this.rerunCpuNanos;
+    }
+
+    /**
+     * Returns the number of failed test cases, that were rerun.
+     */
+    public long getRerunTests() {
+        return this.rerunTests;
+    }
+
+    /**
+     * Returns how often a test case was considered flakey.
+     */
+    public long getFlakes() {
+        return this.flakes;
+    }
+
+    /**
+     * Returns the totals per test class, the class with the most expensive reruns first.
+     */
+    public List<ClassRerunMetrics> getClasses() {
+        return this.classes;
+    }
+}
@@ -0,0 +1,15 @@
+package de.plastickarma.flakeyunit;
+
+/**
+ * Schedule of the delays between reruns of a failed test case. Predefined schedules are provided by
+ * {@link de.plastickarma.flakeyunit.RerunSchedulers}.
+ */
+public interface RerunScheduler {
+
+    /**
+     * Returns the delay before the given rerun.
+     * @param rerun The number of the rerun, starting with 1 for the first rerun after the initial failure.
+     * @return delay in milliseconds, 0 for no delay.
+     */
+    long delayBeforeRerun(int rerun);
+}
@@ -0,0 +1,102 @@
+package de.plastickarma.flakeyunit;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Factory for the predefined {@link de.plastickarma.flakeyunit.RerunScheduler schedulers}.
+ */
+public final class RerunSchedulers {
+
+    private RerunSchedulers() { }
+
+    /**
+     * Creates a scheduler, that reruns immediately.
+     */
+    public static RerunScheduler noWait() {
+        return fixed(0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a scheduler, that waits the same time before each rerun.
+     * @param waitTime Time, that will be waited before each rerun.
+     * @param waitTimeUnit Time unit for the waiting time.
+     */
+    public static RerunScheduler fixed(final long waitTime, final TimeUnit waitTimeUnit) {
+        return new FixedScheduler(waitTimeUnit.toMillis(waitTime));
+    }
+
+    /**
+     * Creates a scheduler, that doubles the waiting time with every rerun.
+     * @param initialWaitTime Time, that will be waited before the first rerun.
+     * @param maxWaitTime Upper bound for the time, that will be waited before a rerun.
+     * @param waitTimeUnit Time unit for the waiting times.
+     */
+    public static RerunScheduler exponential(
+            final long initialWaitTime,
+            final long maxWaitTime,
+            final TimeUnit waitTimeUnit) {
+        return new ExponentialScheduler(waitTimeUnit.toMillis(initialWaitTime), waitTimeUnit.toMillis(maxWaitTime));
+    }
+
+    /**
+     * Creates a scheduler, that waits a random time between 0 and the delay of the given scheduler,
+     * so that reruns do not happen in lockstep with periodic activity.
+     * @param scheduler scheduler, that determines the upper bound of the delays.
+     */
+    public static RerunScheduler jittered(final RerunScheduler scheduler) {
+        return new JitteredScheduler(scheduler);
+    }
+
+    /**
+     * Scheduler with a constant delay.
+     */
+    private static final class FixedScheduler implements RerunScheduler {
+        private final long delay;
+
+        private FixedScheduler(final long delay) {
+            this.delay = delay;
+        }
+
+        @Override
+        public long delayBeforeRerun(final int rerun) {
+            return this.delay;
+        }
+    }
+
+    /**
+     * Scheduler with exponentially growing delays.
+     */
+    private static final class ExponentialScheduler implements RerunScheduler {
+        private final long initialDelay;
+        private final long maxDelay;
+
+        private ExponentialScheduler(final long initialDelay, final long maxDelay) {
+            this.initialDelay = initialDelay;
+            this.maxDelay = maxDelay;
+        }
+
+        @Override
+        public long delayBeforeRerun(final int rerun) {
+            final int doublings = Math.min(rerun - 1, Long.numberOfLeadingZeros(this.initialDelay) - 1);
+            return Math.min(this.initialDelay << Math.max(0, doublings), this.maxDelay);
+        }
+    }
+
+    /**
+     * Scheduler with random delays up to the delays of another scheduler.
+     */
+    private static final class JitteredScheduler implements RerunScheduler {
+        private final RerunScheduler scheduler;
+
+        private JitteredScheduler(final RerunScheduler scheduler) {
+            this.scheduler = scheduler;
+        }
+
+        @Override
+        public long delayBeforeRerun(final int rerun) {
+            final long delay = this.scheduler.delayBeforeRerun(rerun);
+            return delay > 0 ? ThreadLocalRandom.current().nextLong(delay + 1) : 0;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package de.plastickarma.flakeyunit;
+
+/**
+ * Decides what a rerun of a failed test case replays, see
+ * {@link FlakeyTestIndicatorBuilder#rerunScope(RerunScope)}.
+ */
+public enum RerunScope {
+
+    /**
+     * A rerun replays everything the indicator wraps: the <code>@Before</code> and <code>@After</code> methods,
+     * the {@link FlakeyTestIndicatorBuilder#fixture(org.junit.rules.TestRule) fixtures} and the test method.
+     */
+    STATEMENT,
+
+    /**
+     * A rerun replays only the test method. The <code>@Before</code> and <code>@After</code> methods and the
+     * fixtures are run once per test case, around the initial run and all of its reruns, so a rerun sees the
+     * state the previous run left behind.
+     */
+    METHOD,
+
+    /**
+     * Like {@link #METHOD}, but the fixtures are run once per test class, by the rule of
+     * {@link FlakeyTestIndicatorBuilder#buildClassRule()}, and are kept warm for all of its test cases.
+     */
+    CLASS
+}
@@ -0,0 +1,41 @@
+package de.plastickarma.flakeyunit;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Failure of a rerun, that did not complete within the
+ * {@link FlakeyTestIndicatorBuilder#rerunTimeout(long, java.util.concurrent.TimeUnit) rerun timeout}, i.e. a
+ * hanging test case. Its stack trace is the stack of the hanging thread at the time of the timeout, so that
+ * hangs at the same place have the same {@link de.plastickarma.flakeyunit.FailureFingerprint fingerprint}
+ * and are told apart from other failures. The dump of all threads is attached for the analysis of deadlocks.
+ */
+public final class RerunTimeoutException extends TimeoutException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String threadDump;
+
+    /**
+     * Creates a RerunTimeoutException.
+     * @param message Description of the exceeded timeout.
+     * @param hangingThread Thread, that executed the rerun, <code>null</code> if it is not known.
+     * @param threadDump Dump of all threads at the time of the timeout.
+     */
+    public RerunTimeoutException(final String message, final Thread hangingThread, final String threadDump) {
+        super(message);
+        this.threadDump = threadDump;
+        if (hangingThread != null) {
+            final StackTraceElement[] stackTrace = hangingThread.getStackTrace();
+            if (stackTrace.length > 0) {
+                setStackTrace(stackTrace);
+            }
+        }
+    }
+
+    /**
+     * Returns the dump of all threads at the time of the timeout.
+     */
+    public String getThreadDump() {
+        return this.threadDump;
+    }
+}
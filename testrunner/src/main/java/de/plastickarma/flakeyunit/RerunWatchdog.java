@@ -0,0 +1,128 @@
+package de.plastickarma.flakeyunit;
+
+import java.lang.management.LockInfo;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MonitorInfo;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watchdog, that interrupts reruns, that exceed their timeout. A single daemon thread watches the reruns of
+ * all test cases; it is started, when the first rerun is watched.
+ */
+final class RerunWatchdog {
+
+    private RerunWatchdog() { }
+
+    /**
+     * Starts to watch the current thread.
+     * @param timeoutNanos time, after which the thread is interrupted.
+     * @param message Description of the timeout for the {@link RerunTimeoutException}.
+     */
+    static Watch watchCurrentThread(final long timeoutNanos, final String message) {
+        final Watch watch = new Watch(Thread.currentThread(), message);
+        watch.future = Scheduler.INSTANCE.schedule(watch, timeoutNanos, TimeUnit.NANOSECONDS);
+        return watch;
+    }
+
+    /**
+     * Returns the stacks of all threads in the format of <code>jstack</code>, including the held locks, if the
+     * JVM supports it.
+     */
+    static String threadDump() {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        final StringBuilder dump = new StringBuilder();
+        for (ThreadInfo thread : threads.dumpAllThreads(
+                threads.isObjectMonitorUsageSupported(), threads.isSynchronizerUsageSupported())) {
+            dump.append('"').append(thread.getThreadName()).append("\" Id=").append(thread.getThreadId())
+                    .append(' ').append(thread.getThreadState());
+            if (thread.getLockName() != null) {
+                dump.append(" on ").append(thread.getLockName());
+            }
+            if (thread.getLockOwnerName() != null) {
+                dump.append(" owned by \"").append(thread.getLockOwnerName())
+                        .append("\" Id=").append(thread.getLockOwnerId());
+            }
+            dump.append('\n');
+            final StackTraceElement[] stack = thread.getStackTrace();
+            final MonitorInfo[] monitors = thread.getLockedMonitors();
+            for (int i = 0; i < stack.length; i++) {
+                dump.append("\tat ").append(stack[i]).append('\n');
+                for (MonitorInfo monitor : monitors) {
+                    if (monitor.getLockedStackDepth() == i) {
+                        dump.append("\t-  locked ").append(monitor).append('\n');
+                    }
+                }
+            }
+            for (LockInfo synchronizer : thread.getLockedSynchronizers()) {
+                dump.append("\t-  locked ").append(synchronizer).append('\n');
+            }
+            dump.append('\n');
+        }
+        return dump.toString();
+    }
+
+    /**
+     * Watch of a single rerun.
+     */
+    static final class Watch implements Runnable {
+        private final Thread thread;
+        private final String message;
+        private ScheduledFuture<?> future;
+        private boolean stopped;
+        private RerunTimeoutException timeout;
+
+        private Watch(final Thread thread, final String message) {
+            this.thread = thread;
+            this.message = message;
+        }
+
+        /**
+         * Called by the watchdog thread on timeout.
+         */
+        @Override
+        public synchronized void run() {
+            if (!this.stopped) {
+                this.timeout = new RerunTimeoutException(this.message, this.thread, threadDump());
+                this.thread.interrupt();
+            }
+        }
+
+        /**
+         * Stops watching. Must be called by the watched thread. Clears the interrupt of the watchdog.
+         * @return The timeout, if the rerun exceeded it, otherwise <code>null</code>.
+         */
+        synchronized RerunTimeoutException stop() {
+            this.stopped = true;
+            this.future.cancel(false);
+            if (this.timeout != null) {
+                Thread.interrupted();
+            }
+            return this.timeout;
+        }
+    }
+
+    /**
+     * Holder of the watchdog thread, so that it is only started, when it is needed.
+     */
+    private static final class Scheduler {
+        private static final ScheduledThreadPoolExecutor INSTANCE = create();
+
+        private static ScheduledThreadPoolExecutor create() {
+            final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "flakey-rerun-watchdog");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            scheduler.setRemoveOnCancelPolicy(true);
+            return scheduler;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package de.plastickarma.flakeyunit;
+
+import org.junit.runner.Description;
+
+/**
+ * Policy, that decides how many reruns a failed test case may get, e.g. based on its history.
+ */
+public interface RetryBudgetPolicy {
+
+    /**
+     * Returns the maximum number of reruns for the given failed test case.
+     * @param description The description of the testcase as provided by junit.
+     * @param maxRetries The configured number of retries, the result must not exceed it.
+     */
+    int retries(Description description, int maxRetries);
+}
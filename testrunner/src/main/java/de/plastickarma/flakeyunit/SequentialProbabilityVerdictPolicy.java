@@ -0,0 +1,54 @@
+package de.plastickarma.flakeyunit;
+
+/**
+ * {@link de.plastickarma.flakeyunit.FlakeyVerdictPolicy}, that uses Wald's sequential probability ratio test
+ * to decide as early as possible between the hypotheses "the test case is broken" (it rarely passes on rerun)
+ * and "the test case is flakey" (it passes on rerun about every other time). If the reruns are exhausted before
+ * the test reaches the requested confidence, the decision is delegated to a fallback policy.
+ */
+final class SequentialProbabilityVerdictPolicy implements FlakeyVerdictPolicy {
+
+    /** Assumed probability of a broken test case to pass on rerun. */
+    static final double BROKEN_PASS_PROBABILITY = 0.05;
+
+    /** Assumed probability of a flakey test case to pass on rerun. */
+    static final double FLAKEY_PASS_PROBABILITY = 0.5;
+
+    private static final double PASS_WEIGHT = Math.log(FLAKEY_PASS_PROBABILITY / BROKEN_PASS_PROBABILITY);
+    private static final double FAILURE_WEIGHT =
+            Math.log((1 - FLAKEY_PASS_PROBABILITY) / (1 - BROKEN_PASS_PROBABILITY));
+
+    private final double flakeyBound;
+    private final double notFlakeyBound;
+    private final FlakeyVerdictPolicy fallback;
+
+    /**
+     * Creates a SequentialProbabilityVerdictPolicy.
+     * @param confidence confidence in the verdict, between 0 and 1 (exclusive).
+     * @param fallback policy, that decides if the reruns are exhausted without reaching the confidence.
+     */
+    SequentialProbabilityVerdictPolicy(final double confidence, final FlakeyVerdictPolicy fallback) {
+        if (confidence <= 0 || confidence >= 1) {
+            throw new IllegalArgumentException("confidence must be between 0 and 1, but was " + confidence);
+        }
+        final double errorRate = 1 - confidence;
+        this.flakeyBound = Math.log((1 - errorRate) / errorRate);
+        this.notFlakeyBound = Math.log(errorRate / (1 - errorRate));
+        this.fallback = fallback;
+    }
+
+    @Override
+    public FlakeyVerdict decide(final int passes, final int failures, final int remainingReruns) {
+        final double logLikelihoodRatio = passes * PASS_WEIGHT + failures * FAILURE_WEIGHT;
+        if (logLikelihoodRatio >= this.flakeyBound) {
+            return FlakeyVerdict.FLAKEY;
+        }
+        if (logLikelihoodRatio <= this.notFlakeyBound) {
+            return FlakeyVerdict.NOT_FLAKEY;
+        }
+        if (remainingReruns == 0) {
+            return this.fallback.decide(passes, failures, remainingReruns);
+        }
+        return FlakeyVerdict.UNDECIDED;
+    }
+}
@@ -0,0 +1,133 @@
+package de.plastickarma.flakeyunit;
+
+import org.junit.runners.model.Statement;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link de.plastickarma.flakeyunit.RerunExecutor}, that executes reruns one after another on the test thread.
+ * Reruns, that exceed the rerun timeout or the budget, are interrupted by the
+ * {@link de.plastickarma.flakeyunit.RerunWatchdog}.
+ */
+final class SequentialRerunExecutor implements RerunExecutor {
+
+    private static final Throwable BUDGET_EXHAUSTED = new Throwable("rerun budget exhausted");
+
+    private final RerunScheduler scheduler;
+    private final long rerunTimeoutNanos;
+    private final long budgetNanos;
+    private final SuiteRerunBudget suiteBudget;
+    private final RerunMetrics metrics;
+
+    /**
+     * Creates a SequentialRerunExecutor.
+     * @param scheduler Schedule of the delays between reruns.
+     * @param rerunTimeoutNanos maximum time for a single rerun. A rerun, that exceeds it, is interrupted and
+     *                          counts as failure with a {@link RerunTimeoutException}. 0 means no timeout.
+     * @param budgetNanos Wall-clock budget for all reruns of a test case, 0 for an unlimited budget. No rerun
+     *                    is started, if its delay would exceed the remaining budget. A rerun, that is still
+     *                    running, when it is spent, is interrupted and not taken into account.
+     * @param suiteBudget Wall-clock budget for all reruns of the suite, <code>null</code> for none.
+     * @param metrics Recorder of the rerun durations and waiting times, <code>null</code> to record nothing.
+     */
+    SequentialRerunExecutor(
+            final RerunScheduler scheduler,
+            final long rerunTimeoutNanos,
+            final long budgetNanos,
+            final SuiteRerunBudget suiteBudget,
+            final RerunMetrics metrics) {
+        this.scheduler = scheduler;
+        this.rerunTimeoutNanos = rerunTimeoutNanos;
+        this.budgetNanos = budgetNanos;
+        this.suiteBudget = suiteBudget;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public int rerun(
+            final Statement base,
+            final Perturbation[] perturbations,
+            final int maxReruns,
+            final FlakeyVerdictPolicy verdictPolicy,
+            final RerunFailures failures) {
+        final RerunBudget budget = new RerunBudget(this.budgetNanos, this.suiteBudget);
+        int rerunCount = 0;
+        try {
+            while (rerunCount < maxReruns
+                    && verdictPolicy.decide(rerunCount - failures.size(), failures.size(), maxReruns - rerunCount)
+                        == FlakeyVerdict.UNDECIDED) {
+                final long delayNanos =
+                        TimeUnit.MILLISECONDS.toNanos(this.scheduler.delayBeforeRerun(rerunCount + 1));
+                if (delayNanos >= budget.remainingNanos()) {
+                    break;
+                }
+                if (delayNanos > 0 && !sleep(delayNanos)) {
+                    break;
+                }
+                final Perturbation perturbation = PerturbedStatement.perturbation(perturbations, rerunCount);
+                final Throwable failure =
+                        evaluate(PerturbedStatement.perturb(base, perturbation), budget.remainingNanos());
+                if (failure == BUDGET_EXHAUSTED) {
+                    break;
+                }
+                rerunCount++;
+                failures.addRerun(perturbation, failure);
+            }
+        } finally {
+            budget.finish();
+        }
+        return rerunCount;
+    }
+
+    /**
+     * Evaluates the Statement once, watched by the watchdog, if a timeout or budget applies.
+     * @return The failure of the rerun, <code>null</code>, if it passed, or BUDGET_EXHAUSTED if the budget was
+     * spent before the rerun completed.
+     */
+    private Throwable evaluate(final Statement base, final long remainingBudgetNanos) {
+        final long timeoutNanos = this.rerunTimeoutNanos > 0 ? this.rerunTimeoutNanos : Long.MAX_VALUE;
+        final boolean budgetFirst = remainingBudgetNanos < timeoutNanos;
+        final long limitNanos = Math.min(timeoutNanos, remainingBudgetNanos);
+        final RerunWatchdog.Watch watch = limitNanos == Long.MAX_VALUE ? null : RerunWatchdog.watchCurrentThread(
+                limitNanos, String.format("rerun timed out after %d ms", TimeUnit.NANOSECONDS.toMillis(limitNanos)));
+        final long start = System.nanoTime();
+        final long cpuStart = this.metrics != null ? RerunMetrics.currentThreadCpuNanos() : 0;
+        Throwable failure = null;
+        RerunTimeoutException timeout = null;
+        try {
+            base.evaluate();
+        } catch (Throwable t) {
+            failure = t;
+        } finally {
+            if (watch != null) {
+                timeout = watch.stop();
+            }
+        }
+        if (this.metrics != null) {
+            this.metrics.recordRerun(System.nanoTime() - start, RerunMetrics.currentThreadCpuNanos() - cpuStart);
+        }
+        if (timeout != null) {
+            return budgetFirst ? BUDGET_EXHAUSTED : timeout;
+        }
+        return failure;
+    }
+
+    /**
+     * Waits before a rerun.
+     * @return false, if the thread was interrupted.
+     */
+    private boolean sleep(final long delayNanos) {
+        final long start = System.nanoTime();
+        try {
+            ForkJoinAwareWaits.sleep(delayNanos);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            if (this.metrics != null) {
+                this.metrics.recordSleep(System.nanoTime() - start);
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package de.plastickarma.flakeyunit;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Runs the annotated test method in stress mode, if the test class has a flakey test indicator: the test case is
+ * invoked several times on several threads at once, to shake out races, that hardly ever fail sequentially.
+ * Overrides {@link FlakeyTestIndicatorBuilder#stress(int, int)}.
+ * <code>
+ *     &#64;Test &#64;Stress(invocations = 200, threads = 8, jitterMillis = 5)
+ *     public void cacheIsThreadSafe() { ... }
+ * </code>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Stress {
+
+    /**
+     * Number of invocations of the test case.
+     */
+    int invocations() default 100;
+
+    /**
+     * Number of threads, that invoke the test case at the same time.
+     */
+    int threads() default 4;
+
+    /**
+     * Maximum random delay before each invocation in milliseconds, 0 for none.
+     */
+    long jitterMillis() default 0;
+}
@@ -0,0 +1,38 @@
+package de.plastickarma.flakeyunit;
+
+/**
+ * Failed invocation of a stress run, see {@link StressRun#getFailures()}. Instances are immutable.
+ */
+public final class StressFailure {
+
+    private final int invocation;
+    private final int thread;
+    private final Throwable throwable;
+
+    StressFailure(final int invocation, final int thread, final Throwable throwable) {
+        this.invocation = invocation;
+        this.thread = thread;
+        this.throwable = throwable;
+    }
+
+    /**
+     * Returns the number of the invocation, starting at 0.
+     */
+    public int getInvocation() {
+        return this.invocation;
+    }
+
+    /**
+     * Returns the number of the stress thread, that executed the invocation, starting at 0.
+     */
+    public int getThread() {
+        return this.thread;
+    }
+
+    /**
+     * Returns the failure of the invocation.
+     */
+    public Throwable getThrowable() {
+        return this.throwable;
+    }
+}
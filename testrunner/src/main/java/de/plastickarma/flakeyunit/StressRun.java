@@ -0,0 +1,96 @@
+package de.plastickarma.flakeyunit;
+
+import org.junit.runner.Description;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Result of a test case in stress mode, as passed to a {@link de.plastickarma.flakeyunit.StressRunListener}.
+ * Instances are immutable.
+ */
+public final class StressRun {
+
+    private final Description description;
+    private final int invocations;
+    private final int threads;
+    private final long wallNanos;
+    private final HistogramSnapshot latencies;
+    private final List<StressFailure> failures;
+
+    StressRun(
+            final Description description,
+            final int invocations,
+            final int threads,
+            final long wallNanos,
+            final HistogramSnapshot latencies,
+            final List<StressFailure> failures) {
+        this.description = description;
+        this.invocations = invocations;
+        this.threads = threads;
+        this.wallNanos = wallNanos;
+        this.latencies = latencies;
+        this.failures = failures;
+    }
+
+    /**
+     * Returns the description of the test case as provided by junit.
+     */
+    public Description getDescription() {
+        return this.description;
+    }
+
+    /**
+     * Returns the number of completed invocations.
+     */
+    public int getInvocations() {
+        return this.invocations;
+    }
+
+    /**
+     * Returns the number of threads, that invoked the test case at the same time.
+     */
+    public int getThreads() {
+        return this.threads;
+    }
+
+    /**
+     * Returns the wall-clock time of the stress run in nanoseconds.
+     */
+    public long getWallNanos() {
+        return this.wallNanos;
+    }
+
+    /**
+     * Returns the invocations per second.
+     */
+    public double getThroughput() {
+        return this.wallNanos == 0 ? 0 : this.invocations * (double) TimeUnit.SECONDS.toNanos(1) / this.wallNanos;
+    }
+
+    /**
+     * Returns the durations of the single invocations, without the jitter before them.
+     */
+    public HistogramSnapshot getLatencies() {
+        return this.latencies;
+    }
+
+    /**
+     * Returns the failed invocations in the order of their invocation numbers.
+     */
+    public List<StressFailure> getFailures() {
+        return this.failures;
+    }
+
+    /**
+     * Returns the number of failed invocations of each stress thread, e.g. to spot a thread, that fails
+     * because of the order, in which it starts.
+     */
+    public int[] getFailuresPerThread() {
+        final int[] failuresPerThread = new int[this.threads];
+        for (StressFailure failure : this.failures) {
+            failuresPerThread[failure.getThread()]++;
+        }
+        return failuresPerThread;
+    }
+}
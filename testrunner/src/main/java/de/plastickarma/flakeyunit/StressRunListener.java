@@ -0,0 +1,16 @@
+package de.plastickarma.flakeyunit;
+
+/**
+ * {@link de.plastickarma.flakeyunit.FlakeyTestcaseListener}, that is notified about every test case in
+ * {@link FlakeyTestIndicatorBuilder#stress(int, int) stress mode}, passed, failed or flakey, with the
+ * statistics of the invocations and the threads of the failures.
+ */
+public interface StressRunListener extends FlakeyTestcaseListener {
+
+    /**
+     * Handles the result of a test case in stress mode. Called before a flakey stress run is passed to
+     * {@link #handlePotentialFlakeyness(org.junit.runner.Description, Throwable, int, java.util.List)}.
+     * @param run The result of the stress run.
+     */
+    void handleStressRun(StressRun run);
+}
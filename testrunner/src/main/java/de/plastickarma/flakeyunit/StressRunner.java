@@ -0,0 +1,148 @@
+package de.plastickarma.flakeyunit;
+
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Invokes a Statement several times on several threads at once. All threads are started before the first
+ * invocation and released together, so that the invocations overlap as much as possible.
+ */
+final class StressRunner {
+
+    private final int invocations;
+    private final int threads;
+    private final long jitterNanos;
+
+    /**
+     * Creates a StressRunner.
+     * @param invocations Number of invocations.
+     * @param threads Number of threads, at most the number of invocations are used.
+     * @param jitterNanos Maximum random delay before each invocation, 0 for none.
+     */
+    StressRunner(final int invocations, final int threads, final long jitterNanos) {
+        if (invocations < 1 || threads < 1) {
+            throw new IllegalArgumentException(
+                    "invocations and threads must be at least 1, but were " + invocations + " and " + threads);
+        }
+        this.invocations = invocations;
+        this.threads = Math.min(threads, invocations);
+        this.jitterNanos = jitterNanos;
+    }
+
+    /**
+     * Creates the StressRunner for the given annotation.
+     */
+    static StressRunner of(final Stress stress) {
+        return new StressRunner(
+                stress.invocations(), stress.threads(), TimeUnit.MILLISECONDS.toNanos(stress.jitterMillis()));
+    }
+
+    /**
+     * Invokes the Statement and waits for all invocations to complete.
+     * @param metrics Recorder of the invocations, <code>null</code> to record nothing. The first invocation is
+     *                recorded as initial run of the test case, the others as its reruns.
+     * @throws InterruptedException if the calling thread was interrupted. The stress threads are interrupted
+     * as well and the remaining invocations are not started.
+     */
+    StressRun run(
+            final Statement base,
+            final Description description,
+            final RerunMetrics metrics) throws InterruptedException {
+        final AtomicInteger nextInvocation = new AtomicInteger();
+        final AtomicInteger completed = new AtomicInteger();
+        final LatencyHistogram latencies = new LatencyHistogram();
+        final Queue<StressFailure> failures = new ConcurrentLinkedQueue<>();
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        final Thread[] workers = new Thread[this.threads];
+        for (int t = 0; t < workers.length; t++) {
+            final int thread = t;
+            workers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        startSignal.await();
+                        for (int i = nextInvocation.getAndIncrement();
+                             i < StressRunner.this.invocations;
+                             i = nextInvocation.getAndIncrement()) {
+                            if (StressRunner.this.jitterNanos > 0) {
+                                TimeUnit.NANOSECONDS.sleep(
+                                        ThreadLocalRandom.current().nextLong(StressRunner.this.jitterNanos + 1));
+                            }
+                            final long start = System.nanoTime();
+                            final long cpuStart = metrics != null ? RerunMetrics.currentThreadCpuNanos() : 0;
+                            try {
+                                base.evaluate();
+                            } catch (Throwable failure) {
+                                failures.add(new StressFailure(i, thread, failure));
+                            }
+                            final long nanos = System.nanoTime() - start;
+                            latencies.record(nanos);
+                            if (metrics != null) {
+                                record(metrics, description, i, nanos, RerunMetrics.currentThreadCpuNanos() - cpuStart);
+                            }
+                            completed.incrementAndGet();
+                        }
+                    } catch (InterruptedException e) {
+                        // the stress run was cancelled
+                    }
+                }
+            }, "flakey-stress-" + t);
+            workers[t].setDaemon(true);
+            workers[t].start();
+        }
+
+        final long start = System.nanoTime();
+        startSignal.countDown();
+        try {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            nextInvocation.set(this.invocations);
+            for (Thread worker : workers) {
+                worker.interrupt();
+            }
+            throw e;
+        }
+        final long wallNanos = System.nanoTime() - start;
+
+        final List<StressFailure> sortedFailures = new ArrayList<>(failures);
+        Collections.sort(sortedFailures, new Comparator<StressFailure>() {
+            @Override
+            public int compare(final StressFailure first, final StressFailure second) {
+                return Integer.compare(first.getInvocation(), second.getInvocation());
+            }
+        });
+        return new StressRun(
+                description,
+                completed.get(),
+                this.threads,
+                wallNanos,
+                latencies.snapshot(),
+                Collections.unmodifiableList(sortedFailures));
+    }
+
+    private static void record(
+            final RerunMetrics metrics,
+            final Description description,
+            final int invocation,
+            final long nanos,
+            final long cpuNanos) {
+        if (invocation == 0) {
+            metrics.recordInitialRun(description, nanos);
+        } else {
+            metrics.recordRerun(nanos, cpuNanos);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package de.plastickarma.flakeyunit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wall-clock budget for all reruns of a test suite. Share a single instance between all
+ * {@link de.plastickarma.flakeyunit.FlakeyTestIndicatorBuilder#suiteRerunBudget(SuiteRerunBudget) indicators}
+ * of the suite, e.g. in a static field. Once the budget is spent, failed test cases are not rerun anymore.
+ */
+public final class SuiteRerunBudget {
+
+    private final AtomicLong remainingNanos;
+
+    /**
+     * Creates a SuiteRerunBudget.
+     * @param budget Maximum time for all reruns of the suite.
+     * @param budgetUnit Time unit for the budget.
+     */
+    public SuiteRerunBudget(final long budget, final TimeUnit budgetUnit) {
+        this.remainingNanos = new AtomicLong(budgetUnit.toNanos(budget));
+    }
+
+    /**
+     * Returns the remaining budget in nanoseconds.
+     */
+    public long remainingNanos() {
+        return Math.max(0, this.remainingNanos.get());
+    }
+
+    /**
+     * Returns true, if the budget is spent.
+     */
+    public boolean isExhausted() {
+        return remainingNanos() == 0;
+    }
+
+    /**
+     * Charges the given time to the budget.
+     */
+    void consume(final long nanos) {
+        this.remainingNanos.addAndGet(-nanos);
+    }
+}
@@ -0,0 +1,91 @@
+package de.plastickarma.flakeyunit;
+
+import org.junit.internal.runners.statements.RunAfters;
+import org.junit.internal.runners.statements.RunBefores;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.Statement;
+
+import java.lang.reflect.Field;
+import java.util.List;
+
+/**
+ * Separates the test method of a statement created by <code>BlockJUnit4ClassRunner</code> from the
+ * <code>@Before</code> and <code>@After</code> methods around it, so that it can be rerun on its own. JUnit
+ * keeps them in private fields, which are looked up once. With a JUnit version, that stores them
+ * differently, statements are not separated and reruns replay the whole statement.
+ */
+final class TestMethodStatements {
+
+    private static final Field BEFORES_NEXT = field(RunBefores.class, "fNext", "next");
+    private static final Field BEFORES_TARGET = field(RunBefores.class, "fTarget", "target");
+    private static final Field BEFORES = field(RunBefores.class, "fBefores", "befores");
+    private static final Field AFTERS_NEXT = field(RunAfters.class, "fNext", "next");
+    private static final Field AFTERS_TARGET = field(RunAfters.class, "fTarget", "target");
+    private static final Field AFTERS = field(RunAfters.class, "fAfters", "afters");
+    private static final boolean SUPPORTED = BEFORES_NEXT != null && BEFORES_TARGET != null && BEFORES != null
+            && AFTERS_NEXT != null && AFTERS_TARGET != null && AFTERS != null;
+
+    private TestMethodStatements() { }
+
+    /**
+     * Returns the statement inside the <code>@Before</code> and <code>@After</code> methods, i.e. the test
+     * method with its expected exception and timeout, or the given statement, if it has none.
+     */
+    static Statement testMethod(final Statement statement) {
+        if (!SUPPORTED) {
+            return statement;
+        }
+        Statement next = statement;
+        while (true) {
+            if (next instanceof RunAfters) {
+                next = (Statement) get(AFTERS_NEXT, next);
+            } else if (next instanceof RunBefores) {
+                next = (Statement) get(BEFORES_NEXT, next);
+            } else {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of the statement, whose <code>@Before</code> and <code>@After</code> methods run around
+     * the given test method statement instead of the one returned by {@link #testMethod(Statement)}.
+     */
+    @SuppressWarnings("unchecked")
+    static Statement replaceTestMethod(final Statement statement, final Statement testMethod) {
+        if (statement instanceof RunAfters) {
+            return new RunAfters(
+                    replaceTestMethod((Statement) get(AFTERS_NEXT, statement), testMethod),
+                    (List<FrameworkMethod>) get(AFTERS, statement),
+                    get(AFTERS_TARGET, statement));
+        }
+        if (statement instanceof RunBefores) {
+            return new RunBefores(
+                    replaceTestMethod((Statement) get(BEFORES_NEXT, statement), testMethod),
+                    (List<FrameworkMethod>) get(BEFORES, statement),
+                    get(BEFORES_TARGET, statement));
+        }
+        return testMethod;
+    }
+
+    private static Object get(final Field field, final Object statement) {
+        try {
+            return field.get(statement);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Field field(final Class<?> type, final String... names) {
+        for (String name : names) {
+            try {
+                final Field field = type.getDeclaredField(name);
+                field.setAccessible(true);
+                return field;
+            } catch (NoSuchFieldException | RuntimeException e) {
+                // try the next name
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,22 @@
+package de.plastickarma.flakeyunit;
+
+/**
+ * Outcome of a test case, that is guarded by the flakey test indicator.
+ */
+public enum TestcaseOutcome {
+
+    /**
+     * The test case passed on the first run.
+     */
+    PASSED,
+
+    /**
+     * The test case failed and is not considered flakey.
+     */
+    FAILED,
+
+    /**
+     * The test case failed, but is considered flakey.
+     */
+    FLAKEY
+}
@@ -0,0 +1,28 @@
+package de.plastickarma.flakeyunit;
+
+import org.junit.runner.Description;
+
+import java.util.List;
+
+/**
+ * Interface for observing the outcome of every test case, that is guarded by the flakey test indicator,
+ * e.g. to keep statistics across builds.
+ */
+public interface TestcaseOutcomeListener {
+
+    /**
+     * Handles the outcome of a test case.
+     * @param description The description of the testcase as provided by junit.
+     * @param outcome The outcome of the test case.
+     * @param originalException The exception that was the initial test case failure, <code>null</code>
+     *                          if the test case passed.
+     * @param rerunCount The number of times, which the failed test case was repeated.
+     * @param rerunExceptions The exceptions, that occurred, during the rerun of the test case.
+     */
+    void handleOutcome(
+            Description description,
+            TestcaseOutcome outcome,
+            Throwable originalException,
+            int rerunCount,
+            List<Throwable> rerunExceptions);
+}
@@ -0,0 +1,31 @@
+package de.plastickarma.flakeyunit;
+
+/**
+ * {@link de.plastickarma.flakeyunit.FlakeyVerdictPolicy}, that considers a test case flakey, if the number of
+ * successful reruns exceeds a threshold. The verdict is settled as soon as the threshold is exceeded or
+ * cannot be exceeded anymore with the remaining reruns.
+ */
+final class ThresholdVerdictPolicy implements FlakeyVerdictPolicy {
+
+    private final int flakeyThreshold;
+
+    /**
+     * Creates a ThresholdVerdictPolicy.
+     * @param flakeyThreshold number of successful testcase runs after initial failure, which must be exceeded
+     *                        to be considered flakey.
+     */
+    ThresholdVerdictPolicy(final int flakeyThreshold) {
+        this.flakeyThreshold = flakeyThreshold;
+    }
+
+    @Override
+    public FlakeyVerdict decide(final int passes, final int failures, final int remainingReruns) {
+        if (passes > this.flakeyThreshold) {
+            return FlakeyVerdict.FLAKEY;
+        }
+        if (passes + remainingReruns <= this.flakeyThreshold) {
+            return FlakeyVerdict.NOT_FLAKEY;
+        }
+        return FlakeyVerdict.UNDECIDED;
+    }
+}
@@ -1,13 +1,43 @@
 package de.plastickarma.flakeyunit;
 
 
+import de.plastickarma.flakeyunit.fixtures.ClassScopedTestcases;
+import de.plastickarma.flakeyunit.fixtures.DeferredRerunTestcases;
+import de.plastickarma.flakeyunit.fixtures.StressTestcases;
 import junit.framework.AssertionFailedError;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.internal.AssumptionViolatedException;
+import org.junit.rules.TemporaryFolder;
 import org.junit.rules.TestRule;
+import org.junit.runner.Description;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.Result;
+import org.junit.runners.BlockJUnit4ClassRunner;
+import org.junit.runners.model.Statement;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static de.plastickarma.flakeyunit.UnittestHelper.*;
 import static org.hamcrest.core.Is.is;
+import static org.junit.Assume.assumeTrue;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 /**
@@ -15,6 +45,7 @@ import static org.junit.Assert.fail;
  */
 public class FlakeyTestIndicatorTests {
 
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
 
     @Test public void passingTestIsNotFlakey() throws Throwable {
         final CountingFlakeyTestcaseListener counter = new CountingFlakeyTestcaseListener();
@@ -112,4 +143,887 @@ public class FlakeyTestIndicatorTests {
         }
         assertThat(counter.getFlakeyTests().size(), is(0));
     }
+
+    @Test public void rerunsStopAsSoonAsTestIsConsideredFlakey() throws Throwable {
+        final RerunCountingListener listener = new RerunCountingListener();
+        final TestRule indicator = FlakeyTestIndicatorBuilder.indicator()
+                .rethrowOriginal(false)
+                .listener(listener)
+                .build();
+
+        createFlakeyTest(indicator, FlakeyTestIndicatorTests.class, "flakey1").evaluate();
+
+        // pass, fail, pass: threshold of 1 is exceeded after the third rerun
+        assertThat(listener.rerunCount, is(3));
+    }
+
+    @Test public void sequentialProbabilityStopsEarlyForFailingTest() throws Throwable {
+        final int[] executions = {0};
+        final TestRule indicator = FlakeyTestIndicatorBuilder.indicator()
+                .sequentialProbability(0.95)
+                .build();
+        final Statement failing = indicator.apply(new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                executions[0]++;
+                throw new AssertionFailedError();
+            }
+        }, Description.createTestDescription(FlakeyTestIndicatorTests.class, "failing"));
+
+        try {
+            failing.evaluate();
+            fail("Exception expected");
+        } catch (AssertionFailedError e) {
+            // Expected
+        }
+        assertThat(executions[0], is(1 + 5));
+    }
+
+    @Test public void sequentialProbabilityRecognizesFlakeyTest() throws Throwable {
+        final RerunCountingListener listener = new RerunCountingListener();
+        final TestRule indicator = FlakeyTestIndicatorBuilder.indicator()
+                .sequentialProbability(0.95)
+                .rethrowOriginal(false)
+                .listener(listener)
+                .build();
+
+        createFlakeyTest(indicator, FlakeyTestIndicatorTests.class, "flakey1").evaluate();
+
+        assertThat(listener.rerunCount, is(3));
+    }
+
+    @Test public void parallelRerunsRecognizeFlakeyTest() throws Throwable {
+        final RerunCountingListener listener = new RerunCountingListener();
+        final AtomicInteger executions = new AtomicInteger();
+        final TestRule indicator = FlakeyTestIndicatorBuilder.indicator()
+                .parallelReruns(4)
+                .rethrowOriginal(false)
+                .listener(listener)
+                .build();
+
+        indicator.apply(new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                // parallel reruns start in any order, so only the initial run fails
+                if (executions.getAndIncrement() == 0) {
+                    throw new AssertionFailedError();
+                }
+            }
+        }, Description.createTestDescription(FlakeyTestIndicatorTests.class, "parallel")).evaluate();
+
+        assertThat(listener.rerunCount, is(2));
+        assertThat(listener.rerunExceptions.size(), is(0));
+    }
+
+    @Test public void hangingParallelRerunTimesOut() throws Throwable {
+        final RerunCountingListener listener = new RerunCountingListener();
+        final AtomicInteger executions = new AtomicInteger();
+        final TestRule indicator = FlakeyTestIndicatorBuilder.indicator()
+                .parallelReruns(1)
+                .rerunTimeout(50, TimeUnit.MILLISECONDS)
+                .threshold(0)
+                .rethrowOriginal(false)
+                .listener(listener)
+                .build();
+
+        indicator.apply(new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                final int execution = executions.getAndIncrement();
+                if (execution == 0) {
+                    throw new AssertionFailedError();
+                }
+                if (execution == 1) {
+                    Thread.sleep(TimeUnit.SECONDS.toMillis(10));
+                }
+            }
+        }, Description.createTestDescription(FlakeyTestIndicatorTests.class, "hanging")).evaluate();
+
+        assertThat(listener.rerunCount, is(2));
+        assertThat(listener.rerunExceptions.get(0) instanceof TimeoutException, is(true));
+    }
+
+    @Test public void watchdogInterruptsHangingSequentialRerun() throws Throwable {
+        final RerunCountingListener listener = new RerunCountingListener();
+        final AtomicInteger executions = new AtomicInteger();
+        final TestRule indicator = FlakeyTestIndicatorBuilder.indicator()
+                .rerunTimeout(50, TimeUnit.MILLISECONDS)
+                .threshold(0)
+                .rethrowOriginal(false)
+                .listener(listener)
+                .build();
+
+        final long start = System.nanoTime();
+        indicator.apply(new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                final int execution = executions.getAndIncrement();
+                if (execution == 0) {
+                    throw new AssertionFailedError();
+                }
+                if (execution == 1) {
+                    Thread.sleep(TimeUnit.SECONDS.toMillis(10));
+                }
+            }
+        }, Description.createTestDescription(FlakeyTestIndicatorTests.class, "hanging")).evaluate();
+
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertThat(Thread.currentThread().isInterrupted(), is(false));
+        assertThat(listener.rerunCount, is(2));
+        final RerunTimeoutException hang = (RerunTimeoutException) listener.rerunExceptions.get(0);
+        assertThat(hang.getStackTrace()[0].getClassName(), is(Thread.class.getName()));
+        assertTrue(hang.getThreadDump().contains("\"" + Thread.currentThread().getName() + "\""));
+    }
+
+    @Test public void rerunBudgetStopsReruns() throws Throwable {
+        final int[] executions = {0};
+        final TestRule indicator = FlakeyTestIndicatorBuilder.indicator()
+                .scheduler(RerunSchedulers.fixed(20, TimeUnit.MILLISECONDS))
+                .rerunBudget(50, TimeUnit.MILLISECONDS)
+                .build();
+        final Statement failing = indicator.apply(new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                executions[0]++;
+                throw new AssertionFailedError();
+            }
+        }, Description.createTestDescription(FlakeyTestIndicatorTests.class, "failing"));
+
+        try {
+            failing.evaluate();
+            fail("Exception expected");
+        } catch (AssertionFailedError e) {
+            // Expected
+        }
+        assertTrue(executions[0] <= 1 + 3);
+    }
+
+    @Test public void exhaustedSuiteBudgetPreventsReruns() throws Throwable {
+        final int[] executions = {0};
+        final TestRule indicator = FlakeyTestIndicatorBuilder.indicator()
+                .suiteRerunBudget(new SuiteRerunBudget(0, TimeUnit.MILLISECONDS))
+                .build();
+        final Statement failing = indicator.apply(new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                executions[0]++;
+                throw new AssertionFailedError();
+            }
+        }, Description.createTestDescription(FlakeyTestIndicatorTests.class, "failing"));
+
+        try {
+            failing.evaluate();
+            fail("Exception expected");
+        } catch (AssertionFailedError e) {
+            // Expected
+        }
+        assertThat(executions[0], is(1));
+    }
+
+    @Test public void exponentialSchedulerDoublesDelayUpToMaximum() {
+        final RerunScheduler scheduler = RerunSchedulers.exponential(10, 50, TimeUnit.MILLISECONDS);
+        assertThat(scheduler.delayBeforeRerun(1), is(10L));
+        assertThat(scheduler.delayBeforeRerun(2), is(20L));
+        assertThat(scheduler.delayBeforeRerun(3), is(40L));
+        assertThat(scheduler.delayBeforeRerun(4), is(50L));
+        assertThat(scheduler.delayBeforeRerun(100), is(50L));
+    }
+
+    @Test public void identicalRerunFailuresAreStoredOnce() throws Throwable {
+        final RerunCountingListener listener = new RerunCountingListener();
+        final TestRule indicator = FlakeyTestIndicatorBuilder.indicator()
+                .threshold(3)
+                .rethrowOriginal(false)
+                .listener(listener)
+                .build();
+
+        createFlakeyTest(indicator, FlakeyTestIndicatorTests.class, "flakey1").evaluate();
+
+        final RerunFailures failures = RerunFailures.of(listener.rerunExceptions);
+        assertThat(failures.size(), is(3));
+        assertThat(failures.getDistinctFailures().size(), is(1));
+        assertThat(failures.getDistinctFailures().get(0).getOccurrences(), is(3));
+    }
+
+    @Test public void rerunFailuresKeepFirstOccurrenceAndConfirmFingerprints() {
+        final StackTraceElement[] frames = new AssertionFailedError().getStackTrace();
+        // "Aa" and "BB" have the same hash code, so the fingerprints are equal
+        final Throwable first = failure("Aa", frames);
+        final Throwable second = failure("Aa", frames);
+        final Throwable collision = failure("BB", frames);
+        assertThat(FailureFingerprint.of(collision), is(FailureFingerprint.of(first)));
+
+        final RerunFailures failures = RerunFailures.of(Arrays.asList(first, second, collision));
+
+        assertTrue(failures.get(0) == first);
+        // an identical failure is stored once, its first occurrence stands for every rerun
+        assertTrue(failures.get(1) == first);
+        assertTrue(failures.get(2) == collision);
+        assertThat(failures.getDistinctFailures().size(), is(2));
+        assertThat(failures.getDistinctFailures().get(0).getOccurrences(), is(2));
+        assertTrue(failures.getDistinctFailure(2).getThrowable() == collision);
+    }
+
+    @Test public void identicalRerunFailuresAreNotRetained() throws InterruptedException {
+        final RerunFailures failures = new RerunFailures();
+        final List<WeakReference<Throwable>> occurrences = new ArrayList<>();
+        for (int i = 0; i < 101; i++) {
+            occurrences.add(addSameFailure(failures));
+        }
+        final List<WeakReference<Throwable>> duplicates = occurrences.subList(1, occurrences.size());
+
+        for (int i = 0; i < 50 && !allCleared(duplicates); i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertTrue(allCleared(duplicates));
+        assertThat(failures.size(), is(101));
+        assertThat(failures.getDistinctFailures().size(), is(1));
+        assertThat(failures.getDistinctFailures().get(0).getOccurrences(), is(101));
+        assertTrue(failures.get(100) == occurrences.get(0).get());
+    }
+
+    @Test public void asyncListenerDeliversBatchesOnFlush() throws Throwable {
+        final List<FlakeyEvent> delivered = Collections.synchronizedList(new ArrayList<FlakeyEvent>());
+        final AsyncFlakeyTestcaseListener async = new AsyncFlakeyTestcaseListener(
+                16,
+                AsyncFlakeyTestcaseListener.OverflowPolicy.BLOCK,
+                Collections.<FlakeyTestcaseListener>singletonList(new FlakeyTestcaseBatchListener() {
+                    @Override
+                    public void handleBatch(final List<FlakeyEvent> events) {
+                        delivered.addAll(events);
+                    }
+
+                    @Override
+                    public void handlePotentialFlakeyness(
+                            final Description description,
+                            final Throwable originalException,
+                            final int rerunCount,
+                            final List<Throwable> rerunExceptions) {
+                        fail("Batch expected");
+                    }
+                }));
+        final TestRule indicator = FlakeyTestIndicatorBuilder.indicator()
+                .rethrowOriginal(false)
+                .listener(async)
+                .build();
+
+        createFlakeyTest(indicator, FlakeyTestIndicatorTests.class, "flakey1").evaluate();
+        createFlakeyTest(indicator, FlakeyTestIndicatorTests.class, "flakey2").evaluate();
+        async.flush();
+
+        assertThat(delivered.size(), is(2));
+        assertThat(delivered.get(0).getDescription().getMethodName(), is("flakey1"));
+        assertThat(delivered.get(1).getDescription().getMethodName(), is("flakey2"));
+    }
+
+    @Test public void coalescingAsyncListenerBlocksWhenCapacityIsReached() throws Throwable {
+        final CountDownLatch delivering = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> delivered = Collections.synchronizedList(new ArrayList<String>());
+        final AsyncFlakeyTestcaseListener async = new AsyncFlakeyTestcaseListener(
+                1,
+                AsyncFlakeyTestcaseListener.OverflowPolicy.COALESCE,
+                Collections.<FlakeyTestcaseListener>singletonList(new FlakeyTestcaseListener() {
+                    @Override
+                    public void handlePotentialFlakeyness(
+                            final Description description,
+                            final Throwable originalException,
+                            final int rerunCount,
+                            final List<Throwable> rerunExceptions) {
+                        delivering.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        delivered.add(description.getMethodName());
+                    }
+                }));
+        flakeyEvent(async, "flakey1");
+        assertTrue(delivering.await(10, TimeUnit.SECONDS));
+        // queued
+        flakeyEvent(async, "flakey2");
+        // coalesced, the second event of flakey3 replaces the first
+        flakeyEvent(async, "flakey3");
+        flakeyEvent(async, "flakey3");
+        final Thread blocked = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                flakeyEvent(async, "flakey4");
+            }
+        });
+        blocked.start();
+        blocked.join(200);
+        assertTrue(blocked.isAlive());
+
+        release.countDown();
+        blocked.join();
+        new DeferredRerunListener(new DeferredReruns()).testRunFinished(null);
+        assertThat(delivered, is(Arrays.asList("flakey1", "flakey2", "flakey3", "flakey4")));
+    }
+
+    @Test public void asyncListenerFailureIsRethrownByFlush() throws Throwable {
+        final List<String> delivered = Collections.synchronizedList(new ArrayList<String>());
+        final AsyncFlakeyTestcaseListener async = new AsyncFlakeyTestcaseListener(
+                16,
+                AsyncFlakeyTestcaseListener.OverflowPolicy.BLOCK,
+                Arrays.<FlakeyTestcaseListener>asList(
+                        new FlakeyTestcaseListener() {
+                            @Override
+                            public void handlePotentialFlakeyness(
+                                    final Description description,
+                                    final Throwable originalException,
+                                    final int rerunCount,
+                                    final List<Throwable> rerunExceptions) {
+                                throw new IllegalStateException("listener failed");
+                            }
+                        },
+                        new FlakeyTestcaseListener() {
+                            @Override
+                            public void handlePotentialFlakeyness(
+                                    final Description description,
+                                    final Throwable originalException,
+                                    final int rerunCount,
+                                    final List<Throwable> rerunExceptions) {
+                                delivered.add(description.getMethodName());
+                            }
+                        }));
+        flakeyEvent(async, "flakey1");
+        try {
+            async.flush();
+            fail("Exception expected");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("listener failed"));
+        }
+        assertThat(delivered, is(Collections.singletonList("flakey1")));
+        async.flush();
+    }
+
+    @Test(timeout = 10000) public void asyncListenerErrorDoesNotStopTheDispatch() throws Throwable {
+        final List<String> delivered = Collections.synchronizedList(new ArrayList<String>());
+        final AsyncFlakeyTestcaseListener async = new AsyncFlakeyTestcaseListener(
+                1,
+                AsyncFlakeyTestcaseListener.OverflowPolicy.BLOCK,
+                Collections.<FlakeyTestcaseListener>singletonList(new FlakeyTestcaseListener() {
+                    @Override
+                    public void handlePotentialFlakeyness(
+                            final Description description,
+                            final Throwable originalException,
+                            final int rerunCount,
+                            final List<Throwable> rerunExceptions) {
+                        if (description.getMethodName().equals("flakey1")) {
+                            throw new AssertionError("listener failed");
+                        }
+                        delivered.add(description.getMethodName());
+                    }
+                }));
+        flakeyEvent(async, "flakey1");
+        // more events than the queue holds, so the dispatch must go on after the error
+        flakeyEvent(async, "flakey2");
+        flakeyEvent(async, "flakey3");
+        try {
+            async.flush();
+            fail("Error expected");
+        } catch (AssertionError e) {
+            assertThat(e.getMessage(), is("listener failed"));
+        }
+        assertThat(delivered, is(Arrays.asList("flakey2", "flakey3")));
+    }
+
+    @Test public void outcomeListenerIsNotifiedAboutEveryTestcase() throws Throwable {
+        final List<TestcaseOutcome> outcomes = new ArrayList<>();
+        final TestRule indicator = FlakeyTestIndicatorBuilder.indicator()
+                .rethrowOriginal(false)
+                .outcomeListener(new TestcaseOutcomeListener() {
+                    @Override
+                    public void handleOutcome(
+                            final Description description,
+                            final TestcaseOutcome outcome,
+                            final Throwable originalException,
+                            final int rerunCount,
+                            final List<Throwable> rerunExceptions) {
+                        outcomes.add(outcome);
+                    }
+                })
+                .build();
+
+        createPassingTest(indicator).evaluate();
+        createFlakeyTest(indicator, FlakeyTestIndicatorTests.class, "flakey1").evaluate();
+        try {
+            createFailingTest(indicator).evaluate();
+            fail("Exception expected");
+        } catch (AssertionFailedError e) {
+            // Expected
+        }
+
+        assertThat(outcomes.size(), is(3));
+        assertThat(outcomes.get(0), is(TestcaseOutcome.PASSED));
+        assertThat(outcomes.get(1), is(TestcaseOutcome.FLAKEY));
+        assertThat(outcomes.get(2), is(TestcaseOutcome.FAILED));
+    }
+
+    @Test public void passingTestDoesNotAllocate() throws Throwable {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        final long threadId = Thread.currentThread().getId();
+        final Statement passing = createPassingTest(FlakeyTestIndicatorBuilder.indicator()
+                .listener(new CountingFlakeyTestcaseListener())
+                .build());
+        for (int i = 0; i < 10000; i++) {
+            passing.evaluate();
+        }
+
+        final long measurementOverhead =
+                -allocations.getThreadAllocatedBytes(threadId) + allocations.getThreadAllocatedBytes(threadId);
+        final long before = allocations.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 10000; i++) {
+            passing.evaluate();
+        }
+        final long allocated = allocations.getThreadAllocatedBytes(threadId) - before - measurementOverhead;
+
+        // less than a single object for all evaluations
+        assertTrue("allocated " + allocated + " bytes", allocated < 16);
+    }
+
+    @Test public void deferredRerunsRecognizeFlakeyTestAtEndOfRun() throws Throwable {
+        final CountingFlakeyTestcaseListener counter = new CountingFlakeyTestcaseListener();
+        final DeferredReruns deferredReruns = new DeferredReruns();
+        final TestRule indicator = FlakeyTestIndicatorBuilder.indicator()
+                .deferReruns(deferredReruns)
+                .rethrowOriginal(false)
+                .listener(counter)
+                .build();
+
+        for (String methodName : new String[] {"flakey1", "flakey2"}) {
+            try {
+                createFlakeyTest(indicator, FlakeyTestIndicatorTests.class, methodName).evaluate();
+                fail("Exception expected");
+            } catch (AssertionFailedError e) {
+                // Expected, the verdict is not known yet
+            }
+        }
+        assertThat(counter.getFlakeyTests().size(), is(0));
+        assertThat(deferredReruns.pending(), is(2));
+
+        new DeferredRerunListener(deferredReruns).testRunFinished(null);
+
+        assertThat(deferredReruns.pending(), is(0));
+        assertThat(counter.getFlakeyTests().size(), is(2));
+    }
+
+    @Test public void deferredRerunsOfRunnerRunClassSeeClassFixtures() {
+        final CountingFlakeyTestcaseListener counter = DeferredRerunTestcases.reset();
+
+        final Result result = JUnitCore.runClasses(DeferredRerunTestcases.class);
+
+        // the initial failure is reported, as the verdict is not known yet
+        assertThat(result.getFailureCount(), is(1));
+        assertThat(DeferredRerunTestcases.DEFERRED_RERUNS.pending(), is(0));
+        // the reruns ran before the @ClassRule was torn down, otherwise they had all failed
+        assertThat(counter.getFlakeyTests(), is(Collections.singletonList("flakey")));
+        assertThat(DeferredRerunTestcases.INVOCATIONS.get(), is(3));
+    }
+
+    @Test public void rerunsOfClassWithClassFixturesAreNotDeferredWithoutRunner() throws Throwable {
+        final CountingFlakeyTestcaseListener counter = DeferredRerunTestcases.reset();
+
+        final Result result = new JUnitCore().run(
+                Request.runner(new BlockJUnit4ClassRunner(DeferredRerunTestcases.class)));
+
+        // rerun right away, while the @ClassRule is still set up
+        assertThat(result.wasSuccessful(), is(true));
+        assertThat(DeferredRerunTestcases.DEFERRED_RERUNS.pending(), is(0));
+        assertThat(counter.getFlakeyTests(), is(Collections.singletonList("flakey")));
+    }
+
+    @Test public void countingListenerCountsParallelFlakesWithoutLosingUpdates() throws Throwable {
+        final CountingFlakeyTestcaseListener counter = new CountingFlakeyTestcaseListener();
+        final List<Throwable> rerunExceptions = Collections.<Throwable>singletonList(new AssertionFailedError());
+        final Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            final Description description = Description.createTestDescription(
+                    FlakeyTestIndicatorTests.class, t % 2 == 0 ? "flakey1" : "flakey2");
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 1000; i++) {
+                        counter.handlePotentialFlakeyness(description, null, 3, rerunExceptions);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        final List<FlakeyTestcaseCount> snapshot = counter.snapshot();
+        assertThat(snapshot.size(), is(2));
+        for (FlakeyTestcaseCount testcase : snapshot) {
+            assertThat(testcase.getClassName(), is(FlakeyTestIndicatorTests.class.getName()));
+            assertThat(testcase.getFlakes(), is(4000));
+            assertThat(testcase.getTotalReruns(), is(12000L));
+            assertThat(testcase.getTotalRerunFailures(), is(4000L));
+        }
+        assertThat(counter.getFlakeyTests().size(), is(8000));
+    }
+
+    @Test public void metricsRecordRerunCosts() throws Throwable {
+        final RerunMetrics metrics = new RerunMetrics();
+        final TestRule indicator = FlakeyTestIndicatorBuilder.indicator()
+                .waitTime(5, TimeUnit.MILLISECONDS)
+                .rethrowOriginal(false)
+                .listener(new CountingFlakeyTestcaseListener())
+                .metrics(metrics)
+                .build();
+        createPassingTest(indicator).evaluate();
+        createFlakeyTest(indicator, FlakeyTestIndicatorTests.class, "flakey").evaluate();
+
+        final RerunMetricsSnapshot snapshot = metrics.snapshot();
+        assertThat(snapshot.getInitialRuns().getCount(), is(2L));
+        assertThat(snapshot.getReruns().getCount(), is(3L));
+        assertThat(snapshot.getSleeps().getCount(), is(3L));
+        assertTrue(snapshot.getSleeps().getPercentileNanos(50) >= TimeUnit.MILLISECONDS.toNanos(5));
+        assertTrue(snapshot.getSleeps().getPercentileNanos(50) <= snapshot.getSleeps().getMaxNanos());
+        assertThat(snapshot.getListenerDispatches().getCount(), is(1L));
+        assertThat(snapshot.getRerunTests(), is(1L));
+        assertThat(snapshot.getFlakes(), is(1L));
+        assertThat(metrics.getTests(), is(2L));
+
+        final ClassRerunMetrics testClass = snapshot.getClasses().get(0);
+        assertThat(testClass.getClassName(), is(FlakeyTestIndicatorTests.class.getName()));
+        assertThat(testClass.getReruns(), is(3L));
+        assertTrue(testClass.getRerunNanos() >= snapshot.getReruns().getTotalNanos());
+
+        final StringBuilder prometheus = new StringBuilder();
+        PrometheusTextFileSink.write(prometheus, snapshot);
+        assertTrue(prometheus.toString(), prometheus.toString().contains("\nflakeyunit_flakes_total 1\n"));
+        assertTrue(prometheus.toString(), prometheus.toString().contains(
+                "flakeyunit_class_reruns_total{class=\"" + FlakeyTestIndicatorTests.class.getName() + "\"} 3\n"));
+    }
+
+    @Test public void quarantinedTestIsNotRerun() throws Throwable {
+        final CountingFlakeyTestcaseListener counter = new CountingFlakeyTestcaseListener();
+        final Quarantine quarantine = Quarantine.of(FlakeyTestIndicatorTests.class.getName() + "#quarantined");
+        final TestRule runOnce = FlakeyTestIndicatorBuilder.indicator()
+                .quarantine(quarantine, QuarantineMode.RUN_ONCE)
+                .listener(counter)
+                .build();
+        final TestRule skip = FlakeyTestIndicatorBuilder.indicator()
+                .quarantine(quarantine, QuarantineMode.SKIP)
+                .listener(counter)
+                .build();
+
+        final Statement quarantined = createFlakeyTest(runOnce, FlakeyTestIndicatorTests.class, "quarantined");
+        try {
+            quarantined.evaluate();
+            fail("Exception expected");
+        } catch (AssumptionViolatedException e) {
+            assertTrue(e.getCause() instanceof AssertionFailedError);
+        }
+        // the second run passes, so there was no rerun in between
+        quarantined.evaluate();
+        try {
+            createPassingTest(skip).evaluate();
+            createFlakeyTest(skip, FlakeyTestIndicatorTests.class, "quarantined").evaluate();
+            fail("Exception expected");
+        } catch (AssumptionViolatedException e) {
+            assertThat(e.getCause(), is((Throwable) null));
+        }
+        assertThat(counter.getFlakeyTests().size(), is(0));
+
+        final Description description = Description.createTestDescription(FlakeyTestIndicatorTests.class, "other");
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        final long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < 10000; i++) {
+            quarantine.isQuarantined(description);
+        }
+        // the least of a few rounds, so that allocations of the JVM itself, e.g. on recompilation, do not count
+        long allocated = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            final long measurementOverhead =
+                    -allocations.getThreadAllocatedBytes(threadId) + allocations.getThreadAllocatedBytes(threadId);
+            final long before = allocations.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < 10000; i++) {
+                quarantine.isQuarantined(description);
+            }
+            allocated = Math.min(
+                    allocated, allocations.getThreadAllocatedBytes(threadId) - before - measurementOverhead);
+        }
+        assertTrue("allocated " + allocated + " bytes", allocated < 16);
+    }
+
+    @Test public void quarantineFileIsReloadedWhenChanged() throws Throwable {
+        final Path file = this.folder.getRoot().toPath().resolve("quarantine.txt");
+        final Quarantine quarantine = Quarantine.fromFile(file, 0, TimeUnit.MILLISECONDS);
+        final Description first = Description.createTestDescription(FlakeyTestIndicatorTests.class, "first");
+        final Description second = Description.createTestDescription(FlakeyTestIndicatorTests.class, "second");
+        assertThat(quarantine.isQuarantined(first), is(false));
+
+        final String className = FlakeyTestIndicatorTests.class.getName();
+        Files.write(file, ("# quarantine\n" + className + "#first\n").getBytes(StandardCharsets.UTF_8));
+        assertThat(quarantine.isQuarantined(first), is(true));
+        assertThat(quarantine.isQuarantined(second), is(false));
+
+        Files.write(file, (className + "#second\n").getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        assertThat(quarantine.isQuarantined(first), is(true));
+        assertThat(quarantine.isQuarantined(second), is(true));
+        assertThat(quarantine.size(), is(2));
+
+        Files.write(file, (className + "#second\n").getBytes(StandardCharsets.UTF_8));
+        assertThat(quarantine.isQuarantined(first), is(false));
+        assertThat(quarantine.isQuarantined(second), is(true));
+
+        Files.delete(file);
+        assertThat(quarantine.isQuarantined(second), is(false));
+    }
+
+    @Test public void incompleteLastLineOfQuarantineFileIsHeldBack() throws Throwable {
+        final Path file = this.folder.getRoot().toPath().resolve("quarantine.txt");
+        final String className = FlakeyTestIndicatorTests.class.getName();
+        final Description partial = Description.createTestDescription(FlakeyTestIndicatorTests.class, "fir");
+        final Description first = Description.createTestDescription(FlakeyTestIndicatorTests.class, "first");
+        final Description second = Description.createTestDescription(FlakeyTestIndicatorTests.class, "second");
+        Files.write(file, (className + "#fir").getBytes(StandardCharsets.UTF_8));
+        final Quarantine quarantine = Quarantine.fromFile(file, 0, TimeUnit.MILLISECONDS);
+        assertThat(quarantine.size(), is(0));
+
+        // a concurrent writer completes the line
+        Files.write(file, "st\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        assertThat(quarantine.isQuarantined(first), is(true));
+        assertThat(quarantine.isQuarantined(partial), is(false));
+        assertThat(quarantine.size(), is(1));
+
+        // a last line without line break, that does not change anymore, is complete
+        Files.write(file, (className + "#second").getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        assertTrue(quarantine.reloadIfChanged());
+        assertThat(quarantine.size(), is(1));
+        assertThat(quarantine.isQuarantined(second), is(true));
+        assertThat(quarantine.size(), is(2));
+    }
+
+    @Test public void stressModeDetectsTestFailingInSomeConcurrentInvocations() throws Throwable {
+        final List<StressRun> runs = Collections.synchronizedList(new ArrayList<StressRun>());
+        final RerunCountingListener listener = new RerunCountingListener();
+        final StressRunListener stressListener = new StressRunListener() {
+            @Override
+            public void handleStressRun(final StressRun run) {
+                runs.add(run);
+            }
+
+            @Override
+            public void handlePotentialFlakeyness(
+                    final Description description,
+                    final Throwable originalException,
+                    final int rerunCount,
+                    final List<Throwable> rerunExceptions) {
+                listener.handlePotentialFlakeyness(description, originalException, rerunCount, rerunExceptions);
+            }
+        };
+        final RerunMetrics metrics = new RerunMetrics();
+        final TestRule indicator = FlakeyTestIndicatorBuilder.indicator()
+                .stress(30, 4)
+                .stressJitter(1, TimeUnit.MILLISECONDS)
+                .metrics(metrics)
+                .rethrowOriginal(false)
+                .listener(stressListener)
+                .build();
+        final AtomicInteger invocations = new AtomicInteger();
+        final Statement everyThirdFails = new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                if (invocations.incrementAndGet() % 3 == 0) {
+                    throw new AssertionFailedError();
+                }
+            }
+        };
+
+        indicator.apply(
+                everyThirdFails, Description.createTestDescription(FlakeyTestIndicatorTests.class, "racy")).evaluate();
+        // the annotation of the test method overrides the settings of the indicator
+        StressTestcases.reset(stressListener);
+        assertTrue(JUnitCore.runClasses(StressTestcases.class).wasSuccessful());
+
+        assertThat(invocations.get(), is(30));
+        assertThat(StressTestcases.INVOCATIONS.get(), is(10));
+        assertThat(runs.size(), is(2));
+        final StressRun run = runs.get(0);
+        assertThat(run.getInvocations(), is(30));
+        assertThat(run.getThreads(), is(4));
+        assertThat(run.getLatencies().getCount(), is(30L));
+        assertThat(run.getFailures().size(), is(10));
+        int attributed = 0;
+        for (int failures : run.getFailuresPerThread()) {
+            attributed += failures;
+        }
+        assertThat(attributed, is(10));
+        // the first invocation is the initial run, the others are its reruns
+        assertThat(metrics.getTests(), is(1L));
+        assertThat(metrics.getReruns(), is(29L));
+        assertThat(metrics.getRerunTests(), is(1L));
+        assertThat(metrics.getFlakes(), is(1L));
+        assertThat(runs.get(1).getInvocations(), is(10));
+        assertThat(runs.get(1).getThreads(), is(2));
+        assertThat(listener.rerunCount, is(9));
+        assertThat(listener.rerunExceptions.size(), is(2));
+    }
+
+    @Test public void perturbationsOfRerunsAreRecorded() throws Throwable {
+        final AtomicInteger running = new AtomicInteger();
+        final Perturbation counting = new Perturbation() {
+            @Override
+            public String getName() {
+                return "counting";
+            }
+
+            @Override
+            public Handle start() {
+                running.incrementAndGet();
+                return new Handle() {
+                    @Override
+                    public void stop() {
+                        running.decrementAndGet();
+                    }
+                };
+            }
+        };
+        final RerunCountingListener listener = new RerunCountingListener();
+        final TestRule indicator = FlakeyTestIndicatorBuilder.indicator()
+                .perturbation(Perturbations.none())
+                .perturbation(Perturbations.combined(counting, Perturbations.cpuContention(1)))
+                .rethrowOriginal(false)
+                .listener(listener)
+                .build();
+
+        createFlakeyTest(indicator, FlakeyTestIndicatorTests.class, "perturbed").evaluate();
+
+        assertThat(listener.rerunCount, is(3));
+        assertThat(RerunFailures.of(listener.rerunExceptions).getPerturbations(),
+                is(Arrays.asList("none", "counting+cpu-contention(1)", "none")));
+        assertThat(running.get(), is(0));
+    }
+
+    @Test public void parallelRerunsRecordTheOutcomeOfEveryPerturbation() throws Throwable {
+        final ThreadLocal<Boolean> hostile = new ThreadLocal<>();
+        final Perturbation failing = new Perturbation() {
+            @Override
+            public String getName() {
+                return "hostile";
+            }
+
+            @Override
+            public Handle start() {
+                hostile.set(Boolean.TRUE);
+                return new Handle() {
+                    @Override
+                    public void stop() {
+                        hostile.remove();
+                    }
+                };
+            }
+        };
+        final AtomicInteger executions = new AtomicInteger();
+        final RerunCountingListener listener = new RerunCountingListener();
+        final TestRule indicator = FlakeyTestIndicatorBuilder.indicator()
+                .parallelReruns(4)
+                .retries(8)
+                .threshold(3)
+                .perturbation(Perturbations.none())
+                .perturbation(failing)
+                .rethrowOriginal(false)
+                .listener(listener)
+                .build();
+
+        indicator.apply(new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                final int execution = executions.getAndIncrement();
+                // the plain reruns take longer, so that the reruns complete out of order
+                if (execution > 0 && hostile.get() == null) {
+                    Thread.sleep(20);
+                }
+                if (execution == 0 || hostile.get() != null) {
+                    throw new IllegalStateException("fails under the hostile perturbation");
+                }
+            }
+        }, Description.createTestDescription(FlakeyTestIndicatorTests.class, "perturbed")).evaluate();
+
+        // plain reruns pass, hostile reruns fail, until the fourth pass exceeds the threshold
+        assertThat(listener.rerunCount, is(7));
+        final List<RerunAttempt> attempts = RerunFailures.of(listener.rerunExceptions).getAttempts();
+        assertThat(attempts.size(), is(7));
+        for (int i = 0; i < attempts.size(); i++) {
+            final RerunAttempt attempt = attempts.get(i);
+            assertThat(attempt.getPerturbation(), is(i % 2 == 0 ? "none" : "hostile"));
+            assertThat(attempt.isPassed(), is(i % 2 == 0));
+            assertThat(attempt.getFailure() == null, is(i % 2 == 0));
+        }
+        assertThat(attempts.get(1).getFailure().getOccurrences(), is(3));
+        assertThat(attempts.get(3).getFailure(), is(attempts.get(1).getFailure()));
+    }
+
+    @Test public void classScopedRerunsReuseFixtures() {
+        final CountingFlakeyTestcaseListener listener = ClassScopedTestcases.reset();
+        final Result result = JUnitCore.runClasses(ClassScopedTestcases.class);
+
+        assertThat(result.wasSuccessful(), is(true));
+        assertThat(result.getRunCount(), is(2));
+        assertThat(listener.getFlakeyTests(), is(Collections.singletonList("flakey")));
+        // the reruns of the flakey test case invoke the test method only
+        assertThat(ClassScopedTestcases.INVOCATIONS.get(), is(3));
+        assertThat(ClassScopedTestcases.BEFORES.get(), is(2));
+        assertThat(ClassScopedTestcases.FIXTURE_SETUPS.get(), is(1));
+    }
+
+    private static Throwable failure(final String message, final StackTraceElement[] frames) {
+        final Throwable failure = new AssertionFailedError(message);
+        failure.setStackTrace(frames);
+        return failure;
+    }
+
+    private static WeakReference<Throwable> addSameFailure(final RerunFailures failures) {
+        // the same throw site, so that the failures are identical
+        final Throwable failure = new IllegalStateException("same failure");
+        failures.add(failure);
+        return new WeakReference<>(failure);
+    }
+
+    private static boolean allCleared(final List<WeakReference<Throwable>> references) {
+        for (WeakReference<Throwable> reference : references) {
+            if (reference.get() != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void flakeyEvent(final FlakeyTestcaseListener listener, final String methodName) {
+        listener.handlePotentialFlakeyness(
+                Description.createTestDescription(FlakeyTestIndicatorTests.class, methodName),
+                new AssertionFailedError(),
+                1,
+                Collections.<Throwable>emptyList());
+    }
+
+    /**
+     * Listener, that remembers the rerun count of the last flakey test case.
+     */
+    private static final class RerunCountingListener implements FlakeyTestcaseListener {
+        private int rerunCount = -1;
+        private List<Throwable> rerunExceptions;
+
+        @Override
+        public void handlePotentialFlakeyness(
+                final Description description,
+                final Throwable originalException,
+                final int rerunCount,
+                final List<Throwable> rerunExceptions) {
+            this.rerunCount = rerunCount;
+            this.rerunExceptions = rerunExceptions;
+        }
+    }
 }
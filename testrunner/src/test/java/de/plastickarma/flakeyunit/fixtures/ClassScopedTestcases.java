@@ -0,0 +1,77 @@
+package de.plastickarma.flakeyunit.fixtures;
+
+import de.plastickarma.flakeyunit.CountingFlakeyTestcaseListener;
+import de.plastickarma.flakeyunit.FlakeyTestIndicatorBuilder;
+import de.plastickarma.flakeyunit.FlakeyTestcaseListener;
+import de.plastickarma.flakeyunit.RerunScope;
+import junit.framework.AssertionFailedError;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExternalResource;
+import org.junit.rules.TestRule;
+import org.junit.runner.Description;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test cases with a class scoped fixture, whose reruns reuse it. They are run by the test cases for class scoped
+ * reruns, not by the build.
+ */
+public class ClassScopedTestcases {
+
+    public static final AtomicInteger FIXTURE_SETUPS = new AtomicInteger();
+    public static final AtomicInteger BEFORES = new AtomicInteger();
+    public static final AtomicInteger INVOCATIONS = new AtomicInteger();
+    private static volatile CountingFlakeyTestcaseListener listener = new CountingFlakeyTestcaseListener();
+
+    private static final FlakeyTestIndicatorBuilder FLAKEY = FlakeyTestIndicatorBuilder.indicator()
+            .rerunScope(RerunScope.CLASS)
+            .fixture(new ExternalResource() {
+                @Override
+                protected void before() {
+                    FIXTURE_SETUPS.incrementAndGet();
+                }
+            })
+            .rethrowOriginal(false)
+            .listener(new FlakeyTestcaseListener() {
+                @Override
+                public void handlePotentialFlakeyness(
+                        final Description description,
+                        final Throwable originalException,
+                        final int rerunCount,
+                        final List<Throwable> rerunExceptions) {
+                    listener.handlePotentialFlakeyness(description, originalException, rerunCount, rerunExceptions);
+                }
+            });
+
+    @ClassRule public static TestRule fixtures = FLAKEY.buildClassRule();
+    @Rule public TestRule indicator = FLAKEY.build();
+
+    /**
+     * Resets the counters before a run.
+     * @return the listener of the run.
+     */
+    public static CountingFlakeyTestcaseListener reset() {
+        listener = new CountingFlakeyTestcaseListener();
+        FIXTURE_SETUPS.set(0);
+        BEFORES.set(0);
+        INVOCATIONS.set(0);
+        return listener;
+    }
+
+    @Before public void before() {
+        BEFORES.incrementAndGet();
+    }
+
+    @Test public void flakey() {
+        if (INVOCATIONS.incrementAndGet() == 1) {
+            throw new AssertionFailedError();
+        }
+    }
+
+    @Test public void passing() {
+    }
+}
@@ -0,0 +1,66 @@
+package de.plastickarma.flakeyunit.fixtures;
+
+import de.plastickarma.flakeyunit.CountingFlakeyTestcaseListener;
+import de.plastickarma.flakeyunit.DeferredRerunRunner;
+import de.plastickarma.flakeyunit.DeferredReruns;
+import de.plastickarma.flakeyunit.FlakeyTestIndicatorBuilder;
+import junit.framework.AssertionFailedError;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExternalResource;
+import org.junit.rules.TestRule;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases with a class fixture, whose reruns are deferred. They are run by the test cases for deferred
+ * reruns, not by the build.
+ */
+@RunWith(DeferredRerunRunner.class)
+public class DeferredRerunTestcases {
+
+    public static final DeferredReruns DEFERRED_RERUNS = new DeferredReruns();
+    public static final AtomicInteger INVOCATIONS = new AtomicInteger();
+    private static volatile CountingFlakeyTestcaseListener listener = new CountingFlakeyTestcaseListener();
+    private static volatile boolean serverStarted;
+
+    @ClassRule public static TestRule server = new ExternalResource() {
+        @Override
+        protected void before() {
+            serverStarted = true;
+        }
+
+        @Override
+        protected void after() {
+            serverStarted = false;
+        }
+    };
+
+    @Rule public TestRule indicator = FlakeyTestIndicatorBuilder.indicator()
+            .deferReruns(DEFERRED_RERUNS)
+            .rethrowOriginal(false)
+            .listener(listener)
+            .build();
+
+    /**
+     * Resets the counters before a run.
+     * @return the listener of the run.
+     */
+    public static CountingFlakeyTestcaseListener reset() {
+        listener = new CountingFlakeyTestcaseListener();
+        INVOCATIONS.set(0);
+        return listener;
+    }
+
+    @Test public void flakey() {
+        // every run needs the class fixture
+        assertTrue("server is not started", serverStarted);
+        if (INVOCATIONS.incrementAndGet() == 1) {
+            throw new AssertionFailedError();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package de.plastickarma.flakeyunit.fixtures;
+
+import de.plastickarma.flakeyunit.FlakeyTestIndicatorBuilder;
+import de.plastickarma.flakeyunit.Stress;
+import de.plastickarma.flakeyunit.StressRunListener;
+import junit.framework.AssertionFailedError;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test case, that is run in stress mode because of its annotation. It is run by the test cases for the stress
+ * mode, not by the build.
+ */
+public class StressTestcases {
+
+    public static final AtomicInteger INVOCATIONS = new AtomicInteger();
+    private static volatile StressRunListener listener;
+
+    @Rule public TestRule indicator = FlakeyTestIndicatorBuilder.indicator()
+            .rethrowOriginal(false)
+            .listener(listener)
+            .build();
+
+    /**
+     * Resets the counter before a run.
+     * @param runListener the listener of the run.
+     */
+    public static void reset(final StressRunListener runListener) {
+        listener = runListener;
+        INVOCATIONS.set(0);
+    }
+
+    @Test @Stress(invocations = 10, threads = 2) public void everyThirdFails() {
+        if (INVOCATIONS.incrementAndGet() % 3 == 0) {
+            throw new AssertionFailedError();
+        }
+    }
+}